@@ -0,0 +1,183 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.sebasbaumh.postgis.index.GridIndex;
+
+/**
+ * Contention benchmark of the {@link GridIndex}: writers move items around while readers query small windows. The
+ * groups differ in the share of writers. In the hot spot groups all writers move items within a small area, which is
+ * queried by the readers either at the same time or not at all, so the first one measures queries blocking updates and
+ * the second one that unrelated updates do not slow down queries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+@SuppressWarnings("javadoc")
+public class GridIndexBenchmark
+{
+	private static final double EXTENT = 10000;
+	/**
+	 * Size of the hot spot at the origin.
+	 */
+	private static final double HOT_SPOT = 400;
+	/**
+	 * Number of additional items, which are only moved within the hot spot.
+	 */
+	private static final int HOT_SPOT_ITEMS = 1000;
+	private static final double WINDOW = 200;
+
+	private GridIndex<Integer> index;
+	@Param({ "10000", "100000" })
+	private int items;
+
+	private static double random(double bound)
+	{
+		return ThreadLocalRandom.current().nextDouble(bound);
+	}
+
+	private void move()
+	{
+		index.put(ThreadLocalRandom.current().nextInt(items), random(EXTENT), random(EXTENT));
+	}
+
+	private void moveInHotSpot()
+	{
+		index.put(items + ThreadLocalRandom.current().nextInt(HOT_SPOT_ITEMS), random(HOT_SPOT), random(HOT_SPOT));
+	}
+
+	private void query(Blackhole bh)
+	{
+		double x = random(EXTENT);
+		double y = random(EXTENT);
+		index.query(x, y, x + WINDOW, y + WINDOW, bh::consume);
+	}
+
+	private void query(Blackhole bh, double offset, double extent)
+	{
+		double x = offset + random(extent - WINDOW);
+		double y = offset + random(extent - WINDOW);
+		index.query(x, y, x + WINDOW, y + WINDOW, bh::consume);
+	}
+
+	@Benchmark
+	@Group("hotSpotElsewhere")
+	@GroupThreads(4)
+	public void hotSpotElsewhereMove()
+	{
+		moveInHotSpot();
+	}
+
+	@Benchmark
+	@Group("hotSpotElsewhere")
+	@GroupThreads(4)
+	public void hotSpotElsewhereQuery(Blackhole bh)
+	{
+		query(bh, HOT_SPOT + WINDOW, EXTENT - HOT_SPOT - WINDOW);
+	}
+
+	@Benchmark
+	@Group("hotSpot")
+	@GroupThreads(4)
+	public void hotSpotMove()
+	{
+		moveInHotSpot();
+	}
+
+	@Benchmark
+	@Group("hotSpot")
+	@GroupThreads(4)
+	public void hotSpotQuery(Blackhole bh)
+	{
+		query(bh, 0, HOT_SPOT);
+	}
+
+	@Benchmark
+	@Group("readHeavy")
+	@GroupThreads(2)
+	public void readHeavyMove()
+	{
+		move();
+	}
+
+	@Benchmark
+	@Group("readHeavy")
+	@GroupThreads(6)
+	public void readHeavyQuery(Blackhole bh)
+	{
+		query(bh);
+	}
+
+	@Setup
+	public void setup()
+	{
+		index = new GridIndex<Integer>(WINDOW);
+		for (int i = 0; i < items; i++)
+		{
+			index.put(i, random(EXTENT), random(EXTENT));
+		}
+		for (int i = 0; i < HOT_SPOT_ITEMS; i++)
+		{
+			index.put(items + i, random(HOT_SPOT), random(HOT_SPOT));
+		}
+	}
+
+	@Benchmark
+	@Group("writeHeavy")
+	@GroupThreads(6)
+	public void writeHeavyMove()
+	{
+		move();
+	}
+
+	@Benchmark
+	@Group("writeHeavy")
+	@GroupThreads(2)
+	public void writeHeavyQuery(Blackhole bh)
+	{
+		query(bh);
+	}
+
+}
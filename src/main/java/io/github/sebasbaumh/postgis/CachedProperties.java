@@ -0,0 +1,91 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import javax.annotation.Nullable;
+
+/**
+ * Values derived from a {@link Geometry}, which are only valid as long as the geometry is not modified. So they are
+ * bound to the modification count of the geometry (see {@link Geometry#getModificationCount()}). They are kept in a
+ * separate object, which is only referenced by geometries containing parts, so {@link Point}s do not have to carry
+ * them.
+ * @author Sebastian Baumhekel
+ */
+final class CachedProperties
+{
+	/**
+	 * Size of the binary (WKB) representation in bytes (see {@link Geometry#getBinarySize()}) or -1 if it is not
+	 * calculated yet.
+	 */
+	int binarySize = -1;
+	/**
+	 * Dimension flags (see {@link Geometry#calcDimensions()}) or -1 if they are not calculated yet.
+	 */
+	int dimensions = -1;
+	/**
+	 * Envelope.
+	 */
+	@Nullable
+	Envelope envelope;
+	/**
+	 * Structural hash (see {@link Geometry#getStructuralHash()}).
+	 */
+	long hash;
+	/**
+	 * Is the structural hash calculated?
+	 */
+	boolean hashCalculated;
+	/**
+	 * Estimated heap size in bytes (see {@link Geometry#getHeapSize()}) or -1 if it is not calculated yet.
+	 */
+	long heapSize = -1;
+	/**
+	 * Modification count of the geometry the values are derived from.
+	 */
+	final int modCount;
+
+	/**
+	 * Constructs an instance.
+	 * @param modCount modification count of the geometry the values are derived from
+	 */
+	CachedProperties(int modCount)
+	{
+		this.modCount = modCount;
+	}
+
+	/**
+	 * Gets the given values if they are still valid for the given modification count, else new (empty) values.
+	 * @param props values (can be null)
+	 * @param modCount current modification count of the geometry
+	 * @return {@link CachedProperties}
+	 */
+	static CachedProperties validFor(@Nullable CachedProperties props, int modCount)
+	{
+		if ((props == null) || (props.modCount != modCount))
+		{
+			return new CachedProperties(modCount);
+		}
+		return props;
+	}
+
+}
@@ -22,6 +22,10 @@
 
 package io.github.sebasbaumh.postgis;
 
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
@@ -61,6 +65,79 @@ public class CircularString extends LineString
 		addAll(points);
 	}
 
+	/**
+	 * Normalizes the given angle to the range [0, 2*PI).
+	 * @param angle angle in radians
+	 * @return normalized angle
+	 */
+	private static double normalizeAngle(double angle)
+	{
+		double a = angle % (2 * Math.PI);
+		return (a < 0) ? a + 2 * Math.PI : a;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcEnvelope()
+	 */
+	@Override
+	protected Envelope calcEnvelope()
+	{
+		// start with the envelope of all points
+		Envelope env = super.calcEnvelope();
+		if (env.isEmpty())
+		{
+			return env;
+		}
+		double minX = env.getMinX();
+		double minY = env.getMinY();
+		double maxX = env.getMaxX();
+		double maxY = env.getMaxY();
+		// then extend it by the parts of the arcs bulging out of it
+		Iterator<Point> it = getCoordinates().iterator();
+		Point p0 = it.next();
+		while (it.hasNext())
+		{
+			Point p1 = it.next();
+			if (!it.hasNext())
+			{
+				break;
+			}
+			Point p2 = it.next();
+			Arc arc = Arc.of(p0, p1, p2);
+			p0 = p2;
+			// skip (nearly) straight segments as they are covered by the envelope of the points
+			if (arc == null)
+			{
+				continue;
+			}
+			double cx = arc.cx;
+			double cy = arc.cy;
+			double r = arc.r;
+			// arc is always treated counterclockwise
+			double startAngle = (arc.sweep >= 0) ? arc.startAngle : arc.startAngle + arc.sweep;
+			double sweep = Math.abs(arc.sweep);
+			// check which extreme points (at 0, 90, 180 and 270 degrees) are on the arc
+			if (normalizeAngle(-startAngle) <= sweep)
+			{
+				maxX = Math.max(maxX, cx + r);
+			}
+			if (normalizeAngle(Math.PI / 2 - startAngle) <= sweep)
+			{
+				maxY = Math.max(maxY, cy + r);
+			}
+			if (normalizeAngle(Math.PI - startAngle) <= sweep)
+			{
+				minX = Math.min(minX, cx - r);
+			}
+			if (normalizeAngle(3 * Math.PI / 2 - startAngle) <= sweep)
+			{
+				minY = Math.min(minY, cy - r);
+			}
+		}
+		return new Envelope(minX, minY, env.getMinZ(), maxX, maxY, env.getMaxZ());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see io.github.sebasbaumh.postgis.LineBasedGeom#length()
@@ -72,4 +149,142 @@ public class CircularString extends LineString
 		return super.length();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.LineString#linearize(double)
+	 */
+	@Override
+	public LineString linearize(double maxSegmentAngle)
+	{
+		if (!(maxSegmentAngle > 0))
+		{
+			throw new IllegalArgumentException("maximum segment angle has to be positive: " + maxSegmentAngle);
+		}
+		LineString ls = new LineString();
+		ls.setSrid(getSrid());
+		Iterator<Point> it = getCoordinates().iterator();
+		if (!it.hasNext())
+		{
+			return ls;
+		}
+		Point p0 = it.next();
+		ls.add(p0.copy());
+		while (it.hasNext())
+		{
+			Point p1 = it.next();
+			if (!it.hasNext())
+			{
+				// incomplete arc, so just connect the points
+				ls.add(p1.copy());
+				break;
+			}
+			Point p2 = it.next();
+			Arc arc = Arc.of(p0, p1, p2);
+			// (nearly) straight segments are kept as they are
+			if (arc == null)
+			{
+				ls.add(p1.copy());
+				ls.add(p2.copy());
+				p0 = p2;
+				continue;
+			}
+			int n = Math.max(1, (int) Math.ceil(Math.abs(arc.sweep) / maxSegmentAngle));
+			for (int i = 1; i < n; i++)
+			{
+				double t = (double) i / n;
+				double a = arc.startAngle + arc.sweep * t;
+				// interpolate z and m along the arc
+				ls.add(new Point(arc.cx + arc.r * Math.cos(a), arc.cy + arc.r * Math.sin(a),
+						p0.getZ() + (p2.getZ() - p0.getZ()) * t, p0.getM() + (p2.getM() - p0.getM()) * t));
+			}
+			// end exactly at the last point
+			ls.add(p2.copy());
+			p0 = p2;
+		}
+		return ls;
+	}
+
+	/**
+	 * The circle of an arc defined by three points.
+	 */
+	private static final class Arc
+	{
+		/**
+		 * X coordinate of the center.
+		 */
+		final double cx;
+		/**
+		 * Y coordinate of the center.
+		 */
+		final double cy;
+		/**
+		 * Radius.
+		 */
+		final double r;
+		/**
+		 * Angle of the start point in radians.
+		 */
+		final double startAngle;
+		/**
+		 * Angle from the start point to the end point in radians (positive for counterclockwise arcs, else negative).
+		 */
+		final double sweep;
+
+		/**
+		 * Constructs an instance.
+		 * @param cx X coordinate of the center
+		 * @param cy Y coordinate of the center
+		 * @param x0 X coordinate of the start point
+		 * @param y0 Y coordinate of the start point
+		 * @param sweep angle from the start point to the end point in radians
+		 */
+		private Arc(double cx, double cy, double x0, double y0, double sweep)
+		{
+			this.cx = cx;
+			this.cy = cy;
+			this.r = Math.hypot(x0 - cx, y0 - cy);
+			this.startAngle = Math.atan2(y0 - cy, x0 - cx);
+			this.sweep = sweep;
+		}
+
+		/**
+		 * Calculates the arc through the given points.
+		 * @param p0 start point
+		 * @param p1 point on the arc
+		 * @param p2 end point
+		 * @return {@link Arc} on success, else null if the points are (nearly) on a straight line, so the center is far
+		 *         away and cannot be calculated precisely
+		 */
+		@Nullable
+		static Arc of(Point p0, Point p1, Point p2)
+		{
+			double x0 = p0.getX();
+			double y0 = p0.getY();
+			if (p0.coordsAreEqual(p2))
+			{
+				// a full circle, where the second point is on the opposite side
+				return new Arc((x0 + p1.getX()) / 2, (y0 + p1.getY()) / 2, x0, y0, 2 * Math.PI);
+			}
+			// calculate the center of the circle relative to the first point
+			double bx = p1.getX() - x0;
+			double by = p1.getY() - y0;
+			double dx = p2.getX() - x0;
+			double dy = p2.getY() - y0;
+			double d = 2 * (bx * dy - by * dx);
+			double b2 = bx * bx + by * by;
+			double d2 = dx * dx + dy * dy;
+			if (Math.abs(d) <= 1e-12 * (b2 + d2))
+			{
+				return null;
+			}
+			double cx = x0 + (dy * b2 - by * d2) / d;
+			double cy = y0 + (bx * d2 - dx * b2) / d;
+			double a0 = Math.atan2(y0 - cy, x0 - cx);
+			double a2 = Math.atan2(p2.getY() - cy, p2.getX() - cx);
+			// counterclockwise for a positive determinant, else clockwise
+			double sweep = (d > 0) ? normalizeAngle(a2 - a0) : -normalizeAngle(a0 - a2);
+			return new Arc(cx, cy, x0, y0, sweep);
+		}
+	}
+
 }
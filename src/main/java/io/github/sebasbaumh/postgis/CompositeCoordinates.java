@@ -0,0 +1,245 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * A live view of the coordinates of multiple geometries, which walks through their coordinates in place instead of
+ * copying them.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+final class CompositeCoordinates implements Iterable<Point>
+{
+	private final List<? extends Geometry> parts;
+
+	/**
+	 * Constructs an instance.
+	 * @param parts geometries
+	 */
+	CompositeCoordinates(List<? extends Geometry> parts)
+	{
+		this.parts = parts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#forEach(java.util.function.Consumer)
+	 */
+	@Override
+	public void forEach(Consumer<? super Point> action)
+	{
+		for (int i = 0; i < parts.size(); i++)
+		{
+			parts.get(i).getCoordinates().forEach(action);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<Point> iterator()
+	{
+		return new CompositeIterator();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#spliterator()
+	 */
+	@Override
+	public Spliterator<Point> spliterator()
+	{
+		return new CompositeSpliterator(Spliterators.emptySpliterator(), 0, parts.size());
+	}
+
+	/**
+	 * Iterator walking through the coordinates of all parts.
+	 */
+	private final class CompositeIterator implements Iterator<Point>
+	{
+		private Iterator<Point> current = Collections.emptyIterator();
+		private int index;
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext()
+		{
+			while (!current.hasNext())
+			{
+				// no more parts
+				if (index >= parts.size())
+				{
+					return false;
+				}
+				current = parts.get(index++).getCoordinates().iterator();
+			}
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public Point next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+	}
+
+	/**
+	 * Spliterator walking through the coordinates of a range of parts. It is split by parts first and then within the
+	 * last part, so it can be processed in parallel.
+	 */
+	private final class CompositeSpliterator implements Spliterator<Point>
+	{
+		private Spliterator<Point> current;
+		private final int end;
+		private int index;
+
+		/**
+		 * Constructs an instance.
+		 * @param current spliterator of the current part
+		 * @param index index of the next part
+		 * @param end end index of the parts (exclusive)
+		 */
+		CompositeSpliterator(Spliterator<Point> current, int index, int end)
+		{
+			this.current = current;
+			this.index = index;
+			this.end = end;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Spliterator#characteristics()
+		 */
+		@Override
+		public int characteristics()
+		{
+			return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Spliterator#estimateSize()
+		 */
+		@Override
+		public long estimateSize()
+		{
+			long n = current.estimateSize();
+			for (int i = index; i < end; i++)
+			{
+				n += parts.get(i).getNumberOfCoordinates();
+			}
+			return n;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Spliterator#forEachRemaining(java.util.function.Consumer)
+		 */
+		@Override
+		public void forEachRemaining(Consumer<? super Point> action)
+		{
+			current.forEachRemaining(action);
+			while (index < end)
+			{
+				parts.get(index++).getCoordinates().forEach(action);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+		 */
+		@Override
+		public boolean tryAdvance(Consumer<? super Point> action)
+		{
+			while (!current.tryAdvance(action))
+			{
+				// no more parts
+				if (index >= end)
+				{
+					return false;
+				}
+				current = parts.get(index++).getCoordinates().spliterator();
+			}
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.Spliterator#trySplit()
+		 */
+		@Nullable
+		@Override
+		public Spliterator<Point> trySplit()
+		{
+			int remaining = end - index;
+			// split by parts
+			if (remaining > 1)
+			{
+				int mid = index + remaining / 2;
+				Spliterator<Point> prefix = new CompositeSpliterator(current, index, mid);
+				current = Spliterators.emptySpliterator();
+				index = mid;
+				return prefix;
+			}
+			// split off the current part if there is another one
+			if (remaining == 1)
+			{
+				Spliterator<Point> prefix = current;
+				current = parts.get(index++).getCoordinates().spliterator();
+				if (prefix.estimateSize() > 0)
+				{
+					return prefix;
+				}
+			}
+			// split within the last part
+			return current.trySplit();
+		}
+	}
+
+}
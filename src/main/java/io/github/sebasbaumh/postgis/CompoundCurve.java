@@ -77,7 +77,8 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 	 */
 	public void add(LineString geom)
 	{
-		subgeoms.add(geom);
+		modified();
+		subgeoms.add(adopt(geom));
 	}
 
 	/**
@@ -86,12 +87,81 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 	 */
 	public final void addAll(Iterable<? extends LineString> geoms)
 	{
+		modified();
 		for (LineString geom : geoms)
 		{
-			subgeoms.add(geom);
+			subgeoms.add(adopt(geom));
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcDimensions()
+	 */
+	@Override
+	protected int calcDimensions()
+	{
+		int dimensions = 0;
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			dimensions |= subgeoms.get(i).getDimensions();
+		}
+		return dimensions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcEnvelope()
+	 */
+	@Override
+	protected Envelope calcEnvelope()
+	{
+		Envelope env = Envelope.EMPTY;
+		for (LineString geom : subgeoms)
+		{
+			env = env.merge(geom.getEnvelope());
+		}
+		return env;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcSizes(io.github.sebasbaumh.postgis.CachedProperties)
+	 */
+	@Override
+	void calcSizes(CachedProperties props)
+	{
+		// references to the cached properties and the curves
+		long heapSize = MemoryLayout.geometrySize(2 * MemoryLayout.REFERENCE) + MemoryLayout.cachedPropertiesSize(props)
+				+ MemoryLayout.arrayListSize(subgeoms.size());
+		// number of geometries
+		int binarySize = getBinaryHeaderSize() + 4;
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			LineString geom = subgeoms.get(i);
+			heapSize += geom.getHeapSize();
+			binarySize += geom.getBinarySize();
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcStructuralHash()
+	 */
+	@Override
+	protected long calcStructuralHash()
+	{
+		HashBuilder hb = new HashBuilder(this);
+		hb.add(subgeoms.size());
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			hb.add(subgeoms.get(i).getStructuralHash());
+		}
+		return hb.getHash();
+	}
+
 	@Override
 	public boolean checkConsistency()
 	{
@@ -128,7 +198,7 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 		// check type and parent
 		if (other instanceof CompoundCurve) {
 			CompoundCurve cother = (CompoundCurve) other;  // 手动转换类型
-			if (super.equals(other)) {
+			if (super.equals(other) && (this.subgeoms.size() == cother.subgeoms.size()) && equalsSummary(cother)) {
 				return PostGisUtil.equalsIterable(this.subgeoms, cother.subgeoms);
 			}
 		}
@@ -138,20 +208,36 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 
 	/*
 	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
+	 * @see io.github.sebasbaumh.postgis.Geometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
 	 */
 	@Override
-	public Iterable<Point> getCoordinates()
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			subgeoms.get(i).forEachCoordinate(consumer);
+		}
+	}
+
+	@Override
+	public void freeze()
 	{
-		ArrayList<Point> l = new ArrayList<Point>();
 		for (LineString geom : subgeoms)
 		{
-			for (Point p : geom.getCoordinates())
-			{
-				l.add(p);
-			}
+			geom.freeze();
 		}
-		return l;
+		super.freeze();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
+	 */
+	@Override
+	public Iterable<Point> getCoordinates()
+	{
+		// walk through the coordinates of all subgeometries without copying them
+		return new CompositeCoordinates(subgeoms);
 	}
 
 	/*
@@ -171,12 +257,12 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 	}
 
 	/**
-	 * Gets all geometries.
+	 * Gets all geometries. Modifications through the returned collection are tracked like the ones of this geometry.
 	 * @return geometries
 	 */
 	public Collection<LineString> getGeometries()
 	{
-		return subgeoms;
+		return PartList.of(this, subgeoms);
 	}
 
 	/*
@@ -210,46 +296,6 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 		return null;
 	}
 
-	@Override
-	public int hashCode()
-	{
-		return 31 * super.hashCode() + subgeoms.hashCode();
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#hasMeasure()
-	 */
-	@Override
-	public boolean hasMeasure()
-	{
-		for (LineString geom : subgeoms)
-		{
-			if (geom.hasMeasure())
-			{
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#is3d()
-	 */
-	@Override
-	public boolean is3d()
-	{
-		for (LineString geom : subgeoms)
-		{
-			if (geom.is3d())
-			{
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 * Checks, if there are no sub-geometries.
 	 * @return true on success, else false
@@ -267,7 +313,7 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 	@Override
 	public Iterator<LineString> iterator()
 	{
-		return subgeoms.iterator();
+		return getGeometries().iterator();
 	}
 
 	/*
@@ -285,6 +331,30 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 		return d;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Curve#linearize(double)
+	 */
+	@Override
+	public LineString linearize(double maxSegmentAngle)
+	{
+		LineString ls = new LineString();
+		for (LineString part : subgeoms)
+		{
+			for (Point p : part.linearize(maxSegmentAngle).getCoordinates())
+			{
+				// parts share their end points
+				Point last = ls.getEndPoint();
+				if ((last == null) || !last.coordsAreEqual(p))
+				{
+					ls.add(p.copy());
+				}
+			}
+		}
+		ls.setSrid(getSrid());
+		return ls;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see io.github.sebasbaumh.postgis.Curve#reverse()
@@ -293,6 +363,7 @@ public class CompoundCurve extends Curve implements Iterable<LineString>
 	public void reverse()
 	{
 		// reverse linestrings as a whole
+		modified();
 		Collections.reverse(subgeoms);
 		// then reverse all individually
 		for (LineString ls : subgeoms)
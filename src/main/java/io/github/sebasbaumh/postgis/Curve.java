@@ -22,6 +22,8 @@
 
 package io.github.sebasbaumh.postgis;
 
+import javax.annotation.Nullable;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
@@ -32,6 +34,15 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 public abstract class Curve extends Geometry implements LineBasedGeometry
 {
 	private static final long serialVersionUID = 0x100;
+	/**
+	 * Default maximum angle of a segment in radians when linearizing arcs (see {@link #linearize(double)}).
+	 */
+	public static final double DEFAULT_MAX_SEGMENT_ANGLE = Math.PI / 32;
+	/**
+	 * Values derived from this geometry (if any have been calculated yet).
+	 */
+	@Nullable
+	private transient CachedProperties cachedProperties;
 
 	/**
 	 * Constructor for subclasses.
@@ -47,6 +58,18 @@ public abstract class Curve extends Geometry implements LineBasedGeometry
 	 */
 	public abstract void close();
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getCachedProperties()
+	 */
+	@Override
+	final CachedProperties getCachedProperties()
+	{
+		CachedProperties props = CachedProperties.validFor(this.cachedProperties, getModificationCount());
+		this.cachedProperties = props;
+		return props;
+	}
+
 	/**
 	 * Checks if this ring is oriented in clockwise direction.
 	 * @return true on success, else false
@@ -68,6 +91,33 @@ public abstract class Curve extends Geometry implements LineBasedGeometry
 		return (pFirst != null) && (pLast != null) && pFirst.coordsAreEqual(pLast);
 	}
 
+	/**
+	 * Converts this curve to a {@link LineString} using the {@link #DEFAULT_MAX_SEGMENT_ANGLE}.
+	 * @return {@link LineString}
+	 */
+	public LineString linearize()
+	{
+		return linearize(DEFAULT_MAX_SEGMENT_ANGLE);
+	}
+
+	/**
+	 * Converts this curve to a {@link LineString} by approximating all arcs with straight segments. This
+	 * implementation connects the coordinates of the curve by straight segments, so curves containing arcs have to
+	 * override it.
+	 * @param maxSegmentAngle maximum angle of a segment in radians
+	 * @return {@link LineString} (can be this curve if it has no arcs)
+	 */
+	public LineString linearize(double maxSegmentAngle)
+	{
+		LineString ls = new LineString();
+		for (Point p : getCoordinates())
+		{
+			ls.add(p.copy());
+		}
+		ls.setSrid(getSrid());
+		return ls;
+	}
+
 	/**
 	 * Reverses this linestring.
 	 */
@@ -0,0 +1,393 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.sebasbaumh.postgis;
+
+import java.math.BigInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Formats double values using the shortest decimal representation that is parsed back to the same value. If there are
+ * several ones, the one closest to the exact value is taken. The layout is the same as the one of
+ * {@link Double#toString(double)}: plain notation for values from 10^-3 to 10^7 and computerized scientific notation
+ * otherwise (like "1.0E-4").
+ * <p>
+ * This uses the Schubfach algorithm by Raffaello Giulietti, which is used by {@link Double#toString(double)} since Java
+ * 19. Earlier versions sometimes write more digits than needed, e.g. "2.82879384806159008E17" instead of
+ * "2.82879384806159E17".
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+public final class DoubleFormat
+{
+	/**
+	 * Smallest significand of a normal value.
+	 */
+	private static final long C_MIN = 1L << 52;
+	/**
+	 * Significands of subnormal values below this have less than 2 digits, so they are scaled by 10.
+	 */
+	private static final int C_TINY = 3;
+	/**
+	 * Table of the 126 bit values g = floor(10^-k * 2^-r) + 1 for all k from {@link #K_MIN} to {@link #K_MAX}, where r
+	 * is chosen to give 2^125 &lt;= g &lt; 2^126. Each value is split into its upper and lower 63 bits.
+	 */
+	private static final long[] G;
+	private static final int K_MAX = 292;
+	private static final int K_MIN = -324;
+	/**
+	 * Mask of the lower 63 bits.
+	 */
+	private static final long MASK_63 = 0x7FFFFFFFFFFFFFFFL;
+	/**
+	 * Maximum number of characters of a formatted value (like "-2.2250738585072014E-308").
+	 */
+	public static final int MAX_LENGTH = 24;
+	/**
+	 * Precision of the significand in bits.
+	 */
+	private static final int P = 53;
+	/**
+	 * Powers of 10 up to the maximum number of digits of a significand.
+	 */
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+			1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+			1000000000000000L, 10000000000000000L, 100000000000000000L };
+	/**
+	 * Exponent of the smallest subnormal value.
+	 */
+	private static final int Q_MIN = -1074;
+
+	static
+	{
+		G = new long[2 * (K_MAX - K_MIN + 1)];
+		for (int k = K_MIN; k <= K_MAX; k++)
+		{
+			int r = flog2pow10(-k) - 125;
+			BigInteger num = BigInteger.ONE;
+			BigInteger den = BigInteger.ONE;
+			if (k < 0)
+			{
+				num = BigInteger.TEN.pow(-k);
+			}
+			else
+			{
+				den = BigInteger.TEN.pow(k);
+			}
+			if (r < 0)
+			{
+				num = num.shiftLeft(-r);
+			}
+			else
+			{
+				den = den.shiftLeft(r);
+			}
+			BigInteger g = num.divide(den).add(BigInteger.ONE);
+			int i = 2 * (k - K_MIN);
+			G[i] = g.shiftRight(63).longValue();
+			G[i + 1] = g.longValue() & MASK_63;
+		}
+	}
+
+	// prevent instantiating this class
+	@Deprecated
+	private DoubleFormat()
+	{
+	}
+
+	/**
+	 * Gets floor(log10(2^q)).
+	 * @param q exponent (-1233 to 1233)
+	 * @return floor(log10(2^q))
+	 */
+	private static int flog10pow2(int q)
+	{
+		return (int) ((q * 661971961083L) >> 41);
+	}
+
+	/**
+	 * Gets floor(log10(3/4 * 2^q)).
+	 * @param q exponent (-1233 to 1233)
+	 * @return floor(log10(3/4 * 2^q))
+	 */
+	private static int flog10threeQuartersPow2(int q)
+	{
+		return (int) ((q * 661971961083L - 274743187321L) >> 41);
+	}
+
+	/**
+	 * Gets floor(log2(10^e)).
+	 * @param e exponent (-1233 to 1233)
+	 * @return floor(log2(10^e))
+	 */
+	private static int flog2pow10(int e)
+	{
+		return (int) ((e * 913124641741L) >> 38);
+	}
+
+	/**
+	 * Formats the given value.
+	 * @param value value
+	 * @param buf buffer, which needs space for {@link #MAX_LENGTH} characters
+	 * @param pos position in the buffer to start at
+	 * @return position after the last written character
+	 */
+	public static int format(double value, char[] buf, int pos)
+	{
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & (C_MIN - 1);
+		int bq = (int) (bits >>> 52) & 0x7FF;
+		if (bq == 0x7FF)
+		{
+			return writeString((t != 0) ? "NaN" : ((bits < 0) ? "-Infinity" : "Infinity"), buf, pos);
+		}
+		int i = pos;
+		if (bits < 0)
+		{
+			buf[i++] = '-';
+		}
+		if (bq != 0)
+		{
+			// normal value
+			int mq = -Q_MIN + 1 - bq;
+			long c = C_MIN | t;
+			// integers are written directly
+			if ((0 < mq) && (mq < P))
+			{
+				long f = c >> mq;
+				if ((f << mq) == c)
+				{
+					return writeDecimal(f, 0, buf, i);
+				}
+			}
+			return format(-mq, c, 0, buf, i);
+		}
+		if (t != 0)
+		{
+			// subnormal value
+			return (t < C_TINY) ? format(Q_MIN, 10 * t, -1, buf, i) : format(Q_MIN, t, 0, buf, i);
+		}
+		return writeString("0.0", buf, i);
+	}
+
+	/**
+	 * Formats the positive value c * 2^q.
+	 * @param q exponent
+	 * @param c significand
+	 * @param dk correction of the decimal exponent if the significand has been scaled
+	 * @param buf buffer
+	 * @param pos position in the buffer to start at
+	 * @return position after the last written character
+	 */
+	private static int format(int q, long c, int dk, char[] buf, int pos)
+	{
+		// the interval of values rounding to c * 2^q is scaled by 4 to work with integers
+		int out = (int) c & 0x1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if ((c != C_MIN) || (q == Q_MIN))
+		{
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		}
+		else
+		{
+			// the interval is asymmetric at a power of 2
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		int gi = 2 * (k - K_MIN);
+		long g1 = G[gi];
+		long g0 = G[gi + 1];
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+		long s = vb >> 2;
+		if (s >= 100)
+		{
+			// try to drop a digit (s / 10 * 10 and the next multiple of 10)
+			long sp10 = 10 * Math.multiplyHigh(s, 115292150460684698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= (sp10 << 2);
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin)
+			{
+				return writeDecimal(upin ? sp10 : tp10, k, buf, pos);
+			}
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= (s << 2);
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win)
+		{
+			return writeDecimal(uin ? s : t, k + dk, buf, pos);
+		}
+		// both are in the interval, so take the closer one (or the even one if both are equally close)
+		long cmp = vb - ((s + t) << 1);
+		return writeDecimal(((cmp < 0) || ((cmp == 0) && ((s & 0x1) == 0))) ? s : t, k + dk, buf, pos);
+	}
+
+	/**
+	 * Multiplies the 126 bit value g by cp and rounds the result to odd.
+	 * @param g1 upper 63 bits of g
+	 * @param g0 lower 63 bits of g
+	 * @param cp factor
+	 * @return product shifted right by 127 bits, with the lowest bit set if any bit has been shifted out
+	 */
+	private static long rop(long g1, long g0, long cp)
+	{
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+	}
+
+	/**
+	 * Formats the given value.
+	 * @param value value
+	 * @return formatted value
+	 */
+	public static String toString(double value)
+	{
+		char[] buf = new char[MAX_LENGTH];
+		return new String(buf, 0, format(value, buf, 0));
+	}
+
+	/**
+	 * Writes the decimal f * 10^e.
+	 * @param f significand (positive)
+	 * @param e exponent
+	 * @param buf buffer
+	 * @param pos position in the buffer to start at
+	 * @return position after the last written character
+	 */
+	private static int writeDecimal(long f, int e, char[] buf, int pos)
+	{
+		// get the number of digits without trailing zeros
+		int n = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+		if (f >= POW10[n])
+		{
+			n++;
+		}
+		// the value is 0.ddd * 10^e from now on
+		e += n;
+		while (f % 10 == 0)
+		{
+			f /= 10;
+			n--;
+		}
+		int i = pos;
+		if ((0 < e) && (e <= 7))
+		{
+			// plain notation with the dot inside or behind the digits
+			writeDigits(f, n, buf, i);
+			if (n > e)
+			{
+				System.arraycopy(buf, i + e, buf, i + e + 1, n - e);
+				buf[i + e] = '.';
+				return i + n + 1;
+			}
+			i += n;
+			for (int j = n; j < e; j++)
+			{
+				buf[i++] = '0';
+			}
+			buf[i++] = '.';
+			buf[i++] = '0';
+			return i;
+		}
+		if ((-3 < e) && (e <= 0))
+		{
+			// plain notation with leading zeros
+			buf[i++] = '0';
+			buf[i++] = '.';
+			for (int j = e; j < 0; j++)
+			{
+				buf[i++] = '0';
+			}
+			writeDigits(f, n, buf, i);
+			return i + n;
+		}
+		// scientific notation with a single digit before the dot
+		writeDigits(f, n, buf, i);
+		if (n > 1)
+		{
+			System.arraycopy(buf, i + 1, buf, i + 2, n - 1);
+			buf[i + 1] = '.';
+			i += n + 1;
+		}
+		else
+		{
+			buf[i + 1] = '.';
+			buf[i + 2] = '0';
+			i += 3;
+		}
+		buf[i++] = 'E';
+		int exp = e - 1;
+		if (exp < 0)
+		{
+			buf[i++] = '-';
+			exp = -exp;
+		}
+		int digits = (exp >= 100) ? 3 : ((exp >= 10) ? 2 : 1);
+		writeDigits(exp, digits, buf, i);
+		return i + digits;
+	}
+
+	/**
+	 * Writes the given number of digits of a value.
+	 * @param value value
+	 * @param n number of digits
+	 * @param buf buffer
+	 * @param pos position in the buffer to start at
+	 */
+	private static void writeDigits(long value, int n, char[] buf, int pos)
+	{
+		long v = value;
+		for (int i = pos + n - 1; i >= pos; i--)
+		{
+			buf[i] = (char) ('0' + (v % 10));
+			v /= 10;
+		}
+	}
+
+	/**
+	 * Writes a string.
+	 * @param s string
+	 * @param buf buffer
+	 * @param pos position in the buffer to start at
+	 * @return position after the last written character
+	 */
+	private static int writeString(String s, char[] buf, int pos)
+	{
+		s.getChars(0, s.length(), buf, pos);
+		return pos + s.length();
+	}
+
+}
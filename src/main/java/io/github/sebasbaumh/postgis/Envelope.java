@@ -0,0 +1,389 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * An immutable envelope (bounding box) of a {@link Geometry}. The z range is {@link Double#NaN} if the envelope is only
+ * 2d and all values are {@link Double#NaN} if the envelope is empty.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+public final class Envelope implements Serializable
+{
+	private static final long serialVersionUID = 0x100;
+
+	/**
+	 * The empty envelope.
+	 */
+	public static final Envelope EMPTY = new Envelope(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+	private final double maxX;
+	private final double maxY;
+	private final double maxZ;
+	private final double minX;
+	private final double minY;
+	private final double minZ;
+
+	/**
+	 * Constructs a 2d instance.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 */
+	public Envelope(double minX, double minY, double maxX, double maxY)
+	{
+		this(minX, minY, Double.NaN, maxX, maxY, Double.NaN);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param minZ minimum z coordinate (can be {@link Double#NaN} for a 2d envelope)
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param maxZ maximum z coordinate (can be {@link Double#NaN} for a 2d envelope)
+	 */
+	public Envelope(double minX, double minY, double minZ, double maxX, double maxY, double maxZ)
+	{
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * Gets the maximum of the given values ignoring {@link Double#NaN}.
+	 * @param a value
+	 * @param b value
+	 * @return maximum
+	 */
+	private static double max(double a, double b)
+	{
+		if (Double.isNaN(a))
+		{
+			return b;
+		}
+		if (Double.isNaN(b))
+		{
+			return a;
+		}
+		return Math.max(a, b);
+	}
+
+	/**
+	 * Gets the minimum of the given values ignoring {@link Double#NaN}.
+	 * @param a value
+	 * @param b value
+	 * @return minimum
+	 */
+	private static double min(double a, double b)
+	{
+		if (Double.isNaN(a))
+		{
+			return b;
+		}
+		if (Double.isNaN(b))
+		{
+			return a;
+		}
+		return Math.min(a, b);
+	}
+
+	/**
+	 * Gets the envelope of the given points. Empty points are ignored.
+	 * @param points {@link Point}s
+	 * @return {@link Envelope} (can be {@link Envelope#EMPTY} if there are no points)
+	 */
+	public static Envelope of(Iterable<Point> points)
+	{
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for (Point p : points)
+		{
+			double x = p.getX();
+			double y = p.getY();
+			// skip empty points
+			if (Double.isNaN(x) || Double.isNaN(y))
+			{
+				continue;
+			}
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			double z = p.getZ();
+			if (!Double.isNaN(z))
+			{
+				minZ = Math.min(minZ, z);
+				maxZ = Math.max(maxZ, z);
+			}
+		}
+		// no coordinates at all?
+		if (minX > maxX)
+		{
+			return EMPTY;
+		}
+		// only 2d?
+		if (minZ > maxZ)
+		{
+			return new Envelope(minX, minY, maxX, maxY);
+		}
+		return new Envelope(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	/**
+	 * Checks if this envelope contains the given coordinate (including its boundary).
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return true on success, else false
+	 */
+	public boolean contains(double x, double y)
+	{
+		return (x >= minX) && (x <= maxX) && (y >= minY) && (y <= maxY);
+	}
+
+	/**
+	 * Checks if this envelope completely contains the given envelope in 2d.
+	 * @param other {@link Envelope}
+	 * @return true on success, else false
+	 */
+	public boolean contains(Envelope other)
+	{
+		return (other.minX >= minX) && (other.maxX <= maxX) && (other.minY >= minY) && (other.maxY <= maxY);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(@Nullable Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof Envelope))
+		{
+			return false;
+		}
+		Envelope other = (Envelope) obj;
+		return (Double.compare(minX, other.minX) == 0) && (Double.compare(minY, other.minY) == 0)
+				&& (Double.compare(minZ, other.minZ) == 0) && (Double.compare(maxX, other.maxX) == 0)
+				&& (Double.compare(maxY, other.maxY) == 0) && (Double.compare(maxZ, other.maxZ) == 0);
+	}
+
+	/**
+	 * Gets the height (extent in y direction).
+	 * @return height on success, else {@link Double#NaN}
+	 */
+	public double getHeight()
+	{
+		return maxY - minY;
+	}
+
+	/**
+	 * Gets the maximum x coordinate.
+	 * @return maximum x coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMaxX()
+	{
+		return maxX;
+	}
+
+	/**
+	 * Gets the maximum y coordinate.
+	 * @return maximum y coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMaxY()
+	{
+		return maxY;
+	}
+
+	/**
+	 * Gets the maximum z coordinate.
+	 * @return maximum z coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMaxZ()
+	{
+		return maxZ;
+	}
+
+	/**
+	 * Gets the minimum x coordinate.
+	 * @return minimum x coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMinX()
+	{
+		return minX;
+	}
+
+	/**
+	 * Gets the minimum y coordinate.
+	 * @return minimum y coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMinY()
+	{
+		return minY;
+	}
+
+	/**
+	 * Gets the minimum z coordinate.
+	 * @return minimum z coordinate on success, else {@link Double#NaN}
+	 */
+	public double getMinZ()
+	{
+		return minZ;
+	}
+
+	/**
+	 * Gets the width (extent in x direction).
+	 * @return width on success, else {@link Double#NaN}
+	 */
+	public double getWidth()
+	{
+		return maxX - minX;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		int h = Double.hashCode(minX);
+		h = 31 * h + Double.hashCode(minY);
+		h = 31 * h + Double.hashCode(minZ);
+		h = 31 * h + Double.hashCode(maxX);
+		h = 31 * h + Double.hashCode(maxY);
+		return 31 * h + Double.hashCode(maxZ);
+	}
+
+	/**
+	 * Checks if this envelope intersects the given area in 2d (including its boundary).
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @return true on success, else false
+	 */
+	public boolean intersects(double minX, double minY, double maxX, double maxY)
+	{
+		return (minX <= this.maxX) && (maxX >= this.minX) && (minY <= this.maxY) && (maxY >= this.minY);
+	}
+
+	/**
+	 * Checks if this envelope intersects the given envelope in 2d (including its boundary).
+	 * @param other {@link Envelope}
+	 * @return true on success, else false
+	 */
+	public boolean intersects(Envelope other)
+	{
+		return intersects(other.minX, other.minY, other.maxX, other.maxY);
+	}
+
+	/**
+	 * Checks if this envelope is 3d.
+	 * @return true on success, else false
+	 */
+	public boolean is3d()
+	{
+		return !Double.isNaN(minZ);
+	}
+
+	/**
+	 * Checks if this envelope is empty.
+	 * @return true on success, else false
+	 */
+	public boolean isEmpty()
+	{
+		return Double.isNaN(minX);
+	}
+
+	/**
+	 * Merges this envelope with the given one.
+	 * @param other {@link Envelope}
+	 * @return {@link Envelope} containing both envelopes
+	 */
+	public Envelope merge(Envelope other)
+	{
+		if (other.isEmpty())
+		{
+			return this;
+		}
+		if (isEmpty())
+		{
+			return other;
+		}
+		return new Envelope(Math.min(minX, other.minX), Math.min(minY, other.minY), min(minZ, other.minZ),
+				Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), max(maxZ, other.maxZ));
+	}
+
+	/**
+	 * Gets this envelope as a {@link PGbox2d}.
+	 * @return {@link PGbox2d}
+	 */
+	public PGbox2d toBox2d()
+	{
+		return new PGbox2d(new Point(minX, minY), new Point(maxX, maxY));
+	}
+
+	/**
+	 * Gets this envelope as a {@link PGbox3d}.
+	 * @return {@link PGbox3d}
+	 */
+	public PGbox3d toBox3d()
+	{
+		return new PGbox3d(new Point(minX, minY, minZ), new Point(maxX, maxY, maxZ));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		if (is3d())
+		{
+			return "Envelope [" + minX + "," + minY + "," + minZ + "," + maxX + "," + maxY + "," + maxZ + "]";
+		}
+		return "Envelope [" + minX + "," + minY + "," + maxX + "," + maxY + "]";
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.sebasbaumh.postgis;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Coordinates stored with single precision in a packed array, which is used by the single precision storage mode of
+ * {@link LineString} and {@link MultiPoint}. All values are narrowed to float when they are added and widened back to
+ * double when they are read.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+final class FloatCoordinates extends PackedCoordinates
+{
+	/* JDK 1.5 Serialization */
+	private static final long serialVersionUID = 0x100;
+
+	private float[] values;
+
+	/**
+	 * Constructs an instance.
+	 * @param capacity initial number of coordinates
+	 */
+	FloatCoordinates(int capacity)
+	{
+		this.values = new float[Math.max(capacity, 1) * 2];
+	}
+
+	/**
+	 * Constructs an instance containing the given points.
+	 * @param points points
+	 */
+	FloatCoordinates(Iterable<Point> points)
+	{
+		this(0);
+		for (Point p : points)
+		{
+			add(p.getX(), p.getY(), p.getZ(), p.getM());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.PackedCoordinates#capacity()
+	 */
+	@Override
+	int capacity()
+	{
+		return values.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.PackedCoordinates#getValue(int)
+	 */
+	@Override
+	double getValue(int index)
+	{
+		return values[index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.PackedCoordinates#getValueSize()
+	 */
+	@Override
+	int getValueSize()
+	{
+		return 4;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.PackedCoordinates#resize(int)
+	 */
+	@Override
+	void resize(int capacity)
+	{
+		values = Arrays.copyOf(values, capacity);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.PackedCoordinates#setValue(int, double)
+	 */
+	@Override
+	void setValue(int index, double value)
+	{
+		values[index] = (float) value;
+	}
+
+}
@@ -22,35 +22,72 @@
 
 package io.github.sebasbaumh.postgis;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.Nullable;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
- * The base class of all geometries
+ * The base class of all geometries. Geometries are serialized in their compact binary (WKB) representation together
+ * with their frozen state and their single precision storage (if all of their lines and multi points use it).
  */
 @NonNullByDefault
 public abstract class Geometry implements Serializable
 {
-	private static final long serialVersionUID = 0x100;
+	/* serialized as binary representation, so the default serialized form of earlier versions is rejected */
+	private static final long serialVersionUID = 0x200;
+
+	/**
+	 * Dimension flag for coordinates having a measure.
+	 * @see #calcDimensions()
+	 */
+	protected static final int DIMENSION_M = 2;
+
+	/**
+	 * Dimension flag for 3d coordinates.
+	 * @see #calcDimensions()
+	 */
+	protected static final int DIMENSION_Z = 1;
+
+	/**
+	 * Number of bits of {@link #typeAndModCount} holding the type.
+	 */
+	private static final int TYPE_BITS = 5;
+
+	/**
+	 * Mask of the type in {@link #typeAndModCount}.
+	 */
+	private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
 
 	/**
 	 * Official UNKNOWN srid value
 	 */
 	public static final int UNKNOWN_SRID = 0;
 
+	/**
+	 * The geometries containing this geometry, which get notified on modifications. It is null if there are none, the
+	 * {@link Geometry} if there is only one and an array of them if the geometry is shared. It refers to this geometry
+	 * itself if it is frozen, which saves a separate field as frozen geometries are never modified.
+	 */
+	@Nullable
+	private transient Object parent;
+
 	/**
 	 * The spacial reference system id of this geometry, default is no srid
 	 */
 	private int srid = UNKNOWN_SRID;
 
 	/**
-	 * The OGIS geometry type of this feature. this is final as it never changes, it is bound to the subclass of the
-	 * instance.
+	 * The OGIS geometry type of this feature in the lower {@link #TYPE_BITS} bits, which never changes as it is bound to
+	 * the subclass of the instance. The remaining bits count the modifications of this geometry including all of its
+	 * subgeometries, so modification tracking does not make points larger.
 	 */
-	private final int type;
+	private int typeAndModCount;
 
 	// WKB types:
 	// POINT 1
@@ -74,10 +111,122 @@ public abstract class Geometry implements Serializable
 	/**
 	 * Constructor for subclasses.
 	 * @param type has to be given by all subclasses
+	 * @throws IllegalArgumentException if the type is not a valid OGIS geometry type number
 	 */
 	protected Geometry(int type)
 	{
-		this.type = type;
+		if ((type & ~TYPE_MASK) != 0)
+		{
+			throw new IllegalArgumentException("invalid geometry type: " + type);
+		}
+		this.typeAndModCount = type;
+	}
+
+	/**
+	 * Marks the given geometry as a part of this geometry, so this geometry gets notified if the given geometry is
+	 * modified. A geometry can be a part of multiple geometries at the same time, which all get notified. Frozen
+	 * geometries are not changed at all as they are never modified.
+	 * @param <G> type of the geometry
+	 * @param geom {@link Geometry}
+	 * @return the given geometry
+	 */
+	protected final <G extends Geometry> G adopt(G geom)
+	{
+		Geometry part = geom;
+		Object parents = part.parent;
+		if ((parents == part) || (parents == this))
+		{
+			// frozen or already a part of this geometry
+			return geom;
+		}
+		if (parents == null)
+		{
+			part.parent = this;
+		}
+		else if (parents instanceof Geometry)
+		{
+			part.parent = new Geometry[] { (Geometry) parents, this };
+		}
+		else
+		{
+			Geometry[] array = (Geometry[]) parents;
+			for (Geometry g : array)
+			{
+				if (g == this)
+				{
+					return geom;
+				}
+			}
+			Geometry[] newArray = Arrays.copyOf(array, array.length + 1);
+			newArray[array.length] = this;
+			part.parent = newArray;
+		}
+		return geom;
+	}
+
+	/**
+	 * Calculates the derived values of this geometry, which are kept until it is modified. This is called once the
+	 * geometry is frozen, so all values are available before the geometry is shared.
+	 */
+	protected void cacheProperties()
+	{
+		getDimensions();
+		getEnvelope();
+		getStructuralHash();
+		getHeapSize();
+	}
+
+	/**
+	 * Calculates the dimensions of this geometry. By default all coordinates are checked.
+	 * @return combination of {@link #DIMENSION_Z} and {@link #DIMENSION_M}
+	 */
+	protected int calcDimensions()
+	{
+		int dimensions = 0;
+		for (Point p : getCoordinates())
+		{
+			dimensions |= p.getDimensions();
+		}
+		return dimensions;
+	}
+
+	/**
+	 * Calculates the envelope of this geometry. By default it is calculated from all coordinates.
+	 * @return {@link Envelope}
+	 */
+	protected Envelope calcEnvelope()
+	{
+		return Envelope.of(getCoordinates());
+	}
+
+	/**
+	 * Calculates the estimated heap size and the size of the binary representation of this geometry in one traversal
+	 * and stores them in the given properties. By default all coordinates are considered as {@link Point}s.
+	 * @param props {@link CachedProperties} to receive the sizes
+	 */
+	void calcSizes(CachedProperties props)
+	{
+		long heapSize = MemoryLayout.geometrySize(0) + MemoryLayout.cachedPropertiesSize(props);
+		int binarySize = getBinaryHeaderSize() + 4;
+		for (Point p : getCoordinates())
+		{
+			heapSize += p.getHeapSize();
+			binarySize += p.getBinarySize() - p.getBinaryHeaderSize();
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
+	}
+
+	/**
+	 * Calculates the structural hash of this geometry. By default it is calculated from its type, srid and all
+	 * coordinates.
+	 * @return hash
+	 */
+	protected long calcStructuralHash()
+	{
+		HashBuilder hb = new HashBuilder(this);
+		forEachCoordinate(hb);
+		return hb.getHash();
 	}
 
 	/**
@@ -94,6 +243,17 @@ public abstract class Geometry implements Serializable
 		return true;
 	}
 
+	/**
+	 * Gets a sequential stream of the coordinates of this geometry, which are the same as the ones of
+	 * {@link #getCoordinates()}. The stream can be turned into a parallel one as it is split by the subgeometries and
+	 * within the coordinates of a single geometry.
+	 * @return {@link Stream} of coordinates
+	 */
+	public Stream<Point> coordinates()
+	{
+		return StreamSupport.stream(getCoordinates().spliterator(), false);
+	}
+
 	/**
 	 * java.lang.Object equals implementation
 	 * @param obj geometry to compare
@@ -114,7 +274,90 @@ public abstract class Geometry implements Serializable
 		}
 		// check all properties specific to this instance, rest is checked by subclasses
 		Geometry other = (Geometry) obj;
-		return (this.type == other.type) && (this.srid == other.srid);
+		return (getType() == other.getType()) && (this.srid == other.srid);
+	}
+
+	/**
+	 * Compares the number of coordinates and the envelope of this geometry with the given one. It is meant as a cheap
+	 * check before comparing all coordinates of geometries of the same type.
+	 * @param other {@link Geometry}
+	 * @return false if the geometries are certainly different, else true
+	 */
+	protected final boolean equalsSummary(Geometry other)
+	{
+		if (getNumberOfCoordinates() != other.getNumberOfCoordinates())
+		{
+			return false;
+		}
+		// use the same tolerance as for comparing coordinates
+		Envelope env = getEnvelope();
+		Envelope envOther = other.getEnvelope();
+		return PostGisUtil.equalsDouble(env.getMinX(), envOther.getMinX())
+				&& PostGisUtil.equalsDouble(env.getMinY(), envOther.getMinY())
+				&& PostGisUtil.equalsDouble(env.getMaxX(), envOther.getMaxX())
+				&& PostGisUtil.equalsDouble(env.getMaxY(), envOther.getMaxY());
+	}
+
+	/**
+	 * Passes all coordinates of this geometry to the given consumer without creating any objects. The coordinates are
+	 * the same as the ones of {@link #getCoordinates()}.
+	 * @param consumer {@link CoordinateConsumer}
+	 */
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		for (Point p : getCoordinates())
+		{
+			consumer.accept(p.getX(), p.getY(), p.getZ(), p.getM());
+		}
+	}
+
+	/**
+	 * Freezes this geometry and all of its subgeometries, so they cannot be modified anymore. Any attempt to modify it
+	 * will throw an {@link UnsupportedOperationException}. A frozen geometry can be shared between threads without
+	 * further synchronization once it has been safely published, e.g. through a final field, a concurrent collection or
+	 * the {@link io.github.sebasbaumh.postgis.binary.GeometryCache}. It can also be added to other geometries without
+	 * copying it.
+	 */
+	public void freeze()
+	{
+		this.parent = this;
+		cacheProperties();
+	}
+
+	/**
+	 * Gets the size of the binary header of this geometry (byte order, type and SRID if it is set).
+	 * @return size in bytes
+	 */
+	final int getBinaryHeaderSize()
+	{
+		return (this.srid != UNKNOWN_SRID) ? 9 : 5;
+	}
+
+	/**
+	 * Gets the size of the binary (WKB) representation of this geometry as written by
+	 * {@link io.github.sebasbaumh.postgis.binary.BinaryWriter} without creating it. It is only calculated once and kept
+	 * until this geometry is modified.
+	 * @return size in bytes
+	 */
+	public int getBinarySize()
+	{
+		CachedProperties props = getCachedProperties();
+		if (props.binarySize < 0)
+		{
+			calcSizes(props);
+		}
+		return props.binarySize;
+	}
+
+	/**
+	 * Gets the values derived from this geometry, which are valid for its current state. By default they are not kept,
+	 * so subclasses have to override this to keep them until the geometry is modified. They are not kept here as
+	 * points calculate their derived values directly and every field counts for them.
+	 * @return {@link CachedProperties}
+	 */
+	CachedProperties getCachedProperties()
+	{
+		return new CachedProperties(getModificationCount());
 	}
 
 	/**
@@ -123,6 +366,68 @@ public abstract class Geometry implements Serializable
 	 */
 	public abstract Iterable<Point> getCoordinates();
 
+	/**
+	 * Gets the dimensions of this geometry. They are only calculated once and kept until this geometry is modified.
+	 * @return combination of {@link #DIMENSION_Z} and {@link #DIMENSION_M}
+	 */
+	int getDimensions()
+	{
+		CachedProperties props = getCachedProperties();
+		int dimensions = props.dimensions;
+		if (dimensions < 0)
+		{
+			dimensions = calcDimensions();
+			props.dimensions = dimensions;
+		}
+		return dimensions;
+	}
+
+	/**
+	 * Gets the envelope (bounding box) of this geometry. It is only calculated once and kept until this geometry is
+	 * modified. For polygons it is the envelope of the outer ring.
+	 * @return {@link Envelope} (can be {@link Envelope#EMPTY} for empty geometries)
+	 */
+	public Envelope getEnvelope()
+	{
+		CachedProperties props = getCachedProperties();
+		Envelope env = props.envelope;
+		if (env == null)
+		{
+			env = calcEnvelope();
+			props.envelope = env;
+		}
+		return env;
+	}
+
+	/**
+	 * Gets the estimated heap size retained by this geometry including all subgeometries, points and the values derived
+	 * from them, e.g. for weighing cache entries. It considers the object headers and the unused capacity of internal
+	 * lists assuming a 64 bit JVM with compressed references. Geometries that are shared by multiple other geometries
+	 * (see {@link #freeze()}) are counted for each of them. It is only calculated once and kept until this geometry is
+	 * modified, so subsequent calls do not allocate any objects.
+	 * @return size in bytes
+	 */
+	public long getHeapSize()
+	{
+		CachedProperties props = getCachedProperties();
+		if (props.heapSize < 0)
+		{
+			calcSizes(props);
+		}
+		return props.heapSize;
+	}
+
+	/**
+	 * Gets the modification count of this geometry. It changes every time this geometry or any of its subgeometries is
+	 * modified, so it can be used to check if values derived from this geometry are still valid. It wraps around after
+	 * 2^27 modifications.
+	 * @return modification count
+	 */
+	public int getModificationCount()
+	{
+		return this.typeAndModCount >>> TYPE_BITS;
+	}
+
 	/**
 	 * Gets the number of coordinates of this {@link Geometry}.
 	 * @return number of coordinates
@@ -138,13 +443,30 @@ public abstract class Geometry implements Serializable
 		return this.srid;
 	}
 
+	/**
+	 * Gets a 64 bit hash over the type, the srid, the structure and the coordinates of this geometry. It is only
+	 * calculated once and kept until this geometry is modified. Equal geometries have the same hash unless their
+	 * coordinates differ within the tolerance used for comparing them.
+	 * @return hash
+	 */
+	public long getStructuralHash()
+	{
+		CachedProperties props = getCachedProperties();
+		if (!props.hashCalculated)
+		{
+			props.hash = calcStructuralHash();
+			props.hashCalculated = true;
+		}
+		return props.hash;
+	}
+
 	/**
 	 * Gets the OGIS geometry type number of this geometry.
 	 * @return type of this geometry
 	 */
 	public int getType()
 	{
-		return this.type;
+		return this.typeAndModCount & TYPE_MASK;
 	}
 
 	/*
@@ -154,20 +476,27 @@ public abstract class Geometry implements Serializable
 	@Override
 	public int hashCode()
 	{
-		return 31 * (31 + this.srid) + this.type;
+		long h = getStructuralHash();
+		return (int) (h ^ (h >>> 32));
 	}
 
 	/**
 	 * Returns whether we have a measure (4th dimension)
 	 * @return true if the geometry has a measure, false otherwise
 	 */
-	public abstract boolean hasMeasure();
+	public boolean hasMeasure()
+	{
+		return (getDimensions() & DIMENSION_M) != 0;
+	}
 
 	/**
 	 * Checks if this {@link Geometry} is 3d.
 	 * @return true on success, else false
 	 */
-	public abstract boolean is3d();
+	public boolean is3d()
+	{
+		return (getDimensions() & DIMENSION_Z) != 0;
+	}
 
 	/**
 	 * Ist this {@link Geometry} empty, so does it contain no coordinates or other geometries?
@@ -175,13 +504,117 @@ public abstract class Geometry implements Serializable
 	 */
 	public abstract boolean isEmpty();
 
+	/**
+	 * Checks if this {@link Geometry} is frozen, so it cannot be modified anymore.
+	 * @return true on success, else false
+	 * @see #freeze()
+	 */
+	public boolean isFrozen()
+	{
+		return this.parent == this;
+	}
+
+	/**
+	 * Notifies this geometry and all geometries containing it that it is going to be modified. This has to be called by
+	 * subclasses before all modifications.
+	 * @throws UnsupportedOperationException if this geometry is frozen
+	 */
+	protected final void modified()
+	{
+		if (isFrozen())
+		{
+			throw new UnsupportedOperationException("geometry is frozen");
+		}
+		notifyModified();
+	}
+
+	/**
+	 * Counts a modification of this geometry and passes it on to all geometries containing it.
+	 */
+	private void notifyModified()
+	{
+		this.typeAndModCount += 1 << TYPE_BITS;
+		Object parents = this.parent;
+		if (parents instanceof Geometry)
+		{
+			notifyModified((Geometry) parents);
+		}
+		else if (parents != null)
+		{
+			for (Geometry geom : (Geometry[]) parents)
+			{
+				notifyModified(geom);
+			}
+		}
+	}
+
+	/**
+	 * Passes a modification on to the given geometry unless it is frozen.
+	 * @param geom {@link Geometry}
+	 */
+	private static void notifyModified(Geometry geom)
+	{
+		if (!geom.isFrozen())
+		{
+			geom.notifyModified();
+		}
+	}
+
+	/**
+	 * Releases the given geometry from being a part of this geometry, so this geometry is no longer notified about its
+	 * modifications. This has to be called by subclasses after a part has been removed.
+	 * @param geom {@link Geometry}
+	 */
+	protected final void release(Geometry geom)
+	{
+		Object parents = geom.parent;
+		if (parents == this)
+		{
+			geom.parent = null;
+		}
+		else if (parents instanceof Geometry[])
+		{
+			Geometry[] array = (Geometry[]) parents;
+			for (int i = 0; i < array.length; i++)
+			{
+				if (array[i] == this)
+				{
+					if (array.length == 2)
+					{
+						// only one geometry is left
+						geom.parent = array[1 - i];
+					}
+					else
+					{
+						Geometry[] newArray = new Geometry[array.length - 1];
+						System.arraycopy(array, 0, newArray, 0, i);
+						System.arraycopy(array, i + 1, newArray, i, array.length - i - 1);
+						geom.parent = newArray;
+					}
+					return;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Recursively sets the srid on this geometry and all contained subgeometries
 	 * @param srid the SRID for this geometry
 	 */
 	public void setSrid(int srid)
 	{
+		modified();
 		this.srid = srid;
 	}
 
+	/**
+	 * Replaces this geometry by its binary representation on serialization.
+	 * @return serialized form of this geometry
+	 * @throws ObjectStreamException if the geometry cannot be serialized
+	 */
+	protected Object writeReplace() throws ObjectStreamException
+	{
+		return new SerializedGeometry(this);
+	}
+
 }
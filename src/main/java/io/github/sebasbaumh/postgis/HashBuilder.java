@@ -0,0 +1,108 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Calculates a 64 bit hash over the structure and the coordinates of a {@link Geometry}. Coordinates are hashed by
+ * their bits, where -0.0 is treated as 0.0 and all {@link Double#NaN} values are treated the same.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+final class HashBuilder implements CoordinateConsumer
+{
+	private static final long PRIME1 = 0x9E3779B97F4A7C15L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+	private long hash;
+
+	/**
+	 * Constructs an instance for the given geometry, so its type and srid are part of the hash.
+	 * @param geom {@link Geometry}
+	 */
+	HashBuilder(Geometry geom)
+	{
+		this.hash = mix(mix(PRIME1, geom.getType()), geom.getSrid());
+	}
+
+	/**
+	 * Mixes the given value into the hash.
+	 * @param h hash
+	 * @param value value
+	 * @return hash
+	 */
+	private static long mix(long h, long value)
+	{
+		return Long.rotateLeft(h ^ (value * PRIME2), 31) * PRIME1;
+	}
+
+	/**
+	 * Gets the bits of the given double value for hashing.
+	 * @param d value
+	 * @return bits
+	 */
+	private static long toBits(double d)
+	{
+		// treat -0.0 as 0.0, all NaN values are already mapped to a single value
+		return (d == 0) ? 0 : Double.doubleToLongBits(d);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.CoordinateConsumer#accept(double, double, double, double)
+	 */
+	@Override
+	public void accept(double x, double y, double z, double m)
+	{
+		long h = mix(hash, toBits(x));
+		h = mix(h, toBits(y));
+		h = mix(h, toBits(z));
+		this.hash = mix(h, toBits(m));
+	}
+
+	/**
+	 * Adds the given value to the hash.
+	 * @param value value
+	 */
+	void add(long value)
+	{
+		this.hash = mix(hash, value);
+	}
+
+	/**
+	 * Gets the resulting hash.
+	 * @return hash
+	 */
+	long getHash()
+	{
+		// final avalanche
+		long h = hash;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+}
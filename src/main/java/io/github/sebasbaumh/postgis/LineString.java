@@ -32,6 +32,10 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
  * Linestring.
+ * <p>
+ * Its coordinates can optionally be stored with single precision (see {@link #setSinglePrecision(boolean)}), which
+ * needs only a fraction of the memory as no {@link Point} objects are kept. In that mode points are created on every
+ * access, so modifying them does not change the linestring.
  * @author Sebastian Baumhekel
  */
 @NonNullByDefault
@@ -45,6 +49,11 @@ public class LineString extends Curve implements Iterable<Point>
 	 */
 	public static final int TYPE = 2;
 
+	/**
+	 * Coordinates if they are stored with single precision, else null.
+	 */
+	@Nullable
+	private FloatCoordinates floatCoordinates;
 	private final ArrayList<Point> points = new ArrayList<Point>();
 
 	/**
@@ -86,12 +95,40 @@ public class LineString extends Curve implements Iterable<Point>
 	}
 
 	/**
-	 * Adds the given point.
+	 * Adds a coordinate. If the coordinates are stored with single precision, no {@link Point} is created.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (can be {@link Double#NaN})
+	 * @param m measure (can be {@link Double#NaN})
+	 */
+	public void add(double x, double y, double z, double m)
+	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			modified();
+			coords.add(x, y, z, m);
+		}
+		else
+		{
+			add(new Point(x, y, z, m));
+		}
+	}
+
+	/**
+	 * Adds the given point. If the coordinates are stored with single precision, only its values are kept.
 	 * @param p point
 	 */
 	public void add(Point p)
 	{
-		points.add(p);
+		modified();
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			coords.add(p.getX(), p.getY(), p.getZ(), p.getM());
+			return;
+		}
+		points.add(adopt(p));
 	}
 
 	/**
@@ -100,19 +137,83 @@ public class LineString extends Curve implements Iterable<Point>
 	 */
 	public final void addAll(Iterable<Point> geoms)
 	{
+		modified();
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			for (Point p : geoms)
+			{
+				coords.add(p.getX(), p.getY(), p.getZ(), p.getM());
+			}
+			return;
+		}
 		for (Point geom : geoms)
 		{
-			points.add(geom);
+			points.add(adopt(geom));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcDimensions()
+	 */
+	@Override
+	protected int calcDimensions()
+	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.calcDimensions();
+		}
+		int dimensions = 0;
+		for (int i = 0; i < points.size(); i++)
+		{
+			dimensions |= points.get(i).getDimensions();
+		}
+		return dimensions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcSizes(io.github.sebasbaumh.postgis.CachedProperties)
+	 */
+	@Override
+	void calcSizes(CachedProperties props)
+	{
+		// references to the cached properties, the float coordinates and the points
+		long heapSize = MemoryLayout.geometrySize(3 * MemoryLayout.REFERENCE) + MemoryLayout.cachedPropertiesSize(props)
+				+ MemoryLayout.arrayListSize(points.size());
+		int binarySize = getBinaryHeaderSize() + 4;
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			// the counts are tracked, so there is no need to visit the coordinates
+			heapSize += coords.getHeapSize();
+			binarySize += coords.getBinarySize();
 		}
+		for (int i = 0; i < points.size(); i++)
+		{
+			Point p = points.get(i);
+			heapSize += p.getHeapSize();
+			// points are written without a header
+			binarySize += p.getBinarySize() - p.getBinaryHeaderSize();
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
 	}
 
 	@Override
 	public boolean checkConsistency()
 	{
-		if (!super.checkConsistency() || points.isEmpty())
+		if (!super.checkConsistency() || isEmpty())
 		{
 			return false;
 		}
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.checkConsistency();
+		}
 		return PostGisUtil.checkConsistency(points);
 	}
 
@@ -149,15 +250,44 @@ public class LineString extends Curve implements Iterable<Point>
 		// check type and parent
 		if (other instanceof LineString) {
 			LineString ls = (LineString) other;  // 手动转换类型
-			if (super.equals(other)) {
+			if (super.equals(other) && equalsSummary(ls)) {
 				// check all points
-				return PostGisUtil.equalsIterable(this.points, ls.points);
+				return PostGisUtil.equalsIterable(this.getCoordinates(), ls.getCoordinates());
 			}
 		}
 		return false;
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
+	 */
+	@Override
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			coords.forEachCoordinate(consumer);
+			return;
+		}
+		for (int i = 0; i < points.size(); i++)
+		{
+			points.get(i).forEachCoordinate(consumer);
+		}
+	}
+
+	@Override
+	public void freeze()
+	{
+		for (Point p : points)
+		{
+			p.freeze();
+		}
+		super.freeze();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
@@ -165,7 +295,12 @@ public class LineString extends Curve implements Iterable<Point>
 	@Override
 	public Iterable<Point> getCoordinates()
 	{
-		return this.points;
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.asList(Geometry.UNKNOWN_SRID);
+		}
+		return PartList.of(this, this.points);
 	}
 
 	/*
@@ -176,6 +311,11 @@ public class LineString extends Curve implements Iterable<Point>
 	@Override
 	public Point getEndPoint()
 	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.size() > 0 ? coords.get(coords.size() - 1, Geometry.UNKNOWN_SRID) : null;
+		}
 		return PostGisUtil.lastOrDefault(points);
 	}
 
@@ -186,6 +326,11 @@ public class LineString extends Curve implements Iterable<Point>
 	@Override
 	public int getNumberOfCoordinates()
 	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.size();
+		}
 		return this.points.size();
 	}
 
@@ -197,57 +342,37 @@ public class LineString extends Curve implements Iterable<Point>
 	@Override
 	public Point getStartPoint()
 	{
-		return PostGisUtil.firstOrDefault(points);
-	}
-
-	@Override
-	public int hashCode()
-	{
-		return 31 * super.hashCode() + points.hashCode();
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#hasMeasure()
-	 */
-	@Override
-	public boolean hasMeasure()
-	{
-		for (Point geom : points)
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
 		{
-			if (geom.hasMeasure())
-			{
-				return true;
-			}
+			return coords.size() > 0 ? coords.get(0, Geometry.UNKNOWN_SRID) : null;
 		}
-		return false;
+		return PostGisUtil.firstOrDefault(points);
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#is3d()
+	 * @see io.github.sebasbaumh.postgis.Geometry#isEmpty()
 	 */
 	@Override
-	public boolean is3d()
+	public boolean isEmpty()
 	{
-		for (Point geom : points)
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
 		{
-			if (geom.is3d())
-			{
-				return true;
-			}
+			return coords.size() == 0;
 		}
-		return false;
+		return this.points.isEmpty();
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#isEmpty()
+	/**
+	 * Checks if the coordinates are stored with single precision.
+	 * @return true on success, else false
+	 * @see #setSinglePrecision(boolean)
 	 */
-	@Override
-	public boolean isEmpty()
+	public boolean isSinglePrecision()
 	{
-		return this.points.isEmpty();
+		return this.floatCoordinates != null;
 	}
 
 	/*
@@ -257,12 +382,22 @@ public class LineString extends Curve implements Iterable<Point>
 	@Override
 	public Iterator<Point> iterator()
 	{
-		return this.points.iterator();
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.asList(Geometry.UNKNOWN_SRID).iterator();
+		}
+		return PartList.of(this, this.points).iterator();
 	}
 
 	@Override
 	public double length()
 	{
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			return coords.length();
+		}
 		double len = 0;
 		if (points.size() > 1)
 		{
@@ -277,13 +412,65 @@ public class LineString extends Curve implements Iterable<Point>
 		return len;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Curve#linearize(double)
+	 */
+	@Override
+	public LineString linearize(double maxSegmentAngle)
+	{
+		// a line string has no arcs
+		return this;
+	}
+
 	/**
 	 * Reverses this linestring.
 	 */
 	@Override
 	public void reverse()
 	{
+		modified();
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			coords.reverse();
+			return;
+		}
 		Collections.reverse(this.points);
 	}
 
+	/**
+	 * Sets if the coordinates are stored with single precision. This is an opt-in storage mode for cases where float
+	 * precision is sufficient (e.g. visualization of projected coordinates), which needs only a fraction of the memory
+	 * as the coordinates are kept in a packed array instead of {@link Point} objects. Switching to single precision
+	 * narrows all existing coordinates, switching back creates new points from them.
+	 * @param singlePrecision true for single precision, false for double precision
+	 */
+	public void setSinglePrecision(boolean singlePrecision)
+	{
+		if (singlePrecision == isSinglePrecision())
+		{
+			return;
+		}
+		modified();
+		FloatCoordinates coords = this.floatCoordinates;
+		if (coords != null)
+		{
+			this.floatCoordinates = null;
+			addAll(coords.asList(Geometry.UNKNOWN_SRID));
+		}
+		else
+		{
+			coords = new FloatCoordinates(points);
+			coords.trimToSize();
+			this.floatCoordinates = coords;
+			for (Point p : points)
+			{
+				release(p);
+			}
+			points.clear();
+			points.trimToSize();
+		}
+	}
+
 }
@@ -0,0 +1,154 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Sizes of objects on the heap used for estimating the memory retained by geometries. They assume a 64 bit JVM with
+ * compressed references (the default for heaps below 32 GB), where objects have a 12 byte header and are aligned to 8
+ * bytes.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+final class MemoryLayout
+{
+	/**
+	 * Size of an array header including its length.
+	 */
+	static final int ARRAY_HEADER = 16;
+	/**
+	 * Size of an {@link java.util.ArrayList} without its elements (header, modification count, size and reference to
+	 * the elements).
+	 */
+	static final int ARRAY_LIST = 24;
+	/**
+	 * Size of {@link CachedProperties} (header, dimensions, envelope, hash, hash flag, modification count, heap size and
+	 * binary size).
+	 */
+	static final long CACHED_PROPERTIES = align(12 + 4 + 4 + 8 + 1 + 4 + 8 + 4);
+	/**
+	 * Size of an {@link Envelope} (header and 6 doubles).
+	 */
+	static final long ENVELOPE = align(12 + 6 * 8);
+	/**
+	 * Size of the fields of {@link Geometry} (parent, SRID and type including the modification count).
+	 */
+	static final int GEOMETRY_FIELDS = 4 + 4 + 4;
+	/**
+	 * Size of an object header.
+	 */
+	static final int OBJECT_HEADER = 12;
+	/**
+	 * Size of a reference.
+	 */
+	static final int REFERENCE = 4;
+
+	// prevent instantiating this class
+	@Deprecated
+	private MemoryLayout()
+	{
+	}
+
+	/**
+	 * Aligns the given size to 8 bytes.
+	 * @param size size in bytes
+	 * @return aligned size
+	 */
+	static long align(long size)
+	{
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * Gets the size of an {@link java.util.ArrayList} including its elements array, but not the elements themselves.
+	 * The capacity is derived from the growth policy of the list as all lists of geometries are filled one element at
+	 * a time.
+	 * @param size number of elements
+	 * @return size in bytes
+	 */
+	static long arrayListSize(int size)
+	{
+		if (size == 0)
+		{
+			// lists without elements share an empty array
+			return ARRAY_LIST;
+		}
+		int capacity = 10;
+		while (capacity < size)
+		{
+			capacity += capacity >> 1;
+		}
+		return ARRAY_LIST + arraySize(capacity, REFERENCE);
+	}
+
+	/**
+	 * Gets the size of an array.
+	 * @param length length of the array
+	 * @param elementSize size of an element in bytes
+	 * @return size in bytes
+	 */
+	static long arraySize(int length, int elementSize)
+	{
+		return align(ARRAY_HEADER + (long) length * elementSize);
+	}
+
+	/**
+	 * Gets the size of the derived values of a geometry.
+	 * @param props {@link CachedProperties}
+	 * @return size in bytes
+	 */
+	static long cachedPropertiesSize(CachedProperties props)
+	{
+		Envelope env = props.envelope;
+		// the empty envelope is shared
+		if ((env == null) || (env == Envelope.EMPTY))
+		{
+			return CACHED_PROPERTIES;
+		}
+		return CACHED_PROPERTIES + ENVELOPE;
+	}
+
+	/**
+	 * Gets the size of a geometry object without any referenced objects.
+	 * @param fields size of the fields declared by the geometry class and its superclasses below {@link Geometry}
+	 * @return size in bytes
+	 */
+	static long geometrySize(int fields)
+	{
+		return align(OBJECT_HEADER + GEOMETRY_FIELDS + fields);
+	}
+
+	/**
+	 * Gets the size of a {@link String} containing only Latin-1 characters (e.g. hex encoded data), which are stored
+	 * with one byte per character.
+	 * @param s {@link String}
+	 * @return size in bytes
+	 */
+	static long stringSize(String s)
+	{
+		// header, hash, coder, hash flag and reference to the value
+		return align(OBJECT_HEADER + 4 + 1 + 1 + REFERENCE) + arraySize(s.length(), 1);
+	}
+
+}
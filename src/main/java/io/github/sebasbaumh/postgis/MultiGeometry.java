@@ -41,6 +41,11 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 	/* JDK 1.5 Serialization */
 	private static final long serialVersionUID = 0x100;
 
+	/**
+	 * Values derived from this geometry (if any have been calculated yet).
+	 */
+	@Nullable
+	private transient CachedProperties cachedProperties;
 	/**
 	 * Sub geometries.
 	 */
@@ -73,7 +78,8 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 	 */
 	public void add(T geom)
 	{
-		subgeoms.add(geom);
+		modified();
+		subgeoms.add(adopt(geom));
 	}
 
 	/**
@@ -82,12 +88,81 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 	 */
 	public void addAll(Iterable<? extends T> geoms)
 	{
+		modified();
 		for (T geom : geoms)
 		{
-			subgeoms.add(geom);
+			subgeoms.add(adopt(geom));
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcDimensions()
+	 */
+	@Override
+	protected int calcDimensions()
+	{
+		int dimensions = 0;
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			dimensions |= subgeoms.get(i).getDimensions();
+		}
+		return dimensions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcEnvelope()
+	 */
+	@Override
+	protected Envelope calcEnvelope()
+	{
+		Envelope env = Envelope.EMPTY;
+		for (T geom : subgeoms)
+		{
+			env = env.merge(geom.getEnvelope());
+		}
+		return env;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcSizes(io.github.sebasbaumh.postgis.CachedProperties)
+	 */
+	@Override
+	void calcSizes(CachedProperties props)
+	{
+		// references to the cached properties and the sub geometries
+		long heapSize = MemoryLayout.geometrySize(2 * MemoryLayout.REFERENCE) + MemoryLayout.cachedPropertiesSize(props)
+				+ MemoryLayout.arrayListSize(subgeoms.size());
+		// number of geometries
+		int binarySize = getBinaryHeaderSize() + 4;
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			T geom = subgeoms.get(i);
+			heapSize += geom.getHeapSize();
+			binarySize += geom.getBinarySize();
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcStructuralHash()
+	 */
+	@Override
+	protected long calcStructuralHash()
+	{
+		HashBuilder hb = new HashBuilder(this);
+		hb.add(subgeoms.size());
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			hb.add(subgeoms.get(i).getStructuralHash());
+		}
+		return hb.getHash();
+	}
+
 	@Override
 	public boolean checkConsistency()
 	{
@@ -114,8 +189,8 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 		// check type and parent
 		if (other instanceof MultiGeometry) {
 			MultiGeometry<?> cother = (MultiGeometry<?>) other;  // 手动转换类型
-			if (super.equals(other)) {
-				return PostGisUtil.equalsIterable(this.subgeoms, cother.subgeoms);
+			if (super.equals(other) && (this.size() == cother.size()) && equalsSummary(cother)) {
+				return PostGisUtil.equalsIterable(this.getGeometries(), cother.getGeometries());
 			}
 		}
 		return false;
@@ -124,84 +199,72 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 
 	/*
 	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
+	 * @see io.github.sebasbaumh.postgis.Geometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
 	 */
 	@Override
-	public Iterable<Point> getCoordinates()
+	public void forEachCoordinate(CoordinateConsumer consumer)
 	{
-		ArrayList<Point> l = new ArrayList<Point>();
-		for (T geom : subgeoms)
+		for (int i = 0; i < subgeoms.size(); i++)
 		{
-			for (Point p : geom.getCoordinates())
-			{
-				l.add(p);
-			}
+			subgeoms.get(i).forEachCoordinate(consumer);
 		}
-		return l;
 	}
 
-	/**
-	 * Gets all geometries.
-	 * @return geometries
-	 */
-	public Collection<T> getGeometries()
-	{
-		return subgeoms;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#getNumberOfCoordinates()
-	 */
 	@Override
-	public int getNumberOfCoordinates()
+	public void freeze()
 	{
-		int n = 0;
 		for (T geom : subgeoms)
 		{
-			n += geom.getNumberOfCoordinates();
+			geom.freeze();
 		}
-		return n;
+		super.freeze();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getCachedProperties()
+	 */
 	@Override
-	public int hashCode()
+	final CachedProperties getCachedProperties()
 	{
-		return 31 * super.hashCode() + subgeoms.hashCode();
+		CachedProperties props = CachedProperties.validFor(this.cachedProperties, getModificationCount());
+		this.cachedProperties = props;
+		return props;
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#hasMeasure()
+	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
 	 */
 	@Override
-	public boolean hasMeasure()
+	public Iterable<Point> getCoordinates()
 	{
-		for (T geom : subgeoms)
-		{
-			if (geom.hasMeasure())
-			{
-				return true;
-			}
-		}
-		return false;
+		// walk through the coordinates of all subgeometries without copying them
+		return new CompositeCoordinates(subgeoms);
+	}
+
+	/**
+	 * Gets all geometries. Modifications through the returned collection are tracked like the ones of this geometry.
+	 * @return geometries
+	 */
+	public Collection<T> getGeometries()
+	{
+		return PartList.of(this, subgeoms);
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#is3d()
+	 * @see io.github.sebasbaumh.postgis.Geometry#getNumberOfCoordinates()
 	 */
 	@Override
-	public boolean is3d()
+	public int getNumberOfCoordinates()
 	{
+		int n = 0;
 		for (T geom : subgeoms)
 		{
-			if (geom.is3d())
-			{
-				return true;
-			}
+			n += geom.getNumberOfCoordinates();
 		}
-		return false;
+		return n;
 	}
 
 	/**
@@ -221,7 +284,7 @@ public abstract class MultiGeometry<T extends Geometry> extends Geometry impleme
 	@Override
 	public Iterator<T> iterator()
 	{
-		return subgeoms.iterator();
+		return getGeometries().iterator();
 	}
 
 	@Override
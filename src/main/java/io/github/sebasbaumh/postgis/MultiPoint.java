@@ -22,10 +22,19 @@
 
 package io.github.sebasbaumh.postgis;
 
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
  * A multi point.
+ * <p>
+ * Its coordinates can optionally be stored in a compact point set (see {@link #setCompact(boolean)}), which needs only
+ * a fraction of the memory as no {@link Point} objects are kept and only the values of the used dimensions are stored.
+ * They can also be stored with single precision (see {@link #setSinglePrecision(boolean)}) to save even more memory.
+ * In both modes points are created on every access, so modifying them does not change the multi point.
  * @author Sebastian Baumhekel
  */
 @NonNullByDefault
@@ -38,6 +47,12 @@ public class MultiPoint extends MultiGeometry<Point>
 	 */
 	public static final int TYPE = 4;
 
+	/**
+	 * Coordinates if they are stored in a compact point set, else null.
+	 */
+	@Nullable
+	private PackedCoordinates packedCoordinates;
+
 	/**
 	 * Constructs an instance.
 	 */
@@ -54,4 +69,337 @@ public class MultiPoint extends MultiGeometry<Point>
 	{
 		super(TYPE, points);
 	}
+
+	/**
+	 * Adds a point. If the coordinates are stored in a compact point set, no {@link Point} is created.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (can be {@link Double#NaN})
+	 * @param m measure (can be {@link Double#NaN})
+	 */
+	public void add(double x, double y, double z, double m)
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			modified();
+			coords.add(x, y, z, m);
+		}
+		else
+		{
+			add(new Point(x, y, z, m));
+		}
+	}
+
+	/**
+	 * Adds a point. If the coordinates are stored in a compact point set, only its values are kept.
+	 * @param geom point
+	 */
+	@Override
+	public void add(Point geom)
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			modified();
+			coords.add(geom.getX(), geom.getY(), geom.getZ(), geom.getM());
+			return;
+		}
+		super.add(geom);
+	}
+
+	/**
+	 * Adds all given points. If the coordinates are stored in a compact point set, only their values are kept.
+	 * @param geoms points
+	 */
+	@Override
+	public void addAll(Iterable<? extends Point> geoms)
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			modified();
+			for (Point p : geoms)
+			{
+				coords.add(p.getX(), p.getY(), p.getZ(), p.getM());
+			}
+			return;
+		}
+		super.addAll(geoms);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#calcDimensions()
+	 */
+	@Override
+	protected int calcDimensions()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return coords.calcDimensions();
+		}
+		return super.calcDimensions();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#calcEnvelope()
+	 */
+	@Override
+	protected Envelope calcEnvelope()
+	{
+		// directly use the coordinates instead of merging the envelopes of all points
+		return Envelope.of(getGeometries());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#calcSizes(io.github.sebasbaumh.postgis.CachedProperties)
+	 */
+	@Override
+	void calcSizes(CachedProperties props)
+	{
+		// references to the cached properties, the points and the packed coordinates
+		long heapSize = MemoryLayout.geometrySize(3 * MemoryLayout.REFERENCE) + MemoryLayout.cachedPropertiesSize(props)
+				+ MemoryLayout.arrayListSize(subgeoms.size());
+		// number of points
+		int binarySize = getBinaryHeaderSize() + 4;
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			// the counts are tracked, so there is no need to visit the coordinates
+			heapSize += coords.getHeapSize();
+			// all points have a header including the SRID of the multi point
+			binarySize += coords.size() * getBinaryHeaderSize() + coords.getBinarySize();
+		}
+		for (int i = 0; i < subgeoms.size(); i++)
+		{
+			Point p = subgeoms.get(i);
+			heapSize += p.getHeapSize();
+			binarySize += p.getBinarySize();
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#calcStructuralHash()
+	 */
+	@Override
+	protected long calcStructuralHash()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			// same as for the points, but they are created on the fly
+			HashBuilder hb = new HashBuilder(this);
+			hb.add(coords.size());
+			for (Point p : coords.asList(getSrid()))
+			{
+				hb.add(p.getStructuralHash());
+			}
+			return hb.getHash();
+		}
+		return super.calcStructuralHash();
+	}
+
+	@Override
+	public boolean checkConsistency()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return (coords.size() > 0) && coords.checkConsistency();
+		}
+		return super.checkConsistency();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
+	 */
+	@Override
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			coords.forEachCoordinate(consumer);
+			return;
+		}
+		super.forEachCoordinate(consumer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#getCoordinates()
+	 */
+	@Override
+	public Iterable<Point> getCoordinates()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return coords.asList(getSrid());
+		}
+		return super.getCoordinates();
+	}
+
+	/**
+	 * Gets all points. If the coordinates are stored in a compact point set, a read-only view is returned.
+	 * @return points
+	 */
+	@Override
+	public Collection<Point> getGeometries()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return coords.asList(getSrid());
+		}
+		return super.getGeometries();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#getNumberOfCoordinates()
+	 */
+	@Override
+	public int getNumberOfCoordinates()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return coords.size();
+		}
+		return super.getNumberOfCoordinates();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Checks if the coordinates are stored in a compact point set.
+	 * @return true on success, else false
+	 * @see #setCompact(boolean)
+	 */
+	public boolean isCompact()
+	{
+		return this.packedCoordinates != null;
+	}
+
+	/**
+	 * Checks if the coordinates are stored with single precision.
+	 * @return true on success, else false
+	 * @see #setSinglePrecision(boolean)
+	 */
+	public boolean isSinglePrecision()
+	{
+		return this.packedCoordinates instanceof FloatCoordinates;
+	}
+
+	/**
+	 * Stores the coordinates in the given compact point set instead of {@link Point} objects.
+	 * @param coords {@link PackedCoordinates}
+	 */
+	private void pack(PackedCoordinates coords)
+	{
+		coords.trimToSize();
+		this.packedCoordinates = coords;
+		for (Point p : subgeoms)
+		{
+			release(p);
+		}
+		subgeoms.clear();
+		subgeoms.trimToSize();
+	}
+
+	/**
+	 * Sets if the coordinates are stored in a compact point set, which keeps their values in a packed array with double
+	 * precision instead of {@link Point} objects. Only the values of the dimensions that are used are stored, e.g. a 2d
+	 * point takes 16 bytes instead of a {@link Point} object. Switching back creates new points from the values.
+	 * Coordinates stored with single precision keep it.
+	 * @param compact true for a compact point set, false for {@link Point} objects
+	 */
+	public void setCompact(boolean compact)
+	{
+		if (compact == isCompact())
+		{
+			return;
+		}
+		modified();
+		if (compact)
+		{
+			pack(new DoubleCoordinates(subgeoms));
+		}
+		else
+		{
+			unpack();
+		}
+	}
+
+	/**
+	 * Sets if the coordinates are stored with single precision. This is an opt-in storage mode for cases where float
+	 * precision is sufficient (e.g. visualization of projected coordinates), which needs only a fraction of the memory
+	 * as the coordinates are kept in a packed array instead of {@link Point} objects. Switching to single precision
+	 * narrows all existing coordinates, switching back creates new points from them.
+	 * @param singlePrecision true for single precision, false for double precision
+	 */
+	public void setSinglePrecision(boolean singlePrecision)
+	{
+		if (singlePrecision == isSinglePrecision())
+		{
+			return;
+		}
+		modified();
+		if (singlePrecision)
+		{
+			PackedCoordinates coords = this.packedCoordinates;
+			this.packedCoordinates = null;
+			pack(new FloatCoordinates((coords != null) ? coords.asList(getSrid()) : subgeoms));
+		}
+		else
+		{
+			unpack();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.MultiGeometry#size()
+	 */
+	@Override
+	public int size()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			return coords.size();
+		}
+		return super.size();
+	}
+
+	/**
+	 * Stores the coordinates of the compact point set as {@link Point} objects again.
+	 */
+	private void unpack()
+	{
+		PackedCoordinates coords = this.packedCoordinates;
+		if (coords != null)
+		{
+			this.packedCoordinates = null;
+			super.addAll(coords.asList(getSrid()));
+		}
+	}
+
 }
@@ -22,6 +22,9 @@
 
 package io.github.sebasbaumh.postgis;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.sql.SQLException;
 import java.util.Objects;
 
@@ -35,29 +38,53 @@ import org.postgresql.util.PGobject;
 
 import io.github.sebasbaumh.postgis.binary.BinaryParser;
 import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.GeometryCache;
 
 /**
  * A PostgreSQL JDBC {@link PGobject} extension data type modeling a "geo" type. This class serves as a common
  * superclass for classes such as {@link PGgeometry} and {@link PGgeography} which model more specific type semantics.
+ * The geometry is serialized in its binary (WKB) representation like {@link Geometry} itself.
  * @author Phillip Ross
  */
 @NonNullByDefault({ DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
 public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 {
-	/* JDK 1.5 Serialization */
-	private static final long serialVersionUID = 0x100;
+	/* serialized as binary representation, so the default serialized form of earlier versions is rejected */
+	private static final long serialVersionUID = 0x200;
+
+	/**
+	 * Optional cache for decoding geometries.
+	 */
+	@Nullable
+	private static volatile GeometryCache geometryCache;
 
 	/**
 	 * Underlying geometry.
 	 */
 	@Nullable
-	protected Geometry geometry;
+	protected transient Geometry geometry;
 
 	/**
 	 * Geometry data as bytes.
 	 */
 	@Nullable
-	private byte[] geometryData;
+	private transient byte[] geometryData;
+
+	/**
+	 * Modification count of the geometry when the binary data was built.
+	 */
+	private transient int geometryDataModCount;
+
+	/**
+	 * Geometry data as hex string.
+	 */
+	@Nullable
+	private transient String geometryValue;
+
+	/**
+	 * Modification count of the geometry when the hex string was built.
+	 */
+	private transient int geometryValueModCount;
 
 	/**
 	 * Constructs an instance.
@@ -94,6 +121,27 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 		setValue(value);
 	}
 
+	/**
+	 * Gets the cache used for decoding geometries.
+	 * @return {@link GeometryCache} on success, else null
+	 */
+	@Nullable
+	public static GeometryCache getGeometryCache()
+	{
+		return geometryCache;
+	}
+
+	/**
+	 * Sets the cache used for decoding geometries. All geometries read from the database are then shared between the
+	 * {@link PGgeometrybase} instances having the same binary representation and they are frozen (see
+	 * {@link Geometry#freeze()}).
+	 * @param cache {@link GeometryCache} (can be null to disable caching)
+	 */
+	public static void setGeometryCache(@Nullable GeometryCache cache)
+	{
+		geometryCache = cache;
+	}
+
 	@Override
 	public PGgeometrybase clone() throws CloneNotSupportedException
 	{
@@ -125,21 +173,23 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 	@Nullable
 	private byte[] getBinaryValue()
 	{
-		// short cut
-		if (this.geometryData != null)
+		Geometry geom = this.geometry;
+		// check if geometry is there
+		if (geom == null)
 		{
-			return this.geometryData;
+			return null;
 		}
-		// check if geometry is there
-		if (this.geometry != null)
+		// short cut if geometry has not been modified since the data was built
+		byte[] data = this.geometryData;
+		int modCount = geom.getModificationCount();
+		if ((data == null) || (this.geometryDataModCount != modCount))
 		{
 			// build geometry data and remember it
-			byte[] data = BinaryWriter.writeBinary(geometry);
+			data = BinaryWriter.writeBinary(geom);
 			this.geometryData = data;
-			return data;
+			this.geometryDataModCount = modCount;
 		}
-		// no geometry
-		return null;
+		return data;
 	}
 
 	/**
@@ -152,15 +202,55 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 		return geometry;
 	}
 
+	/**
+	 * Gets the estimated heap size retained by this instance including its geometry (see {@link Geometry#getHeapSize()})
+	 * and its cached binary and hex encoded representations, e.g. for weighing cache entries. Geometries shared by
+	 * multiple instances (see {@link #setGeometryCache(GeometryCache)}) are counted for each of them.
+	 * @return size in bytes
+	 */
+	public long getHeapSize()
+	{
+		// type and value of the base class, geometry, its binary and hex representation and their modification counts
+		long size = MemoryLayout.align(MemoryLayout.OBJECT_HEADER + 5 * MemoryLayout.REFERENCE + 2 * 4);
+		Geometry geom = this.geometry;
+		if (geom != null)
+		{
+			size += geom.getHeapSize();
+		}
+		byte[] data = this.geometryData;
+		if (data != null)
+		{
+			size += MemoryLayout.arraySize(data.length, 1);
+		}
+		String value = this.geometryValue;
+		if (value != null)
+		{
+			size += MemoryLayout.stringSize(value);
+		}
+		return size;
+	}
+
 	@Nullable
 	@Override
 	public String getValue()
 	{
-		if (geometry != null)
+		Geometry geom = this.geometry;
+		// check if geometry is there
+		if (geom == null)
 		{
-			return BinaryWriter.writeHexed(geometry);
+			return null;
 		}
-		return null;
+		// short cut if geometry has not been modified since the value was built
+		String value = this.geometryValue;
+		int modCount = geom.getModificationCount();
+		if ((value == null) || (this.geometryValueModCount != modCount))
+		{
+			// build value and remember it
+			value = BinaryWriter.writeHexed(geom);
+			this.geometryValue = value;
+			this.geometryValueModCount = modCount;
+		}
+		return value;
 	}
 
 	@Override
@@ -181,11 +271,45 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 		return 0;
 	}
 
+	/**
+	 * Reads this instance on deserialization.
+	 * @param in {@link ObjectInputStream}
+	 * @throws IOException if the data could not be read
+	 * @throws ClassNotFoundException if a class could not be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		int length = in.readInt();
+		// check if there is a geometry
+		if (length >= 0)
+		{
+			byte[] data = new byte[length];
+			in.readFully(data);
+			Geometry geom = SerializedGeometry.toGeometry(data, in.readByte());
+			this.geometry = geom;
+			// keep the binary data
+			this.geometryData = data;
+			this.geometryDataModCount = geom.getModificationCount();
+		}
+	}
+
 	@Override
 	public void setByteValue(@SuppressWarnings("null") byte[] value, int offset) throws SQLException
 	{
 		// parse the given bytes
-		this.geometry = BinaryParser.parse(value, offset);
+		GeometryCache cache = geometryCache;
+		if (cache != null)
+		{
+			this.geometry = cache.parse(value, offset);
+		}
+		else
+		{
+			this.geometry = BinaryParser.parse(value, offset);
+		}
+		// reset cached data
+		this.geometryData = null;
+		this.geometryValue = null;
 	}
 
 	/**
@@ -195,16 +319,26 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 	public void setGeometry(@Nullable Geometry newgeom)
 	{
 		this.geometry = newgeom;
-		// reset binary data
+		// reset cached data
 		this.geometryData = null;
+		this.geometryValue = null;
 	}
 
 	@Override
 	public void setValue(@SuppressWarnings("null") @Nonnull String value) throws SQLException
 	{
-		this.geometry = BinaryParser.parse(value);
-		// reset binary data
+		GeometryCache cache = geometryCache;
+		if (cache != null)
+		{
+			this.geometry = cache.parse(value);
+		}
+		else
+		{
+			this.geometry = BinaryParser.parse(value);
+		}
+		// reset cached data
 		this.geometryData = null;
+		this.geometryValue = null;
 	}
 
 	@Override
@@ -237,4 +371,28 @@ public abstract class PGgeometrybase extends PGobject implements PGBinaryObject
 		return String.valueOf(geometry);
 	}
 
+	/**
+	 * Writes this instance on serialization.
+	 * @param out {@link ObjectOutputStream}
+	 * @throws IOException if the data could not be written
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		// write the geometry as binary data
+		byte[] data = getBinaryValue();
+		Geometry geom = this.geometry;
+		if ((data != null) && (geom != null))
+		{
+			out.writeInt(data.length);
+			out.write(data);
+			// and the state of the geometry, which is not contained in its binary representation
+			out.writeByte(SerializedGeometry.getFlags(geom));
+		}
+		else
+		{
+			out.writeInt(-1);
+		}
+	}
+
 }
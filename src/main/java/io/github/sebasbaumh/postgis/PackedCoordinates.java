@@ -0,0 +1,405 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.sebasbaumh.postgis;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Coordinates stored in a packed array instead of {@link Point} objects, where only the values of the dimensions that
+ * are actually used are kept. Missing z values and measures of single coordinates are stored as {@link Double#NaN}.
+ * Subclasses define the precision of the stored values.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+abstract class PackedCoordinates implements Serializable
+{
+	/* JDK 1.5 Serialization */
+	private static final long serialVersionUID = 0x100;
+
+	/**
+	 * Dimensions of the stored values (combination of {@link Geometry#DIMENSION_Z} and {@link Geometry#DIMENSION_M}).
+	 */
+	private int dimensions;
+	/**
+	 * Number of coordinates with a measure.
+	 */
+	private int measureCount;
+	/**
+	 * Number of coordinates.
+	 */
+	private int size;
+	/**
+	 * Number of values per coordinate.
+	 */
+	private int stride = 2;
+	/**
+	 * Number of coordinates with a z value.
+	 */
+	private int zCount;
+
+	/**
+	 * Adds a coordinate.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (can be {@link Double#NaN})
+	 * @param m measure (can be {@link Double#NaN})
+	 */
+	void add(double x, double y, double z, double m)
+	{
+		int dims = dimensions;
+		if (!Double.isNaN(z))
+		{
+			dims |= Geometry.DIMENSION_Z;
+			zCount++;
+		}
+		if (!Double.isNaN(m))
+		{
+			dims |= Geometry.DIMENSION_M;
+			measureCount++;
+		}
+		if (dims != dimensions)
+		{
+			setDimensions(dims);
+		}
+		if ((size + 1) * stride > capacity())
+		{
+			resize(Math.max(capacity() * 2, (size + 1) * stride));
+		}
+		set(size, x, y, z, m, dimensions, stride);
+		size++;
+	}
+
+	/**
+	 * Gets a read-only view of the coordinates, where a new {@link Point} is created on every access.
+	 * @param srid SRID of the points
+	 * @return points
+	 */
+	List<Point> asList(int srid)
+	{
+		return new PointList(srid);
+	}
+
+	/**
+	 * Calculates the dimensions of the coordinates considering only the values that are actually set.
+	 * @return combination of {@link Geometry#DIMENSION_Z} and {@link Geometry#DIMENSION_M}
+	 */
+	int calcDimensions()
+	{
+		int dims = 0;
+		if (zCount > 0)
+		{
+			dims |= Geometry.DIMENSION_Z;
+		}
+		if (measureCount > 0)
+		{
+			dims |= Geometry.DIMENSION_M;
+		}
+		return dims;
+	}
+
+	/**
+	 * Gets the number of values that can be stored without resizing.
+	 * @return number of values
+	 */
+	abstract int capacity();
+
+	/**
+	 * Checks if all coordinates have x and y values.
+	 * @return true on success, else false
+	 */
+	boolean checkConsistency()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (Double.isNaN(getX(i)) || Double.isNaN(getY(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Passes all coordinates to the given consumer.
+	 * @param consumer {@link CoordinateConsumer}
+	 */
+	void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			consumer.accept(getX(i), getY(i), getZ(i), getM(i));
+		}
+	}
+
+	/**
+	 * Gets the coordinate at the given index as a new {@link Point}.
+	 * @param index index
+	 * @param srid SRID of the point
+	 * @return {@link Point}
+	 */
+	Point get(int index, int srid)
+	{
+		Point p = new Point(getX(index), getY(index), getZ(index), getM(index));
+		if (srid != Geometry.UNKNOWN_SRID)
+		{
+			p.setSrid(srid);
+		}
+		return p;
+	}
+
+	/**
+	 * Gets the size of the binary (WKB) representation of the coordinates without any headers, where only the values
+	 * that are set are written.
+	 * @return size in bytes
+	 */
+	int getBinarySize()
+	{
+		return size * 16 + zCount * 8 + measureCount * 8;
+	}
+
+	/**
+	 * Gets the heap size of this instance including its values.
+	 * @return size in bytes
+	 */
+	long getHeapSize()
+	{
+		// header, dimensions, measure count, size, stride, reference to the values and z count
+		return MemoryLayout.align(MemoryLayout.OBJECT_HEADER + 5 * 4 + MemoryLayout.REFERENCE)
+				+ MemoryLayout.arraySize(capacity(), getValueSize());
+	}
+
+	/**
+	 * Gets the measure of the given coordinate.
+	 * @param index index
+	 * @return measure on success, else {@link Double#NaN}
+	 */
+	double getM(int index)
+	{
+		if ((dimensions & Geometry.DIMENSION_M) == 0)
+		{
+			return Double.NaN;
+		}
+		return getValue(index * stride + stride - 1);
+	}
+
+	/**
+	 * Gets a stored value.
+	 * @param index index of the value
+	 * @return value
+	 */
+	abstract double getValue(int index);
+
+	/**
+	 * Gets the size of a stored value.
+	 * @return size in bytes
+	 */
+	abstract int getValueSize();
+
+	/**
+	 * Gets the X-coordinate of the given coordinate.
+	 * @param index index
+	 * @return X-coordinate
+	 */
+	double getX(int index)
+	{
+		return getValue(index * stride);
+	}
+
+	/**
+	 * Gets the Y-coordinate of the given coordinate.
+	 * @param index index
+	 * @return Y-coordinate
+	 */
+	double getY(int index)
+	{
+		return getValue(index * stride + 1);
+	}
+
+	/**
+	 * Gets the Z-coordinate of the given coordinate.
+	 * @param index index
+	 * @return Z-coordinate on success, else {@link Double#NaN}
+	 */
+	double getZ(int index)
+	{
+		if ((dimensions & Geometry.DIMENSION_Z) == 0)
+		{
+			return Double.NaN;
+		}
+		return getValue(index * stride + 2);
+	}
+
+	/**
+	 * Calculates the length of the line through all coordinates. The z values are only considered if both coordinates
+	 * of a segment have them (like {@link Point#distance(Point)}).
+	 * @return length
+	 */
+	double length()
+	{
+		double len = 0;
+		for (int i = 1; i < size; i++)
+		{
+			double dX = getX(i) - getX(i - 1);
+			double dY = getY(i) - getY(i - 1);
+			double d = dX * dX + dY * dY;
+			double dZ = getZ(i) - getZ(i - 1);
+			if (!Double.isNaN(dZ))
+			{
+				d += dZ * dZ;
+			}
+			len += Math.sqrt(d);
+		}
+		return len;
+	}
+
+	/**
+	 * Changes the number of values that can be stored.
+	 * @param capacity number of values (at least the number of stored values)
+	 */
+	abstract void resize(int capacity);
+
+	/**
+	 * Reverses the order of the coordinates.
+	 */
+	void reverse()
+	{
+		for (int i = 0, j = size - 1; i < j; i++, j--)
+		{
+			for (int k = 0; k < stride; k++)
+			{
+				double tmp = getValue(i * stride + k);
+				setValue(i * stride + k, getValue(j * stride + k));
+				setValue(j * stride + k, tmp);
+			}
+		}
+	}
+
+	/**
+	 * Stores the values of a coordinate.
+	 * @param index index of the coordinate
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (can be {@link Double#NaN})
+	 * @param m measure (can be {@link Double#NaN})
+	 * @param dims stored dimensions
+	 * @param n number of values per coordinate
+	 */
+	private void set(int index, double x, double y, double z, double m, int dims, int n)
+	{
+		int i = index * n;
+		setValue(i, x);
+		setValue(i + 1, y);
+		if ((dims & Geometry.DIMENSION_Z) != 0)
+		{
+			setValue(i + 2, z);
+		}
+		if ((dims & Geometry.DIMENSION_M) != 0)
+		{
+			setValue(i + n - 1, m);
+		}
+	}
+
+	/**
+	 * Changes the stored dimensions and moves all values accordingly.
+	 * @param dims combination of {@link Geometry#DIMENSION_Z} and {@link Geometry#DIMENSION_M}
+	 */
+	private void setDimensions(int dims)
+	{
+		int newStride = 2 + (((dims & Geometry.DIMENSION_Z) != 0) ? 1 : 0)
+				+ (((dims & Geometry.DIMENSION_M) != 0) ? 1 : 0);
+		resize(Math.max(capacity() / stride, 1) * newStride);
+		// dimensions are only added, so moving the values to the back starting with the last coordinate keeps the ones
+		// that have not been moved yet
+		for (int i = size - 1; i >= 0; i--)
+		{
+			set(i, getX(i), getY(i), getZ(i), getM(i), dims, newStride);
+		}
+		this.stride = newStride;
+		this.dimensions = dims;
+	}
+
+	/**
+	 * Sets a stored value.
+	 * @param index index of the value
+	 * @param value value
+	 */
+	abstract void setValue(int index, double value);
+
+	/**
+	 * Gets the number of coordinates.
+	 * @return number of coordinates
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Releases unused capacity.
+	 */
+	void trimToSize()
+	{
+		if (capacity() > size * stride)
+		{
+			resize(size * stride);
+		}
+	}
+
+	/**
+	 * Read-only view of the coordinates as points.
+	 */
+	private final class PointList extends AbstractList<Point> implements RandomAccess
+	{
+		private final int srid;
+
+		/**
+		 * Constructs an instance.
+		 * @param srid SRID of the points
+		 */
+		PointList(int srid)
+		{
+			this.srid = srid;
+		}
+
+		@Override
+		public Point get(int index)
+		{
+			if ((index < 0) || (index >= size))
+			{
+				throw new IndexOutOfBoundsException("invalid index: " + index);
+			}
+			return PackedCoordinates.this.get(index, srid);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+}
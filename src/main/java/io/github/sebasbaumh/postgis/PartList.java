@@ -0,0 +1,167 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * A live view of the parts of a geometry (e.g. the points of a line or the geometries of a collection). All
+ * modifications through it (including {@link java.util.Iterator#remove()}) notify the geometry, so values derived from
+ * it are updated. Added parts are adopted and removed parts are released by the geometry.
+ * @author Sebastian Baumhekel
+ * @param <T> type of the parts
+ */
+@NonNullByDefault
+final class PartList<T extends Geometry> extends AbstractList<T> implements RandomAccess
+{
+	private final Geometry owner;
+	private final List<T> parts;
+
+	/**
+	 * Constructs an instance.
+	 * @param owner geometry owning the parts
+	 * @param parts parts
+	 */
+	private PartList(Geometry owner, List<T> parts)
+	{
+		this.owner = owner;
+		this.parts = parts;
+	}
+
+	/**
+	 * Gets a view of the given parts of a geometry, which is read-only if the geometry is frozen.
+	 * @param <T> type of the parts
+	 * @param owner geometry owning the parts
+	 * @param parts parts
+	 * @return view of the parts
+	 */
+	static <T extends Geometry> List<T> of(Geometry owner, List<T> parts)
+	{
+		if (owner.isFrozen())
+		{
+			return Collections.unmodifiableList(parts);
+		}
+		return new PartList<T>(owner, parts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#add(int, java.lang.Object)
+	 */
+	@Override
+	public void add(int index, T element)
+	{
+		owner.modified();
+		parts.add(index, owner.adopt(element));
+		modCount++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public T get(int index)
+	{
+		return parts.get(index);
+	}
+
+	/**
+	 * Releases the given removed part unless it is still contained in the parts.
+	 * @param part part
+	 */
+	private void release(T part)
+	{
+		// the same part can be contained multiple times, e.g. the same point at the start and the end of a ring
+		for (int i = 0; i < parts.size(); i++)
+		{
+			if (parts.get(i) == part)
+			{
+				return;
+			}
+		}
+		owner.release(part);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#remove(int)
+	 */
+	@Override
+	public T remove(int index)
+	{
+		owner.modified();
+		T part = parts.remove(index);
+		modCount++;
+		release(part);
+		return part;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#removeRange(int, int)
+	 */
+	@Override
+	protected void removeRange(int fromIndex, int toIndex)
+	{
+		owner.modified();
+		List<T> range = parts.subList(fromIndex, toIndex);
+		List<T> removed = new ArrayList<T>(range);
+		range.clear();
+		modCount++;
+		for (T part : removed)
+		{
+			release(part);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#set(int, java.lang.Object)
+	 */
+	@Override
+	public T set(int index, T element)
+	{
+		owner.modified();
+		T part = parts.set(index, owner.adopt(element));
+		release(part);
+		return part;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size()
+	{
+		return parts.size();
+	}
+
+}
@@ -23,7 +23,6 @@
 package io.github.sebasbaumh.postgis;
 
 import java.util.Collections;
-import java.util.Objects;
 
 import javax.annotation.Nullable;
 
@@ -109,6 +108,16 @@ public class Point extends Geometry
 		this.m = m;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#cacheProperties()
+	 */
+	@Override
+	protected void cacheProperties()
+	{
+		// nothing to cache as all values are directly available
+	}
+
 	@Override
 	public boolean checkConsistency()
 	{
@@ -180,6 +189,27 @@ public class Point extends Geometry
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
+	 */
+	@Override
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		consumer.accept(x, y, z, m);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getBinarySize()
+	 */
+	@Override
+	public int getBinarySize()
+	{
+		// calculating it is cheap, so do not cache it for every point
+		return getBinaryHeaderSize() + 16 + (is3d() ? 8 : 0) + (hasMeasure() ? 8 : 0);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
@@ -190,6 +220,53 @@ public class Point extends Geometry
 		return Collections.singleton(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getDimensions()
+	 */
+	@Override
+	int getDimensions()
+	{
+		// calculating them is cheap, so do not cache them for every point
+		int dimensions = 0;
+		if (is3d())
+		{
+			dimensions |= DIMENSION_Z;
+		}
+		if (hasMeasure())
+		{
+			dimensions |= DIMENSION_M;
+		}
+		return dimensions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getEnvelope()
+	 */
+	@Override
+	public Envelope getEnvelope()
+	{
+		// calculating it is cheap, so do not cache it for every point
+		if (isEmpty())
+		{
+			return Envelope.EMPTY;
+		}
+		return new Envelope(x, y, z, x, y, z);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getHeapSize()
+	 */
+	@Override
+	public long getHeapSize()
+	{
+		// calculating it is cheap, so do not cache it for every point
+		// x, y, z and m
+		return MemoryLayout.geometrySize(4 * 8);
+	}
+
 	/**
 	 * Gets the measurement.
 	 * @return measurement on success, else {@link Double#NaN}
@@ -236,10 +313,17 @@ public class Point extends Geometry
 		return z;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getStructuralHash()
+	 */
 	@Override
-	public int hashCode()
+	public long getStructuralHash()
 	{
-		return Objects.hash(x, y, z, m);
+		// calculating it is cheap, so do not cache it for every point
+		HashBuilder hb = new HashBuilder(this);
+		forEachCoordinate(hb);
+		return hb.getHash();
 	}
 
 	/*
@@ -278,6 +362,7 @@ public class Point extends Geometry
 	 */
 	public void setM(double m)
 	{
+		modified();
 		this.m = m;
 	}
 
@@ -287,6 +372,7 @@ public class Point extends Geometry
 	 */
 	public void setX(double x)
 	{
+		modified();
 		this.x = x;
 	}
 
@@ -296,6 +382,7 @@ public class Point extends Geometry
 	 */
 	public void setY(double y)
 	{
+		modified();
 		this.y = y;
 	}
 
@@ -305,6 +392,7 @@ public class Point extends Geometry
 	 */
 	public void setZ(double z)
 	{
+		modified();
 		this.z = z;
 	}
 
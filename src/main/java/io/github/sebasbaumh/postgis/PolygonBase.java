@@ -25,7 +25,6 @@ package io.github.sebasbaumh.postgis;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Objects;
 
 import javax.annotation.Nullable;
 
@@ -41,6 +40,11 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 {
 	/* JDK 1.5 Serialization */
 	private static final long serialVersionUID = 0x100;
+	/**
+	 * Values derived from this geometry (if any have been calculated yet).
+	 */
+	@Nullable
+	private transient CachedProperties cachedProperties;
 
 	private T lsOuterRing;
 	private final ArrayList<T> rings = new ArrayList<T>();
@@ -53,7 +57,7 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	protected <U extends T> PolygonBase(int type, Class<U> clazzRing)
 	{
 		super(type);
-		this.lsOuterRing = createRing(clazzRing);
+		this.lsOuterRing = adopt(createRing(clazzRing));
 	}
 
 	/**
@@ -70,7 +74,7 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 		// first the outer ring
 		if (it.hasNext())
 		{
-			this.lsOuterRing = it.next();
+			this.lsOuterRing = adopt(it.next());
 			// inner rings
 			while (it.hasNext())
 			{
@@ -79,7 +83,7 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 		}
 		else
 		{
-			this.lsOuterRing = createRing(clazzRing);
+			this.lsOuterRing = adopt(createRing(clazzRing));
 		}
 	}
 
@@ -91,7 +95,22 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	protected <U extends T> PolygonBase(int type, U lsOuterRing)
 	{
 		super(type);
-		this.lsOuterRing = lsOuterRing;
+		this.lsOuterRing = adopt(lsOuterRing);
+	}
+
+	/**
+	 * Gets the size of the binary representation of a ring within a polygon.
+	 * @param ring ring
+	 * @return size in bytes
+	 */
+	private static int getRingBinarySize(Curve ring)
+	{
+		// linear rings are written as a plain list of points without a header
+		if (ring instanceof LinearRing)
+		{
+			return ring.getBinarySize() - ring.getBinaryHeaderSize();
+		}
+		return ring.getBinarySize();
 	}
 
 	/**
@@ -100,6 +119,9 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	 */
 	public void addRing(T ring)
 	{
+		modified();
+		// adopt it first as it must not be part of another geometry
+		adopt(ring);
 		// ensure ring is closed
 		if (!ring.isClosed())
 		{
@@ -113,6 +135,71 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 		this.rings.add(ring);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcDimensions()
+	 */
+	@Override
+	protected int calcDimensions()
+	{
+		int dimensions = lsOuterRing.getDimensions();
+		for (int i = 0; i < rings.size(); i++)
+		{
+			dimensions |= rings.get(i).getDimensions();
+		}
+		return dimensions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcEnvelope()
+	 */
+	@Override
+	protected Envelope calcEnvelope()
+	{
+		// inner rings are always inside of the outer ring
+		return lsOuterRing.getEnvelope();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcSizes(io.github.sebasbaumh.postgis.CachedProperties)
+	 */
+	@Override
+	void calcSizes(CachedProperties props)
+	{
+		// references to the cached properties, the outer ring and the inner rings
+		long heapSize = MemoryLayout.geometrySize(3 * MemoryLayout.REFERENCE) + MemoryLayout.cachedPropertiesSize(props)
+				+ MemoryLayout.arrayListSize(rings.size()) + lsOuterRing.getHeapSize();
+		// number of rings
+		int binarySize = getBinaryHeaderSize() + 4 + getRingBinarySize(lsOuterRing);
+		for (int i = 0; i < rings.size(); i++)
+		{
+			T ring = rings.get(i);
+			heapSize += ring.getHeapSize();
+			binarySize += getRingBinarySize(ring);
+		}
+		props.heapSize = heapSize;
+		props.binarySize = binarySize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#calcStructuralHash()
+	 */
+	@Override
+	protected long calcStructuralHash()
+	{
+		HashBuilder hb = new HashBuilder(this);
+		hb.add(lsOuterRing.getStructuralHash());
+		hb.add(rings.size());
+		for (int i = 0; i < rings.size(); i++)
+		{
+			hb.add(rings.get(i).getStructuralHash());
+		}
+		return hb.getHash();
+	}
+
 	@Override
 	public boolean checkConsistency()
 	{
@@ -128,6 +215,11 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	 */
 	public void clearRings()
 	{
+		modified();
+		for (T ring : rings)
+		{
+			release(ring);
+		}
 		this.rings.clear();
 	}
 
@@ -168,7 +260,8 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 		// check type and parent
 		if (other instanceof PolygonBase) {
 			PolygonBase<?> poly = (PolygonBase<?>) other;  // 手动转换类型
-			if (super.equals(other)) {
+			if (super.equals(other) && (this.rings.size() == poly.rings.size()) && equalsSummary(poly)
+					&& this.lsOuterRing.equals(poly.lsOuterRing)) {
 				return PostGisUtil.equalsIterable(this.rings, poly.rings);
 			}
 		}
@@ -176,6 +269,39 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#forEachCoordinate(io.github.sebasbaumh.postgis.CoordinateConsumer)
+	 */
+	@Override
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		lsOuterRing.forEachCoordinate(consumer);
+	}
+
+	@Override
+	public void freeze()
+	{
+		lsOuterRing.freeze();
+		for (T ring : rings)
+		{
+			ring.freeze();
+		}
+		super.freeze();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see io.github.sebasbaumh.postgis.Geometry#getCachedProperties()
+	 */
+	@Override
+	final CachedProperties getCachedProperties()
+	{
+		CachedProperties props = CachedProperties.validFor(this.cachedProperties, getModificationCount());
+		this.cachedProperties = props;
+		return props;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see io.github.sebasbaumh.postgis.Geometry#getCoordinates()
@@ -226,12 +352,13 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	}
 
 	/**
-	 * Gets all inner rings.
+	 * Gets all inner rings. Modifications through the returned rings (e.g. by their iterator) are tracked like the ones
+	 * of this geometry.
 	 * @return inner rings
 	 */
 	public Iterable<T> getRings()
 	{
-		return this.rings;
+		return PartList.of(this, this.rings);
 	}
 
 	/*
@@ -245,46 +372,6 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 		return lsOuterRing.getStartPoint();
 	}
 
-	@Override
-	public int hashCode()
-	{
-		return 31 * super.hashCode() + Objects.hash(lsOuterRing, rings);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#hasMeasure()
-	 */
-	@Override
-	public boolean hasMeasure()
-	{
-		for (T geom : rings)
-		{
-			if (geom.hasMeasure())
-			{
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * @see io.github.sebasbaumh.postgis.Geometry#is3d()
-	 */
-	@Override
-	public boolean is3d()
-	{
-		for (T geom : rings)
-		{
-			if (geom.is3d())
-			{
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 * Checks if this polygon is oriented in clockwise direction. Is false for the outer polygon and true for its holes.
 	 * @return true on success, else false
@@ -321,7 +408,7 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	@Override
 	public Iterator<T> iterator()
 	{
-		return this.rings.iterator();
+		return getRings().iterator();
 	}
 
 	/*
@@ -340,7 +427,13 @@ public abstract class PolygonBase<T extends Curve> extends Geometry implements I
 	 */
 	public void setOuterRing(T ls)
 	{
-		this.lsOuterRing = ls;
+		modified();
+		T lsOld = this.lsOuterRing;
+		this.lsOuterRing = adopt(ls);
+		if (lsOld != ls)
+		{
+			release(lsOld);
+		}
 	}
 
 	/*
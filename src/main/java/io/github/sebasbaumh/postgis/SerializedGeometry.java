@@ -0,0 +1,234 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+/**
+ * Serialized form of a {@link Geometry}. It just holds the binary (WKB) representation of the geometry, which is far
+ * more compact than serializing the whole object graph. Besides the binary representation only the frozen state (see
+ * {@link Geometry#freeze()}) and the single precision storage (see {@link LineString#setSinglePrecision(boolean)}) are
+ * kept. The latter is only restored if all lines and multi points of the geometry use it, else all coordinates are
+ * restored with double precision, so no precision gets lost.
+ * @author Sebastian Baumhekel
+ */
+@NonNullByDefault
+final class SerializedGeometry implements Externalizable
+{
+	/**
+	 * Flag for a frozen geometry.
+	 */
+	private static final int FLAG_FROZEN = 1;
+	/**
+	 * Flag for a {@link LinearRing}, which is written as {@link LineString}.
+	 */
+	private static final int FLAG_LINEAR_RING = 2;
+	/**
+	 * Flag for a geometry storing all of its coordinates with single precision.
+	 */
+	private static final int FLAG_SINGLE_PRECISION = 4;
+	private static final long serialVersionUID = 0x100;
+	/**
+	 * Storage of coordinates with double precision.
+	 */
+	private static final int STORAGE_DOUBLE = 2;
+	/**
+	 * Storage of coordinates with single precision.
+	 */
+	private static final int STORAGE_SINGLE = 1;
+
+	/**
+	 * Flags.
+	 */
+	private int flags;
+
+	/**
+	 * Geometry data as bytes.
+	 */
+	private byte[] wkb;
+
+	/**
+	 * Constructs an instance (needed for deserialization).
+	 */
+	public SerializedGeometry()
+	{
+		this.wkb = new byte[0];
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param geom {@link Geometry}
+	 */
+	SerializedGeometry(Geometry geom)
+	{
+		this.wkb = BinaryWriter.writeBinary(geom);
+		this.flags = getFlags(geom);
+	}
+
+	/**
+	 * Gets the flags describing the state of the given geometry, which is not contained in its binary representation.
+	 * @param geom {@link Geometry}
+	 * @return flags
+	 */
+	static int getFlags(Geometry geom)
+	{
+		int flags = 0;
+		if (geom.isFrozen())
+		{
+			flags |= FLAG_FROZEN;
+		}
+		if (geom instanceof LinearRing)
+		{
+			flags |= FLAG_LINEAR_RING;
+		}
+		if (getStorage(geom) == STORAGE_SINGLE)
+		{
+			flags |= FLAG_SINGLE_PRECISION;
+		}
+		return flags;
+	}
+
+	/**
+	 * Gets the storage of the coordinates of all lines and multi points of the given geometry.
+	 * @param geom {@link Geometry}
+	 * @return combination of {@link #STORAGE_SINGLE} and {@link #STORAGE_DOUBLE} (0 if there are none)
+	 */
+	private static int getStorage(Geometry geom)
+	{
+		if (geom instanceof LineString)
+		{
+			return ((LineString) geom).isSinglePrecision() ? STORAGE_SINGLE : STORAGE_DOUBLE;
+		}
+		if (geom instanceof MultiPoint)
+		{
+			return ((MultiPoint) geom).isSinglePrecision() ? STORAGE_SINGLE : STORAGE_DOUBLE;
+		}
+		int storage = 0;
+		if (geom instanceof PolygonBase)
+		{
+			PolygonBase<?> poly = (PolygonBase<?>) geom;
+			storage = getStorage(poly.getOuterRing());
+			for (Curve ring : poly.getRings())
+			{
+				storage |= getStorage(ring);
+			}
+		}
+		else if (geom instanceof MultiGeometry)
+		{
+			for (Geometry part : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				storage |= getStorage(part);
+			}
+		}
+		else if (geom instanceof CompoundCurve)
+		{
+			for (LineString part : ((CompoundCurve) geom).getGeometries())
+			{
+				storage |= getStorage(part);
+			}
+		}
+		return storage;
+	}
+
+	/**
+	 * Restores a geometry from its binary representation.
+	 * @param wkb binary representation
+	 * @param flags flags describing the state of the geometry (see {@link #getFlags(Geometry)})
+	 * @return {@link Geometry}
+	 * @throws InvalidObjectException if the data is invalid
+	 */
+	static Geometry toGeometry(byte[] wkb, int flags) throws InvalidObjectException
+	{
+		boolean singlePrecision = (flags & FLAG_SINGLE_PRECISION) != 0;
+		Geometry geom;
+		try
+		{
+			geom = BinaryParser.parse(wkb, 0, singlePrecision);
+		}
+		catch (IllegalArgumentException | IndexOutOfBoundsException ex)
+		{
+			InvalidObjectException ioe = new InvalidObjectException("invalid geometry data");
+			ioe.initCause(ex);
+			throw ioe;
+		}
+		if ((flags & FLAG_LINEAR_RING) != 0)
+		{
+			LinearRing ring = new LinearRing();
+			ring.setSinglePrecision(singlePrecision);
+			ring.addAll(geom.getCoordinates());
+			ring.setSrid(geom.getSrid());
+			geom = ring;
+		}
+		if ((flags & FLAG_FROZEN) != 0)
+		{
+			geom.freeze();
+		}
+		return geom;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+	 */
+	@Override
+	public void readExternal(@SuppressWarnings("null") ObjectInput in) throws IOException
+	{
+		this.flags = in.readByte();
+		byte[] data = new byte[in.readInt()];
+		in.readFully(data);
+		this.wkb = data;
+	}
+
+	/**
+	 * Replaces this instance by the actual {@link Geometry} on deserialization.
+	 * @return {@link Geometry}
+	 * @throws ObjectStreamException if the data is invalid
+	 */
+	private Object readResolve() throws ObjectStreamException
+	{
+		return toGeometry(wkb, flags);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+	 */
+	@Override
+	public void writeExternal(@SuppressWarnings("null") ObjectOutput out) throws IOException
+	{
+		out.writeByte(flags);
+		out.writeInt(wkb.length);
+		out.write(wkb);
+	}
+
+}
@@ -22,6 +22,7 @@
 
 package io.github.sebasbaumh.postgis.binary;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -64,7 +65,33 @@ public final class BinaryParser
 	 */
 	public static Geometry parse(byte[] value, int offset)
 	{
-		return parseGeometry(new BinaryValueGetter(value, offset));
+		return parseGeometry(new BinaryValueGetter(value, offset), false);
+	}
+
+	/**
+	 * Parse a binary encoded geometry. The coordinates of lines, rings and multi points can be stored with single
+	 * precision, so they are narrowed while parsing without creating any {@link Point} objects for them (see
+	 * {@link LineString#setSinglePrecision(boolean)}).
+	 * @param value byte array containing the data to be parsed
+	 * @param offset offset
+	 * @param singlePrecision true to store the coordinates with single precision
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException if a contained geometry is of the wrong type or the encoding type is unknown
+	 */
+	public static Geometry parse(byte[] value, int offset, boolean singlePrecision)
+	{
+		return parseGeometry(new BinaryValueGetter(value, offset), singlePrecision);
+	}
+
+	/**
+	 * Parse a binary encoded geometry starting at the current position of the buffer, which is advanced accordingly.
+	 * @param value {@link ByteBuffer} containing the data to be parsed
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException if a contained geometry is of the wrong type or the encoding type is unknown
+	 */
+	public static Geometry parse(ByteBuffer value)
+	{
+		return parseGeometry(new ByteBufferValueGetter(value), false);
 	}
 
 	/**
@@ -75,7 +102,7 @@ public final class BinaryParser
 	 */
 	public static Geometry parse(String value)
 	{
-		return parseGeometry(new StringValueGetter(value));
+		return parseGeometry(new StringValueGetter(value), false);
 	}
 
 	/**
@@ -83,11 +110,13 @@ public final class BinaryParser
 	 * {@link ValueGetter}.
 	 * @param clazz {@link Class} of the geometries
 	 * @param data {@link ValueGetter}
+	 * @param singlePrecision true to store the coordinates with single precision
 	 * @return {@link Collection} of geometries
 	 * @throws IllegalArgumentException if a contained geometry is of the wrong type
 	 */
 	@SuppressWarnings("unchecked")
-	private static <T extends Geometry> Collection<T> parseGeometries(Class<T> clazz, ValueGetter data)
+	private static <T extends Geometry> Collection<T> parseGeometries(Class<T> clazz, ValueGetter data,
+			boolean singlePrecision)
 	{
 		// get number of geometries to parse
 		int count = data.getInt();
@@ -95,7 +124,7 @@ public final class BinaryParser
 		// parse geometries
 		for (int i = 0; i < count; i++)
 		{
-			Geometry geom = parseGeometry(data);
+			Geometry geom = parseGeometry(data, singlePrecision);
 			// check if the geometry is of the correct type
 			if (clazz.isInstance(geom))
 			{
@@ -113,15 +142,40 @@ public final class BinaryParser
 	/**
 	 * Parse a geometry starting at offset.
 	 * @param data ValueGetter with the data to be parsed
+	 * @param singlePrecision true to store the coordinates with single precision
 	 * @return the parsed geometry
 	 * @throws IllegalArgumentException for unknown geometry types
 	 */
-	private static Geometry parseGeometry(ValueGetter data)
+	private static Geometry parseGeometry(ValueGetter data, boolean singlePrecision)
 	{
 		// read endian flag
 		data.readEncoding();
 		// and get the type
-		int typeword = data.getInt();
+		return parseGeometry(data, data.getInt(), singlePrecision);
+	}
+
+	/**
+	 * Parse a geometry after its encoding and type have already been read.
+	 * @param data ValueGetter with the data to be parsed
+	 * @param typeword type including the flags
+	 * @return the parsed geometry
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	static Geometry parseGeometry(ValueGetter data, int typeword)
+	{
+		return parseGeometry(data, typeword, false);
+	}
+
+	/**
+	 * Parse a geometry after its encoding and type have already been read.
+	 * @param data ValueGetter with the data to be parsed
+	 * @param typeword type including the flags
+	 * @param singlePrecision true to store the coordinates with single precision
+	 * @return the parsed geometry
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private static Geometry parseGeometry(ValueGetter data, int typeword, boolean singlePrecision)
+	{
 		int geometryType = typeword & 0x1FFFFFFF; // cut off high flag bits
 
 		boolean haveZ = (typeword & 0x80000000) != 0;
@@ -146,37 +200,40 @@ public final class BinaryParser
 				result = parsePoint(data, haveZ, haveM);
 				break;
 			case LineString.TYPE:
-				result = new LineString(parsePoints(data, haveZ, haveM));
+				result = singlePrecision ? parseSinglePrecision(new LineString(), data, haveZ, haveM)
+						: new LineString(parsePoints(data, haveZ, haveM));
 				break;
 			case CircularString.TYPE:
-				result = new CircularString(parsePoints(data, haveZ, haveM));
+				result = singlePrecision ? parseSinglePrecision(new CircularString(), data, haveZ, haveM)
+						: new CircularString(parsePoints(data, haveZ, haveM));
 				break;
 			case CompoundCurve.TYPE:
-				result = new CompoundCurve(parseGeometries(LineString.class, data));
+				result = new CompoundCurve(parseGeometries(LineString.class, data, singlePrecision));
 				break;
 			case Polygon.TYPE:
-				result = parsePolygon(data, haveZ, haveM);
+				result = parsePolygon(data, haveZ, haveM, singlePrecision);
 				break;
 			case CurvePolygon.TYPE:
-				result = new CurvePolygon(parseGeometries(Curve.class, data));
+				result = new CurvePolygon(parseGeometries(Curve.class, data, singlePrecision));
 				break;
 			case MultiPoint.TYPE:
-				result = new MultiPoint(parseGeometries(Point.class, data));
+				result = singlePrecision ? parseMultiPoint(data)
+						: new MultiPoint(parseGeometries(Point.class, data, false));
 				break;
 			case MultiLineString.TYPE:
-				result = new MultiLineString(parseGeometries(LineString.class, data));
+				result = new MultiLineString(parseGeometries(LineString.class, data, singlePrecision));
 				break;
 			case MultiCurve.TYPE:
-				result = new MultiCurve(parseGeometries(Curve.class, data));
+				result = new MultiCurve(parseGeometries(Curve.class, data, singlePrecision));
 				break;
 			case MultiPolygon.TYPE:
-				result = new MultiPolygon(parseGeometries(Polygon.class, data));
+				result = new MultiPolygon(parseGeometries(Polygon.class, data, singlePrecision));
 				break;
 			case MultiSurface.TYPE:
-				result = new MultiSurface(parseGeometries(PolygonBase.class, data));
+				result = new MultiSurface(parseGeometries(PolygonBase.class, data, singlePrecision));
 				break;
 			case GeometryCollection.TYPE:
-				result = new GeometryCollection(parseGeometries(Geometry.class, data));
+				result = new GeometryCollection(parseGeometries(Geometry.class, data, singlePrecision));
 				break;
 			default:
 				throw new IllegalArgumentException("Unknown Geometry Type: " + geometryType);
@@ -186,6 +243,41 @@ public final class BinaryParser
 		return result;
 	}
 
+	/**
+	 * Parse a {@link MultiPoint} storing its coordinates with single precision.
+	 * @param data {@link ValueGetter}
+	 * @return {@link MultiPoint}
+	 * @throws IllegalArgumentException if a contained geometry is not a point
+	 */
+	private static MultiPoint parseMultiPoint(ValueGetter data)
+	{
+		MultiPoint mp = new MultiPoint();
+		mp.setSinglePrecision(true);
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			// every point has its own header
+			data.readEncoding();
+			int typeword = data.getInt();
+			if ((typeword & 0x1FFFFFFF) != Point.TYPE)
+			{
+				throw new IllegalArgumentException("expected: " + Point.class.getCanonicalName() + " got type: "
+						+ (typeword & 0x1FFFFFFF));
+			}
+			// skip the SRID as it is the one of the multi point
+			if ((typeword & 0x20000000) != 0)
+			{
+				data.getInt();
+			}
+			double x = data.getDouble();
+			double y = data.getDouble();
+			double z = (typeword & 0x80000000) != 0 ? data.getDouble() : Double.NaN;
+			double m = (typeword & 0x40000000) != 0 ? data.getDouble() : Double.NaN;
+			mp.add(x, y, z, m);
+		}
+		return mp;
+	}
+
 	/**
 	 * Parse a single point.
 	 * @param data {@link ValueGetter}
@@ -197,22 +289,10 @@ public final class BinaryParser
 	{
 		double x = data.getDouble();
 		double y = data.getDouble();
-		Point result;
-		// parse z?
-		if (haveZ)
-		{
-			result = new Point(x, y, data.getDouble());
-		}
-		else
-		{
-			result = new Point(x, y);
-		}
-		// parse measure?
-		if (haveM)
-		{
-			result.setM(data.getDouble());
-		}
-		return result;
+		// parse z and measure if they are present
+		double z = haveZ ? data.getDouble() : Double.NaN;
+		double m = haveM ? data.getDouble() : Double.NaN;
+		return new Point(x, y, z, m);
 	}
 
 	/**
@@ -239,16 +319,48 @@ public final class BinaryParser
 	 * @param data {@link ValueGetter}
 	 * @param haveZ parse z value?
 	 * @param haveM parse measure value?
+	 * @param singlePrecision true to store the coordinates with single precision
 	 * @return {@link Polygon}
 	 */
-	private static Polygon parsePolygon(ValueGetter data, boolean haveZ, boolean haveM)
+	private static Polygon parsePolygon(ValueGetter data, boolean haveZ, boolean haveM, boolean singlePrecision)
 	{
 		int count = data.getInt();
 		ArrayList<LinearRing> rings = new ArrayList<LinearRing>(count);
 		for (int i = 0; i < count; i++)
 		{
-			rings.add(new LinearRing(parsePoints(data, haveZ, haveM)));
+			if (singlePrecision)
+			{
+				rings.add(parseSinglePrecision(new LinearRing(), data, haveZ, haveM));
+			}
+			else
+			{
+				rings.add(new LinearRing(parsePoints(data, haveZ, haveM)));
+			}
 		}
 		return new Polygon(rings);
 	}
+
+	/**
+	 * Parse the "slim" points of a line into the given line storing them with single precision.
+	 * @param ls line to fill
+	 * @param data {@link ValueGetter}
+	 * @param haveZ parse z value?
+	 * @param haveM parse measure value?
+	 * @return the given line
+	 */
+	private static <T extends LineString> T parseSinglePrecision(T ls, ValueGetter data, boolean haveZ,
+			boolean haveM)
+	{
+		ls.setSinglePrecision(true);
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			double x = data.getDouble();
+			double y = data.getDouble();
+			double z = haveZ ? data.getDouble() : Double.NaN;
+			double m = haveM ? data.getDouble() : Double.NaN;
+			ls.add(x, y, z, m);
+		}
+		return ls;
+	}
 }
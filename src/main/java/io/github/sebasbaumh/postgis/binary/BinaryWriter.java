@@ -79,8 +79,9 @@ public final class BinaryWriter
 		// write endian flag, NDR (little endian)
 		dest.setByte(PostGisUtil.LITTLE_ENDIAN);
 
-		// write typeword
-		int typeword = geom.getType();
+		// write typeword (standalone linear rings are written as line strings)
+		int type = (geom instanceof LinearRing) ? LineString.TYPE : geom.getType();
+		int typeword = type;
 		if (geom.is3d())
 		{
 			typeword |= 0x80000000;
@@ -100,7 +101,7 @@ public final class BinaryWriter
 			dest.setInt(geom.getSrid());
 		}
 
-		switch (geom.getType())
+		switch (type)
 		{
 			case Point.TYPE:
 				writePoint((Point) geom, dest);
@@ -203,10 +204,21 @@ public final class BinaryWriter
 	{
 		// number of points
 		dest.setInt(geom.getNumberOfCoordinates());
-		for (Point p : geom)
-		{
-			writePoint(p, dest);
-		}
+		// visit the coordinates directly as lines with single precision do not keep any points
+		geom.forEachCoordinate((x, y, z, m) -> {
+			dest.setDouble(x);
+			dest.setDouble(y);
+			// write z coordinate?
+			if (!Double.isNaN(z))
+			{
+				dest.setDouble(z);
+			}
+			// write measure?
+			if (!Double.isNaN(m))
+			{
+				dest.setDouble(m);
+			}
+		});
 	}
 
 	/**
@@ -0,0 +1,150 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CoordinateConsumer;
+import io.github.sebasbaumh.postgis.Geometry;
+
+/**
+ * A geometry stored in a compressed form, where all coordinates are quantized to a fixed number of decimal digits and
+ * stored as delta-encoded variable length integers (using the TWKB encoding). This usually needs only a fraction of
+ * the memory of the corresponding {@link Geometry}, e.g. for caching large numbers of GPS tracks. Instances are
+ * created by a {@link GeometryCompressor} and cannot be modified, so they can be shared between threads.
+ * @author Sebastian Baumhekel
+ */
+public final class CompressedGeometry
+{
+	private final byte[] data;
+	private final int srid;
+
+	/**
+	 * Constructs an instance.
+	 * @param data compressed data (TWKB)
+	 * @param srid SRID
+	 */
+	CompressedGeometry(byte[] data, int srid)
+	{
+		this.data = data;
+		this.srid = srid;
+	}
+
+	/**
+	 * Decodes the geometry.
+	 * @return {@link Geometry}
+	 */
+	public Geometry decode()
+	{
+		Geometry geom = TwkbParser.parse(data);
+		geom.setSrid(srid);
+		return geom;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(@Nullable Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof CompressedGeometry))
+		{
+			return false;
+		}
+		CompressedGeometry other = (CompressedGeometry) obj;
+		return (this.srid == other.srid) && Arrays.equals(this.data, other.data);
+	}
+
+	/**
+	 * Visits all coordinates including the ones of inner rings in their order without decoding the geometry.
+	 * @param consumer {@link CoordinateConsumer}
+	 */
+	public void forEachCoordinate(CoordinateConsumer consumer)
+	{
+		TwkbParser.forEachCoordinate(new BinaryValueGetter(data, 0), consumer);
+	}
+
+	/**
+	 * Gets the size of the compressed data, e.g. for weighing cache entries.
+	 * @return size in bytes
+	 */
+	public int getCompressedSize()
+	{
+		return data.length;
+	}
+
+	/**
+	 * Gets the SRID.
+	 * @return SRID
+	 */
+	public int getSrid()
+	{
+		return srid;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return 31 * Arrays.hashCode(data) + srid;
+	}
+
+	/**
+	 * Gets the binary (WKB) representation of the geometry.
+	 * @return binary representation
+	 */
+	public byte[] toBinary()
+	{
+		return BinaryWriter.writeBinary(decode());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "CompressedGeometry [srid=" + srid + ", size=" + data.length + "]";
+	}
+
+	/**
+	 * Gets the compressed data as Tiny WKB (TWKB).
+	 * @return TWKB data
+	 */
+	public byte[] toTwkb()
+	{
+		return data.clone();
+	}
+
+}
@@ -0,0 +1,531 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CircularString;
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.CoordinateConsumer;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.CurvePolygon;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A 128 bit fingerprint of the content of a geometry, e.g. to detect changed geometries without keeping the old ones.
+ * It can be calculated from the binary (WKB) representation of a geometry without parsing it or from a
+ * {@link Geometry} and both give the same result for the same geometry. The fingerprint is independent of the endian
+ * encoding of the binary data. Only the srid of the outermost geometry is taken into account as PostGIS does not write
+ * the srid of nested geometries. Coordinates are compared by their bits, where -0.0 is treated as 0.0 and all
+ * {@link Double#NaN} values are treated the same.
+ * @author Sebastian Baumhekel
+ */
+public final class Fingerprint implements Serializable
+{
+	private static final long serialVersionUID = 0x100;
+
+	/**
+	 * Flag for geometries having a measure.
+	 */
+	private static final long FLAG_M = 1L << 33;
+	/**
+	 * Flag for 3d geometries.
+	 */
+	private static final long FLAG_Z = 1L << 32;
+
+	private final long high;
+	private final long low;
+
+	/**
+	 * Constructs an instance.
+	 * @param high upper 64 bits
+	 * @param low lower 64 bits
+	 */
+	public Fingerprint(long high, long low)
+	{
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Adds the given geometry.
+	 * @param geom {@link Geometry}
+	 * @param hash {@link Hash}
+	 * @param outermost is it the outermost geometry?
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private static void add(Geometry geom, Hash hash, boolean outermost)
+	{
+		// standalone linear rings are written as line strings
+		int type = (geom instanceof LinearRing) ? LineString.TYPE : geom.getType();
+		boolean haveZ = geom.is3d();
+		boolean haveM = geom.hasMeasure();
+		addHeader(hash, type, haveZ, haveM);
+		if (outermost)
+		{
+			hash.add(geom.getSrid());
+		}
+		switch (type)
+		{
+			case Point.TYPE:
+			case LineString.TYPE:
+			case CircularString.TYPE:
+				if (type != Point.TYPE)
+				{
+					hash.add(geom.getNumberOfCoordinates());
+				}
+				hash.setDimensions(haveZ, haveM);
+				geom.forEachCoordinate(hash);
+				break;
+			case Polygon.TYPE:
+			case CurvePolygon.TYPE:
+				PolygonBase<?> poly = (PolygonBase<?>) geom; // 手动转换类型
+				hash.add(poly.getNumberOfRings() + 1);
+				addRing(poly.getOuterRing(), hash, haveZ, haveM);
+				for (Curve ring : poly.getRings())
+				{
+					addRing(ring, hash, haveZ, haveM);
+				}
+				break;
+			case CompoundCurve.TYPE:
+				CompoundCurve cc = (CompoundCurve) geom; // 手动转换类型
+				hash.add(cc.size());
+				for (LineString ls : cc)
+				{
+					add(ls, hash, false);
+				}
+				break;
+			case MultiPoint.TYPE:
+			case MultiLineString.TYPE:
+			case MultiCurve.TYPE:
+			case MultiPolygon.TYPE:
+			case MultiSurface.TYPE:
+			case GeometryCollection.TYPE:
+				MultiGeometry<?> mg = (MultiGeometry<?>) geom; // 手动转换类型
+				hash.add(mg.size());
+				for (Geometry g : mg)
+				{
+					add(g, hash, false);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + type);
+		}
+	}
+
+	/**
+	 * Adds the binary representation of a geometry.
+	 * @param data {@link ValueGetter}
+	 * @param hash {@link Hash}
+	 * @param outermost is it the outermost geometry?
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private static void addBinary(ValueGetter data, Hash hash, boolean outermost)
+	{
+		// read endian flag
+		data.readEncoding();
+		// and get the type
+		int typeword = data.getInt();
+		int type = typeword & 0x1FFFFFFF; // cut off high flag bits
+		boolean haveZ = (typeword & 0x80000000) != 0;
+		boolean haveM = (typeword & 0x40000000) != 0;
+		boolean haveS = (typeword & 0x20000000) != 0;
+		addHeader(hash, type, haveZ, haveM);
+		int srid = Geometry.UNKNOWN_SRID;
+		if (haveS)
+		{
+			srid = Math.max(data.getInt(), Geometry.UNKNOWN_SRID);
+		}
+		if (outermost)
+		{
+			hash.add(srid);
+		}
+		switch (type)
+		{
+			case Point.TYPE:
+				addBinaryPoint(data, hash, haveZ, haveM);
+				break;
+			case LineString.TYPE:
+			case CircularString.TYPE:
+				addBinaryPoints(data, hash, haveZ, haveM);
+				break;
+			case Polygon.TYPE:
+			{
+				int count = data.getInt();
+				hash.add(count);
+				for (int i = 0; i < count; i++)
+				{
+					addBinaryPoints(data, hash, haveZ, haveM);
+				}
+			}
+				break;
+			case CompoundCurve.TYPE:
+			case CurvePolygon.TYPE:
+			case MultiPoint.TYPE:
+			case MultiLineString.TYPE:
+			case MultiCurve.TYPE:
+			case MultiPolygon.TYPE:
+			case MultiSurface.TYPE:
+			case GeometryCollection.TYPE:
+			{
+				int count = data.getInt();
+				hash.add(count);
+				for (int i = 0; i < count; i++)
+				{
+					addBinary(data, hash, false);
+				}
+			}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + type);
+		}
+	}
+
+	/**
+	 * Adds a single binary point.
+	 * @param data {@link ValueGetter}
+	 * @param hash {@link Hash}
+	 * @param haveZ is it 3d?
+	 * @param haveM does it have a measure?
+	 */
+	private static void addBinaryPoint(ValueGetter data, Hash hash, boolean haveZ, boolean haveM)
+	{
+		hash.add(data.getDouble());
+		hash.add(data.getDouble());
+		if (haveZ)
+		{
+			hash.add(data.getDouble());
+		}
+		if (haveM)
+		{
+			hash.add(data.getDouble());
+		}
+	}
+
+	/**
+	 * Adds binary points preceded by their count.
+	 * @param data {@link ValueGetter}
+	 * @param hash {@link Hash}
+	 * @param haveZ is it 3d?
+	 * @param haveM does it have a measure?
+	 */
+	private static void addBinaryPoints(ValueGetter data, Hash hash, boolean haveZ, boolean haveM)
+	{
+		int count = data.getInt();
+		hash.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			addBinaryPoint(data, hash, haveZ, haveM);
+		}
+	}
+
+	/**
+	 * Adds the header of a geometry.
+	 * @param hash {@link Hash}
+	 * @param type geometry type
+	 * @param haveZ is it 3d?
+	 * @param haveM does it have a measure?
+	 */
+	private static void addHeader(Hash hash, int type, boolean haveZ, boolean haveM)
+	{
+		long header = type;
+		if (haveZ)
+		{
+			header |= FLAG_Z;
+		}
+		if (haveM)
+		{
+			header |= FLAG_M;
+		}
+		hash.add(header);
+	}
+
+	/**
+	 * Adds a ring of a polygon.
+	 * @param ring ring
+	 * @param hash {@link Hash}
+	 * @param haveZ is the polygon 3d?
+	 * @param haveM does the polygon have a measure?
+	 */
+	private static void addRing(Curve ring, Hash hash, boolean haveZ, boolean haveM)
+	{
+		// linear rings are just plain points
+		if (ring instanceof LinearRing)
+		{
+			hash.add(ring.getNumberOfCoordinates());
+			hash.setDimensions(haveZ, haveM);
+			ring.forEachCoordinate(hash);
+		}
+		else
+		{
+			add(ring, hash, false);
+		}
+	}
+
+	/**
+	 * Calculates the fingerprint of the given binary data.
+	 * @param value byte array containing the binary representation of a geometry
+	 * @param offset offset
+	 * @return {@link Fingerprint}
+	 * @throws IllegalArgumentException if a contained geometry is of an unknown type or the encoding type is unknown
+	 */
+	public static Fingerprint of(byte[] value, int offset)
+	{
+		Hash hash = new Hash();
+		addBinary(new BinaryValueGetter(value, offset), hash, true);
+		return hash.getFingerprint();
+	}
+
+	/**
+	 * Calculates the fingerprint of the given {@link Geometry}.
+	 * @param geom {@link Geometry}
+	 * @return {@link Fingerprint}
+	 * @throws IllegalArgumentException if a contained geometry is of an unknown type
+	 */
+	public static Fingerprint of(Geometry geom)
+	{
+		Hash hash = new Hash();
+		add(geom, hash, true);
+		return hash.getFingerprint();
+	}
+
+	/**
+	 * Calculates the fingerprint of the given hex encoded binary data.
+	 * @param value String containing the hex encoded binary representation of a geometry
+	 * @return {@link Fingerprint}
+	 * @throws IllegalArgumentException if a contained geometry is of an unknown type or the encoding type is unknown
+	 */
+	public static Fingerprint of(String value)
+	{
+		Hash hash = new Hash();
+		addBinary(new StringValueGetter(value), hash, true);
+		return hash.getFingerprint();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(@Nullable Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof Fingerprint))
+		{
+			return false;
+		}
+		Fingerprint other = (Fingerprint) obj;
+		return (this.high == other.high) && (this.low == other.low);
+	}
+
+	/**
+	 * Gets the upper 64 bits of the fingerprint.
+	 * @return upper 64 bits
+	 */
+	public long getHigh()
+	{
+		return high;
+	}
+
+	/**
+	 * Gets the lower 64 bits of the fingerprint.
+	 * @return lower 64 bits
+	 */
+	public long getLow()
+	{
+		return low;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return (int) (low ^ (low >>> 32));
+	}
+
+	/**
+	 * Gets the fingerprint as a hex string of 32 characters.
+	 * @return hex string
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder(32);
+		for (int i = 60; i >= 0; i -= 4)
+		{
+			sb.append(Character.forDigit((int) (high >>> i) & 0xF, 16));
+		}
+		for (int i = 60; i >= 0; i -= 4)
+		{
+			sb.append(Character.forDigit((int) (low >>> i) & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A streaming 128 bit hash over 64 bit values (based on MurmurHash3).
+	 */
+	private static final class Hash implements CoordinateConsumer
+	{
+		private static final long C1 = 0x87C37B91114253D5L;
+		private static final long C2 = 0x4CF5AD432745937FL;
+
+		private long h1;
+		private long h2;
+		private boolean hasPending;
+		private boolean haveM;
+		private boolean haveZ;
+		private long length;
+		/**
+		 * Value waiting for the second half of its block.
+		 */
+		private long pending;
+
+		/**
+		 * Final mixing of a hash value.
+		 * @param k hash value
+		 * @return mixed hash value
+		 */
+		private static long fmix(long k)
+		{
+			long h = k;
+			h ^= h >>> 33;
+			h *= 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+			h *= 0xC4CEB9FE1A85EC53L;
+			return h ^ (h >>> 33);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see io.github.sebasbaumh.postgis.CoordinateConsumer#accept(double, double, double, double)
+		 */
+		@Override
+		public void accept(double x, double y, double z, double m)
+		{
+			add(x);
+			add(y);
+			if (haveZ)
+			{
+				add(z);
+			}
+			if (haveM)
+			{
+				add(m);
+			}
+		}
+
+		/**
+		 * Adds a coordinate value.
+		 * @param d value
+		 */
+		void add(double d)
+		{
+			// treat -0.0 as 0.0, all NaN values are already mapped to a single value
+			add((d == 0) ? 0 : Double.doubleToLongBits(d));
+		}
+
+		/**
+		 * Adds a value.
+		 * @param value value
+		 */
+		void add(long value)
+		{
+			length++;
+			if (!hasPending)
+			{
+				pending = value;
+				hasPending = true;
+				return;
+			}
+			hasPending = false;
+			long k1 = pending * C1;
+			k1 = Long.rotateLeft(k1, 31) * C2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27) + h2;
+			h1 = h1 * 5 + 0x52DCE729;
+			long k2 = value * C2;
+			k2 = Long.rotateLeft(k2, 33) * C1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31) + h1;
+			h2 = h2 * 5 + 0x38495AB5;
+		}
+
+		/**
+		 * Gets the resulting fingerprint.
+		 * @return {@link Fingerprint}
+		 */
+		Fingerprint getFingerprint()
+		{
+			long a = h1;
+			long b = h2;
+			if (hasPending)
+			{
+				long k1 = pending * C1;
+				k1 = Long.rotateLeft(k1, 31) * C2;
+				a ^= k1;
+			}
+			a ^= length;
+			b ^= length;
+			a += b;
+			b += a;
+			a = fmix(a);
+			b = fmix(b);
+			a += b;
+			b += a;
+			return new Fingerprint(a, b);
+		}
+
+		/**
+		 * Sets the dimensions of the following coordinates.
+		 * @param z are they 3d?
+		 * @param m do they have a measure?
+		 */
+		void setDimensions(boolean z, boolean m)
+		{
+			this.haveZ = z;
+			this.haveM = m;
+		}
+	}
+
+}
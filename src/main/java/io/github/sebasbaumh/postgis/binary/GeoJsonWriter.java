@@ -0,0 +1,715 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CircularString;
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.CurvePolygon;
+import io.github.sebasbaumh.postgis.DoubleFormat;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * Transcodes geometries from their binary representation (WKB) directly to GeoJSON text without creating any
+ * {@link Geometry} objects. Only curved geometries, which are not supported by GeoJSON, are parsed and linearized (see
+ * {@link Curve#linearize()}). Measures are dropped as GeoJSON does not support them.
+ * <p>
+ * Feature collections are written feature by feature, so they can be streamed in constant memory.
+ * @author Sebastian Baumhekel
+ */
+public final class GeoJsonWriter
+{
+	/**
+	 * Powers of 10 for rounding coordinates.
+	 */
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+			1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+			1000000000000000L };
+
+	/**
+	 * Buffer for formatting numbers.
+	 */
+	private final char[] digits = new char[DoubleFormat.MAX_LENGTH];
+	/**
+	 * Flag, if the next feature is the first one of the current collection.
+	 */
+	private boolean firstFeature = true;
+	private final Writer out;
+	/**
+	 * Number of decimal places of coordinates (negative for the shortest representation without loss).
+	 */
+	private final int precision;
+
+	/**
+	 * Constructs an instance writing UTF-8 to the given stream. Call {@link #flush()} when done.
+	 * @param out {@link OutputStream}
+	 */
+	public GeoJsonWriter(OutputStream out)
+	{
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), -1);
+	}
+
+	/**
+	 * Constructs an instance writing coordinates with their full precision.
+	 * @param out {@link Writer}
+	 */
+	public GeoJsonWriter(Writer out)
+	{
+		this(out, -1);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param out {@link Writer}
+	 * @param precision number of decimal places of coordinates (0-15) or a negative value for the shortest
+	 *            representation without loss of precision
+	 * @throws IllegalArgumentException if the precision is too large
+	 */
+	public GeoJsonWriter(Writer out, int precision)
+	{
+		if (precision >= POW10.length)
+		{
+			throw new IllegalArgumentException("precision is too large: " + precision);
+		}
+		this.out = out;
+		this.precision = precision;
+	}
+
+	/**
+	 * Reads the header of a geometry.
+	 * @param data {@link ValueGetter}
+	 * @return type including the flags
+	 */
+	private static int readHeader(ValueGetter data)
+	{
+		data.readEncoding();
+		int typeword = data.getInt();
+		// skip the SRID
+		if ((typeword & 0x20000000) != 0)
+		{
+			data.getInt();
+		}
+		return typeword;
+	}
+
+	/**
+	 * Transcodes the given binary representation to GeoJSON.
+	 * @param wkb binary representation
+	 * @return GeoJSON
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public static String toGeoJson(byte[] wkb)
+	{
+		StringWriter sw = new StringWriter();
+		try
+		{
+			new GeoJsonWriter(sw).writeGeometry(wkb, 0);
+		}
+		catch (IOException ex)
+		{
+			// cannot happen for a StringWriter
+			throw new UncheckedIOException(ex);
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * Starts a feature collection.
+	 * @throws IOException if writing failed
+	 */
+	public void beginFeatureCollection() throws IOException
+	{
+		out.write("{\"type\":\"FeatureCollection\",\"features\":[");
+		firstFeature = true;
+	}
+
+	/**
+	 * Ends a feature collection.
+	 * @throws IOException if writing failed
+	 */
+	public void endFeatureCollection() throws IOException
+	{
+		out.write("]}");
+	}
+
+	/**
+	 * Flushes the underlying writer.
+	 * @throws IOException if writing failed
+	 */
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Writes the coordinates of a linearized curve.
+	 * @param curve {@link Curve}
+	 * @throws IOException if writing failed
+	 */
+	private void writeCurveCoordinates(Curve curve) throws IOException
+	{
+		out.write('[');
+		boolean first = true;
+		for (Point p : curve.linearize().getCoordinates())
+		{
+			if (!first)
+			{
+				out.write(',');
+			}
+			first = false;
+			writePosition(p.getX(), p.getY(), p.getZ());
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes a curved geometry by linearizing it.
+	 * @param geom {@link Geometry}
+	 * @throws IOException if writing failed
+	 */
+	private void writeCurvedGeometry(Geometry geom) throws IOException
+	{
+		if (geom instanceof Curve)
+		{
+			out.write("{\"type\":\"LineString\",\"coordinates\":");
+			writeCurveCoordinates((Curve) geom);
+		}
+		else if (geom instanceof PolygonBase)
+		{
+			out.write("{\"type\":\"Polygon\",\"coordinates\":");
+			writeCurveRings((PolygonBase<?>) geom);
+		}
+		else if (geom instanceof MultiCurve)
+		{
+			out.write("{\"type\":\"MultiLineString\",\"coordinates\":[");
+			boolean first = true;
+			for (Curve curve : ((MultiCurve) geom).getGeometries())
+			{
+				if (!first)
+				{
+					out.write(',');
+				}
+				first = false;
+				writeCurveCoordinates(curve);
+			}
+			out.write(']');
+		}
+		else
+		{
+			out.write("{\"type\":\"MultiPolygon\",\"coordinates\":[");
+			boolean first = true;
+			for (Geometry poly : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				if (!first)
+				{
+					out.write(',');
+				}
+				first = false;
+				writeCurveRings((PolygonBase<?>) poly);
+			}
+			out.write(']');
+		}
+		out.write('}');
+	}
+
+	/**
+	 * Writes the linearized rings of a polygon.
+	 * @param poly {@link PolygonBase}
+	 * @throws IOException if writing failed
+	 */
+	private void writeCurveRings(PolygonBase<?> poly) throws IOException
+	{
+		out.write('[');
+		if (!poly.isEmpty())
+		{
+			writeCurveCoordinates(poly.getOuterRing());
+			for (Curve ring : poly.getRings())
+			{
+				out.write(',');
+				writeCurveCoordinates(ring);
+			}
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes a feature with the given geometry to the current feature collection.
+	 * @param wkb binary representation of the geometry (can be null for features without geometry)
+	 * @param properties properties
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public void writeFeature(@Nullable byte[] wkb, Map<String, ?> properties) throws IOException
+	{
+		if (!firstFeature)
+		{
+			out.write(',');
+		}
+		firstFeature = false;
+		out.write("{\"type\":\"Feature\",\"geometry\":");
+		if (wkb != null)
+		{
+			writeGeometry(wkb, 0);
+		}
+		else
+		{
+			out.write("null");
+		}
+		out.write(",\"properties\":{");
+		boolean first = true;
+		for (Map.Entry<String, ?> property : properties.entrySet())
+		{
+			if (!first)
+			{
+				out.write(',');
+			}
+			first = false;
+			writeString(property.getKey());
+			out.write(':');
+			writeValue(property.getValue());
+		}
+		out.write("}}");
+	}
+
+	/**
+	 * Writes a geometry from its binary representation.
+	 * @param wkb binary representation
+	 * @param offset offset
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public void writeGeometry(byte[] wkb, int offset) throws IOException
+	{
+		writeGeometry(new BinaryValueGetter(wkb, offset));
+	}
+
+	/**
+	 * Writes a geometry from its binary representation starting at the current position of the buffer.
+	 * @param wkb binary representation
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public void writeGeometry(ByteBuffer wkb) throws IOException
+	{
+		writeGeometry(new ByteBufferValueGetter(wkb));
+	}
+
+	/**
+	 * Writes a geometry from its binary representation read from the given stream.
+	 * @param wkb stream containing the binary representation (should be buffered)
+	 * @throws IOException if reading or writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public void writeGeometry(InputStream wkb) throws IOException
+	{
+		try
+		{
+			writeGeometry(new StreamValueGetter(wkb));
+		}
+		catch (UncheckedIOException ex)
+		{
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Writes a geometry from its hex encoded binary representation.
+	 * @param wkb hex encoded binary representation
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public void writeGeometry(String wkb) throws IOException
+	{
+		writeGeometry(new StringValueGetter(wkb));
+	}
+
+	/**
+	 * Writes a geometry.
+	 * @param data {@link ValueGetter}
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	private void writeGeometry(ValueGetter data) throws IOException
+	{
+		int typeword = readHeader(data);
+		boolean haveZ = (typeword & 0x80000000) != 0;
+		boolean haveM = (typeword & 0x40000000) != 0;
+		int count;
+		switch (typeword & 0x1FFFFFFF)
+		{
+			case Point.TYPE:
+				out.write("{\"type\":\"Point\",\"coordinates\":");
+				writePoint(data, haveZ, haveM);
+				break;
+			case LineString.TYPE:
+				out.write("{\"type\":\"LineString\",\"coordinates\":");
+				writePoints(data, haveZ, haveM);
+				break;
+			case Polygon.TYPE:
+				out.write("{\"type\":\"Polygon\",\"coordinates\":");
+				writeRings(data, haveZ, haveM);
+				break;
+			case MultiPoint.TYPE:
+			case MultiLineString.TYPE:
+			case MultiPolygon.TYPE:
+			{
+				int type = typeword & 0x1FFFFFFF;
+				out.write((type == MultiPoint.TYPE) ? "{\"type\":\"MultiPoint\",\"coordinates\":["
+						: (type == MultiLineString.TYPE) ? "{\"type\":\"MultiLineString\",\"coordinates\":["
+								: "{\"type\":\"MultiPolygon\",\"coordinates\":[");
+				count = data.getInt();
+				for (int i = 0; i < count; i++)
+				{
+					if (i > 0)
+					{
+						out.write(',');
+					}
+					// each part has its own header
+					int partType = readHeader(data);
+					boolean partZ = (partType & 0x80000000) != 0;
+					boolean partM = (partType & 0x40000000) != 0;
+					switch (partType & 0x1FFFFFFF)
+					{
+						case Point.TYPE:
+							writePoint(data, partZ, partM);
+							break;
+						case LineString.TYPE:
+							writePoints(data, partZ, partM);
+							break;
+						case Polygon.TYPE:
+							writeRings(data, partZ, partM);
+							break;
+						default:
+							throw new IllegalArgumentException("Unexpected Geometry Type: " + (partType & 0x1FFFFFFF));
+					}
+				}
+				out.write(']');
+				break;
+			}
+			case GeometryCollection.TYPE:
+				out.write("{\"type\":\"GeometryCollection\",\"geometries\":[");
+				count = data.getInt();
+				for (int i = 0; i < count; i++)
+				{
+					if (i > 0)
+					{
+						out.write(',');
+					}
+					writeGeometry(data);
+				}
+				out.write(']');
+				break;
+			case CircularString.TYPE:
+			case CompoundCurve.TYPE:
+			case CurvePolygon.TYPE:
+			case MultiCurve.TYPE:
+			case MultiSurface.TYPE:
+				// curves are not supported by GeoJSON, so they have to be linearized
+				// (the SRID has already been read)
+				writeCurvedGeometry(BinaryParser.parseGeometry(data, typeword & ~0x20000000));
+				return;
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + (typeword & 0x1FFFFFFF));
+		}
+		out.write('}');
+	}
+
+	/**
+	 * Writes a number.
+	 * @param value value
+	 * @param round true to round the value to the configured precision, else false
+	 * @throws IOException if writing failed
+	 * @throws IllegalArgumentException if the value is not finite
+	 */
+	private void writeNumber(double value, boolean round) throws IOException
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value))
+		{
+			throw new IllegalArgumentException("number is not finite: " + value);
+		}
+		if (round && (precision >= 0))
+		{
+			double scaled = value * POW10[precision];
+			// values have to fit into a long without losing precision
+			if (Math.abs(scaled) < 1e15)
+			{
+				long l = Math.round(scaled);
+				long factor = POW10[precision];
+				long abs = Math.abs(l);
+				long fraction = abs % factor;
+				int fractionDigits = precision;
+				// strip trailing zeros
+				while ((fraction != 0) && (fraction % 10 == 0))
+				{
+					fraction /= 10;
+					fractionDigits--;
+				}
+				if (l < 0)
+				{
+					out.write('-');
+				}
+				writeLong(abs / factor);
+				if (fraction != 0)
+				{
+					out.write('.');
+					int n = digits.length;
+					for (int i = 0; i < fractionDigits; i++)
+					{
+						digits[--n] = (char) ('0' + (fraction % 10));
+						fraction /= 10;
+					}
+					out.write(digits, n, digits.length - n);
+				}
+				return;
+			}
+		}
+		// write integral values without a fraction
+		if ((value == Math.rint(value)) && (Math.abs(value) < 1e15))
+		{
+			writeLong((long) value);
+			return;
+		}
+		// Double.toString() does not give the shortest representation before Java 19
+		out.write(digits, 0, DoubleFormat.format(value, digits, 0));
+	}
+
+	/**
+	 * Writes a long value.
+	 * @param value value
+	 * @throws IOException if writing failed
+	 */
+	private void writeLong(long value) throws IOException
+	{
+		if (value < 0)
+		{
+			out.write(Long.toString(value));
+			return;
+		}
+		int n = digits.length;
+		long v = value;
+		do
+		{
+			digits[--n] = (char) ('0' + (v % 10));
+			v /= 10;
+		}
+		while (v != 0);
+		out.write(digits, n, digits.length - n);
+	}
+
+	/**
+	 * Writes a single point as a position.
+	 * @param data {@link ValueGetter}
+	 * @param haveZ point has a z value?
+	 * @param haveM point has a measure value?
+	 * @throws IOException if writing failed
+	 */
+	private void writePoint(ValueGetter data, boolean haveZ, boolean haveM) throws IOException
+	{
+		double x = data.getDouble();
+		double y = data.getDouble();
+		double z = haveZ ? data.getDouble() : Double.NaN;
+		if (haveM)
+		{
+			// measures are not supported by GeoJSON
+			data.getDouble();
+		}
+		// empty point
+		if (Double.isNaN(x) && Double.isNaN(y))
+		{
+			out.write("[]");
+			return;
+		}
+		writePosition(x, y, z);
+	}
+
+	/**
+	 * Writes an array of "slim" points (without endianness and type).
+	 * @param data {@link ValueGetter}
+	 * @param haveZ points have a z value?
+	 * @param haveM points have a measure value?
+	 * @throws IOException if writing failed
+	 */
+	private void writePoints(ValueGetter data, boolean haveZ, boolean haveM) throws IOException
+	{
+		out.write('[');
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				out.write(',');
+			}
+			writePoint(data, haveZ, haveM);
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes a position.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (NaN if there is none)
+	 * @throws IOException if writing failed
+	 */
+	private void writePosition(double x, double y, double z) throws IOException
+	{
+		out.write('[');
+		writeNumber(x, true);
+		out.write(',');
+		writeNumber(y, true);
+		if (!Double.isNaN(z))
+		{
+			out.write(',');
+			writeNumber(z, true);
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes the rings of a polygon.
+	 * @param data {@link ValueGetter}
+	 * @param haveZ points have a z value?
+	 * @param haveM points have a measure value?
+	 * @throws IOException if writing failed
+	 */
+	private void writeRings(ValueGetter data, boolean haveZ, boolean haveM) throws IOException
+	{
+		out.write('[');
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				out.write(',');
+			}
+			writePoints(data, haveZ, haveM);
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes an escaped string.
+	 * @param s string
+	 * @throws IOException if writing failed
+	 */
+	private void writeString(String s) throws IOException
+	{
+		out.write('"');
+		int start = 0;
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if ((c == '"') || (c == '\\') || (c < 0x20))
+			{
+				out.write(s, start, i - start);
+				switch (c)
+				{
+					case '"':
+						out.write("\\\"");
+						break;
+					case '\\':
+						out.write("\\\\");
+						break;
+					case '\n':
+						out.write("\\n");
+						break;
+					case '\r':
+						out.write("\\r");
+						break;
+					case '\t':
+						out.write("\\t");
+						break;
+					default:
+						out.write(String.format("\\u%04x", (int) c));
+				}
+				start = i + 1;
+			}
+		}
+		out.write(s, start, s.length() - start);
+		out.write('"');
+	}
+
+	/**
+	 * Writes a property value.
+	 * @param value value
+	 * @throws IOException if writing failed
+	 */
+	private void writeValue(@Nullable Object value) throws IOException
+	{
+		if (value == null)
+		{
+			out.write("null");
+		}
+		else if (value instanceof Boolean)
+		{
+			out.write(value.toString());
+		}
+		else if ((value instanceof Byte) || (value instanceof Short) || (value instanceof Integer)
+				|| (value instanceof Long))
+		{
+			out.write(value.toString());
+		}
+		else if (value instanceof Number)
+		{
+			double d = ((Number) value).doubleValue();
+			if (Double.isNaN(d) || Double.isInfinite(d))
+			{
+				out.write("null");
+			}
+			else
+			{
+				writeNumber(d, false);
+			}
+		}
+		else
+		{
+			writeString(value.toString());
+		}
+	}
+
+}
@@ -0,0 +1,371 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.PolygonBase;
+import io.github.sebasbaumh.postgis.PostGisUtil;
+
+/**
+ * A bounded cache for geometries decoded from their binary (WKB) representation. If the same binary data is parsed
+ * again, the already decoded {@link Geometry} is returned instead of parsing it a second time. So all callers share the
+ * same instance, which is why cached geometries are frozen (see {@link Geometry#freeze()}).
+ * <p>
+ * The size of the cache is limited by the total number of coordinates of all cached geometries. If that limit is
+ * exceeded, the least recently used geometries are evicted. The cache is thread-safe.
+ * @author Sebastian Baumhekel
+ */
+public final class GeometryCache
+{
+	/**
+	 * Access to the byte data as long values for hashing.
+	 */
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Cached geometries ordered by their last access.
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long evictionCount;
+	private long hitCount;
+	/**
+	 * Maximum total weight (number of coordinates) of all cached geometries.
+	 */
+	private final long maxWeight;
+	private long missCount;
+	/**
+	 * Current total weight of all cached geometries.
+	 */
+	private long weight;
+
+	/**
+	 * Constructs an instance.
+	 * @param maxWeight maximum total number of coordinates of all cached geometries
+	 * @throws IllegalArgumentException if the maximum weight is not positive
+	 */
+	public GeometryCache(long maxWeight)
+	{
+		if (maxWeight <= 0)
+		{
+			throw new IllegalArgumentException("maximum weight has to be positive: " + maxWeight);
+		}
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Calculates the hash of the given byte data.
+	 * @param value byte data
+	 * @param offset offset
+	 * @param length length
+	 * @return hash
+	 */
+	private static int calcHash(byte[] value, int offset, int length)
+	{
+		long h = length * 0x9E3779B97F4A7C15L;
+		int i = offset;
+		int end = offset + length;
+		// hash 8 bytes at once
+		for (; i + 8 <= end; i += 8)
+		{
+			h = (h ^ (long) LONG_VIEW.get(value, i)) * 0xC2B2AE3D27D4EB4FL;
+			h ^= h >>> 29;
+		}
+		// and then the remaining bytes
+		for (; i < end; i++)
+		{
+			h = (h ^ (value[i] & 0xFF)) * 0x100000001B3L;
+		}
+		h ^= h >>> 32;
+		return (int) h;
+	}
+
+	/**
+	 * Gets the weight of the given geometry, which is the number of its coordinates including the ones of all inner
+	 * rings.
+	 * @param geom {@link Geometry}
+	 * @return weight
+	 */
+	private static long getWeight(Geometry geom)
+	{
+		if (geom instanceof MultiGeometry)
+		{
+			long n = 1;
+			for (Geometry g : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				n += getWeight(g);
+			}
+			return n;
+		}
+		else if (geom instanceof PolygonBase)
+		{
+			PolygonBase<?> poly = (PolygonBase<?>) geom;
+			long n = getWeight(poly.getOuterRing());
+			for (Curve ring : poly.getRings())
+			{
+				n += getWeight(ring);
+			}
+			return n;
+		}
+		else if (geom instanceof CompoundCurve)
+		{
+			long n = 1;
+			for (LineString ls : ((CompoundCurve) geom).getGeometries())
+			{
+				n += getWeight(ls);
+			}
+			return n;
+		}
+		return Math.max(1, geom.getNumberOfCoordinates());
+	}
+
+	/**
+	 * Removes all geometries from the cache. The statistics are kept.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Gets the number of geometries that have been removed from the cache to stay within the maximum weight.
+	 * @return number of evictions
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Gets the number of lookups that could be answered by the cache.
+	 * @return number of hits
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Gets the maximum total weight (number of coordinates) of all cached geometries.
+	 * @return maximum weight
+	 */
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	/**
+	 * Gets the number of lookups that needed to parse the geometry.
+	 * @return number of misses
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Gets the current total weight (number of coordinates) of all cached geometries.
+	 * @return weight
+	 */
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	/**
+	 * Gets the geometry for the given binary data. It is parsed if it is not in the cache yet.
+	 * @param value byte array containing the data to be parsed
+	 * @param offset offset
+	 * @return resulting geometry for the parsed data (frozen if it could be cached)
+	 * @throws IllegalArgumentException if a contained geometry is of the wrong type or the encoding type is unknown
+	 */
+	public Geometry parse(byte[] value, int offset)
+	{
+		int length = value.length - offset;
+		Key key = new Key(value, offset, length, calcHash(value, offset, length));
+		synchronized (this)
+		{
+			Entry entry = entries.get(key);
+			if (entry != null)
+			{
+				hitCount++;
+				return entry.geometry;
+			}
+			missCount++;
+		}
+		// parse the geometry outside of the lock
+		Geometry geom = BinaryParser.parse(value, offset);
+		long geomWeight = getWeight(geom);
+		// do not cache geometries which exceed the cache on their own
+		if (geomWeight > maxWeight)
+		{
+			return geom;
+		}
+		// geometry is shared, so make it immutable
+		geom.freeze();
+		// only keep a copy of the data as the original array could be modified by the caller
+		Key keyCopy = new Key(Arrays.copyOfRange(value, offset, value.length), 0, length, key.hash);
+		synchronized (this)
+		{
+			// another thread could have parsed the same geometry in the meantime
+			Entry existing = entries.get(keyCopy);
+			if (existing != null)
+			{
+				return existing.geometry;
+			}
+			entries.put(keyCopy, new Entry(geom, geomWeight));
+			weight += geomWeight;
+			evict();
+		}
+		return geom;
+	}
+
+	/**
+	 * Gets the geometry for the given hex encoded binary data. It is parsed if it is not in the cache yet.
+	 * @param value String containing the data to be parsed
+	 * @return resulting geometry for the parsed data (frozen if it could be cached)
+	 * @throws IllegalArgumentException if a contained geometry is of the wrong type or the encoding type is unknown
+	 */
+	public Geometry parse(String value)
+	{
+		return parse(PostGisUtil.toHexBytes(value), 0);
+	}
+
+	/**
+	 * Gets the number of cached geometries.
+	 * @return number of cached geometries
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return "GeometryCache [size=" + entries.size() + ", weight=" + weight + "/" + maxWeight + ", hits=" + hitCount
+				+ ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	/**
+	 * Removes the least recently used geometries until the cache is within its maximum weight again.
+	 */
+	private void evict()
+	{
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while ((weight > maxWeight) && it.hasNext())
+		{
+			weight -= it.next().getValue().weight;
+			it.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * A cached geometry.
+	 */
+	private static final class Entry
+	{
+		final Geometry geometry;
+		final long weight;
+
+		/**
+		 * Constructs an instance.
+		 * @param geometry {@link Geometry}
+		 * @param weight weight
+		 */
+		Entry(Geometry geometry, long weight)
+		{
+			this.geometry = geometry;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Key for looking up binary data.
+	 */
+	private static final class Key
+	{
+		final byte[] data;
+		final int hash;
+		final int length;
+		final int offset;
+
+		/**
+		 * Constructs an instance.
+		 * @param data byte data
+		 * @param offset offset
+		 * @param length length
+		 * @param hash hash of the byte data
+		 */
+		Key(byte[] data, int offset, int length, int hash)
+		{
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return (this.hash == other.hash) && (this.length == other.length) && Arrays.equals(this.data, this.offset,
+					this.offset + this.length, other.data, other.offset, other.offset + other.length);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.sebasbaumh.postgis.Geometry;
+
+/**
+ * Creates {@link CompressedGeometry} instances. The precision (number of decimal digits) of the coordinates can be
+ * configured per SRID, e.g. 7 digits for geographic coordinates in degrees and 2 digits for projected coordinates in
+ * meters. The configuration has to be done before compressing geometries concurrently.
+ * @author Sebastian Baumhekel
+ */
+public final class GeometryCompressor
+{
+	private final TwkbWriter defaultWriter;
+	private final Map<Integer, TwkbWriter> writers = new HashMap<Integer, TwkbWriter>();
+
+	/**
+	 * Constructs an instance.
+	 * @param defaultPrecision number of decimal digits of x/y coordinates for SRIDs without a specific precision (-8
+	 *            to 7, negative values round to powers of 10)
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public GeometryCompressor(int defaultPrecision)
+	{
+		this.defaultWriter = new TwkbWriter(defaultPrecision);
+	}
+
+	/**
+	 * Compresses the given geometry.
+	 * @param geom {@link Geometry}
+	 * @return {@link CompressedGeometry}
+	 * @throws IllegalArgumentException if the geometry type is not supported (curves)
+	 */
+	public CompressedGeometry compress(Geometry geom)
+	{
+		TwkbWriter writer = writers.getOrDefault(geom.getSrid(), defaultWriter);
+		return new CompressedGeometry(writer.writeBinary(geom), geom.getSrid());
+	}
+
+	/**
+	 * Gets the number of decimal digits of x/y coordinates used for the given SRID.
+	 * @param srid SRID
+	 * @return precision
+	 */
+	public int getPrecision(int srid)
+	{
+		return writers.getOrDefault(srid, defaultWriter).getPrecision();
+	}
+
+	/**
+	 * Sets the precision for the given SRID.
+	 * @param srid SRID
+	 * @param precision number of decimal digits of x/y coordinates (-8 to 7, negative values round to powers of 10)
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public void setPrecision(int srid, int precision)
+	{
+		setPrecision(srid, precision, 0, 0);
+	}
+
+	/**
+	 * Sets the precision for the given SRID.
+	 * @param srid SRID
+	 * @param precision number of decimal digits of x/y coordinates (-8 to 7, negative values round to powers of 10)
+	 * @param precisionZ number of decimal digits of z values (0 to 7)
+	 * @param precisionM number of decimal digits of measures (0 to 7)
+	 * @throws IllegalArgumentException if a precision is out of range
+	 */
+	public void setPrecision(int srid, int precision, int precisionZ, int precisionM)
+	{
+		writers.put(srid, new TwkbWriter(precision, precisionZ, precisionM));
+	}
+
+}
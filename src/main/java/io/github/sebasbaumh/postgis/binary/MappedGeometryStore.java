@@ -0,0 +1,407 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+
+/**
+ * An append-only store for geometries in their binary (WKB) representation, which keeps the data off-heap in
+ * memory-mapped segment files. Each record gets a sequential id, which is mapped to its position by an index that is
+ * also stored in memory-mapped files. So opening an existing store just maps the files again.
+ * <p>
+ * Appending is synchronized, while reading is lock-free and can be done by any number of threads concurrently. A record
+ * becomes visible to readers only after it has been written completely. Records can be stored with their envelope, so
+ * they can be filtered without decoding them.
+ * @author Sebastian Baumhekel
+ */
+public final class MappedGeometryStore implements Closeable
+{
+	/**
+	 * Default size of a segment file in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+	/**
+	 * Flag for records with an envelope.
+	 */
+	private static final int FLAG_ENVELOPE = 1;
+	/**
+	 * Number of entries of an index segment file.
+	 */
+	private static final int INDEX_SEGMENT_ENTRIES = 1 << 17;
+	/**
+	 * Size of the header of a record (length of the data and flags).
+	 */
+	private static final int RECORD_HEADER_SIZE = 5;
+
+	private volatile boolean closed;
+	private volatile MappedByteBuffer[] dataSegments;
+	private final Path dir;
+	private volatile MappedByteBuffer[] indexSegments;
+	private final int segmentSize;
+	/**
+	 * Number of records, which also publishes the written records to readers.
+	 */
+	private volatile long size;
+	/**
+	 * Position of the next record (guarded by this).
+	 */
+	private long writePosition;
+
+	/**
+	 * Opens or creates a store using segments with the default size.
+	 * @param dir directory of the store
+	 * @throws IOException if the store cannot be opened
+	 */
+	public MappedGeometryStore(Path dir) throws IOException
+	{
+		this(dir, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens or creates a store. The segment size of an existing store is kept.
+	 * @param dir directory of the store
+	 * @param segmentSize size of a segment file in bytes, which is the maximum size of a record
+	 * @throws IOException if the store cannot be opened
+	 * @throws IllegalArgumentException if the segment size is too small
+	 */
+	public MappedGeometryStore(Path dir, int segmentSize) throws IOException
+	{
+		if (segmentSize < 1024)
+		{
+			throw new IllegalArgumentException("segment size is too small: " + segmentSize);
+		}
+		this.dir = dir;
+		Files.createDirectories(dir);
+		// use the size of existing segments
+		Path first = getDataFile(0);
+		this.segmentSize = Files.exists(first) ? (int) Files.size(first) : segmentSize;
+		MappedByteBuffer[] data = new MappedByteBuffer[0];
+		for (int i = 0; Files.exists(getDataFile(i)); i++)
+		{
+			data = Arrays.copyOf(data, i + 1);
+			data[i] = map(getDataFile(i), this.segmentSize);
+		}
+		MappedByteBuffer[] index = new MappedByteBuffer[0];
+		for (int i = 0; Files.exists(getIndexFile(i)); i++)
+		{
+			index = Arrays.copyOf(index, i + 1);
+			index[i] = map(getIndexFile(i), INDEX_SEGMENT_ENTRIES * 8);
+		}
+		this.dataSegments = data;
+		this.indexSegments = index;
+		// entries are written in order, so find the first unused one in the last index segment
+		long count = 0;
+		if (index.length > 0)
+		{
+			ByteBuffer last = index[index.length - 1];
+			int lo = 0;
+			int hi = INDEX_SEGMENT_ENTRIES;
+			while (lo < hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				if (last.getLong(mid * 8) != 0)
+				{
+					lo = mid + 1;
+				}
+				else
+				{
+					hi = mid;
+				}
+			}
+			count = (long) (index.length - 1) * INDEX_SEGMENT_ENTRIES + lo;
+		}
+		this.size = count;
+		if (count > 0)
+		{
+			long pos = getPosition(count - 1);
+			ByteBuffer segment = data[(int) (pos / this.segmentSize)];
+			int offset = (int) (pos % this.segmentSize);
+			this.writePosition = pos + getRecordSize(segment, offset);
+		}
+	}
+
+	/**
+	 * Gets the total size of the record at the given offset.
+	 * @param segment segment
+	 * @param offset offset of the record
+	 * @return size in bytes
+	 */
+	private static int getRecordSize(ByteBuffer segment, int offset)
+	{
+		int envelopeSize = ((segment.get(offset + 4) & FLAG_ENVELOPE) != 0) ? 32 : 0;
+		return RECORD_HEADER_SIZE + envelopeSize + segment.getInt(offset);
+	}
+
+	/**
+	 * Maps a file, which is created or extended if needed.
+	 * @param file file
+	 * @param size size of the mapping
+	 * @return {@link MappedByteBuffer}
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static MappedByteBuffer map(Path file, int size) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE))
+		{
+			// the mapping stays valid after closing the channel
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return buffer;
+		}
+	}
+
+	/**
+	 * Appends a record.
+	 * @param wkb binary representation of the geometry
+	 * @param envelope envelope of the geometry (can be null)
+	 * @return id of the record
+	 * @throws IOException if a new segment cannot be created
+	 * @throws IllegalArgumentException if the record does not fit into a segment
+	 * @throws IllegalStateException if the store has been closed
+	 */
+	public synchronized long append(byte[] wkb, @Nullable Envelope envelope) throws IOException
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("store has been closed");
+		}
+		int recordSize = RECORD_HEADER_SIZE + ((envelope != null) ? 32 : 0) + wkb.length;
+		if (recordSize > segmentSize)
+		{
+			throw new IllegalArgumentException("record is larger than a segment: " + recordSize);
+		}
+		// records do not span segments
+		long pos = writePosition;
+		int segmentIndex = (int) (pos / segmentSize);
+		int offset = (int) (pos % segmentSize);
+		if (offset + recordSize > segmentSize)
+		{
+			segmentIndex++;
+			offset = 0;
+			pos = (long) segmentIndex * segmentSize;
+		}
+		MappedByteBuffer[] data = dataSegments;
+		if (segmentIndex >= data.length)
+		{
+			data = Arrays.copyOf(data, segmentIndex + 1);
+			data[segmentIndex] = map(getDataFile(segmentIndex), segmentSize);
+			dataSegments = data;
+		}
+		// write the record
+		ByteBuffer segment = data[segmentIndex].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		segment.position(offset);
+		segment.putInt(wkb.length);
+		if (envelope != null)
+		{
+			segment.put((byte) FLAG_ENVELOPE);
+			segment.putDouble(envelope.getMinX());
+			segment.putDouble(envelope.getMinY());
+			segment.putDouble(envelope.getMaxX());
+			segment.putDouble(envelope.getMaxY());
+		}
+		else
+		{
+			segment.put((byte) 0);
+		}
+		segment.put(wkb);
+		// and then its index entry (storing the position + 1, so 0 marks an unused entry)
+		long id = size;
+		int indexSegment = (int) (id / INDEX_SEGMENT_ENTRIES);
+		MappedByteBuffer[] index = indexSegments;
+		if (indexSegment >= index.length)
+		{
+			index = Arrays.copyOf(index, indexSegment + 1);
+			index[indexSegment] = map(getIndexFile(indexSegment), INDEX_SEGMENT_ENTRIES * 8);
+			indexSegments = index;
+		}
+		index[indexSegment].putLong((int) (id % INDEX_SEGMENT_ENTRIES) * 8, pos + 1);
+		writePosition = pos + recordSize;
+		// publish the record
+		size = id + 1;
+		return id;
+	}
+
+	/**
+	 * Appends a geometry.
+	 * @param geom {@link Geometry}
+	 * @param withEnvelope store the envelope of the geometry?
+	 * @return id of the record
+	 * @throws IOException if a new segment cannot be created
+	 * @throws IllegalArgumentException if the record does not fit into a segment
+	 * @throws IllegalStateException if the store has been closed
+	 */
+	public long append(Geometry geom, boolean withEnvelope) throws IOException
+	{
+		return append(BinaryWriter.writeBinary(geom), withEnvelope ? geom.getEnvelope() : null);
+	}
+
+	/**
+	 * Writes all changes to disk and closes the store for appending. Records can still be read.
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!closed)
+		{
+			flush();
+			closed = true;
+		}
+	}
+
+	/**
+	 * Writes all changes to disk.
+	 */
+	public synchronized void flush()
+	{
+		for (MappedByteBuffer buffer : dataSegments)
+		{
+			buffer.force();
+		}
+		for (MappedByteBuffer buffer : indexSegments)
+		{
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Decodes the geometry of a record.
+	 * @param id id of the record
+	 * @return {@link Geometry}
+	 * @throws IndexOutOfBoundsException if there is no record with the given id
+	 */
+	public Geometry get(long id)
+	{
+		return BinaryParser.parse(getWkb(id));
+	}
+
+	/**
+	 * Gets the file of a data segment.
+	 * @param index index of the segment
+	 * @return file
+	 */
+	private Path getDataFile(int index)
+	{
+		return dir.resolve(String.format(Locale.ROOT, "data-%05d.seg", index));
+	}
+
+	/**
+	 * Gets the stored envelope of a record.
+	 * @param id id of the record
+	 * @return {@link Envelope} on success, else null if it has not been stored
+	 * @throws IndexOutOfBoundsException if there is no record with the given id
+	 */
+	@Nullable
+	public Envelope getEnvelope(long id)
+	{
+		long pos = getPosition(id);
+		ByteBuffer segment = dataSegments[(int) (pos / segmentSize)];
+		int offset = (int) (pos % segmentSize);
+		if ((segment.get(offset + 4) & FLAG_ENVELOPE) == 0)
+		{
+			return null;
+		}
+		int p = offset + RECORD_HEADER_SIZE;
+		return new Envelope(segment.getDouble(p), segment.getDouble(p + 8), segment.getDouble(p + 16),
+				segment.getDouble(p + 24));
+	}
+
+	/**
+	 * Gets the file of an index segment.
+	 * @param index index of the segment
+	 * @return file
+	 */
+	private Path getIndexFile(int index)
+	{
+		return dir.resolve(String.format(Locale.ROOT, "index-%05d.seg", index));
+	}
+
+	/**
+	 * Gets the position of a record.
+	 * @param id id of the record
+	 * @return position
+	 * @throws IndexOutOfBoundsException if there is no record with the given id
+	 */
+	private long getPosition(long id)
+	{
+		// reading the size first ensures all segments of the record are visible
+		if ((id < 0) || (id >= size))
+		{
+			throw new IndexOutOfBoundsException("invalid id: " + id);
+		}
+		return indexSegments[(int) (id / INDEX_SEGMENT_ENTRIES)].getLong((int) (id % INDEX_SEGMENT_ENTRIES) * 8) - 1;
+	}
+
+	/**
+	 * Gets the size of a segment file in bytes.
+	 * @return size in bytes
+	 */
+	public int getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	/**
+	 * Gets a read-only view of the binary representation of a record without copying it.
+	 * @param id id of the record
+	 * @return {@link ByteBuffer} containing the binary representation
+	 * @throws IndexOutOfBoundsException if there is no record with the given id
+	 */
+	public ByteBuffer getWkb(long id)
+	{
+		long pos = getPosition(id);
+		ByteBuffer segment = dataSegments[(int) (pos / segmentSize)];
+		int offset = (int) (pos % segmentSize);
+		int start = offset + getRecordSize(segment, offset) - segment.getInt(offset);
+		ByteBuffer view = segment.asReadOnlyBuffer();
+		view.limit(start + segment.getInt(offset));
+		view.position(start);
+		return view.slice();
+	}
+
+	/**
+	 * Gets the number of records.
+	 * @return number of records
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Allows reading values from an {@link InputStream}. The stream is read byte by byte, so it should be buffered.
+ * @author Sebastian Baumhekel
+ */
+public class StreamValueGetter extends ValueGetter
+{
+	private final InputStream stream;
+
+	/**
+	 * Constructs an instance.
+	 * @param stream {@link InputStream}
+	 */
+	public StreamValueGetter(InputStream stream)
+	{
+		this.stream = stream;
+	}
+
+	/**
+	 * Gets a byte from the stream.
+	 * @return byte
+	 * @throws UncheckedIOException if the stream could not be read
+	 * @throws IndexOutOfBoundsException if the end of the stream has been reached
+	 */
+	@Override
+	protected int getNextByte()
+	{
+		int b;
+		try
+		{
+			b = stream.read();
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+		if (b < 0)
+		{
+			throw new IndexOutOfBoundsException("unexpected end of stream");
+		}
+		return b;
+	}
+
+}
@@ -0,0 +1,485 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CoordinateConsumer;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PostGisUtil;
+
+/**
+ * A parser for reading geometries from their Tiny WKB (TWKB) representation as created by {@code ST_AsTWKB}.
+ * @see <a href="https://github.com/TWKB/Specification">TWKB specification</a>
+ * @author Sebastian Baumhekel
+ */
+public final class TwkbParser
+{
+	private final ValueGetter data;
+	private boolean hasM;
+	private boolean hasZ;
+	/**
+	 * Last coordinate values as the coordinates are stored as differences to them.
+	 */
+	private final long[] last = new long[4];
+	/**
+	 * Precisions (number of decimal digits) of the dimensions.
+	 */
+	private final int[] precisions = new int[4];
+
+	/**
+	 * Constructs an instance.
+	 * @param data {@link ValueGetter}
+	 */
+	private TwkbParser(ValueGetter data)
+	{
+		this.data = data;
+	}
+
+	/**
+	 * Creates an empty geometry of the given type.
+	 * @param type TWKB geometry type
+	 * @return {@link Geometry}
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private static Geometry createEmpty(int type)
+	{
+		switch (type)
+		{
+			case Point.TYPE:
+				return new Point();
+			case LineString.TYPE:
+				return new LineString();
+			case Polygon.TYPE:
+				return new Polygon();
+			case MultiPoint.TYPE:
+				return new MultiPoint();
+			case MultiLineString.TYPE:
+				return new MultiLineString();
+			case MultiPolygon.TYPE:
+				return new MultiPolygon();
+			case GeometryCollection.TYPE:
+				return new GeometryCollection();
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + type);
+		}
+	}
+
+	/**
+	 * Visits all coordinates of a geometry including the ones of inner rings without creating any geometry objects.
+	 * @param data {@link ValueGetter} with the data to be read
+	 * @param consumer {@link CoordinateConsumer}
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	public static void forEachCoordinate(ValueGetter data, CoordinateConsumer consumer)
+	{
+		new TwkbParser(data).visitGeometry(consumer);
+	}
+
+	/**
+	 * Parses a geometry.
+	 * @param value byte array containing the data to be parsed
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	public static Geometry parse(byte[] value)
+	{
+		return parse(new BinaryValueGetter(value, 0), null);
+	}
+
+	/**
+	 * Parses a geometry.
+	 * @param value byte array containing the data to be parsed
+	 * @param offset offset
+	 * @param ids collection to receive the ids of the parts of a multi geometry (can be null)
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	public static Geometry parse(byte[] value, int offset, @Nullable Collection<Long> ids)
+	{
+		return parse(new BinaryValueGetter(value, offset), ids);
+	}
+
+	/**
+	 * Parses a hex encoded geometry.
+	 * @param value String containing the data to be parsed
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	public static Geometry parse(String value)
+	{
+		return parse(PostGisUtil.toHexBytes(value));
+	}
+
+	/**
+	 * Parses a geometry.
+	 * @param data {@link ValueGetter} with the data to be parsed
+	 * @param ids collection to receive the ids of the parts of a multi geometry (can be null)
+	 * @return resulting geometry for the parsed data
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	public static Geometry parse(ValueGetter data, @Nullable Collection<Long> ids)
+	{
+		return new TwkbParser(data).parseGeometry(ids);
+	}
+
+	/**
+	 * Parses a geometry including its header.
+	 * @param ids collection to receive the ids of the parts of a multi geometry (can be null)
+	 * @return the parsed geometry
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private Geometry parseGeometry(@Nullable Collection<Long> ids)
+	{
+		int header = readHeader();
+		int type = header & 0x0F;
+		int metadata = header >>> 4;
+		if ((metadata & TwkbWriter.FLAG_EMPTY) != 0)
+		{
+			return createEmpty(type);
+		}
+		boolean hasIds = (metadata & TwkbWriter.FLAG_ID_LIST) != 0;
+		switch (type)
+		{
+			case Point.TYPE:
+				return parsePoint();
+			case LineString.TYPE:
+				return new LineString(parsePoints());
+			case Polygon.TYPE:
+				return parsePolygon();
+			case MultiPoint.TYPE:
+			{
+				int count = readCount(hasIds, ids);
+				MultiPoint mp = new MultiPoint();
+				for (int i = 0; i < count; i++)
+				{
+					mp.add(parsePoint());
+				}
+				return mp;
+			}
+			case MultiLineString.TYPE:
+			{
+				int count = readCount(hasIds, ids);
+				MultiLineString mls = new MultiLineString();
+				for (int i = 0; i < count; i++)
+				{
+					mls.add(new LineString(parsePoints()));
+				}
+				return mls;
+			}
+			case MultiPolygon.TYPE:
+			{
+				int count = readCount(hasIds, ids);
+				MultiPolygon mp = new MultiPolygon();
+				for (int i = 0; i < count; i++)
+				{
+					mp.add(parsePolygon());
+				}
+				return mp;
+			}
+			case GeometryCollection.TYPE:
+			{
+				int count = readCount(hasIds, ids);
+				GeometryCollection gc = new GeometryCollection();
+				for (int i = 0; i < count; i++)
+				{
+					// each geometry has its own header
+					gc.add(parseGeometry(null));
+				}
+				return gc;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + type);
+		}
+	}
+
+	/**
+	 * Parses the coordinates of a point.
+	 * @return {@link Point}
+	 */
+	private Point parsePoint()
+	{
+		double x = readOrdinate(0);
+		double y = readOrdinate(1);
+		double z = hasZ ? readOrdinate(2) : Double.NaN;
+		double m = hasM ? readOrdinate(3) : Double.NaN;
+		return new Point(x, y, z, m);
+	}
+
+	/**
+	 * Parses a list of points preceded by their count.
+	 * @return points
+	 */
+	private List<Point> parsePoints()
+	{
+		int count = readVarintAsInt();
+		List<Point> points = new ArrayList<Point>(count);
+		for (int i = 0; i < count; i++)
+		{
+			points.add(parsePoint());
+		}
+		return points;
+	}
+
+	/**
+	 * Parses a polygon as a list of rings preceded by their count.
+	 * @return {@link Polygon}
+	 */
+	private Polygon parsePolygon()
+	{
+		int count = readVarintAsInt();
+		List<LinearRing> rings = new ArrayList<LinearRing>(count);
+		for (int i = 0; i < count; i++)
+		{
+			rings.add(new LinearRing(parsePoints()));
+		}
+		return new Polygon(rings);
+	}
+
+	/**
+	 * Reads the number of parts of a multi geometry and their ids.
+	 * @param hasIds is there a list of ids?
+	 * @param ids collection to receive the ids (can be null)
+	 * @return number of parts
+	 */
+	private int readCount(boolean hasIds, @Nullable Collection<Long> ids)
+	{
+		int count = readVarintAsInt();
+		if (hasIds)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				long id = TwkbWriter.unzigzag(readVarint());
+				if (ids != null)
+				{
+					ids.add(id);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the header of a geometry including its optional size and bounding box and prepares the reading of its
+	 * coordinates.
+	 * @return metadata byte shifted by 4 bits combined with the geometry type in the lowest 4 bits
+	 */
+	private int readHeader()
+	{
+		int header = data.getNextByte();
+		int metadata = data.getNextByte();
+		int precisionZ = 0;
+		int precisionM = 0;
+		hasZ = false;
+		hasM = false;
+		// extended dimensions
+		if ((metadata & TwkbWriter.FLAG_EXTENDED_DIMENSIONS) != 0)
+		{
+			int dims = data.getNextByte();
+			hasZ = (dims & 0x01) != 0;
+			hasM = (dims & 0x02) != 0;
+			precisionZ = (dims >>> 2) & 0x07;
+			precisionM = (dims >>> 5) & 0x07;
+		}
+		// the size is not needed as the whole geometry is read, but it is written for empty geometries, too
+		if ((metadata & TwkbWriter.FLAG_SIZE) != 0)
+		{
+			readVarint();
+		}
+		if ((metadata & TwkbWriter.FLAG_EMPTY) != 0)
+		{
+			return (metadata << 4) | (header & 0x0F);
+		}
+		// skip the bounding box
+		if ((metadata & TwkbWriter.FLAG_BOUNDING_BOX) != 0)
+		{
+			int n = 2 * (2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0));
+			for (int i = 0; i < n; i++)
+			{
+				readVarint();
+			}
+		}
+		int precision = (int) TwkbWriter.unzigzag(header >>> 4);
+		precisions[0] = precision;
+		precisions[1] = precision;
+		precisions[2] = precisionZ;
+		precisions[3] = precisionM;
+		last[0] = 0;
+		last[1] = 0;
+		last[2] = 0;
+		last[3] = 0;
+		return (metadata << 4) | (header & 0x0F);
+	}
+
+	/**
+	 * Reads an ordinate stored as difference to the last value.
+	 * @param dimension index of the dimension
+	 * @return ordinate
+	 */
+	private double readOrdinate(int dimension)
+	{
+		long value = last[dimension] + TwkbWriter.unzigzag(readVarint());
+		last[dimension] = value;
+		return TwkbWriter.toDouble(value, precisions[dimension]);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 * @return value
+	 * @throws IllegalArgumentException if the value is too long
+	 */
+	private long readVarint()
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = data.getNextByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("malformed varint");
+	}
+
+	/**
+	 * Reads an unsigned variable length integer used as a count.
+	 * @return value
+	 * @throws IllegalArgumentException if the value is too large
+	 */
+	private int readVarintAsInt()
+	{
+		long value = readVarint();
+		if ((value < 0) || (value > Integer.MAX_VALUE))
+		{
+			throw new IllegalArgumentException("invalid count: " + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Visits all coordinates of a geometry including its header.
+	 * @param consumer {@link CoordinateConsumer}
+	 * @throws IllegalArgumentException for unknown geometry types
+	 */
+	private void visitGeometry(CoordinateConsumer consumer)
+	{
+		int header = readHeader();
+		int type = header & 0x0F;
+		int metadata = header >>> 4;
+		if ((metadata & TwkbWriter.FLAG_EMPTY) != 0)
+		{
+			return;
+		}
+		boolean hasIds = (metadata & TwkbWriter.FLAG_ID_LIST) != 0;
+		switch (type)
+		{
+			case Point.TYPE:
+				visitPoints(1, consumer);
+				break;
+			case LineString.TYPE:
+				visitPoints(readVarintAsInt(), consumer);
+				break;
+			case Polygon.TYPE:
+				visitPolygon(consumer);
+				break;
+			case MultiPoint.TYPE:
+				visitPoints(readCount(hasIds, null), consumer);
+				break;
+			case MultiLineString.TYPE:
+			{
+				int count = readCount(hasIds, null);
+				for (int i = 0; i < count; i++)
+				{
+					visitPoints(readVarintAsInt(), consumer);
+				}
+				break;
+			}
+			case MultiPolygon.TYPE:
+			{
+				int count = readCount(hasIds, null);
+				for (int i = 0; i < count; i++)
+				{
+					visitPolygon(consumer);
+				}
+				break;
+			}
+			case GeometryCollection.TYPE:
+			{
+				int count = readCount(hasIds, null);
+				for (int i = 0; i < count; i++)
+				{
+					// each geometry has its own header
+					visitGeometry(consumer);
+				}
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown Geometry Type: " + type);
+		}
+	}
+
+	/**
+	 * Visits the given number of coordinates.
+	 * @param count number of coordinates
+	 * @param consumer {@link CoordinateConsumer}
+	 */
+	private void visitPoints(int count, CoordinateConsumer consumer)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			double x = readOrdinate(0);
+			double y = readOrdinate(1);
+			double z = hasZ ? readOrdinate(2) : Double.NaN;
+			double m = hasM ? readOrdinate(3) : Double.NaN;
+			consumer.accept(x, y, z, m);
+		}
+	}
+
+	/**
+	 * Visits the coordinates of all rings of a polygon preceded by their count.
+	 * @param consumer {@link CoordinateConsumer}
+	 */
+	private void visitPolygon(CoordinateConsumer consumer)
+	{
+		int count = readVarintAsInt();
+		for (int i = 0; i < count; i++)
+		{
+			visitPoints(readVarintAsInt(), consumer);
+		}
+	}
+
+}
@@ -0,0 +1,557 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.binary;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+
+/**
+ * A writer for the Tiny WKB (TWKB) representation of geometries, which stores the coordinates as variable length
+ * integer differences with a fixed precision. It is compatible with {@code ST_AsTWKB} and only supports the linear
+ * geometry types.
+ * @see <a href="https://github.com/TWKB/Specification">TWKB specification</a>
+ * @author Sebastian Baumhekel
+ */
+public final class TwkbWriter
+{
+	/**
+	 * Metadata flag for a bounding box.
+	 */
+	static final int FLAG_BOUNDING_BOX = 0x01;
+	/**
+	 * Metadata flag for an empty geometry.
+	 */
+	static final int FLAG_EMPTY = 0x10;
+	/**
+	 * Metadata flag for extended dimensions (z values and/or measures).
+	 */
+	static final int FLAG_EXTENDED_DIMENSIONS = 0x08;
+	/**
+	 * Metadata flag for a list of ids of the parts of a multi geometry.
+	 */
+	static final int FLAG_ID_LIST = 0x04;
+	/**
+	 * Metadata flag for the size of the geometry.
+	 */
+	static final int FLAG_SIZE = 0x02;
+	/**
+	 * Powers of 10 for all supported precisions.
+	 */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8 };
+
+	private boolean boundingBoxIncluded;
+	private final int precision;
+	private final int precisionM;
+	private final int precisionZ;
+	private boolean sizeIncluded;
+
+	/**
+	 * Constructs an instance.
+	 * @param precision number of decimal digits of x/y coordinates (-8 to 7, negative values round to powers of 10)
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public TwkbWriter(int precision)
+	{
+		this(precision, 0, 0);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param precision number of decimal digits of x/y coordinates (-8 to 7, negative values round to powers of 10)
+	 * @param precisionZ number of decimal digits of z values (0 to 7)
+	 * @param precisionM number of decimal digits of measures (0 to 7)
+	 * @throws IllegalArgumentException if a precision is out of range
+	 */
+	public TwkbWriter(int precision, int precisionZ, int precisionM)
+	{
+		if ((precision < -8) || (precision > 7))
+		{
+			throw new IllegalArgumentException("precision has to be between -8 and 7: " + precision);
+		}
+		if ((precisionZ < 0) || (precisionZ > 7) || (precisionM < 0) || (precisionM > 7))
+		{
+			throw new IllegalArgumentException(
+					"precision of z values and measures has to be between 0 and 7: " + precisionZ + ", " + precisionM);
+		}
+		this.precision = precision;
+		this.precisionZ = precisionZ;
+		this.precisionM = precisionM;
+	}
+
+	/**
+	 * Gets the TWKB type of the given geometry.
+	 * @param geom {@link Geometry}
+	 * @return type
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	private static int getType(Geometry geom)
+	{
+		// standalone linear rings are written as line strings
+		if (geom instanceof LinearRing)
+		{
+			return LineString.TYPE;
+		}
+		int type = geom.getType();
+		if ((type < Point.TYPE) || (type > GeometryCollection.TYPE))
+		{
+			throw new IllegalArgumentException("TWKB does not support geometry type: " + geom.getClass().getSimpleName());
+		}
+		return type;
+	}
+
+	/**
+	 * Converts a stored integer back to its value.
+	 * @param value integer
+	 * @param precision number of decimal digits
+	 * @return value
+	 */
+	static double toDouble(long value, int precision)
+	{
+		return (precision >= 0) ? value / POW10[precision] : value * POW10[-precision];
+	}
+
+	/**
+	 * Converts a value to the integer to be stored.
+	 * @param value value
+	 * @param precision number of decimal digits
+	 * @return integer
+	 */
+	static long toLong(double value, int precision)
+	{
+		return Math.round((precision >= 0) ? value * POW10[precision] : value / POW10[-precision]);
+	}
+
+	/**
+	 * Decodes a zigzag encoded value.
+	 * @param value encoded value
+	 * @return value
+	 */
+	static long unzigzag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Extends the bounds of a dimension by the given value.
+	 * @param value value
+	 * @param dimension index of the dimension
+	 * @param min minimum values
+	 * @param max maximum values
+	 */
+	private static void updateBounds(long value, int dimension, long[] min, long[] max)
+	{
+		if (value < min[dimension])
+		{
+			min[dimension] = value;
+		}
+		if (value > max[dimension])
+		{
+			max[dimension] = value;
+		}
+	}
+
+	/**
+	 * Writes an ordinate as difference to the last value.
+	 * @param value value
+	 * @param dimension index of the dimension
+	 * @param last last written coordinate values
+	 * @param dest writer
+	 */
+	private static void writeOrdinate(long value, int dimension, long[] last, ValueSetter dest)
+	{
+		writeVarint(zigzag(value - last[dimension]), dest);
+		last[dimension] = value;
+	}
+
+	/**
+	 * Writes an unsigned variable length integer.
+	 * @param value value
+	 * @param dest writer
+	 */
+	private static void writeVarint(long value, ValueSetter dest)
+	{
+		long v = value;
+		while ((v & ~0x7FL) != 0)
+		{
+			dest.setByte((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		dest.setByte((byte) v);
+	}
+
+	/**
+	 * Encodes a signed value so small negative values result in small positive values.
+	 * @param value value
+	 * @return encoded value
+	 */
+	static long zigzag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Gets the number of decimal digits of x/y coordinates.
+	 * @return precision
+	 */
+	public int getPrecision()
+	{
+		return precision;
+	}
+
+	/**
+	 * Gets the number of decimal digits of measures.
+	 * @return precision
+	 */
+	public int getPrecisionM()
+	{
+		return precisionM;
+	}
+
+	/**
+	 * Gets the number of decimal digits of z values.
+	 * @return precision
+	 */
+	public int getPrecisionZ()
+	{
+		return precisionZ;
+	}
+
+	/**
+	 * Checks if the bounding box is written for every geometry.
+	 * @return true on success, else false
+	 */
+	public boolean isBoundingBoxIncluded()
+	{
+		return boundingBoxIncluded;
+	}
+
+	/**
+	 * Checks if the size in bytes is written for every geometry.
+	 * @return true on success, else false
+	 */
+	public boolean isSizeIncluded()
+	{
+		return sizeIncluded;
+	}
+
+	/**
+	 * Sets if the bounding box should be written for every geometry.
+	 * @param boundingBoxIncluded true to write the bounding box
+	 */
+	public void setBoundingBoxIncluded(boolean boundingBoxIncluded)
+	{
+		this.boundingBoxIncluded = boundingBoxIncluded;
+	}
+
+	/**
+	 * Sets if the size in bytes should be written for every geometry, which allows skipping geometries quickly.
+	 * @param sizeIncluded true to write the size
+	 */
+	public void setSizeIncluded(boolean sizeIncluded)
+	{
+		this.sizeIncluded = sizeIncluded;
+	}
+
+	/**
+	 * Writes a geometry.
+	 * @param geom the geometry to be written
+	 * @param ids ids of the parts of a multi geometry (can be null)
+	 * @param dest the value setting to be used for writing
+	 * @throws IllegalArgumentException if the geometry type is not supported or the ids do not match the geometry
+	 */
+	public void write(Geometry geom, @Nullable long[] ids, ValueSetter dest)
+	{
+		int type = getType(geom);
+		boolean empty = geom.isEmpty();
+		if ((ids != null) && (!(geom instanceof MultiGeometry) || (ids.length != ((MultiGeometry<?>) geom).size())))
+		{
+			throw new IllegalArgumentException("ids have to match the parts of a multi geometry");
+		}
+		boolean z = geom.is3d();
+		boolean m = geom.hasMeasure();
+		int metadata = 0;
+		if (boundingBoxIncluded && !empty)
+		{
+			metadata |= FLAG_BOUNDING_BOX;
+		}
+		if (sizeIncluded)
+		{
+			metadata |= FLAG_SIZE;
+		}
+		if ((ids != null) && !empty)
+		{
+			metadata |= FLAG_ID_LIST;
+		}
+		if (z || m)
+		{
+			metadata |= FLAG_EXTENDED_DIMENSIONS;
+		}
+		if (empty)
+		{
+			metadata |= FLAG_EMPTY;
+		}
+		dest.setByte((byte) (type | (zigzag(precision) << 4)));
+		dest.setByte((byte) metadata);
+		if (z || m)
+		{
+			dest.setByte((byte) ((z ? 0x01 : 0) | (m ? 0x02 : 0) | (precisionZ << 2) | (precisionM << 5)));
+		}
+		if (empty)
+		{
+			if (sizeIncluded)
+			{
+				writeVarint(0, dest);
+			}
+			return;
+		}
+		if (!sizeIncluded && !boundingBoxIncluded)
+		{
+			writeBody(geom, type, ids, dest, z, m);
+			return;
+		}
+		// the size has to be known before writing the remaining data
+		BinaryValueSetter body = new BinaryValueSetter();
+		if (boundingBoxIncluded)
+		{
+			writeBoundingBox(geom, body, z, m);
+		}
+		writeBody(geom, type, ids, body, z, m);
+		byte[] data = body.getValue();
+		if (sizeIncluded)
+		{
+			writeVarint(data.length, dest);
+		}
+		for (byte b : data)
+		{
+			dest.setByte(b);
+		}
+	}
+
+	/**
+	 * Writes a geometry.
+	 * @param geom the geometry to be written
+	 * @return byte array containing the encoded geometry
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	public byte[] writeBinary(Geometry geom)
+	{
+		return writeBinary(geom, null);
+	}
+
+	/**
+	 * Writes a geometry.
+	 * @param geom the geometry to be written
+	 * @param ids ids of the parts of a multi geometry (can be null)
+	 * @return byte array containing the encoded geometry
+	 * @throws IllegalArgumentException if the geometry type is not supported or the ids do not match the geometry
+	 */
+	public byte[] writeBinary(Geometry geom, @Nullable long[] ids)
+	{
+		BinaryValueSetter bytes = new BinaryValueSetter();
+		write(geom, ids, bytes);
+		return bytes.getValue();
+	}
+
+	/**
+	 * Writes the contents of a geometry after its header.
+	 * @param geom the geometry to be written
+	 * @param type TWKB type
+	 * @param ids ids of the parts of a multi geometry (can be null)
+	 * @param dest writer
+	 * @param z write z values?
+	 * @param m write measures?
+	 */
+	private void writeBody(Geometry geom, int type, @Nullable long[] ids, ValueSetter dest, boolean z, boolean m)
+	{
+		// coordinates are written as differences to the last one throughout the whole geometry
+		long[] last = new long[4];
+		switch (type)
+		{
+			case Point.TYPE:
+				writePoint((Point) geom, last, dest, z, m);
+				break;
+			case LineString.TYPE:
+				writePoints((LineString) geom, last, dest, z, m);
+				break;
+			case Polygon.TYPE:
+				writePolygon((Polygon) geom, last, dest, z, m);
+				break;
+			default:
+			{
+				MultiGeometry<?> mg = (MultiGeometry<?>) geom;
+				writeVarint(mg.size(), dest);
+				if (ids != null)
+				{
+					for (long id : ids)
+					{
+						writeVarint(zigzag(id), dest);
+					}
+				}
+				for (Geometry g : mg.getGeometries())
+				{
+					if (type == MultiPoint.TYPE)
+					{
+						writePoint((Point) g, last, dest, z, m);
+					}
+					else if (type == MultiLineString.TYPE)
+					{
+						writePoints((LineString) g, last, dest, z, m);
+					}
+					else if (type == MultiPolygon.TYPE)
+					{
+						writePolygon((Polygon) g, last, dest, z, m);
+					}
+					else
+					{
+						// each geometry of a collection has its own header
+						write(g, null, dest);
+					}
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes the bounding box of a geometry.
+	 * @param geom {@link Geometry}
+	 * @param dest writer
+	 * @param z write z values?
+	 * @param m write measures?
+	 */
+	private void writeBoundingBox(Geometry geom, ValueSetter dest, boolean z, boolean m)
+	{
+		long[] min = new long[4];
+		long[] max = new long[4];
+		Arrays.fill(min, Long.MAX_VALUE);
+		Arrays.fill(max, Long.MIN_VALUE);
+		geom.forEachCoordinate((x, y, vz, vm) -> {
+			updateBounds(toLong(x, precision), 0, min, max);
+			updateBounds(toLong(y, precision), 1, min, max);
+			if (z)
+			{
+				updateBounds(toLong(vz, precisionZ), 2, min, max);
+			}
+			if (m)
+			{
+				updateBounds(toLong(vm, precisionM), 3, min, max);
+			}
+		});
+		for (int i = 0; i < 4; i++)
+		{
+			if ((i < 2) || ((i == 2) && z) || ((i == 3) && m))
+			{
+				writeVarint(zigzag(min[i]), dest);
+				writeVarint(zigzag(max[i] - min[i]), dest);
+			}
+		}
+	}
+
+	/**
+	 * Writes a geometry as hex encoded string.
+	 * @param geom the geometry to be written
+	 * @return String containing the hex encoded geometry
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	public String writeHexed(Geometry geom)
+	{
+		StringValueSetter bytes = new StringValueSetter();
+		write(geom, null, bytes);
+		return bytes.getValue();
+	}
+
+	/**
+	 * Writes the coordinates of a point.
+	 * @param p {@link Point}
+	 * @param last last written coordinate values
+	 * @param dest writer
+	 * @param z write z values?
+	 * @param m write measures?
+	 */
+	private void writePoint(Point p, long[] last, ValueSetter dest, boolean z, boolean m)
+	{
+		writeOrdinate(toLong(p.getX(), precision), 0, last, dest);
+		writeOrdinate(toLong(p.getY(), precision), 1, last, dest);
+		if (z)
+		{
+			writeOrdinate(toLong(p.getZ(), precisionZ), 2, last, dest);
+		}
+		if (m)
+		{
+			writeOrdinate(toLong(p.getM(), precisionM), 3, last, dest);
+		}
+	}
+
+	/**
+	 * Writes the points of a line preceded by their count.
+	 * @param ls {@link LineString}
+	 * @param last last written coordinate values
+	 * @param dest writer
+	 * @param z write z values?
+	 * @param m write measures?
+	 */
+	private void writePoints(LineString ls, long[] last, ValueSetter dest, boolean z, boolean m)
+	{
+		writeVarint(ls.getNumberOfCoordinates(), dest);
+		for (Point p : ls.getCoordinates())
+		{
+			writePoint(p, last, dest, z, m);
+		}
+	}
+
+	/**
+	 * Writes the rings of a polygon preceded by their count.
+	 * @param poly {@link Polygon}
+	 * @param last last written coordinate values
+	 * @param dest writer
+	 * @param z write z values?
+	 * @param m write measures?
+	 */
+	private void writePolygon(Polygon poly, long[] last, ValueSetter dest, boolean z, boolean m)
+	{
+		if (poly.isEmpty())
+		{
+			writeVarint(0, dest);
+			return;
+		}
+		writeVarint(1 + poly.getNumberOfRings(), dest);
+		writePoints(poly.getOuterRing(), last, dest, z, m);
+		for (LinearRing ring : poly.getRings())
+		{
+			writePoints(ring, last, dest, z, m);
+		}
+	}
+
+}
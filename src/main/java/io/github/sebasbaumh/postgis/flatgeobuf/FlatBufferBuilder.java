@@ -0,0 +1,361 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.flatgeobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal builder for the FlatBuffers format. Like the reference implementation, the buffer is built from back to
+ * front, so all referenced objects (strings, vectors and tables) have to be created before the table referencing them.
+ * @author Sebastian Baumhekel
+ */
+final class FlatBufferBuilder
+{
+	private byte[] buffer = new byte[256];
+	/**
+	 * Largest alignment of any written value.
+	 */
+	private int minAlign = 1;
+	/**
+	 * Offset of the current table.
+	 */
+	private int objectStart;
+	/**
+	 * Free space at the start of the buffer.
+	 */
+	private int space = buffer.length;
+	/**
+	 * Offsets of the fields of the current table (0 if not set).
+	 */
+	private int[] vtable = new int[16];
+	private int vtableSize;
+
+	/**
+	 * Adds a boolean field to the current table.
+	 * @param slot index of the field
+	 * @param value value
+	 */
+	void addBoolean(int slot, boolean value)
+	{
+		addByte(slot, value ? 1 : 0);
+	}
+
+	/**
+	 * Adds a byte field to the current table.
+	 * @param slot index of the field
+	 * @param value value
+	 */
+	void addByte(int slot, int value)
+	{
+		prep(1, 0);
+		buffer[--space] = (byte) value;
+		vtable[slot] = offset();
+	}
+
+	/**
+	 * Adds an int field to the current table.
+	 * @param slot index of the field
+	 * @param value value
+	 */
+	void addInt(int slot, int value)
+	{
+		prep(4, 0);
+		putInt(value);
+		vtable[slot] = offset();
+	}
+
+	/**
+	 * Adds a long field to the current table.
+	 * @param slot index of the field
+	 * @param value value
+	 */
+	void addLong(int slot, long value)
+	{
+		prep(8, 0);
+		putLong(value);
+		vtable[slot] = offset();
+	}
+
+	/**
+	 * Adds an offset to an already written object.
+	 * @param off offset of the object
+	 */
+	private void addOffset(int off)
+	{
+		prep(4, 0);
+		putInt(offset() - off + 4);
+	}
+
+	/**
+	 * Adds a field referencing an already written object to the current table.
+	 * @param slot index of the field
+	 * @param off offset of the object
+	 */
+	void addOffset(int slot, int off)
+	{
+		addOffset(off);
+		vtable[slot] = offset();
+	}
+
+	/**
+	 * Adds a short field to the current table.
+	 * @param slot index of the field
+	 * @param value value
+	 */
+	void addShort(int slot, int value)
+	{
+		putShort(value);
+		vtable[slot] = offset();
+	}
+
+	/**
+	 * Creates a vector of bytes.
+	 * @param values values
+	 * @param length number of values
+	 * @return offset of the vector
+	 */
+	int createByteVector(byte[] values, int length)
+	{
+		prep(4, length);
+		space -= length;
+		System.arraycopy(values, 0, buffer, space, length);
+		putInt(length);
+		return offset();
+	}
+
+	/**
+	 * Creates a vector of doubles.
+	 * @param values values
+	 * @param length number of values
+	 * @return offset of the vector
+	 */
+	int createDoubleVector(double[] values, int length)
+	{
+		prep(4, 8 * length);
+		prep(8, 8 * length);
+		for (int i = length - 1; i >= 0; i--)
+		{
+			putLong(Double.doubleToRawLongBits(values[i]));
+		}
+		putInt(length);
+		return offset();
+	}
+
+	/**
+	 * Creates a vector of ints.
+	 * @param values values
+	 * @param length number of values
+	 * @return offset of the vector
+	 */
+	int createIntVector(int[] values, int length)
+	{
+		prep(4, 4 * length);
+		for (int i = length - 1; i >= 0; i--)
+		{
+			putInt(values[i]);
+		}
+		putInt(length);
+		return offset();
+	}
+
+	/**
+	 * Creates a vector of offsets to already written objects.
+	 * @param offsets offsets of the objects
+	 * @param length number of offsets
+	 * @return offset of the vector
+	 */
+	int createOffsetVector(int[] offsets, int length)
+	{
+		prep(4, 4 * length);
+		for (int i = length - 1; i >= 0; i--)
+		{
+			addOffset(offsets[i]);
+		}
+		putInt(length);
+		return offset();
+	}
+
+	/**
+	 * Creates a string.
+	 * @param s string
+	 * @return offset of the string
+	 */
+	int createString(String s)
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		// strings are zero terminated
+		prep(4, bytes.length + 1);
+		buffer[--space] = 0;
+		space -= bytes.length;
+		System.arraycopy(bytes, 0, buffer, space, bytes.length);
+		putInt(bytes.length);
+		return offset();
+	}
+
+	/**
+	 * Finishes the current table by writing its vtable.
+	 * @return offset of the table
+	 */
+	int endTable()
+	{
+		// placeholder for the offset to the vtable
+		prep(4, 0);
+		putInt(0);
+		int objectOffset = offset();
+		// omit trailing fields that are not set
+		int n = vtableSize;
+		while ((n > 0) && (vtable[n - 1] == 0))
+		{
+			n--;
+		}
+		for (int i = n - 1; i >= 0; i--)
+		{
+			putShort((vtable[i] != 0) ? objectOffset - vtable[i] : 0);
+		}
+		putShort(objectOffset - objectStart);
+		putShort((n + 2) * 2);
+		int vtableOffset = offset();
+		int pos = buffer.length - objectOffset;
+		int value = vtableOffset - objectOffset;
+		buffer[pos] = (byte) value;
+		buffer[pos + 1] = (byte) (value >>> 8);
+		buffer[pos + 2] = (byte) (value >>> 16);
+		buffer[pos + 3] = (byte) (value >>> 24);
+		return objectOffset;
+	}
+
+	/**
+	 * Finishes the buffer with the given root table and prefixes it with its size.
+	 * @param root offset of the root table
+	 * @return the buffer
+	 */
+	byte[] finishSizePrefixed(int root)
+	{
+		prep(minAlign, 8);
+		addOffset(root);
+		prep(4, 0);
+		putInt(offset());
+		return Arrays.copyOfRange(buffer, space, buffer.length);
+	}
+
+	/**
+	 * Gets the current offset from the end of the buffer.
+	 * @return offset
+	 */
+	private int offset()
+	{
+		return buffer.length - space;
+	}
+
+	/**
+	 * Prepares writing a value by ensuring there is enough space and the value is aligned correctly.
+	 * @param size size of the value (and its alignment)
+	 * @param additional number of bytes that will be written before the value
+	 */
+	private void prep(int size, int additional)
+	{
+		if (size > minAlign)
+		{
+			minAlign = size;
+		}
+		int alignSize = (-(offset() + additional)) & (size - 1);
+		int needed = alignSize + size + additional;
+		if (space < needed)
+		{
+			// grow the buffer keeping the data at its end
+			int used = offset();
+			int capacity = Math.max(buffer.length * 2, used + needed);
+			byte[] newBuffer = new byte[capacity];
+			System.arraycopy(buffer, space, newBuffer, capacity - used, used);
+			buffer = newBuffer;
+			space = capacity - used;
+		}
+		// padding
+		for (int i = 0; i < alignSize; i++)
+		{
+			buffer[--space] = 0;
+		}
+	}
+
+	/**
+	 * Writes an int value.
+	 * @param value value
+	 */
+	private void putInt(int value)
+	{
+		space -= 4;
+		buffer[space] = (byte) value;
+		buffer[space + 1] = (byte) (value >>> 8);
+		buffer[space + 2] = (byte) (value >>> 16);
+		buffer[space + 3] = (byte) (value >>> 24);
+	}
+
+	/**
+	 * Writes a long value.
+	 * @param value value
+	 */
+	private void putLong(long value)
+	{
+		putInt((int) (value >>> 32));
+		putInt((int) value);
+	}
+
+	/**
+	 * Writes a short value.
+	 * @param value value
+	 */
+	private void putShort(int value)
+	{
+		prep(2, 0);
+		space -= 2;
+		buffer[space] = (byte) value;
+		buffer[space + 1] = (byte) (value >>> 8);
+	}
+
+	/**
+	 * Resets the builder, so it can be used for a new buffer.
+	 */
+	void reset()
+	{
+		space = buffer.length;
+		minAlign = 1;
+		vtableSize = 0;
+	}
+
+	/**
+	 * Starts a new table.
+	 * @param numFields number of fields of the table
+	 */
+	void startTable(int numFields)
+	{
+		if (vtable.length < numFields)
+		{
+			vtable = new int[numFields];
+		}
+		Arrays.fill(vtable, 0, numFields, 0);
+		vtableSize = numFields;
+		objectStart = offset();
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.flatgeobuf;
+
+/**
+ * Constants and helpers shared by the FlatGeobuf reader and writer.
+ * @author Sebastian Baumhekel
+ */
+final class FlatGeobuf
+{
+	/**
+	 * Column type for booleans.
+	 */
+	static final int COLUMN_BOOL = 2;
+	/**
+	 * Column type for 64 bit floating point numbers.
+	 */
+	static final int COLUMN_DOUBLE = 10;
+	/**
+	 * Column type for 32 bit floating point numbers.
+	 */
+	static final int COLUMN_FLOAT = 9;
+	/**
+	 * Column type for 32 bit integers.
+	 */
+	static final int COLUMN_INT = 5;
+	/**
+	 * Column type for 64 bit integers.
+	 */
+	static final int COLUMN_LONG = 7;
+	/**
+	 * Column type for strings.
+	 */
+	static final int COLUMN_STRING = 11;
+	/**
+	 * Default number of children of a node of the index.
+	 */
+	static final int DEFAULT_NODE_SIZE = 16;
+	/**
+	 * Slot of the geometry of a feature.
+	 */
+	static final int FEATURE_GEOMETRY = 0;
+	/**
+	 * Slot of the properties of a feature.
+	 */
+	static final int FEATURE_PROPERTIES = 1;
+	/**
+	 * Slot of the end indices of the parts of a geometry.
+	 */
+	static final int GEOMETRY_ENDS = 0;
+	/**
+	 * Slot of the measures of a geometry.
+	 */
+	static final int GEOMETRY_M = 3;
+	/**
+	 * Slot of the sub geometries of a geometry.
+	 */
+	static final int GEOMETRY_PARTS = 7;
+	/**
+	 * Slot of the type of a geometry.
+	 */
+	static final int GEOMETRY_TYPE = 6;
+	/**
+	 * Slot of the x/y coordinates of a geometry.
+	 */
+	static final int GEOMETRY_XY = 1;
+	/**
+	 * Slot of the z values of a geometry.
+	 */
+	static final int GEOMETRY_Z = 2;
+	/**
+	 * Slot of the columns of the header.
+	 */
+	static final int HEADER_COLUMNS = 7;
+	/**
+	 * Slot of the coordinate reference system of the header.
+	 */
+	static final int HEADER_CRS = 10;
+	/**
+	 * Slot of the envelope of the header.
+	 */
+	static final int HEADER_ENVELOPE = 1;
+	/**
+	 * Slot of the number of features of the header.
+	 */
+	static final int HEADER_FEATURES_COUNT = 8;
+	/**
+	 * Slot of the geometry type of the header.
+	 */
+	static final int HEADER_GEOMETRY_TYPE = 2;
+	/**
+	 * Slot of the measure flag of the header.
+	 */
+	static final int HEADER_HAS_M = 4;
+	/**
+	 * Slot of the z flag of the header.
+	 */
+	static final int HEADER_HAS_Z = 3;
+	/**
+	 * Slot of the node size of the index of the header.
+	 */
+	static final int HEADER_INDEX_NODE_SIZE = 9;
+	/**
+	 * Slot of the name of the header.
+	 */
+	static final int HEADER_NAME = 0;
+	/**
+	 * Magic bytes at the start of a file.
+	 */
+	static final byte[] MAGIC = { 0x66, 0x67, 0x62, 0x03, 0x66, 0x67, 0x62, 0x00 };
+	/**
+	 * Size of a node of the index in bytes (bounding box and offset).
+	 */
+	static final int NODE_ITEM_SIZE = 40;
+
+	// prevent instantiating this class
+	@Deprecated
+	private FlatGeobuf()
+	{
+	}
+
+	/**
+	 * Calculates the ranges of the levels of a packed Hilbert R-tree. The leaves come first and the root last, while the
+	 * nodes of the root level are stored first in the tree itself.
+	 * @param numItems number of items
+	 * @param nodeSize number of children of a node
+	 * @return start and end index of each level, starting with the leaves
+	 */
+	static long[][] calcLevelBounds(long numItems, int nodeSize)
+	{
+		long[] levelNumNodes = new long[64];
+		int numLevels = 0;
+		long n = numItems;
+		long numNodes = n;
+		levelNumNodes[numLevels++] = n;
+		do
+		{
+			n = (n + nodeSize - 1) / nodeSize;
+			numNodes += n;
+			levelNumNodes[numLevels++] = n;
+		}
+		while (n != 1);
+		long[][] levelBounds = new long[numLevels][];
+		n = numNodes;
+		for (int i = 0; i < numLevels; i++)
+		{
+			long start = n - levelNumNodes[i];
+			levelBounds[i] = new long[] { start, start + levelNumNodes[i] };
+			n -= levelNumNodes[i];
+		}
+		return levelBounds;
+	}
+
+	/**
+	 * Calculates the position of the given coordinates on a Hilbert curve.
+	 * @param x x coordinate (16 bit)
+	 * @param y y coordinate (16 bit)
+	 * @return position (32 bit unsigned)
+	 */
+	static long hilbert(int x, int y)
+	{
+		int a = x ^ y;
+		int b = 0xFFFF ^ a;
+		int c = 0xFFFF ^ (x | y);
+		int d = x & (y ^ 0xFFFF);
+		int aa = a | (b >>> 1);
+		int bb = (a >>> 1) ^ a;
+		int cc = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+		int dd = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+		a = aa;
+		b = bb;
+		c = cc;
+		d = dd;
+		aa = (a & (a >>> 2)) ^ (b & (b >>> 2));
+		bb = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+		cc ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+		dd ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+		a = aa;
+		b = bb;
+		c = cc;
+		d = dd;
+		aa = (a & (a >>> 4)) ^ (b & (b >>> 4));
+		bb = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+		cc ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+		dd ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+		a = aa;
+		b = bb;
+		c = cc;
+		d = dd;
+		cc ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+		dd ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+		a = cc ^ (cc >>> 1);
+		b = dd ^ (dd >>> 1);
+		int i0 = x ^ y;
+		int i1 = b | (0xFFFF ^ (i0 | a));
+		return ((interleave(i1) << 1) | interleave(i0)) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Spreads the lower 16 bits of the given value to the even bits.
+	 * @param value value
+	 * @return spread value
+	 */
+	private static long interleave(int value)
+	{
+		int v = value;
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+		return v & 0xFFFFFFFFL;
+	}
+
+}
@@ -0,0 +1,678 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.flatgeobuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CircularString;
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.CurvePolygon;
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A reader for FlatGeobuf files. The file is memory-mapped, so a query using the packed Hilbert R-tree of the file only
+ * touches the nodes of the index and the features within the queried bounding box.
+ * @see <a href="https://flatgeobuf.org/">FlatGeobuf</a>
+ * @author Sebastian Baumhekel
+ */
+public final class FlatGeobufReader
+{
+	private final ByteBuffer buffer;
+	private final List<String> columnNames;
+	private final int[] columnTypes;
+	private final Envelope envelope;
+	private final int featuresOffset;
+	private final int geometryType;
+	private final int indexOffset;
+	/**
+	 * Ranges of the levels of the index starting with the leaves (null if there is no index).
+	 */
+	@Nullable
+	private final long[][] levelBounds;
+	private final String name;
+	private final int nodeSize;
+	private final long numFeatures;
+	private final int srid;
+
+	/**
+	 * Opens the given file.
+	 * @param file file
+	 * @throws IOException if the file cannot be read or is not a valid FlatGeobuf file
+	 */
+	public FlatGeobufReader(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("file is too large to be mapped: " + file);
+			}
+			// the mapping stays valid after closing the channel
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if ((buffer.limit() < 12) || (buffer.get(0) != FlatGeobuf.MAGIC[0]) || (buffer.get(1) != FlatGeobuf.MAGIC[1])
+				|| (buffer.get(2) != FlatGeobuf.MAGIC[2]) || (buffer.get(3) != FlatGeobuf.MAGIC[3]))
+		{
+			throw new IOException("not a FlatGeobuf file: " + file);
+		}
+		int headerSize = buffer.getInt(8);
+		int header = indirect(12);
+		int nameField = field(header, FlatGeobuf.HEADER_NAME);
+		this.name = (nameField != 0) ? readString(indirect(nameField)) : "";
+		int envelopeField = field(header, FlatGeobuf.HEADER_ENVELOPE);
+		if (envelopeField != 0)
+		{
+			int v = indirect(envelopeField) + 4;
+			this.envelope = new Envelope(buffer.getDouble(v), buffer.getDouble(v + 8), buffer.getDouble(v + 16),
+					buffer.getDouble(v + 24));
+		}
+		else
+		{
+			this.envelope = Envelope.EMPTY;
+		}
+		int typeField = field(header, FlatGeobuf.HEADER_GEOMETRY_TYPE);
+		this.geometryType = (typeField != 0) ? buffer.get(typeField) & 0xFF : 0;
+		// columns
+		int columnsField = field(header, FlatGeobuf.HEADER_COLUMNS);
+		if (columnsField != 0)
+		{
+			int v = indirect(columnsField);
+			int n = buffer.getInt(v);
+			List<String> names = new ArrayList<String>(n);
+			this.columnTypes = new int[n];
+			for (int i = 0; i < n; i++)
+			{
+				int column = indirect(v + 4 + 4 * i);
+				names.add(readString(indirect(field(column, 0))));
+				int columnTypeField = field(column, 1);
+				columnTypes[i] = (columnTypeField != 0) ? buffer.get(columnTypeField) & 0xFF : 0;
+			}
+			this.columnNames = Collections.unmodifiableList(names);
+		}
+		else
+		{
+			this.columnTypes = new int[0];
+			this.columnNames = Collections.emptyList();
+		}
+		int countField = field(header, FlatGeobuf.HEADER_FEATURES_COUNT);
+		this.numFeatures = (countField != 0) ? buffer.getLong(countField) : 0;
+		int nodeSizeField = field(header, FlatGeobuf.HEADER_INDEX_NODE_SIZE);
+		this.nodeSize = (nodeSizeField != 0) ? buffer.getShort(nodeSizeField) & 0xFFFF : FlatGeobuf.DEFAULT_NODE_SIZE;
+		int crsField = field(header, FlatGeobuf.HEADER_CRS);
+		int codeField = (crsField != 0) ? field(indirect(crsField), 1) : 0;
+		this.srid = (codeField != 0) ? buffer.getInt(codeField) : Geometry.UNKNOWN_SRID;
+		// index and features follow the header
+		this.indexOffset = 12 + headerSize;
+		if ((nodeSize > 0) && (numFeatures > 0))
+		{
+			this.levelBounds = FlatGeobuf.calcLevelBounds(numFeatures, nodeSize);
+			this.featuresOffset = (int) (indexOffset + levelBounds[0][1] * FlatGeobuf.NODE_ITEM_SIZE);
+		}
+		else
+		{
+			this.levelBounds = null;
+			this.featuresOffset = indexOffset;
+		}
+	}
+
+	/**
+	 * Checks the type of a part of a geometry.
+	 * @param clazz expected class
+	 * @param geom part
+	 * @return part
+	 * @throws IllegalArgumentException if the part is of the wrong type
+	 */
+	private static <T extends Geometry> T checkPart(Class<T> clazz, Geometry geom)
+	{
+		if (!clazz.isInstance(geom))
+		{
+			throw new IllegalArgumentException(
+					"expected: " + clazz.getSimpleName() + " got: " + geom.getClass().getSimpleName());
+		}
+		return clazz.cast(geom);
+	}
+
+	/**
+	 * Decodes a geometry table.
+	 * @param table position of the table
+	 * @param defaultType type of the geometry if it is not stored in the table
+	 * @return {@link Geometry}
+	 * @throws IllegalArgumentException if the geometry is invalid
+	 */
+	private Geometry decodeGeometry(int table, int defaultType)
+	{
+		int typeField = field(table, FlatGeobuf.GEOMETRY_TYPE);
+		int type = (typeField != 0) ? buffer.get(typeField) & 0xFF : defaultType;
+		int xyField = field(table, FlatGeobuf.GEOMETRY_XY);
+		int xy = 0;
+		int count = 0;
+		if (xyField != 0)
+		{
+			xy = indirect(xyField);
+			count = buffer.getInt(xy) / 2;
+			xy += 4;
+		}
+		int zField = field(table, FlatGeobuf.GEOMETRY_Z);
+		int z = (zField != 0) ? indirect(zField) + 4 : 0;
+		int mField = field(table, FlatGeobuf.GEOMETRY_M);
+		int m = (mField != 0) ? indirect(mField) + 4 : 0;
+		switch (type)
+		{
+			case Point.TYPE:
+				return (count == 0) ? new Point() : readPoint(xy, z, m, 0);
+			case LineString.TYPE:
+				return new LineString(readPoints(xy, z, m, 0, count));
+			case CircularString.TYPE:
+				return new CircularString(readPoints(xy, z, m, 0, count));
+			case MultiPoint.TYPE:
+				return new MultiPoint(readPoints(xy, z, m, 0, count));
+			case Polygon.TYPE:
+			case MultiLineString.TYPE:
+			{
+				// parts are separated by their end indices
+				int[] ends = { count };
+				int endsField = field(table, FlatGeobuf.GEOMETRY_ENDS);
+				if (endsField != 0)
+				{
+					int v = indirect(endsField);
+					ends = new int[buffer.getInt(v)];
+					for (int i = 0; i < ends.length; i++)
+					{
+						ends[i] = buffer.getInt(v + 4 + 4 * i);
+					}
+				}
+				if (type == Polygon.TYPE)
+				{
+					List<LinearRing> rings = new ArrayList<LinearRing>(ends.length);
+					for (int i = 0; (i < ends.length) && (count > 0); i++)
+					{
+						rings.add(new LinearRing(readPoints(xy, z, m, (i > 0) ? ends[i - 1] : 0, ends[i])));
+					}
+					return new Polygon(rings);
+				}
+				MultiLineString mls = new MultiLineString();
+				for (int i = 0; (i < ends.length) && (count > 0); i++)
+				{
+					mls.add(new LineString(readPoints(xy, z, m, (i > 0) ? ends[i - 1] : 0, ends[i])));
+				}
+				return mls;
+			}
+			default:
+				break;
+		}
+		// geometries consisting of other geometries
+		List<Geometry> parts = new ArrayList<Geometry>();
+		int partsField = field(table, FlatGeobuf.GEOMETRY_PARTS);
+		if (partsField != 0)
+		{
+			int v = indirect(partsField);
+			int n = buffer.getInt(v);
+			for (int i = 0; i < n; i++)
+			{
+				parts.add(decodeGeometry(indirect(v + 4 + 4 * i),
+						(type == MultiPolygon.TYPE) ? Polygon.TYPE : LineString.TYPE));
+			}
+		}
+		switch (type)
+		{
+			case MultiPolygon.TYPE:
+			{
+				MultiPolygon mp = new MultiPolygon();
+				for (Geometry part : parts)
+				{
+					mp.add(checkPart(Polygon.class, part));
+				}
+				return mp;
+			}
+			case GeometryCollection.TYPE:
+				return new GeometryCollection(parts);
+			case CompoundCurve.TYPE:
+			{
+				CompoundCurve cc = new CompoundCurve();
+				for (Geometry part : parts)
+				{
+					cc.add(checkPart(LineString.class, part));
+				}
+				return cc;
+			}
+			case CurvePolygon.TYPE:
+			{
+				List<Curve> rings = new ArrayList<Curve>();
+				for (Geometry part : parts)
+				{
+					rings.add(checkPart(Curve.class, part));
+				}
+				return new CurvePolygon(rings);
+			}
+			case MultiCurve.TYPE:
+			{
+				MultiCurve mc = new MultiCurve();
+				for (Geometry part : parts)
+				{
+					mc.add(checkPart(Curve.class, part));
+				}
+				return mc;
+			}
+			case MultiSurface.TYPE:
+			{
+				MultiSurface ms = new MultiSurface();
+				for (Geometry part : parts)
+				{
+					ms.add(checkPart(PolygonBase.class, part));
+				}
+				return ms;
+			}
+			default:
+				throw new IllegalArgumentException("unsupported geometry type: " + type);
+		}
+	}
+
+	/**
+	 * Gets the position of a field of a table.
+	 * @param table position of the table
+	 * @param slot index of the field
+	 * @return position of the field or 0 if it is not set
+	 */
+	private int field(int table, int slot)
+	{
+		int vtable = table - buffer.getInt(table);
+		int vtableSize = buffer.getShort(vtable) & 0xFFFF;
+		int o = 4 + 2 * slot;
+		if (o >= vtableSize)
+		{
+			return 0;
+		}
+		int offset = buffer.getShort(vtable + o) & 0xFFFF;
+		return (offset != 0) ? table + offset : 0;
+	}
+
+	/**
+	 * Gets the names of the columns.
+	 * @return names of the columns
+	 */
+	public List<String> getColumnNames()
+	{
+		return columnNames;
+	}
+
+	/**
+	 * Gets the extent of all features.
+	 * @return {@link Envelope} (can be empty)
+	 */
+	public Envelope getEnvelope()
+	{
+		return envelope;
+	}
+
+	/**
+	 * Gets the common geometry type of all features.
+	 * @return geometry type or 0 if it is unknown or mixed
+	 */
+	public int getGeometryType()
+	{
+		return geometryType;
+	}
+
+	/**
+	 * Gets the name of the layer.
+	 * @return name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Gets the number of features.
+	 * @return number of features
+	 */
+	public long getNumberOfFeatures()
+	{
+		return numFeatures;
+	}
+
+	/**
+	 * Gets the SRID of the features.
+	 * @return SRID or {@link Geometry#UNKNOWN_SRID}
+	 */
+	public int getSrid()
+	{
+		return srid;
+	}
+
+	/**
+	 * Checks if the file contains a spatial index.
+	 * @return true on success, else false
+	 */
+	public boolean hasIndex()
+	{
+		return levelBounds != null;
+	}
+
+	/**
+	 * Follows an offset to another object.
+	 * @param pos position of the offset
+	 * @return position of the object
+	 */
+	private int indirect(int pos)
+	{
+		return pos + buffer.getInt(pos);
+	}
+
+	/**
+	 * Reads all features intersecting the given bounding box.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param consumer consumer for the geometries and the properties of the features
+	 * @throws IllegalArgumentException if a feature is invalid
+	 */
+	public void query(double minX, double minY, double maxX, double maxY,
+			BiConsumer<Geometry, Map<String, Object>> consumer)
+	{
+		long[][] levels = this.levelBounds;
+		if (levels == null)
+		{
+			// no index, so check all features
+			readAll((geom, properties) -> {
+				if (geom.getEnvelope().intersects(minX, minY, maxX, maxY))
+				{
+					consumer.accept(geom, properties);
+				}
+			});
+			return;
+		}
+		// search the tree starting at the root
+		long[] results = new long[16];
+		int numResults = 0;
+		int[] stack = new int[2 * levels.length * nodeSize];
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		stack[stackSize++] = levels.length - 1;
+		while (stackSize > 0)
+		{
+			int level = stack[--stackSize];
+			int nodeIndex = stack[--stackSize];
+			int end = (int) Math.min(nodeIndex + nodeSize, levels[level][1]);
+			for (int pos = nodeIndex; pos < end; pos++)
+			{
+				int node = indexOffset + pos * FlatGeobuf.NODE_ITEM_SIZE;
+				if ((buffer.getDouble(node) > maxX) || (buffer.getDouble(node + 8) > maxY)
+						|| (buffer.getDouble(node + 16) < minX) || (buffer.getDouble(node + 24) < minY))
+				{
+					continue;
+				}
+				long offset = buffer.getLong(node + 32);
+				if (level == 0)
+				{
+					if (numResults == results.length)
+					{
+						results = Arrays.copyOf(results, numResults * 2);
+					}
+					results[numResults++] = offset;
+				}
+				else
+				{
+					if (stackSize + 2 > stack.length)
+					{
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					stack[stackSize++] = (int) offset;
+					stack[stackSize++] = level - 1;
+				}
+			}
+		}
+		// read the features in the order of the file
+		Arrays.sort(results, 0, numResults);
+		for (int i = 0; i < numResults; i++)
+		{
+			readFeature((int) (featuresOffset + results[i]), consumer);
+		}
+	}
+
+	/**
+	 * Reads all features intersecting the given bounding box.
+	 * @param env bounding box
+	 * @param consumer consumer for the geometries and the properties of the features
+	 * @throws IllegalArgumentException if a feature is invalid
+	 */
+	public void query(Envelope env, BiConsumer<Geometry, Map<String, Object>> consumer)
+	{
+		if (!env.isEmpty())
+		{
+			query(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY(), consumer);
+		}
+	}
+
+	/**
+	 * Reads all features.
+	 * @param consumer consumer for the geometries and the properties of the features
+	 * @throws IllegalArgumentException if a feature is invalid
+	 */
+	public void readAll(BiConsumer<Geometry, Map<String, Object>> consumer)
+	{
+		int pos = featuresOffset;
+		while (pos < buffer.limit())
+		{
+			pos = readFeature(pos, consumer);
+		}
+	}
+
+	/**
+	 * Reads a feature.
+	 * @param pos position of the size prefixed feature
+	 * @param consumer consumer for the geometry and the properties of the feature
+	 * @return position of the next feature
+	 * @throws IllegalArgumentException if the feature is invalid
+	 */
+	private int readFeature(int pos, BiConsumer<Geometry, Map<String, Object>> consumer)
+	{
+		int feature = indirect(pos + 4);
+		int geometryField = field(feature, FlatGeobuf.FEATURE_GEOMETRY);
+		Geometry geom = (geometryField != 0) ? decodeGeometry(indirect(geometryField), geometryType)
+				: new GeometryCollection();
+		if (srid != Geometry.UNKNOWN_SRID)
+		{
+			geom.setSrid(srid);
+		}
+		consumer.accept(geom, readProperties(field(feature, FlatGeobuf.FEATURE_PROPERTIES)));
+		return pos + 4 + buffer.getInt(pos);
+	}
+
+	/**
+	 * Reads a point.
+	 * @param xy position of the x/y coordinates
+	 * @param z position of the z values (0 if there are none)
+	 * @param m position of the measures (0 if there are none)
+	 * @param i index of the point
+	 * @return {@link Point}
+	 */
+	private Point readPoint(int xy, int z, int m, int i)
+	{
+		return new Point(buffer.getDouble(xy + 16 * i), buffer.getDouble(xy + 16 * i + 8),
+				(z != 0) ? buffer.getDouble(z + 8 * i) : Double.NaN, (m != 0) ? buffer.getDouble(m + 8 * i) : Double.NaN);
+	}
+
+	/**
+	 * Reads a range of points.
+	 * @param xy position of the x/y coordinates
+	 * @param z position of the z values (0 if there are none)
+	 * @param m position of the measures (0 if there are none)
+	 * @param start index of the first point
+	 * @param end index after the last point
+	 * @return points
+	 */
+	private List<Point> readPoints(int xy, int z, int m, int start, int end)
+	{
+		List<Point> points = new ArrayList<Point>(end - start);
+		for (int i = start; i < end; i++)
+		{
+			points.add(readPoint(xy, z, m, i));
+		}
+		return points;
+	}
+
+	/**
+	 * Reads the properties of a feature.
+	 * @param propertiesField position of the properties field (0 if there are none)
+	 * @return properties
+	 * @throws IllegalArgumentException if a property is invalid
+	 */
+	private Map<String, Object> readProperties(int propertiesField)
+	{
+		Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		if (propertiesField == 0)
+		{
+			return properties;
+		}
+		int v = indirect(propertiesField);
+		int pos = v + 4;
+		int end = pos + buffer.getInt(v);
+		while (pos < end)
+		{
+			int column = buffer.getShort(pos) & 0xFFFF;
+			pos += 2;
+			if (column >= columnTypes.length)
+			{
+				throw new IllegalArgumentException("invalid column: " + column);
+			}
+			Object value;
+			switch (columnTypes[column])
+			{
+				case 0:
+					// byte
+					value = buffer.get(pos);
+					pos += 1;
+					break;
+				case 1:
+					// unsigned byte
+					value = (short) (buffer.get(pos) & 0xFF);
+					pos += 1;
+					break;
+				case FlatGeobuf.COLUMN_BOOL:
+					value = buffer.get(pos) != 0;
+					pos += 1;
+					break;
+				case 3:
+					// short
+					value = buffer.getShort(pos);
+					pos += 2;
+					break;
+				case 4:
+					// unsigned short
+					value = buffer.getShort(pos) & 0xFFFF;
+					pos += 2;
+					break;
+				case FlatGeobuf.COLUMN_INT:
+					value = buffer.getInt(pos);
+					pos += 4;
+					break;
+				case 6:
+					// unsigned int
+					value = buffer.getInt(pos) & 0xFFFFFFFFL;
+					pos += 4;
+					break;
+				case FlatGeobuf.COLUMN_LONG:
+				case 8:
+					// long and unsigned long
+					value = buffer.getLong(pos);
+					pos += 8;
+					break;
+				case FlatGeobuf.COLUMN_FLOAT:
+					value = buffer.getFloat(pos);
+					pos += 4;
+					break;
+				case FlatGeobuf.COLUMN_DOUBLE:
+					value = buffer.getDouble(pos);
+					pos += 8;
+					break;
+				case 14:
+				{
+					// binary
+					byte[] bytes = new byte[buffer.getInt(pos)];
+					for (int i = 0; i < bytes.length; i++)
+					{
+						bytes[i] = buffer.get(pos + 4 + i);
+					}
+					value = bytes;
+					pos += 4 + bytes.length;
+					break;
+				}
+				default:
+					// strings, JSON and date/time
+					value = readString(pos);
+					pos += 4 + buffer.getInt(pos);
+					break;
+			}
+			properties.put(columnNames.get(column), value);
+		}
+		return properties;
+	}
+
+	/**
+	 * Reads a string.
+	 * @param pos position of the string (starting with its length)
+	 * @return string
+	 */
+	private String readString(int pos)
+	{
+		int length = buffer.getInt(pos);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = buffer.get(pos + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,787 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.flatgeobuf;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A writer for FlatGeobuf files. Features are streamed to a temporary file next to the target file while they are
+ * written, so only their bounding boxes are kept in memory. On {@link #close()} the features are sorted along a Hilbert
+ * curve and written to the target file together with a packed Hilbert R-tree, which allows clients to read just the
+ * features within a bounding box (e.g. using HTTP range requests).
+ * <p>
+ * The columns are derived from the written properties: booleans, integers, longs, floats and doubles are stored as
+ * such, all other values as strings. Values of a column have to be of a compatible type.
+ * @see <a href="https://flatgeobuf.org/">FlatGeobuf</a>
+ * @author Sebastian Baumhekel
+ */
+public final class FlatGeobufWriter implements Closeable
+{
+	/**
+	 * Bounding boxes of all features (4 values per feature).
+	 */
+	private double[] bounds = new double[64];
+	private final FlatBufferBuilder builder = new FlatBufferBuilder();
+	private boolean closed;
+	private final Map<String, Integer> columnIndices = new HashMap<String, Integer>();
+	private final List<String> columnNames = new ArrayList<String>();
+	private int[] columnTypes = new int[8];
+	/**
+	 * Temporary buffer for coordinates.
+	 */
+	private double[] coords = new double[64];
+	private final Path file;
+	/**
+	 * Common geometry type of all features (-1 if there are no features yet, 0 if they are mixed).
+	 */
+	private int geometryType = -1;
+	private boolean hasM;
+	private boolean hasZ;
+	private final String name;
+	private final int nodeSize;
+	private int numFeatures;
+	/**
+	 * Offsets of all features in the temporary file.
+	 */
+	private long[] offsets = new long[16];
+	private final ByteArrayOutputStream properties = new ByteArrayOutputStream();
+	private int srid;
+	private final Path tempFile;
+	private final OutputStream tempOut;
+	private long tempSize;
+
+	/**
+	 * Constructs an instance.
+	 * @param file target file
+	 * @param name name of the layer
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public FlatGeobufWriter(Path file, String name) throws IOException
+	{
+		this(file, name, FlatGeobuf.DEFAULT_NODE_SIZE);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param file target file
+	 * @param name name of the layer
+	 * @param nodeSize number of children of a node of the index (0 to write no index)
+	 * @throws IOException if the temporary file cannot be created
+	 * @throws IllegalArgumentException if the node size is invalid
+	 */
+	public FlatGeobufWriter(Path file, String name, int nodeSize) throws IOException
+	{
+		if ((nodeSize != 0) && ((nodeSize < 2) || (nodeSize > 0xFFFF)))
+		{
+			throw new IllegalArgumentException("invalid node size: " + nodeSize);
+		}
+		this.file = file;
+		this.name = name;
+		this.nodeSize = nodeSize;
+		Path dir = file.toAbsolutePath().getParent();
+		this.tempFile = (dir != null) ? Files.createTempFile(dir, "fgb", ".tmp") : Files.createTempFile("fgb", ".tmp");
+		this.tempOut = new BufferedOutputStream(Files.newOutputStream(tempFile));
+	}
+
+	/**
+	 * Gets the column type for the given value.
+	 * @param value value
+	 * @return column type
+	 */
+	private static int getColumnType(Object value)
+	{
+		if (value instanceof Boolean)
+		{
+			return FlatGeobuf.COLUMN_BOOL;
+		}
+		if ((value instanceof Byte) || (value instanceof Short) || (value instanceof Integer))
+		{
+			return FlatGeobuf.COLUMN_INT;
+		}
+		if (value instanceof Long)
+		{
+			return FlatGeobuf.COLUMN_LONG;
+		}
+		if (value instanceof Float)
+		{
+			return FlatGeobuf.COLUMN_FLOAT;
+		}
+		if (value instanceof Number)
+		{
+			return FlatGeobuf.COLUMN_DOUBLE;
+		}
+		return FlatGeobuf.COLUMN_STRING;
+	}
+
+	/**
+	 * Gets the geometry type to be written.
+	 * @param geom {@link Geometry}
+	 * @return type
+	 */
+	private static int getType(Geometry geom)
+	{
+		// standalone linear rings are written as line strings
+		return (geom instanceof LinearRing) ? LineString.TYPE : geom.getType();
+	}
+
+	/**
+	 * Writes an int value in little endian format.
+	 * @param out output
+	 * @param value value
+	 */
+	private static void writeInt(ByteArrayOutputStream out, int value)
+	{
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	/**
+	 * Writes a long value in little endian format.
+	 * @param out output
+	 * @param value value
+	 */
+	private static void writeLong(ByteArrayOutputStream out, long value)
+	{
+		writeInt(out, (int) value);
+		writeInt(out, (int) (value >>> 32));
+	}
+
+	/**
+	 * Adds the coordinates of the given points to the temporary buffer.
+	 * @param points points
+	 * @param n number of already added values
+	 * @param dims number of dimensions to add (2 to 4, x/y/z/m)
+	 * @return new number of values
+	 */
+	private int addCoordinates(Iterable<Point> points, int n, int dims)
+	{
+		int i = n;
+		for (Point p : points)
+		{
+			if (i + 4 > coords.length)
+			{
+				coords = Arrays.copyOf(coords, coords.length * 2);
+			}
+			coords[i++] = p.getX();
+			coords[i++] = p.getY();
+			if (dims > 2)
+			{
+				coords[i++] = p.getZ();
+			}
+			if (dims > 3)
+			{
+				coords[i++] = p.getM();
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Builds the coordinate vectors of the given geometries.
+	 * @param geom parent geometry
+	 * @param geoms geometries
+	 * @return offsets of the x/y, z and measure vectors and of the end indices (0 if not needed)
+	 */
+	private int[] buildCoordinates(Geometry geom, Iterable<? extends Geometry> geoms)
+	{
+		int dims = geom.hasMeasure() ? 4 : (geom.is3d() ? 3 : 2);
+		int n = 0;
+		int[] ends = new int[8];
+		int numParts = 0;
+		for (Geometry g : geoms)
+		{
+			n = addCoordinates(g.getCoordinates(), n, dims);
+			if (numParts == ends.length)
+			{
+				ends = Arrays.copyOf(ends, numParts * 2);
+			}
+			ends[numParts++] = n / dims;
+		}
+		int count = n / dims;
+		double[] values = new double[Math.max(2, count) * 2];
+		// x/y coordinates
+		for (int i = 0; i < count; i++)
+		{
+			values[2 * i] = coords[i * dims];
+			values[2 * i + 1] = coords[i * dims + 1];
+		}
+		int[] result = new int[4];
+		// end indices are only needed for multiple parts
+		if (numParts > 1)
+		{
+			result[3] = builder.createIntVector(ends, numParts);
+		}
+		result[0] = builder.createDoubleVector(values, 2 * count);
+		// z values and measures (the z values are needed in any case if there are measures)
+		for (int d = 2; d < dims; d++)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				values[i] = coords[i * dims + d];
+			}
+			if ((d == 3) || geom.is3d())
+			{
+				result[d - 1] = builder.createDoubleVector(values, count);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the geometry table of a feature.
+	 * @param geom {@link Geometry}
+	 * @return offset of the table
+	 */
+	private int buildGeometry(Geometry geom)
+	{
+		int type = getType(geom);
+		int xy = 0;
+		int z = 0;
+		int m = 0;
+		int ends = 0;
+		int parts = 0;
+		if (geom instanceof PolygonBase)
+		{
+			PolygonBase<?> poly = (PolygonBase<?>) geom;
+			List<Curve> rings = new ArrayList<Curve>();
+			if (!poly.isEmpty())
+			{
+				rings.add(poly.getOuterRing());
+				for (Curve ring : poly.getRings())
+				{
+					rings.add(ring);
+				}
+			}
+			if (type == Polygon.TYPE)
+			{
+				int[] offsets3 = buildCoordinates(geom, rings);
+				xy = offsets3[0];
+				z = offsets3[1];
+				m = offsets3[2];
+				ends = offsets3[3];
+			}
+			else
+			{
+				parts = buildParts(rings);
+			}
+		}
+		else if (geom instanceof MultiLineString)
+		{
+			int[] offsets3 = buildCoordinates(geom, ((MultiLineString) geom).getGeometries());
+			xy = offsets3[0];
+			z = offsets3[1];
+			m = offsets3[2];
+			ends = offsets3[3];
+		}
+		else if (geom instanceof CompoundCurve)
+		{
+			parts = buildParts(((CompoundCurve) geom).getGeometries());
+		}
+		else if ((geom instanceof MultiGeometry) && (type != MultiPoint.TYPE))
+		{
+			parts = buildParts(((MultiGeometry<?>) geom).getGeometries());
+		}
+		else if (!geom.isEmpty())
+		{
+			int[] offsets3 = buildCoordinates(geom, Collections.singletonList(geom));
+			xy = offsets3[0];
+			z = offsets3[1];
+			m = offsets3[2];
+		}
+		builder.startTable(8);
+		if (ends != 0)
+		{
+			builder.addOffset(FlatGeobuf.GEOMETRY_ENDS, ends);
+		}
+		if (xy != 0)
+		{
+			builder.addOffset(FlatGeobuf.GEOMETRY_XY, xy);
+		}
+		if (z != 0)
+		{
+			builder.addOffset(FlatGeobuf.GEOMETRY_Z, z);
+		}
+		if (m != 0)
+		{
+			builder.addOffset(FlatGeobuf.GEOMETRY_M, m);
+		}
+		if (parts != 0)
+		{
+			builder.addOffset(FlatGeobuf.GEOMETRY_PARTS, parts);
+		}
+		builder.addByte(FlatGeobuf.GEOMETRY_TYPE, type);
+		return builder.endTable();
+	}
+
+	/**
+	 * Builds the header.
+	 * @param minX minimum x coordinate of all features
+	 * @param minY minimum y coordinate of all features
+	 * @param maxX maximum x coordinate of all features
+	 * @param maxY maximum y coordinate of all features
+	 * @param hasExtent is the extent valid?
+	 * @return size prefixed header
+	 */
+	private byte[] buildHeader(double minX, double minY, double maxX, double maxY, boolean hasExtent)
+	{
+		builder.reset();
+		int nameOffset = builder.createString(name);
+		int envelope = hasExtent ? builder.createDoubleVector(new double[] { minX, minY, maxX, maxY }, 4) : 0;
+		int columns = 0;
+		if (!columnNames.isEmpty())
+		{
+			int[] columnOffsets = new int[columnNames.size()];
+			for (int i = 0; i < columnOffsets.length; i++)
+			{
+				int columnName = builder.createString(columnNames.get(i));
+				builder.startTable(2);
+				builder.addOffset(0, columnName);
+				builder.addByte(1, columnTypes[i]);
+				columnOffsets[i] = builder.endTable();
+			}
+			columns = builder.createOffsetVector(columnOffsets, columnOffsets.length);
+		}
+		int crs = 0;
+		if (srid != Geometry.UNKNOWN_SRID)
+		{
+			int org = builder.createString("EPSG");
+			builder.startTable(2);
+			builder.addOffset(0, org);
+			builder.addInt(1, srid);
+			crs = builder.endTable();
+		}
+		builder.startTable(11);
+		builder.addOffset(FlatGeobuf.HEADER_NAME, nameOffset);
+		if (envelope != 0)
+		{
+			builder.addOffset(FlatGeobuf.HEADER_ENVELOPE, envelope);
+		}
+		builder.addByte(FlatGeobuf.HEADER_GEOMETRY_TYPE, Math.max(0, geometryType));
+		if (hasZ)
+		{
+			builder.addBoolean(FlatGeobuf.HEADER_HAS_Z, true);
+		}
+		if (hasM)
+		{
+			builder.addBoolean(FlatGeobuf.HEADER_HAS_M, true);
+		}
+		if (columns != 0)
+		{
+			builder.addOffset(FlatGeobuf.HEADER_COLUMNS, columns);
+		}
+		builder.addLong(FlatGeobuf.HEADER_FEATURES_COUNT, numFeatures);
+		builder.addShort(FlatGeobuf.HEADER_INDEX_NODE_SIZE, nodeSize);
+		if (crs != 0)
+		{
+			builder.addOffset(FlatGeobuf.HEADER_CRS, crs);
+		}
+		return builder.finishSizePrefixed(builder.endTable());
+	}
+
+	/**
+	 * Builds the vector of the geometry tables of the given parts.
+	 * @param geoms parts
+	 * @return offset of the vector
+	 */
+	private int buildParts(Iterable<? extends Geometry> geoms)
+	{
+		List<Integer> parts = new ArrayList<Integer>();
+		for (Geometry g : geoms)
+		{
+			parts.add(buildGeometry(g));
+		}
+		int[] offsetsParts = new int[parts.size()];
+		for (int i = 0; i < offsetsParts.length; i++)
+		{
+			offsetsParts[i] = parts.get(i);
+		}
+		return builder.createOffsetVector(offsetsParts, offsetsParts.length);
+	}
+
+	/**
+	 * Sorts all features along a Hilbert curve and writes the target file. The temporary file gets deleted.
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			tempOut.close();
+			writeFile();
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Gets the index of the column for the given property and checks its type.
+	 * @param key name of the property
+	 * @param value value of the property
+	 * @return index of the column
+	 * @throws IllegalArgumentException if the value does not match the column type
+	 */
+	private int getColumn(String key, Object value)
+	{
+		Integer index = columnIndices.get(key);
+		int type = getColumnType(value);
+		if (index == null)
+		{
+			if (columnNames.size() == 0xFFFF)
+			{
+				throw new IllegalArgumentException("too many columns");
+			}
+			index = columnNames.size();
+			columnIndices.put(key, index);
+			columnNames.add(key);
+			if (index == columnTypes.length)
+			{
+				columnTypes = Arrays.copyOf(columnTypes, index * 2);
+			}
+			columnTypes[index] = type;
+			return index;
+		}
+		int columnType = columnTypes[index];
+		// integral numbers can be stored in wider columns and everything in strings
+		if ((type != columnType) && (columnType != FlatGeobuf.COLUMN_STRING)
+				&& !((type == FlatGeobuf.COLUMN_INT) && (columnType == FlatGeobuf.COLUMN_LONG))
+				&& !((type != FlatGeobuf.COLUMN_BOOL) && (type != FlatGeobuf.COLUMN_STRING)
+						&& ((columnType == FlatGeobuf.COLUMN_FLOAT) || (columnType == FlatGeobuf.COLUMN_DOUBLE))))
+		{
+			throw new IllegalArgumentException(
+					"value of type " + value.getClass().getSimpleName() + " does not match the column " + key);
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the number of written features.
+	 * @return number of features
+	 */
+	public int getNumberOfFeatures()
+	{
+		return numFeatures;
+	}
+
+	/**
+	 * Writes a feature without properties.
+	 * @param geom geometry
+	 * @throws IOException if writing fails
+	 */
+	public void write(Geometry geom) throws IOException
+	{
+		write(geom, Collections.emptyMap());
+	}
+
+	/**
+	 * Writes a feature.
+	 * @param geom geometry
+	 * @param attributes properties of the feature (null values are omitted)
+	 * @throws IOException if writing fails
+	 * @throws IllegalArgumentException if a value does not match the type of its column
+	 * @throws IllegalStateException if the writer has already been closed
+	 */
+	public void write(Geometry geom, Map<String, ?> attributes) throws IOException
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("writer has already been closed");
+		}
+		// properties
+		properties.reset();
+		for (Map.Entry<String, ?> entry : attributes.entrySet())
+		{
+			Object value = entry.getValue();
+			if (value != null)
+			{
+				int column = getColumn(entry.getKey(), value);
+				properties.write(column);
+				properties.write(column >>> 8);
+				writeValue(columnTypes[column], value);
+			}
+		}
+		// feature
+		builder.reset();
+		int geometry = buildGeometry(geom);
+		int props = (properties.size() > 0) ? builder.createByteVector(properties.toByteArray(), properties.size())
+				: 0;
+		builder.startTable(2);
+		builder.addOffset(FlatGeobuf.FEATURE_GEOMETRY, geometry);
+		if (props != 0)
+		{
+			builder.addOffset(FlatGeobuf.FEATURE_PROPERTIES, props);
+		}
+		byte[] data = builder.finishSizePrefixed(builder.endTable());
+		tempOut.write(data);
+		// remember its position and bounding box for sorting
+		if (numFeatures == offsets.length)
+		{
+			offsets = Arrays.copyOf(offsets, numFeatures * 2);
+			bounds = Arrays.copyOf(bounds, numFeatures * 8);
+		}
+		offsets[numFeatures] = tempSize;
+		tempSize += data.length;
+		Envelope env = geom.getEnvelope();
+		bounds[numFeatures * 4] = env.getMinX();
+		bounds[numFeatures * 4 + 1] = env.getMinY();
+		bounds[numFeatures * 4 + 2] = env.getMaxX();
+		bounds[numFeatures * 4 + 3] = env.getMaxY();
+		numFeatures++;
+		// collect common properties of all geometries
+		int type = getType(geom);
+		if (geometryType < 0)
+		{
+			geometryType = type;
+		}
+		else if (geometryType != type)
+		{
+			geometryType = 0;
+		}
+		hasZ |= geom.is3d();
+		hasM |= geom.hasMeasure();
+		if ((srid == Geometry.UNKNOWN_SRID) && (geom.getSrid() != Geometry.UNKNOWN_SRID))
+		{
+			srid = geom.getSrid();
+		}
+	}
+
+	/**
+	 * Writes the target file.
+	 * @throws IOException if writing fails
+	 */
+	private void writeFile() throws IOException
+	{
+		// overall extent
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < numFeatures; i++)
+		{
+			// empty envelopes are NaN and are ignored here
+			if (bounds[i * 4] <= bounds[i * 4 + 2])
+			{
+				minX = Math.min(minX, bounds[i * 4]);
+				minY = Math.min(minY, bounds[i * 4 + 1]);
+				maxX = Math.max(maxX, bounds[i * 4 + 2]);
+				maxY = Math.max(maxY, bounds[i * 4 + 3]);
+			}
+			else
+			{
+				bounds[i * 4] = Double.POSITIVE_INFINITY;
+				bounds[i * 4 + 1] = Double.POSITIVE_INFINITY;
+				bounds[i * 4 + 2] = Double.NEGATIVE_INFINITY;
+				bounds[i * 4 + 3] = Double.NEGATIVE_INFINITY;
+			}
+		}
+		boolean hasExtent = minX <= maxX;
+		// sort by the Hilbert value of the centers of the features and then by their original order
+		long[] order = new long[numFeatures];
+		double width = hasExtent ? maxX - minX : 0;
+		double height = hasExtent ? maxY - minY : 0;
+		for (int i = 0; i < numFeatures; i++)
+		{
+			long h = 0;
+			if (hasExtent && (bounds[i * 4] <= bounds[i * 4 + 2]))
+			{
+				double cx = (bounds[i * 4] + bounds[i * 4 + 2]) / 2;
+				double cy = (bounds[i * 4 + 1] + bounds[i * 4 + 3]) / 2;
+				int hx = (width > 0) ? (int) (0xFFFF * (cx - minX) / width) : 0;
+				int hy = (height > 0) ? (int) (0xFFFF * (cy - minY) / height) : 0;
+				h = FlatGeobuf.hilbert(hx, hy);
+			}
+			order[i] = (h << 31) | i;
+		}
+		Arrays.sort(order);
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+				FileChannel in = FileChannel.open(tempFile, StandardOpenOption.READ))
+		{
+			out.write(FlatGeobuf.MAGIC);
+			out.write(buildHeader(minX, minY, maxX, maxY, hasExtent));
+			if ((nodeSize > 0) && (numFeatures > 0))
+			{
+				writeIndex(order, out);
+			}
+			// copy the features in sorted order
+			ByteBuffer data = ByteBuffer.allocate(1024);
+			for (int i = 0; i < numFeatures; i++)
+			{
+				int index = (int) (order[i] & Integer.MAX_VALUE);
+				long offset = offsets[index];
+				int size = (int) (((index + 1 < numFeatures) ? offsets[index + 1] : tempSize) - offset);
+				if (size > data.capacity())
+				{
+					data = ByteBuffer.allocate(Math.max(size, data.capacity() * 2));
+				}
+				data.clear();
+				data.limit(size);
+				while (data.hasRemaining())
+				{
+					if (in.read(data, offset + data.position()) < 0)
+					{
+						throw new IOException("unexpected end of temporary file");
+					}
+				}
+				out.write(data.array(), 0, size);
+			}
+		}
+	}
+
+	/**
+	 * Writes the packed Hilbert R-tree of all features.
+	 * @param order sorted features (index in the lower 31 bits)
+	 * @param out output
+	 * @throws IOException if writing fails
+	 */
+	private void writeIndex(long[] order, OutputStream out) throws IOException
+	{
+		long[][] levelBounds = FlatGeobuf.calcLevelBounds(numFeatures, nodeSize);
+		int numNodes = (int) levelBounds[0][1];
+		double[] nodeBounds = new double[numNodes * 4];
+		long[] nodeOffsets = new long[numNodes];
+		// leaves reference the byte offsets of the features
+		int leafStart = (int) levelBounds[0][0];
+		long featureOffset = 0;
+		for (int i = 0; i < numFeatures; i++)
+		{
+			int index = (int) (order[i] & Integer.MAX_VALUE);
+			System.arraycopy(bounds, index * 4, nodeBounds, (leafStart + i) * 4, 4);
+			nodeOffsets[leafStart + i] = featureOffset;
+			featureOffset += ((index + 1 < numFeatures) ? offsets[index + 1] : tempSize) - offsets[index];
+		}
+		// upper levels reference the index of their first child
+		for (int level = 0; level < levelBounds.length - 1; level++)
+		{
+			int pos = (int) levelBounds[level][0];
+			int end = (int) levelBounds[level][1];
+			int parent = (int) levelBounds[level + 1][0];
+			while (pos < end)
+			{
+				nodeOffsets[parent] = pos;
+				double nMinX = Double.POSITIVE_INFINITY;
+				double nMinY = Double.POSITIVE_INFINITY;
+				double nMaxX = Double.NEGATIVE_INFINITY;
+				double nMaxY = Double.NEGATIVE_INFINITY;
+				for (int j = 0; (j < nodeSize) && (pos < end); j++, pos++)
+				{
+					nMinX = Math.min(nMinX, nodeBounds[pos * 4]);
+					nMinY = Math.min(nMinY, nodeBounds[pos * 4 + 1]);
+					nMaxX = Math.max(nMaxX, nodeBounds[pos * 4 + 2]);
+					nMaxY = Math.max(nMaxY, nodeBounds[pos * 4 + 3]);
+				}
+				nodeBounds[parent * 4] = nMinX;
+				nodeBounds[parent * 4 + 1] = nMinY;
+				nodeBounds[parent * 4 + 2] = nMaxX;
+				nodeBounds[parent * 4 + 3] = nMaxY;
+				parent++;
+			}
+		}
+		ByteBuffer bb = ByteBuffer.allocate(FlatGeobuf.NODE_ITEM_SIZE * 256).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < numNodes; i++)
+		{
+			bb.putDouble(nodeBounds[i * 4]);
+			bb.putDouble(nodeBounds[i * 4 + 1]);
+			bb.putDouble(nodeBounds[i * 4 + 2]);
+			bb.putDouble(nodeBounds[i * 4 + 3]);
+			bb.putLong(nodeOffsets[i]);
+			if (!bb.hasRemaining())
+			{
+				out.write(bb.array(), 0, bb.position());
+				bb.clear();
+			}
+		}
+		out.write(bb.array(), 0, bb.position());
+	}
+
+	/**
+	 * Writes a property value.
+	 * @param type column type
+	 * @param value value
+	 */
+	private void writeValue(int type, Object value)
+	{
+		switch (type)
+		{
+			case FlatGeobuf.COLUMN_BOOL:
+				properties.write(((Boolean) value).booleanValue() ? 1 : 0);
+				break;
+			case FlatGeobuf.COLUMN_INT:
+				writeInt(properties, ((Number) value).intValue());
+				break;
+			case FlatGeobuf.COLUMN_LONG:
+				writeLong(properties, ((Number) value).longValue());
+				break;
+			case FlatGeobuf.COLUMN_FLOAT:
+				writeInt(properties, Float.floatToRawIntBits(((Number) value).floatValue()));
+				break;
+			case FlatGeobuf.COLUMN_DOUBLE:
+				writeLong(properties, Double.doubleToRawLongBits(((Number) value).doubleValue()));
+				break;
+			default:
+				byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+				writeInt(properties, bytes.length);
+				properties.write(bytes, 0, bytes.length);
+				break;
+		}
+	}
+
+}
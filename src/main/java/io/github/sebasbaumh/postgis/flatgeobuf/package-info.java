@@ -0,0 +1,6 @@
+/**
+ * FlatGeobuf package.
+ * @author Sebastian Baumhekel
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package io.github.sebasbaumh.postgis.flatgeobuf;
@@ -0,0 +1,495 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.geoarrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+/**
+ * A batch of geometries of the same type in a columnar layout following the GeoArrow native memory layout. All
+ * coordinates are stored in a single interleaved array (x, y and optionally z and m for each coordinate), while the
+ * structure of the geometries is described by nested offset arrays. Depending on the type there are up to three levels
+ * of offsets (outermost first), where each entry {@code i} of a level spans the items {@code offsets[i]} up to
+ * {@code offsets[i + 1]} of the next level or the coordinates:
+ * <ul>
+ * <li>{@link Point}: no offsets, one coordinate per geometry</li>
+ * <li>{@link LineString}, {@link MultiPoint}: geometries to coordinates</li>
+ * <li>{@link Polygon}: geometries to rings, rings to coordinates</li>
+ * <li>{@link MultiLineString}: geometries to lines, lines to coordinates</li>
+ * <li>{@link MultiPolygon}: geometries to polygons, polygons to rings, rings to coordinates</li>
+ * </ul>
+ * Empty points are stored as {@link Double#NaN} coordinates and null geometries are marked in a validity bitmap.
+ * <p>
+ * Instances are created by a {@link GeometryBatchBuilder} and cannot be modified, so they can be used by multiple
+ * threads concurrently. The arrays returned by the getters are not copied for performance reasons and must not be
+ * modified.
+ * @author Sebastian Baumhekel
+ */
+public final class GeometryBatch
+{
+	private final double[] coordinates;
+	private final boolean hasM;
+	private final boolean hasZ;
+	private final int nullCount;
+	private final int[][] offsets;
+	private final int size;
+	private final int srid;
+	private final int type;
+	/**
+	 * Validity bitmap (least significant bit first) or null if there are no null geometries.
+	 */
+	@Nullable
+	private final byte[] validity;
+
+	/**
+	 * Constructs an instance.
+	 * @param type geometry type
+	 * @param hasZ true if the coordinates have a z value
+	 * @param hasM true if the coordinates have a measure
+	 * @param srid SRID
+	 * @param size number of geometries
+	 * @param coordinates interleaved coordinates
+	 * @param offsets offsets (outermost first)
+	 * @param validity validity bitmap (can be null if there are no null geometries)
+	 * @param nullCount number of null geometries
+	 */
+	GeometryBatch(int type, boolean hasZ, boolean hasM, int srid, int size, double[] coordinates, int[][] offsets,
+			@Nullable byte[] validity, int nullCount)
+	{
+		this.type = type;
+		this.hasZ = hasZ;
+		this.hasM = hasM;
+		this.srid = srid;
+		this.size = size;
+		this.coordinates = coordinates;
+		this.offsets = offsets;
+		this.validity = validity;
+		this.nullCount = nullCount;
+	}
+
+	/**
+	 * Allocates a direct buffer in little endian byte order.
+	 * @param capacity capacity in bytes
+	 * @return {@link ByteBuffer}
+	 */
+	private static ByteBuffer allocate(int capacity)
+	{
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Gets the number of offset levels of the given geometry type.
+	 * @param type geometry type
+	 * @return number of offset levels
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	static int getNumberOfOffsetLevels(int type)
+	{
+		switch (type)
+		{
+			case Point.TYPE:
+				return 0;
+			case LineString.TYPE:
+			case MultiPoint.TYPE:
+				return 1;
+			case Polygon.TYPE:
+			case MultiLineString.TYPE:
+				return 2;
+			case MultiPolygon.TYPE:
+				return 3;
+			default:
+				throw new IllegalArgumentException("unsupported geometry type: " + type);
+		}
+	}
+
+	/**
+	 * Exports the coordinates of the given dimension (separated layout) to an off-heap buffer.
+	 * @param dimension dimension (0 for x, 1 for y, followed by z and m if available)
+	 * @return direct {@link ByteBuffer} containing the values as little endian doubles
+	 * @throws IndexOutOfBoundsException if the dimension is invalid
+	 */
+	public ByteBuffer exportCoordinates(int dimension)
+	{
+		int dims = getCoordinateSize();
+		if ((dimension < 0) || (dimension >= dims))
+		{
+			throw new IndexOutOfBoundsException("invalid dimension: " + dimension);
+		}
+		int n = getNumberOfCoordinates();
+		ByteBuffer buffer = allocate(n * Double.BYTES);
+		DoubleBuffer values = buffer.asDoubleBuffer();
+		for (int i = dimension; i < coordinates.length; i += dims)
+		{
+			values.put(coordinates[i]);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Exports the interleaved coordinates to an off-heap buffer.
+	 * @return direct {@link ByteBuffer} containing the values as little endian doubles
+	 */
+	public ByteBuffer exportInterleavedCoordinates()
+	{
+		ByteBuffer buffer = allocate(coordinates.length * Double.BYTES);
+		buffer.asDoubleBuffer().put(coordinates);
+		return buffer;
+	}
+
+	/**
+	 * Exports the offsets of the given level to an off-heap buffer.
+	 * @param level level (0 for the outermost one)
+	 * @return direct {@link ByteBuffer} containing the offsets as little endian 32 bit integers
+	 * @throws IndexOutOfBoundsException if the level is invalid
+	 */
+	public ByteBuffer exportOffsets(int level)
+	{
+		int[] values = getOffsets(level);
+		ByteBuffer buffer = allocate(values.length * Integer.BYTES);
+		buffer.asIntBuffer().put(values);
+		return buffer;
+	}
+
+	/**
+	 * Exports the validity bitmap to an off-heap buffer.
+	 * @return direct {@link ByteBuffer} containing the bitmap (least significant bit first) on success, else null if
+	 *         there are no null geometries
+	 */
+	@Nullable
+	public ByteBuffer exportValidity()
+	{
+		byte[] bitmap = this.validity;
+		if (bitmap == null)
+		{
+			return null;
+		}
+		ByteBuffer buffer = allocate(bitmap.length);
+		buffer.put(bitmap);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Gets the number of values per coordinate.
+	 * @return number of values (2 to 4)
+	 */
+	public int getCoordinateSize()
+	{
+		return 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+	}
+
+	/**
+	 * Gets all coordinates in an interleaved layout (x, y and optionally z and m for each coordinate).
+	 * @return coordinates (must not be modified)
+	 */
+	public double[] getCoordinates()
+	{
+		return coordinates;
+	}
+
+	/**
+	 * Gets the GeoArrow extension name of this batch, e.g. {@code geoarrow.polygon}.
+	 * @return extension name
+	 */
+	public String getExtensionName()
+	{
+		switch (type)
+		{
+			case Point.TYPE:
+				return "geoarrow.point";
+			case LineString.TYPE:
+				return "geoarrow.linestring";
+			case Polygon.TYPE:
+				return "geoarrow.polygon";
+			case MultiPoint.TYPE:
+				return "geoarrow.multipoint";
+			case MultiLineString.TYPE:
+				return "geoarrow.multilinestring";
+			default:
+				return "geoarrow.multipolygon";
+		}
+	}
+
+	/**
+	 * Gets all geometries.
+	 * @return geometries (containing null for null geometries)
+	 */
+	public List<Geometry> getGeometries()
+	{
+		List<Geometry> l = new ArrayList<Geometry>(size);
+		for (int i = 0; i < size; i++)
+		{
+			l.add(getGeometry(i));
+		}
+		return l;
+	}
+
+	/**
+	 * Gets the geometry at the given index.
+	 * @param index index
+	 * @return {@link Geometry} on success, else null if it is a null geometry
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	@Nullable
+	public Geometry getGeometry(int index)
+	{
+		if (isNull(index))
+		{
+			return null;
+		}
+		Geometry geom;
+		switch (type)
+		{
+			case Point.TYPE:
+				geom = getPoint(index);
+				break;
+			case LineString.TYPE:
+				geom = new LineString(getPoints(offsets[0][index], offsets[0][index + 1]));
+				break;
+			case Polygon.TYPE:
+				geom = getPolygon(index, 0);
+				break;
+			case MultiPoint.TYPE:
+				geom = new MultiPoint(getPoints(offsets[0][index], offsets[0][index + 1]));
+				break;
+			case MultiLineString.TYPE:
+			{
+				List<LineString> lines = new ArrayList<LineString>();
+				for (int i = offsets[0][index]; i < offsets[0][index + 1]; i++)
+				{
+					lines.add(new LineString(getPoints(offsets[1][i], offsets[1][i + 1])));
+				}
+				geom = new MultiLineString(lines);
+				break;
+			}
+			default:
+			{
+				List<Polygon> polygons = new ArrayList<Polygon>();
+				for (int i = offsets[0][index]; i < offsets[0][index + 1]; i++)
+				{
+					polygons.add(getPolygon(i, 1));
+				}
+				geom = new MultiPolygon(polygons);
+				break;
+			}
+		}
+		geom.setSrid(srid);
+		return geom;
+	}
+
+	/**
+	 * Gets the number of null geometries.
+	 * @return number of null geometries
+	 */
+	public int getNullCount()
+	{
+		return nullCount;
+	}
+
+	/**
+	 * Gets the total number of coordinates.
+	 * @return number of coordinates
+	 */
+	public int getNumberOfCoordinates()
+	{
+		return coordinates.length / getCoordinateSize();
+	}
+
+	/**
+	 * Gets the number of offset levels.
+	 * @return number of offset levels (0 to 3)
+	 */
+	public int getNumberOfOffsetLevels()
+	{
+		return offsets.length;
+	}
+
+	/**
+	 * Gets the offsets of the given level.
+	 * @param level level (0 for the outermost one)
+	 * @return offsets (must not be modified)
+	 * @throws IndexOutOfBoundsException if the level is invalid
+	 */
+	public int[] getOffsets(int level)
+	{
+		if ((level < 0) || (level >= offsets.length))
+		{
+			throw new IndexOutOfBoundsException("invalid offset level: " + level);
+		}
+		return offsets[level];
+	}
+
+	/**
+	 * Gets the point at the given coordinate index.
+	 * @param index coordinate index
+	 * @return {@link Point}
+	 */
+	private Point getPoint(int index)
+	{
+		int i = index * getCoordinateSize();
+		double x = coordinates[i];
+		double y = coordinates[i + 1];
+		double z = hasZ ? coordinates[i + 2] : Double.NaN;
+		double m = hasM ? coordinates[i + getCoordinateSize() - 1] : Double.NaN;
+		return new Point(x, y, z, m);
+	}
+
+	/**
+	 * Gets the points in the given range of coordinates.
+	 * @param start start index (inclusive)
+	 * @param end end index (exclusive)
+	 * @return points
+	 */
+	private List<Point> getPoints(int start, int end)
+	{
+		List<Point> points = new ArrayList<Point>(end - start);
+		for (int i = start; i < end; i++)
+		{
+			points.add(getPoint(i));
+		}
+		return points;
+	}
+
+	/**
+	 * Gets a polygon.
+	 * @param index index of the polygon within its offset level
+	 * @param level offset level of the polygons
+	 * @return {@link Polygon}
+	 */
+	private Polygon getPolygon(int index, int level)
+	{
+		int[] polygonOffsets = offsets[level];
+		int[] ringOffsets = offsets[level + 1];
+		List<LinearRing> rings = new ArrayList<LinearRing>();
+		for (int i = polygonOffsets[index]; i < polygonOffsets[index + 1]; i++)
+		{
+			rings.add(new LinearRing(getPoints(ringOffsets[i], ringOffsets[i + 1])));
+		}
+		return new Polygon(rings);
+	}
+
+	/**
+	 * Gets the SRID of all geometries.
+	 * @return SRID
+	 */
+	public int getSrid()
+	{
+		return srid;
+	}
+
+	/**
+	 * Gets the geometry type of all geometries, e.g. {@link Polygon#TYPE}.
+	 * @return geometry type
+	 */
+	public int getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Gets the binary (WKB) representation of the geometry at the given index.
+	 * @param index index
+	 * @return binary representation on success, else null if it is a null geometry
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	@Nullable
+	public byte[] getWkb(int index)
+	{
+		Geometry geom = getGeometry(index);
+		if (geom == null)
+		{
+			return null;
+		}
+		return BinaryWriter.writeBinary(geom);
+	}
+
+	/**
+	 * Checks if the coordinates have a measure.
+	 * @return true on success, else false
+	 */
+	public boolean hasMeasure()
+	{
+		return hasM;
+	}
+
+	/**
+	 * Checks if the coordinates have a z value.
+	 * @return true on success, else false
+	 */
+	public boolean is3d()
+	{
+		return hasZ;
+	}
+
+	/**
+	 * Checks if the geometry at the given index is null.
+	 * @param index index
+	 * @return true on success, else false
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	public boolean isNull(int index)
+	{
+		if ((index < 0) || (index >= size))
+		{
+			throw new IndexOutOfBoundsException("invalid index: " + index);
+		}
+		byte[] bitmap = this.validity;
+		return (bitmap != null) && ((bitmap[index >>> 3] & (1 << (index & 7))) == 0);
+	}
+
+	/**
+	 * Gets the number of geometries.
+	 * @return number of geometries
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "GeometryBatch [" + getExtensionName() + ", size=" + size + ", coordinates=" + getNumberOfCoordinates()
+				+ "]";
+	}
+
+}
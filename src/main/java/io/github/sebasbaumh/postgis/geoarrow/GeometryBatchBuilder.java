@@ -0,0 +1,566 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.geoarrow;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.CoordinateConsumer;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PostGisUtil;
+import io.github.sebasbaumh.postgis.binary.BinaryValueGetter;
+import io.github.sebasbaumh.postgis.binary.ValueGetter;
+
+/**
+ * Builds a {@link GeometryBatch} from geometries or directly from their binary (WKB) representation, which avoids
+ * creating any geometry objects. Single geometries are promoted to multi geometries if the batch is of the
+ * corresponding multi type (e.g. a {@link Point} is added as a {@link MultiPoint} with one point). Dimensions that are
+ * not part of the batch are dropped and missing ones are filled up with {@link Double#NaN}.
+ * <p>
+ * If adding a geometry fails, the builder is left unchanged. The builder is not thread-safe.
+ * @author Sebastian Baumhekel
+ */
+public final class GeometryBatchBuilder
+{
+	private double[] coordinates = new double[64];
+	/**
+	 * Number of values in the coordinates.
+	 */
+	private int coordinatesLength;
+	private final CoordinateConsumer coordinateConsumer = this::addCoordinate;
+	private final int coordinateSize;
+	private final boolean hasM;
+	private final boolean hasZ;
+	private int nullCount;
+	private final int[][] offsets;
+	/**
+	 * Number of entries of each offset level.
+	 */
+	private final int[] offsetsLength;
+	private int size;
+	private int srid = Geometry.UNKNOWN_SRID;
+	private final int type;
+	private byte[] validity = new byte[8];
+
+	/**
+	 * Constructs an instance.
+	 * @param type geometry type of the batch (one of {@link Point#TYPE}, {@link LineString#TYPE}, {@link Polygon#TYPE},
+	 *            {@link MultiPoint#TYPE}, {@link MultiLineString#TYPE} or {@link MultiPolygon#TYPE})
+	 * @param hasZ true if the coordinates have a z value
+	 * @param hasM true if the coordinates have a measure
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	public GeometryBatchBuilder(int type, boolean hasZ, boolean hasM)
+	{
+		int levels = GeometryBatch.getNumberOfOffsetLevels(type);
+		this.type = type;
+		this.hasZ = hasZ;
+		this.hasM = hasM;
+		this.coordinateSize = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+		this.offsets = new int[levels][16];
+		// all offsets start with 0
+		this.offsetsLength = new int[levels];
+		Arrays.fill(offsetsLength, 1);
+	}
+
+	/**
+	 * Adds a geometry.
+	 * @param geom {@link Geometry} (can be null)
+	 * @throws IllegalArgumentException if the geometry type does not match the batch or its SRID differs from the
+	 *             other geometries
+	 */
+	public void add(@Nullable Geometry geom)
+	{
+		if (geom == null)
+		{
+			addNull();
+			return;
+		}
+		int coordinatesLengthBefore = coordinatesLength;
+		int[] offsetsLengthBefore = offsetsLength.clone();
+		try
+		{
+			checkSrid(geom.getSrid());
+			addGeometry(geom);
+		}
+		catch (RuntimeException ex)
+		{
+			// restore the previous state
+			coordinatesLength = coordinatesLengthBefore;
+			System.arraycopy(offsetsLengthBefore, 0, offsetsLength, 0, offsetsLength.length);
+			throw ex;
+		}
+		setValid(true);
+	}
+
+	/**
+	 * Adds a geometry from its binary (WKB) representation.
+	 * @param value byte array containing the data (can be null for a null geometry)
+	 * @param offset offset
+	 * @throws IllegalArgumentException if the geometry type does not match the batch or its SRID differs from the
+	 *             other geometries
+	 */
+	public void addWkb(@Nullable byte[] value, int offset)
+	{
+		if (value == null)
+		{
+			addNull();
+			return;
+		}
+		int coordinatesLengthBefore = coordinatesLength;
+		int[] offsetsLengthBefore = offsetsLength.clone();
+		try
+		{
+			readGeometry(new BinaryValueGetter(value, offset));
+		}
+		catch (RuntimeException ex)
+		{
+			// restore the previous state
+			coordinatesLength = coordinatesLengthBefore;
+			System.arraycopy(offsetsLengthBefore, 0, offsetsLength, 0, offsetsLength.length);
+			throw ex;
+		}
+		setValid(true);
+	}
+
+	/**
+	 * Adds a geometry from its hex encoded binary (WKB) representation as returned by PostGIS.
+	 * @param value String containing the data (can be null for a null geometry)
+	 * @throws IllegalArgumentException if the geometry type does not match the batch or its SRID differs from the
+	 *             other geometries
+	 */
+	public void addWkb(@Nullable String value)
+	{
+		addWkb(value != null ? PostGisUtil.toHexBytes(value) : null, 0);
+	}
+
+	/**
+	 * Builds the batch from all geometries added so far. The builder can still be used afterwards.
+	 * @return {@link GeometryBatch}
+	 */
+	public GeometryBatch build()
+	{
+		int[][] result = new int[offsets.length][];
+		for (int i = 0; i < offsets.length; i++)
+		{
+			result[i] = Arrays.copyOf(offsets[i], offsetsLength[i]);
+		}
+		byte[] bitmap = nullCount > 0 ? Arrays.copyOf(validity, (size + 7) >>> 3) : null;
+		return new GeometryBatch(type, hasZ, hasM, srid, size, Arrays.copyOf(coordinates, coordinatesLength), result,
+				bitmap, nullCount);
+	}
+
+	/**
+	 * Gets the number of geometries added so far.
+	 * @return number of geometries
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds a coordinate.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param z Z-coordinate (can be {@link Double#NaN})
+	 * @param m measure (can be {@link Double#NaN})
+	 */
+	private void addCoordinate(double x, double y, double z, double m)
+	{
+		if (coordinatesLength + coordinateSize > coordinates.length)
+		{
+			coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+		}
+		double[] values = coordinates;
+		int i = coordinatesLength;
+		values[i++] = x;
+		values[i++] = y;
+		if (hasZ)
+		{
+			values[i++] = z;
+		}
+		if (hasM)
+		{
+			values[i++] = m;
+		}
+		coordinatesLength = i;
+	}
+
+	/**
+	 * Adds the structure and coordinates of a geometry.
+	 * @param geom {@link Geometry}
+	 * @throws IllegalArgumentException if the geometry type does not match the batch
+	 */
+	private void addGeometry(Geometry geom)
+	{
+		switch (type)
+		{
+			case Point.TYPE:
+				if (geom instanceof Point)
+				{
+					geom.forEachCoordinate(coordinateConsumer);
+					return;
+				}
+				break;
+			case LineString.TYPE:
+				if (geom instanceof LineString)
+				{
+					addLine((LineString) geom, 0);
+					return;
+				}
+				break;
+			case Polygon.TYPE:
+				if (geom instanceof Polygon)
+				{
+					addPolygon((Polygon) geom, 0);
+					return;
+				}
+				break;
+			case MultiPoint.TYPE:
+				if (geom instanceof MultiPoint)
+				{
+					for (Point p : ((MultiPoint) geom).getGeometries())
+					{
+						addPoint(p);
+					}
+					endOffset(0);
+					return;
+				}
+				else if (geom instanceof Point)
+				{
+					addPoint((Point) geom);
+					endOffset(0);
+					return;
+				}
+				break;
+			case MultiLineString.TYPE:
+				if (geom instanceof MultiLineString)
+				{
+					for (LineString ls : ((MultiLineString) geom).getGeometries())
+					{
+						addLine(ls, 1);
+					}
+					endOffset(0);
+					return;
+				}
+				else if (geom instanceof LineString)
+				{
+					addLine((LineString) geom, 1);
+					endOffset(0);
+					return;
+				}
+				break;
+			default:
+				if (geom instanceof MultiPolygon)
+				{
+					for (Polygon poly : ((MultiPolygon) geom).getGeometries())
+					{
+						addPolygon(poly, 1);
+					}
+					endOffset(0);
+					return;
+				}
+				else if (geom instanceof Polygon)
+				{
+					addPolygon((Polygon) geom, 1);
+					endOffset(0);
+					return;
+				}
+				break;
+		}
+		throw new IllegalArgumentException(
+				"geometry type " + geom.getType() + " does not match the batch type " + type);
+	}
+
+	/**
+	 * Adds a line.
+	 * @param ls {@link LineString}
+	 * @param level offset level of the line
+	 */
+	private void addLine(LineString ls, int level)
+	{
+		ls.forEachCoordinate(coordinateConsumer);
+		endOffset(level);
+	}
+
+	/**
+	 * Adds a null geometry.
+	 */
+	private void addNull()
+	{
+		if (type == Point.TYPE)
+		{
+			addCoordinate(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+		}
+		else
+		{
+			// null geometries have no parts
+			endOffset(0);
+		}
+		setValid(false);
+		nullCount++;
+	}
+
+	/**
+	 * Adds a point of a multi point. Empty points are skipped as they cannot be represented.
+	 * @param p {@link Point}
+	 */
+	private void addPoint(Point p)
+	{
+		if (!p.isEmpty())
+		{
+			p.forEachCoordinate(coordinateConsumer);
+		}
+	}
+
+	/**
+	 * Adds a polygon.
+	 * @param poly {@link Polygon}
+	 * @param level offset level of the polygon
+	 */
+	private void addPolygon(Polygon poly, int level)
+	{
+		// empty polygons have no rings
+		if (!poly.isEmpty())
+		{
+			addLine(poly.getOuterRing(), level + 1);
+			for (LinearRing ring : poly.getRings())
+			{
+				addLine(ring, level + 1);
+			}
+		}
+		endOffset(level);
+	}
+
+	/**
+	 * Checks the SRID of an added geometry.
+	 * @param geomSrid SRID
+	 * @throws IllegalArgumentException if the SRID differs from the other geometries
+	 */
+	private void checkSrid(int geomSrid)
+	{
+		if (geomSrid == Geometry.UNKNOWN_SRID)
+		{
+			return;
+		}
+		if (srid == Geometry.UNKNOWN_SRID)
+		{
+			srid = geomSrid;
+		}
+		else if (srid != geomSrid)
+		{
+			throw new IllegalArgumentException("SRID " + geomSrid + " differs from the batch SRID " + srid);
+		}
+	}
+
+	/**
+	 * Ends an entry of the given offset level, so it spans all items of the next level (or coordinates) added since
+	 * the previous entry.
+	 * @param level offset level
+	 */
+	private void endOffset(int level)
+	{
+		int n = level + 1 < offsets.length ? offsetsLength[level + 1] - 1 : coordinatesLength / coordinateSize;
+		if (offsetsLength[level] == offsets[level].length)
+		{
+			offsets[level] = Arrays.copyOf(offsets[level], offsets[level].length * 2);
+		}
+		offsets[level][offsetsLength[level]++] = n;
+	}
+
+	/**
+	 * Reads a coordinate.
+	 * @param data {@link ValueGetter}
+	 * @param z true if the coordinate has a z value
+	 * @param m true if the coordinate has a measure
+	 * @param skipEmpty true to skip empty coordinates
+	 */
+	private void readCoordinate(ValueGetter data, boolean z, boolean m, boolean skipEmpty)
+	{
+		double x = data.getDouble();
+		double y = data.getDouble();
+		double vz = z ? data.getDouble() : Double.NaN;
+		double vm = m ? data.getDouble() : Double.NaN;
+		if (!skipEmpty || !Double.isNaN(x) || !Double.isNaN(y))
+		{
+			addCoordinate(x, y, vz, vm);
+		}
+	}
+
+	/**
+	 * Reads a geometry including its header.
+	 * @param data {@link ValueGetter}
+	 * @throws IllegalArgumentException if the geometry type does not match the batch
+	 */
+	private void readGeometry(ValueGetter data)
+	{
+		data.readEncoding();
+		int typeword = data.getInt();
+		int geomType = typeword & 0x1FFFFFFF;
+		boolean z = (typeword & 0x80000000) != 0;
+		boolean m = (typeword & 0x40000000) != 0;
+		if ((typeword & 0x20000000) != 0)
+		{
+			int geomSrid = data.getInt();
+			checkSrid(geomSrid < 0 ? Geometry.UNKNOWN_SRID : geomSrid);
+		}
+		if (geomType == type)
+		{
+			switch (type)
+			{
+				case Point.TYPE:
+					readCoordinate(data, z, m, false);
+					return;
+				case LineString.TYPE:
+					readLine(data, z, m, 0);
+					return;
+				case Polygon.TYPE:
+					readPolygon(data, z, m, 0);
+					return;
+				default:
+					// multi geometries
+					int count = data.getInt();
+					for (int i = 0; i < count; i++)
+					{
+						readPart(data);
+					}
+					endOffset(0);
+					return;
+			}
+		}
+		// promote single geometries
+		if ((type == MultiPoint.TYPE) && (geomType == Point.TYPE))
+		{
+			readCoordinate(data, z, m, true);
+		}
+		else if ((type == MultiLineString.TYPE) && (geomType == LineString.TYPE))
+		{
+			readLine(data, z, m, 1);
+		}
+		else if ((type == MultiPolygon.TYPE) && (geomType == Polygon.TYPE))
+		{
+			readPolygon(data, z, m, 1);
+		}
+		else
+		{
+			throw new IllegalArgumentException("geometry type " + geomType + " does not match the batch type " + type);
+		}
+		endOffset(0);
+	}
+
+	/**
+	 * Reads a line.
+	 * @param data {@link ValueGetter}
+	 * @param z true if the coordinates have a z value
+	 * @param m true if the coordinates have a measure
+	 * @param level offset level of the line
+	 */
+	private void readLine(ValueGetter data, boolean z, boolean m, int level)
+	{
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			readCoordinate(data, z, m, false);
+		}
+		endOffset(level);
+	}
+
+	/**
+	 * Reads a part of a multi geometry including its header.
+	 * @param data {@link ValueGetter}
+	 * @throws IllegalArgumentException if the type of the part does not match the batch
+	 */
+	private void readPart(ValueGetter data)
+	{
+		data.readEncoding();
+		int typeword = data.getInt();
+		int partType = typeword & 0x1FFFFFFF;
+		boolean z = (typeword & 0x80000000) != 0;
+		boolean m = (typeword & 0x40000000) != 0;
+		// parts should not have an SRID, but skip it anyway
+		if ((typeword & 0x20000000) != 0)
+		{
+			data.getInt();
+		}
+		if ((type == MultiPoint.TYPE) && (partType == Point.TYPE))
+		{
+			readCoordinate(data, z, m, true);
+		}
+		else if ((type == MultiLineString.TYPE) && (partType == LineString.TYPE))
+		{
+			readLine(data, z, m, 1);
+		}
+		else if ((type == MultiPolygon.TYPE) && (partType == Polygon.TYPE))
+		{
+			readPolygon(data, z, m, 1);
+		}
+		else
+		{
+			throw new IllegalArgumentException("part type " + partType + " does not match the batch type " + type);
+		}
+	}
+
+	/**
+	 * Reads a polygon.
+	 * @param data {@link ValueGetter}
+	 * @param z true if the coordinates have a z value
+	 * @param m true if the coordinates have a measure
+	 * @param level offset level of the polygon
+	 */
+	private void readPolygon(ValueGetter data, boolean z, boolean m, int level)
+	{
+		int count = data.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			readLine(data, z, m, level + 1);
+		}
+		endOffset(level);
+	}
+
+	/**
+	 * Sets the validity of the next geometry and increases the size.
+	 * @param valid true if the geometry is not null
+	 */
+	private void setValid(boolean valid)
+	{
+		if ((size >>> 3) == validity.length)
+		{
+			validity = Arrays.copyOf(validity, validity.length * 2);
+		}
+		if (valid)
+		{
+			validity[size >>> 3] |= (byte) (1 << (size & 7));
+		}
+		size++;
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * GeoArrow columnar geometry package.
+ * @author Sebastian Baumhekel
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package io.github.sebasbaumh.postgis.geoarrow;
@@ -0,0 +1,891 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.Envelope;
+
+/**
+ * A mutable spatial index based on a uniform grid, which can be updated and queried by multiple threads concurrently.
+ * Each item is stored in all grid cells its envelope overlaps. Items spanning too many cells are kept in a separate
+ * list that is checked by every query.
+ * <p>
+ * Updates of different items only synchronize on the affected cells. Queries are consistent for every item: they
+ * report it either at its position before or after a concurrent update, so a moved item is never seen twice or
+ * missed. Each cell has a version stamp (cells are hashed into a fixed table of stamps, so empty cells are covered
+ * too), which is changed by every update of the cell. Queries run without locking and are only repeated if the
+ * stamps of the cells they read have changed meanwhile. If that fails several times in a row, the query blocks
+ * updates of its cells while it collects the items. Windows covering more cells than the index contains read all
+ * stamps. The consumer is called after the items have been collected, so it can update the index. A consistent view
+ * of the whole index can be taken with {@link #snapshot()}.
+ * <p>
+ * The items are identified by {@link Object#equals(Object)} and {@link Object#hashCode()}, so their hash must not
+ * change while they are in the index (e.g. use an identifier instead of a mutable geometry).
+ * @author Sebastian Baumhekel
+ * @param <T> type of the items
+ */
+public final class GridIndex<T>
+{
+	/**
+	 * Part of a stamp counting the queries which block updates.
+	 */
+	private static final long BLOCKING_QUERIES = 0xFFFFL << 16;
+	/**
+	 * Increment of a stamp for a query blocking updates.
+	 */
+	private static final long BLOCKING_QUERY = 1L << 16;
+	/**
+	 * Maximum number of cells an item can be stored in. Larger items are put into the list of oversized items.
+	 */
+	private static final int MAX_CELLS_PER_ITEM = 64;
+	/**
+	 * Number of attempts of a query without locking before it blocks updates of its cells.
+	 */
+	private static final int MAX_OPTIMISTIC_QUERIES = 3;
+	/**
+	 * Increment of a stamp for a running update.
+	 */
+	private static final long RUNNING_UPDATE = 1L;
+	/**
+	 * Part of a stamp counting the running updates.
+	 */
+	private static final long RUNNING_UPDATES = 0xFFFFL;
+	/**
+	 * Number of bits of the index of a stamp.
+	 */
+	private static final int STAMP_BITS = 10;
+	/**
+	 * Increment of a stamp for a started update, which changes its version.
+	 */
+	private static final long STARTED_UPDATE = 1L << 32;
+
+	private final double cellSize;
+	/**
+	 * Cells by their key (see {@link #getKey(int, int)}).
+	 */
+	private final ConcurrentHashMap<Long, Cell<T>> cells = new ConcurrentHashMap<Long, Cell<T>>();
+	/**
+	 * Current entries by their items.
+	 */
+	private final ConcurrentHashMap<T, Entry<T>> entries = new ConcurrentHashMap<T, Entry<T>>();
+	/**
+	 * Items which span too many cells.
+	 */
+	private final Cell<T> oversized = new Cell<T>(Integer.MIN_VALUE, Integer.MIN_VALUE);
+	/**
+	 * Updates share this lock, while snapshots take it exclusively.
+	 */
+	private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+	/**
+	 * Stamps of the cells (see {@link #getStamp(long)}): the version in the upper 32 bits, the number of queries
+	 * blocking updates in the next 16 bits and the number of running updates in the lower 16 bits.
+	 */
+	private final AtomicLongArray stamps = new AtomicLongArray(1 << STAMP_BITS);
+
+	/**
+	 * Constructs an instance.
+	 * @param cellSize size of a grid cell (should be about the size of a typical query window)
+	 * @throws IllegalArgumentException if the cell size is not positive
+	 */
+	public GridIndex(double cellSize)
+	{
+		if (!(cellSize > 0) || Double.isInfinite(cellSize))
+		{
+			throw new IllegalArgumentException("cell size has to be positive: " + cellSize);
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Removes duplicates from the given values.
+	 * @param values values (will be sorted)
+	 * @param length number of values
+	 * @return sorted distinct values
+	 */
+	private static int[] distinct(int[] values, int length)
+	{
+		Arrays.sort(values, 0, length);
+		int n = 0;
+		for (int i = 0; i < length; i++)
+		{
+			if ((n == 0) || (values[n - 1] != values[i]))
+			{
+				values[n++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, n);
+	}
+
+	/**
+	 * Gets the key of the cell with the given indices.
+	 * @param cx cell index in x direction
+	 * @param cy cell index in y direction
+	 * @return key
+	 */
+	private static long getKey(int cx, int cy)
+	{
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the number of cells in the given range.
+	 * @param minCellX first cell in x direction
+	 * @param minCellY first cell in y direction
+	 * @param maxCellX last cell in x direction
+	 * @param maxCellY last cell in y direction
+	 * @return number of cells
+	 */
+	private static long getNumberOfCells(int minCellX, int minCellY, int maxCellX, int maxCellY)
+	{
+		return ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+	}
+
+	/**
+	 * Gets the index of the stamp of the cell with the given key.
+	 * @param key key of the cell
+	 * @return index of the stamp
+	 */
+	private static int getStamp(long key)
+	{
+		// spread the keys, so neighboring cells use different stamps
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - STAMP_BITS));
+	}
+
+	/**
+	 * Creates an array of entries.
+	 * @param length length
+	 * @return array
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static <T> Entry<T>[] newEntries(int length)
+	{
+		return new Entry[length];
+	}
+
+	/**
+	 * Adds the entry to all cells it overlaps.
+	 * @param entry {@link Entry}
+	 */
+	private void addToCells(Entry<T> entry)
+	{
+		if (entry.isOversized())
+		{
+			oversized.add(entry);
+			return;
+		}
+		for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++)
+		{
+			for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++)
+			{
+				Long key = getKey(cx, cy);
+				while (true)
+				{
+					final int x = cx;
+					final int y = cy;
+					Cell<T> cell = cells.computeIfAbsent(key, k -> new Cell<T>(x, y));
+					if (cell.add(entry))
+					{
+						break;
+					}
+					// cell has just been removed, so wait until it is gone and create a new one
+					cells.remove(key, cell);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts an update of the cells with the given stamps, which is registered, so running queries can detect it.
+	 * @param indices indices of the stamps
+	 * @return true on success, false if a query is blocking updates of one of the cells
+	 */
+	private boolean beginUpdate(int[] indices)
+	{
+		for (int i = 0; i < indices.length; i++)
+		{
+			while (true)
+			{
+				long stamp = stamps.get(indices[i]);
+				if ((stamp & BLOCKING_QUERIES) != 0)
+				{
+					// back off instead of waiting for the query, as it could wait for this update otherwise
+					endUpdate(indices, i);
+					return false;
+				}
+				if (stamps.compareAndSet(indices[i], stamp, stamp + STARTED_UPDATE + RUNNING_UPDATE))
+				{
+					break;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Blocks updates of the cells with the given stamps and waits until running updates are finished.
+	 * @param indices indices of the stamps
+	 */
+	private void blockUpdates(int[] indices)
+	{
+		for (int index : indices)
+		{
+			stamps.addAndGet(index, BLOCKING_QUERY);
+		}
+		for (int index : indices)
+		{
+			while ((stamps.get(index) & RUNNING_UPDATES) != 0)
+			{
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes intersect the given area in the current state of the index,
+	 * which may change while the items are collected.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param consumer consumer for the items
+	 */
+	private void collect(double minX, double minY, double maxX, double maxY, Consumer<? super T> consumer)
+	{
+		int minCellX = getCell(minX);
+		int minCellY = getCell(minY);
+		int maxCellX = getCell(maxX);
+		int maxCellY = getCell(maxY);
+		if (getNumberOfCells(minCellX, minCellY, maxCellX, maxCellY) <= cells.size())
+		{
+			for (int cx = minCellX; cx <= maxCellX; cx++)
+			{
+				for (int cy = minCellY; cy <= maxCellY; cy++)
+				{
+					Cell<T> cell = cells.get(getKey(cx, cy));
+					if (cell != null)
+					{
+						queryCell(cell, minX, minY, maxX, maxY, minCellX, minCellY, consumer);
+					}
+				}
+			}
+		}
+		else
+		{
+			// window covers more cells than there are, so just check all of them
+			for (Cell<T> cell : cells.values())
+			{
+				if ((cell.cx >= minCellX) && (cell.cx <= maxCellX) && (cell.cy >= minCellY) && (cell.cy <= maxCellY))
+				{
+					queryCell(cell, minX, minY, maxX, maxY, minCellX, minCellY, consumer);
+				}
+			}
+		}
+		for (Entry<T> entry : oversized.entries)
+		{
+			if (entry.intersects(minX, minY, maxX, maxY))
+			{
+				consumer.accept(entry.item);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the given item is in the index.
+	 * @param item item
+	 * @return true on success, else false
+	 */
+	public boolean contains(T item)
+	{
+		return entries.containsKey(item);
+	}
+
+	/**
+	 * Ends an update started by {@link #beginUpdate(int[])}.
+	 * @param indices indices of the stamps
+	 * @param length number of stamps to release
+	 */
+	private void endUpdate(int[] indices, int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			stamps.addAndGet(indices[i], -RUNNING_UPDATE);
+		}
+	}
+
+	/**
+	 * Gets the cell index of the given coordinate.
+	 * @param v coordinate
+	 * @return cell index
+	 */
+	private int getCell(double v)
+	{
+		double c = Math.floor(v / cellSize);
+		if (c <= Integer.MIN_VALUE + 1)
+		{
+			return Integer.MIN_VALUE + 1;
+		}
+		if (c >= Integer.MAX_VALUE)
+		{
+			return Integer.MAX_VALUE;
+		}
+		return (int) c;
+	}
+
+	/**
+	 * Gets the size of a grid cell.
+	 * @return cell size
+	 */
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * Gets the current envelope of the given item.
+	 * @param item item
+	 * @return {@link Envelope} on success, else null
+	 */
+	@Nullable
+	public Envelope getEnvelope(T item)
+	{
+		Entry<T> entry = entries.get(item);
+		if (entry == null)
+		{
+			return null;
+		}
+		return new Envelope(entry.minX, entry.minY, entry.maxX, entry.maxY);
+	}
+
+	/**
+	 * Gets the stamps of the cells a query of the given area reads.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @return sorted distinct indices of the stamps
+	 */
+	private int[] getQueryStamps(double minX, double minY, double maxX, double maxY)
+	{
+		int minCellX = getCell(minX);
+		int minCellY = getCell(minY);
+		int maxCellX = getCell(maxX);
+		int maxCellY = getCell(maxY);
+		long numCells = getNumberOfCells(minCellX, minCellY, maxCellX, maxCellY);
+		if ((numCells >= stamps.length()) || (numCells > cells.size()))
+		{
+			// all cells of the index are visited, so all stamps are needed
+			int[] indices = new int[stamps.length()];
+			Arrays.setAll(indices, i -> i);
+			return indices;
+		}
+		int[] indices = new int[(int) numCells + 1];
+		int n = 0;
+		for (int cx = minCellX; cx <= maxCellX; cx++)
+		{
+			for (int cy = minCellY; cy <= maxCellY; cy++)
+			{
+				indices[n++] = getStamp(getKey(cx, cy));
+			}
+		}
+		indices[n++] = getStamp(getKey(oversized.cx, oversized.cy));
+		return distinct(indices, n);
+	}
+
+	/**
+	 * Gets the stamps of the cells an update of an item changes.
+	 * @param entry new entry (can be null)
+	 * @param old old entry (can be null)
+	 * @return sorted distinct indices of the stamps
+	 */
+	private int[] getUpdateStamps(@Nullable Entry<T> entry, @Nullable Entry<T> old)
+	{
+		int[] indices = new int[2 * MAX_CELLS_PER_ITEM];
+		int n = getUpdateStamps(entry, indices, 0);
+		n = getUpdateStamps(old, indices, n);
+		return distinct(indices, n);
+	}
+
+	/**
+	 * Gets the stamps of the cells of the given entry.
+	 * @param entry entry (can be null)
+	 * @param indices array receiving the indices of the stamps
+	 * @param offset offset in the array
+	 * @return new offset in the array
+	 */
+	private int getUpdateStamps(@Nullable Entry<T> entry, int[] indices, int offset)
+	{
+		if (entry == null)
+		{
+			return offset;
+		}
+		if (entry.isOversized())
+		{
+			indices[offset] = getStamp(getKey(oversized.cx, oversized.cy));
+			return offset + 1;
+		}
+		int n = offset;
+		for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++)
+		{
+			for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++)
+			{
+				indices[n++] = getStamp(getKey(cx, cy));
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Inserts the given item or moves it to a new position if it is already in the index.
+	 * @param item item
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 */
+	public void put(T item, double x, double y)
+	{
+		put(item, x, y, x, y);
+	}
+
+	/**
+	 * Inserts the given item or moves it to a new position if it is already in the index.
+	 * @param item item
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @throws IllegalArgumentException if the coordinates are not valid
+	 */
+	public void put(T item, double minX, double minY, double maxX, double maxY)
+	{
+		if (!(minX <= maxX) || !(minY <= maxY))
+		{
+			throw new IllegalArgumentException(
+					"invalid envelope: " + minX + " " + minY + ", " + maxX + " " + maxY);
+		}
+		Entry<T> entry = new Entry<T>(item, minX, minY, maxX, maxY, getCell(minX), getCell(minY), getCell(maxX),
+				getCell(maxY));
+		Lock lock = snapshotLock.readLock();
+		lock.lock();
+		try
+		{
+			// updates of the same item are serialized by the map
+			entries.compute(item, (k, old) -> {
+				updateCells(entry, old);
+				return entry;
+			});
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Inserts the given item or moves it to a new position if it is already in the index.
+	 * @param item item
+	 * @param env envelope of the item
+	 * @throws IllegalArgumentException if the envelope is empty
+	 */
+	public void put(T item, Envelope env)
+	{
+		put(item, env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY());
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes intersect the given area.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param consumer consumer for the items
+	 */
+	public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> consumer)
+	{
+		if (!(minX <= maxX) || !(minY <= maxY))
+		{
+			return;
+		}
+		List<T> result = new ArrayList<T>();
+		boolean consistent = false;
+		for (int i = 0; (i < MAX_OPTIMISTIC_QUERIES) && !consistent; i++)
+		{
+			// the result is only valid if none of the cells has been changed in between
+			int[] indices = getQueryStamps(minX, minY, maxX, maxY);
+			long[] versions = readStamps(indices);
+			if (versions != null)
+			{
+				collect(minX, minY, maxX, maxY, result::add);
+				consistent = Arrays.equals(versions, readStamps(indices));
+			}
+			if (!consistent)
+			{
+				result.clear();
+				Thread.yield();
+			}
+		}
+		if (!consistent)
+		{
+			// too many concurrent updates, so block the ones of the cells while collecting the items
+			int[] indices = getQueryStamps(minX, minY, maxX, maxY);
+			blockUpdates(indices);
+			try
+			{
+				collect(minX, minY, maxX, maxY, result::add);
+			}
+			finally
+			{
+				for (int index : indices)
+				{
+					stamps.addAndGet(index, -BLOCKING_QUERY);
+				}
+			}
+		}
+		result.forEach(consumer);
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes intersect the given envelope.
+	 * @param env {@link Envelope}
+	 * @param consumer consumer for the items
+	 */
+	public void query(Envelope env, Consumer<? super T> consumer)
+	{
+		if (!env.isEmpty())
+		{
+			query(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY(), consumer);
+		}
+	}
+
+	/**
+	 * Queries a single cell.
+	 * @param cell {@link Cell}
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param minCellX first cell of the query in x direction
+	 * @param minCellY first cell of the query in y direction
+	 * @param consumer consumer for the items
+	 */
+	private void queryCell(Cell<T> cell, double minX, double minY, double maxX, double maxY, int minCellX,
+			int minCellY, Consumer<? super T> consumer)
+	{
+		for (Entry<T> entry : cell.entries)
+		{
+			// an item in multiple cells is only reported in the first cell shared by the item and the query
+			if ((cell.cx == Math.max(entry.minCellX, minCellX)) && (cell.cy == Math.max(entry.minCellY, minCellY))
+					&& entry.intersects(minX, minY, maxX, maxY))
+			{
+				consumer.accept(entry.item);
+			}
+		}
+	}
+
+	/**
+	 * Reads the given stamps.
+	 * @param indices indices of the stamps
+	 * @return versions of the stamps on success, null if an update of one of the cells is running
+	 */
+	@Nullable
+	private long[] readStamps(int[] indices)
+	{
+		long[] versions = new long[indices.length];
+		for (int i = 0; i < indices.length; i++)
+		{
+			long stamp = stamps.get(indices[i]);
+			if ((stamp & RUNNING_UPDATES) != 0)
+			{
+				return null;
+			}
+			// queries blocking updates do not change the cells
+			versions[i] = stamp & ~BLOCKING_QUERIES;
+		}
+		return versions;
+	}
+
+	/**
+	 * Removes the given item.
+	 * @param item item
+	 * @return true if the item was removed, false if it was not in the index
+	 */
+	public boolean remove(T item)
+	{
+		boolean[] found = new boolean[1];
+		Lock lock = snapshotLock.readLock();
+		lock.lock();
+		try
+		{
+			entries.computeIfPresent(item, (k, old) -> {
+				updateCells(null, old);
+				found[0] = true;
+				return null;
+			});
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		return found[0];
+	}
+
+	/**
+	 * Removes the entry from all cells it overlaps.
+	 * @param entry {@link Entry}
+	 */
+	private void removeFromCells(Entry<T> entry)
+	{
+		if (entry.isOversized())
+		{
+			oversized.remove(entry);
+			return;
+		}
+		for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++)
+		{
+			for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++)
+			{
+				Long key = getKey(cx, cy);
+				Cell<T> cell = cells.get(key);
+				if ((cell != null) && cell.remove(entry))
+				{
+					// drop cells which became empty
+					cells.remove(key, cell);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of items.
+	 * @return number of items
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Takes a consistent snapshot of all items and their envelopes. Updates are blocked while the entries are copied,
+	 * but queries are not affected.
+	 * @return {@link PackedRTree} containing all current items
+	 */
+	public PackedRTree<T> snapshot()
+	{
+		Map<T, Envelope> copy = new HashMap<T, Envelope>();
+		Lock lock = snapshotLock.writeLock();
+		lock.lock();
+		try
+		{
+			for (Entry<T> entry : entries.values())
+			{
+				copy.put(entry.item, new Envelope(entry.minX, entry.minY, entry.maxX, entry.maxY));
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		// build the tree outside of the lock
+		return new PackedRTree<T>(copy.keySet(), copy::get);
+	}
+
+	/**
+	 * Replaces the old entry of an item by the new one in the cells.
+	 * @param entry new entry (can be null)
+	 * @param old old entry (can be null)
+	 */
+	private void updateCells(@Nullable Entry<T> entry, @Nullable Entry<T> old)
+	{
+		int[] indices = getUpdateStamps(entry, old);
+		while (!beginUpdate(indices))
+		{
+			Thread.yield();
+		}
+		try
+		{
+			// add the new entry first, so cells shared with the old one do not become empty in between
+			if (entry != null)
+			{
+				addToCells(entry);
+			}
+			if (old != null)
+			{
+				removeFromCells(old);
+			}
+		}
+		finally
+		{
+			endUpdate(indices, indices.length);
+		}
+	}
+
+	/**
+	 * A grid cell with its entries.
+	 * @param <T> type of the items
+	 */
+	private static final class Cell<T>
+	{
+		final int cx;
+		final int cy;
+		/**
+		 * Entries, which are replaced on every modification, so readers always see a consistent array.
+		 */
+		volatile Entry<T>[] entries = newEntries(0);
+		/**
+		 * Flag, if the cell has become empty and is about to be removed.
+		 */
+		private boolean removed;
+
+		/**
+		 * Constructs an instance.
+		 * @param cx cell index in x direction
+		 * @param cy cell index in y direction
+		 */
+		Cell(int cx, int cy)
+		{
+			this.cx = cx;
+			this.cy = cy;
+		}
+
+		/**
+		 * Adds an entry.
+		 * @param entry {@link Entry}
+		 * @return true on success, false if the cell has already been removed
+		 */
+		synchronized boolean add(Entry<T> entry)
+		{
+			if (removed)
+			{
+				return false;
+			}
+			Entry<T>[] old = entries;
+			Entry<T>[] newEntries = Arrays.copyOf(old, old.length + 1);
+			newEntries[old.length] = entry;
+			entries = newEntries;
+			return true;
+		}
+
+		/**
+		 * Removes an entry.
+		 * @param entry {@link Entry}
+		 * @return true if the cell is empty now and has to be removed, else false
+		 */
+		synchronized boolean remove(Entry<T> entry)
+		{
+			Entry<T>[] old = entries;
+			for (int i = 0; i < old.length; i++)
+			{
+				if (old[i] == entry)
+				{
+					Entry<T>[] newEntries = Arrays.copyOf(old, old.length - 1);
+					System.arraycopy(old, i + 1, newEntries, i, old.length - i - 1);
+					entries = newEntries;
+					break;
+				}
+			}
+			// the list of oversized items is never removed
+			if ((entries.length == 0) && (cx != Integer.MIN_VALUE))
+			{
+				removed = true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * An item with its envelope. Entries are immutable and replaced on every update.
+	 * @param <T> type of the items
+	 */
+	private static final class Entry<T>
+	{
+		final T item;
+		final int maxCellX;
+		final int maxCellY;
+		final double maxX;
+		final double maxY;
+		final int minCellX;
+		final int minCellY;
+		final double minX;
+		final double minY;
+
+		/**
+		 * Constructs an instance.
+		 * @param item item
+		 * @param minX minimum x coordinate
+		 * @param minY minimum y coordinate
+		 * @param maxX maximum x coordinate
+		 * @param maxY maximum y coordinate
+		 * @param minCellX first cell in x direction
+		 * @param minCellY first cell in y direction
+		 * @param maxCellX last cell in x direction
+		 * @param maxCellY last cell in y direction
+		 */
+		Entry(T item, double minX, double minY, double maxX, double maxY, int minCellX, int minCellY, int maxCellX,
+				int maxCellY)
+		{
+			this.item = item;
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.minCellX = minCellX;
+			this.minCellY = minCellY;
+			this.maxCellX = maxCellX;
+			this.maxCellY = maxCellY;
+		}
+
+		/**
+		 * Checks if the envelope intersects the given area.
+		 * @param x1 minimum x coordinate
+		 * @param y1 minimum y coordinate
+		 * @param x2 maximum x coordinate
+		 * @param y2 maximum y coordinate
+		 * @return true on success, else false
+		 */
+		boolean intersects(double x1, double y1, double x2, double y2)
+		{
+			return (minX <= x2) && (maxX >= x1) && (minY <= y2) && (maxY >= y1);
+		}
+
+		/**
+		 * Checks if the entry spans too many cells.
+		 * @return true on success, else false
+		 */
+		boolean isOversized()
+		{
+			return ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1) > MAX_CELLS_PER_ITEM;
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+/**
+ * Utility functions for building spatial indexes.
+ * @author Sebastian Baumhekel
+ */
+final class IndexUtil
+{
+	// prevent instantiating this class
+	@Deprecated
+	private IndexUtil()
+	{
+	}
+
+	/**
+	 * Sorts the given index range by the given keys.
+	 * @param order indices to sort
+	 * @param keys keys by index
+	 * @param from start of the range
+	 * @param to end of the range (exclusive)
+	 */
+	static void sort(int[] order, double[] keys, int from, int to)
+	{
+		int lo = from;
+		int hi = to - 1;
+		while (hi - lo > 16)
+		{
+			// quicksort with the median of three as pivot
+			int mid = (lo + hi) >>> 1;
+			double a = keys[order[lo]];
+			double b = keys[order[mid]];
+			double c = keys[order[hi]];
+			double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+			int i = lo;
+			int j = hi;
+			while (i <= j)
+			{
+				while (keys[order[i]] < pivot)
+				{
+					i++;
+				}
+				while (keys[order[j]] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					int t = order[i];
+					order[i] = order[j];
+					order[j] = t;
+					i++;
+					j--;
+				}
+			}
+			// recurse into the smaller part, iterate over the larger one
+			if (j - lo < hi - i)
+			{
+				sort(order, keys, lo, j + 1);
+				lo = i;
+			}
+			else
+			{
+				sort(order, keys, i, hi + 1);
+				hi = j;
+			}
+		}
+		// insertion sort for small ranges
+		for (int i = lo + 1; i <= hi; i++)
+		{
+			int t = order[i];
+			double k = keys[t];
+			int j = i - 1;
+			while ((j >= lo) && (keys[order[j]] > k))
+			{
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = t;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+/**
+ * Result of a {@link PointInPolygonJoin}, which is a list of pairs of point and polygon ids together with some
+ * statistics about the join.
+ * @author Sebastian Baumhekel
+ */
+public final class JoinResult
+{
+	private final long elapsedNanos;
+	private final int numberOfPoints;
+	private final long peakChunkMemory;
+	private final int[] pointIds;
+	private final int[] polygonIds;
+
+	/**
+	 * Constructs an instance.
+	 * @param pointIds point ids
+	 * @param polygonIds polygon ids
+	 * @param numberOfPoints number of points
+	 * @param elapsedNanos elapsed time in nanoseconds
+	 * @param peakChunkMemory estimated peak memory used by a chunk of the join in bytes
+	 */
+	JoinResult(int[] pointIds, int[] polygonIds, int numberOfPoints, long elapsedNanos, long peakChunkMemory)
+	{
+		this.pointIds = pointIds;
+		this.polygonIds = polygonIds;
+		this.numberOfPoints = numberOfPoints;
+		this.elapsedNanos = elapsedNanos;
+		this.peakChunkMemory = peakChunkMemory;
+	}
+
+	/**
+	 * Gets the time the join took.
+	 * @return elapsed time in nanoseconds
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+
+	/**
+	 * Gets the number of points that have been joined.
+	 * @return number of points
+	 */
+	public int getNumberOfPoints()
+	{
+		return numberOfPoints;
+	}
+
+	/**
+	 * Gets the estimated peak memory used by a chunk of the join for buffering and partitioning its points and
+	 * collecting its pairs. The pairs of all chunks in the result are not included.
+	 * @return memory usage in bytes
+	 */
+	public long getPeakChunkMemory()
+	{
+		return peakChunkMemory;
+	}
+
+	/**
+	 * Gets the id (index) of the point of the given pair.
+	 * @param index index of the pair
+	 * @return point id
+	 */
+	public int getPointId(int index)
+	{
+		return pointIds[index];
+	}
+
+	/**
+	 * Gets the ids (indices) of the points of all pairs.
+	 * @return point ids (not a copy)
+	 */
+	@edu.umd.cs.findbugs.annotations.SuppressFBWarnings("EI_EXPOSE_REP")
+	public int[] getPointIds()
+	{
+		return pointIds;
+	}
+
+	/**
+	 * Gets the throughput of the join.
+	 * @return points per second
+	 */
+	public double getPointsPerSecond()
+	{
+		return (elapsedNanos > 0) ? numberOfPoints * 1e9 / elapsedNanos : 0;
+	}
+
+	/**
+	 * Gets the id (index) of the polygon of the given pair.
+	 * @param index index of the pair
+	 * @return polygon id
+	 */
+	public int getPolygonId(int index)
+	{
+		return polygonIds[index];
+	}
+
+	/**
+	 * Gets the ids (indices) of the polygons of all pairs.
+	 * @return polygon ids (not a copy)
+	 */
+	@edu.umd.cs.findbugs.annotations.SuppressFBWarnings("EI_EXPOSE_REP")
+	public int[] getPolygonIds()
+	{
+		return polygonIds;
+	}
+
+	/**
+	 * Gets the number of pairs.
+	 * @return number of pairs
+	 */
+	public int size()
+	{
+		return pointIds.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "JoinResult [pairs=" + pointIds.length + ", points=" + numberOfPoints + ", time="
+				+ (elapsedNanos / 1000000) + "ms, throughput=" + Math.round(getPointsPerSecond())
+				+ " points/s, peakChunkMemory=" + peakChunkMemory + " bytes]";
+	}
+
+}
@@ -0,0 +1,528 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.PGbox2d;
+import io.github.sebasbaumh.postgis.Point;
+
+/**
+ * A static R-tree, which is bulk loaded once using the Sort-Tile-Recursive (STR) algorithm. The items are sorted into
+ * vertical slices and then by y within each slice, so consecutive items can be grouped into nodes. The nodes of each
+ * level are sorted the same way before they are grouped into the level above. All bounds are kept in a single
+ * primitive array, where the entries of each level are stored next to each other and the children of a node can be
+ * found by its position. Items with an empty envelope are not indexed.
+ * <p>
+ * The tree cannot be modified after it has been built, so it can be queried by multiple threads concurrently. Window
+ * and point queries do not allocate any objects.
+ * @author Sebastian Baumhekel
+ * @param <T> type of the items
+ */
+public final class PackedRTree<T>
+{
+	/**
+	 * Default maximum number of children of a node.
+	 */
+	public static final int DEFAULT_NODE_CAPACITY = 16;
+
+	/**
+	 * Bounds of all items and nodes (minX, minY, maxX, maxY for each). Items come first, followed by the nodes of each
+	 * level up to the root.
+	 */
+	private final double[] bounds;
+	/**
+	 * Items in the order of the leaves.
+	 */
+	private final Object[] items;
+	/**
+	 * Start index of each level in the bounds (0 for the items).
+	 */
+	private final int[] levelOffsets;
+	/**
+	 * Number of entries of each level.
+	 */
+	private final int[] levelSizes;
+	private final int nodeCapacity;
+
+	/**
+	 * Constructs an instance using the default node capacity.
+	 * @param items items
+	 * @param envelopeFunction function to get the envelope of an item
+	 */
+	public PackedRTree(Collection<? extends T> items, Function<? super T, Envelope> envelopeFunction)
+	{
+		this(items, envelopeFunction, DEFAULT_NODE_CAPACITY);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param items items
+	 * @param envelopeFunction function to get the envelope of an item
+	 * @param nodeCapacity maximum number of children of a node
+	 * @throws IllegalArgumentException if the node capacity is less than 2
+	 */
+	public PackedRTree(Collection<? extends T> items, Function<? super T, Envelope> envelopeFunction,
+			int nodeCapacity)
+	{
+		if (nodeCapacity < 2)
+		{
+			throw new IllegalArgumentException("node capacity has to be at least 2: " + nodeCapacity);
+		}
+		this.nodeCapacity = nodeCapacity;
+		// collect all items with their bounds
+		Object[] itemList = new Object[items.size()];
+		double[] itemBounds = new double[items.size() * 4];
+		int n = 0;
+		for (T item : items)
+		{
+			Envelope env = envelopeFunction.apply(item);
+			if (env.isEmpty())
+			{
+				continue;
+			}
+			itemList[n] = item;
+			itemBounds[n * 4] = env.getMinX();
+			itemBounds[n * 4 + 1] = env.getMinY();
+			itemBounds[n * 4 + 2] = env.getMaxX();
+			itemBounds[n * 4 + 3] = env.getMaxY();
+			n++;
+		}
+		// calculate the size of all levels
+		List<Integer> sizes = new ArrayList<Integer>();
+		int levelSize = n;
+		sizes.add(levelSize);
+		while (levelSize > 1)
+		{
+			levelSize = (levelSize + nodeCapacity - 1) / nodeCapacity;
+			sizes.add(levelSize);
+		}
+		this.levelSizes = new int[sizes.size()];
+		this.levelOffsets = new int[sizes.size()];
+		int total = 0;
+		for (int i = 0; i < levelSizes.length; i++)
+		{
+			levelSizes[i] = sizes.get(i);
+			levelOffsets[i] = total;
+			total += levelSizes[i];
+		}
+		this.bounds = new double[total * 4];
+		// sort the items into the leaves
+		int[] order = sortTiles(itemBounds, 0, n, nodeCapacity);
+		this.items = new Object[n];
+		for (int i = 0; i < n; i++)
+		{
+			int j = order[i];
+			this.items[i] = itemList[j];
+			System.arraycopy(itemBounds, j * 4, bounds, i * 4, 4);
+		}
+		// then build all levels above, sorting the nodes of each level into tiles before grouping them
+		for (int level = 1; level < levelSizes.length; level++)
+		{
+			buildLevel(level);
+			if (level < levelSizes.length - 1)
+			{
+				sortLevel(level);
+			}
+		}
+	}
+
+	/**
+	 * Gets the squared distance of the given coordinate to the bounds at the given index.
+	 * @param b bounds
+	 * @param index index of the bounds
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return squared distance
+	 */
+	private static double distanceSquared(double[] b, int index, double x, double y)
+	{
+		int i = index * 4;
+		double dx = Math.max(Math.max(b[i] - x, x - b[i + 2]), 0);
+		double dy = Math.max(Math.max(b[i + 1] - y, y - b[i + 3]), 0);
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Creates a tree for the given boxes.
+	 * @param boxes boxes
+	 * @return {@link PackedRTree}
+	 */
+	public static <T extends PGbox2d> PackedRTree<T> ofBoxes(Collection<? extends T> boxes)
+	{
+		return new PackedRTree<T>(boxes, PackedRTree::toEnvelope);
+	}
+
+	/**
+	 * Creates a tree for the given geometries using their envelopes.
+	 * @param geoms geometries
+	 * @return {@link PackedRTree}
+	 */
+	public static <T extends Geometry> PackedRTree<T> ofGeometries(Collection<? extends T> geoms)
+	{
+		return new PackedRTree<T>(geoms, Geometry::getEnvelope);
+	}
+
+	/**
+	 * Sorts the given entries into tiles using the Sort-Tile-Recursive algorithm.
+	 * @param b bounds
+	 * @param offset index of the first entry in the bounds
+	 * @param n number of entries
+	 * @param nodeCapacity maximum number of children of a node
+	 * @return order of the entries (relative to the first entry)
+	 */
+	private static int[] sortTiles(double[] b, int offset, int n, int nodeCapacity)
+	{
+		int[] order = new int[n];
+		double[] centerX = new double[n];
+		double[] centerY = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			int j = (offset + i) * 4;
+			order[i] = i;
+			centerX[i] = (b[j] + b[j + 2]) / 2;
+			centerY[i] = (b[j + 1] + b[j + 3]) / 2;
+		}
+		// sort by x into vertical slices
+		IndexUtil.sort(order, centerX, 0, n);
+		int nodes = (n + nodeCapacity - 1) / nodeCapacity;
+		int slices = (int) Math.ceil(Math.sqrt(nodes));
+		int sliceSize = slices * nodeCapacity;
+		// then sort each slice by y
+		for (int i = 0; i < n; i += sliceSize)
+		{
+			IndexUtil.sort(order, centerY, i, Math.min(i + sliceSize, n));
+		}
+		return order;
+	}
+
+	/**
+	 * Converts the given box to an {@link Envelope}.
+	 * @param box box
+	 * @return {@link Envelope}
+	 */
+	private static Envelope toEnvelope(PGbox2d box)
+	{
+		Point llb = box.getLLB();
+		Point urt = box.getURT();
+		return new Envelope(Math.min(llb.getX(), urt.getX()), Math.min(llb.getY(), urt.getY()),
+				Math.max(llb.getX(), urt.getX()), Math.max(llb.getY(), urt.getY()));
+	}
+
+	/**
+	 * Builds the nodes of the given level from the entries of the level below. As the entries are sorted into tiles,
+	 * consecutive entries are close to each other and can just be grouped.
+	 * @param level level
+	 */
+	private void buildLevel(int level)
+	{
+		int childOffset = levelOffsets[level - 1];
+		int childCount = levelSizes[level - 1];
+		int offset = levelOffsets[level];
+		for (int node = 0; node < levelSizes[level]; node++)
+		{
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			int end = Math.min((node + 1) * nodeCapacity, childCount);
+			for (int child = node * nodeCapacity; child < end; child++)
+			{
+				int i = (childOffset + child) * 4;
+				minX = Math.min(minX, bounds[i]);
+				minY = Math.min(minY, bounds[i + 1]);
+				maxX = Math.max(maxX, bounds[i + 2]);
+				maxY = Math.max(maxY, bounds[i + 3]);
+			}
+			int i = (offset + node) * 4;
+			bounds[i] = minX;
+			bounds[i + 1] = minY;
+			bounds[i + 2] = maxX;
+			bounds[i + 3] = maxY;
+		}
+	}
+
+	/**
+	 * Gets the envelope of all items.
+	 * @return {@link Envelope} (can be {@link Envelope#EMPTY} if there are no items)
+	 */
+	public Envelope getEnvelope()
+	{
+		if (items.length == 0)
+		{
+			return Envelope.EMPTY;
+		}
+		int i = (bounds.length / 4 - 1) * 4;
+		return new Envelope(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3]);
+	}
+
+	/**
+	 * Gets the level of the entry at the given index.
+	 * @param index index
+	 * @return level
+	 */
+	private int getLevel(int index)
+	{
+		int level = levelOffsets.length - 1;
+		while (levelOffsets[level] > index)
+		{
+			level--;
+		}
+		return level;
+	}
+
+	/**
+	 * Checks if the tree is empty.
+	 * @return true on success, else false
+	 */
+	public boolean isEmpty()
+	{
+		return items.length == 0;
+	}
+
+	/**
+	 * Gets the items whose envelopes are nearest to the given coordinate.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param k maximum number of items
+	 * @return items ordered by the distance of their envelopes (nearest first)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> nearest(double x, double y, int k)
+	{
+		List<T> result = new ArrayList<T>(Math.max(0, Math.min(k, items.length)));
+		if ((k <= 0) || (items.length == 0))
+		{
+			return result;
+		}
+		// best first search using a binary heap of entries ordered by distance
+		int capacity = 64;
+		double[] heapDist = new double[capacity];
+		int[] heapIndex = new int[capacity];
+		int size = 1;
+		heapIndex[0] = bounds.length / 4 - 1;
+		heapDist[0] = distanceSquared(bounds, heapIndex[0], x, y);
+		while ((size > 0) && (result.size() < k))
+		{
+			// take the nearest entry
+			int index = heapIndex[0];
+			size--;
+			double lastDist = heapDist[size];
+			int lastIndex = heapIndex[size];
+			int pos = 0;
+			while (true)
+			{
+				int child = pos * 2 + 1;
+				if (child >= size)
+				{
+					break;
+				}
+				if ((child + 1 < size) && (heapDist[child + 1] < heapDist[child]))
+				{
+					child++;
+				}
+				if (heapDist[child] >= lastDist)
+				{
+					break;
+				}
+				heapDist[pos] = heapDist[child];
+				heapIndex[pos] = heapIndex[child];
+				pos = child;
+			}
+			heapDist[pos] = lastDist;
+			heapIndex[pos] = lastIndex;
+			// an item?
+			if (index < items.length)
+			{
+				result.add((T) items[index]);
+				continue;
+			}
+			// add all children of the node
+			int level = getLevel(index);
+			int node = index - levelOffsets[level];
+			int childOffset = levelOffsets[level - 1];
+			int end = Math.min((node + 1) * nodeCapacity, levelSizes[level - 1]);
+			for (int child = node * nodeCapacity; child < end; child++)
+			{
+				if (size == capacity)
+				{
+					capacity *= 2;
+					heapDist = Arrays.copyOf(heapDist, capacity);
+					heapIndex = Arrays.copyOf(heapIndex, capacity);
+				}
+				int childIndex = childOffset + child;
+				double d = distanceSquared(bounds, childIndex, x, y);
+				// sift up
+				pos = size++;
+				while (pos > 0)
+				{
+					int parent = (pos - 1) / 2;
+					if (heapDist[parent] <= d)
+					{
+						break;
+					}
+					heapDist[pos] = heapDist[parent];
+					heapIndex[pos] = heapIndex[parent];
+					pos = parent;
+				}
+				heapDist[pos] = d;
+				heapIndex[pos] = childIndex;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes contain the given coordinate.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @param consumer consumer for the items
+	 */
+	public void query(double x, double y, Consumer<? super T> consumer)
+	{
+		query(x, y, x, y, consumer);
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes intersect the given area.
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param consumer consumer for the items
+	 */
+	public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> consumer)
+	{
+		if (items.length > 0)
+		{
+			int root = levelSizes.length - 1;
+			query(root, levelOffsets[root], minX, minY, maxX, maxY, consumer);
+		}
+	}
+
+	/**
+	 * Calls the consumer for all items whose envelopes intersect the given envelope.
+	 * @param env {@link Envelope}
+	 * @param consumer consumer for the items
+	 */
+	public void query(Envelope env, Consumer<? super T> consumer)
+	{
+		if (!env.isEmpty())
+		{
+			query(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY(), consumer);
+		}
+	}
+
+	/**
+	 * Queries the given entry.
+	 * @param level level of the entry
+	 * @param index index of the entry
+	 * @param minX minimum x coordinate
+	 * @param minY minimum y coordinate
+	 * @param maxX maximum x coordinate
+	 * @param maxY maximum y coordinate
+	 * @param consumer consumer for the items
+	 */
+	@SuppressWarnings("unchecked")
+	private void query(int level, int index, double minX, double minY, double maxX, double maxY,
+			Consumer<? super T> consumer)
+	{
+		int i = index * 4;
+		if ((bounds[i] > maxX) || (bounds[i + 1] > maxY) || (bounds[i + 2] < minX) || (bounds[i + 3] < minY))
+		{
+			return;
+		}
+		if (level == 0)
+		{
+			consumer.accept((T) items[index]);
+			return;
+		}
+		int node = index - levelOffsets[level];
+		int childOffset = levelOffsets[level - 1];
+		int end = Math.min((node + 1) * nodeCapacity, levelSizes[level - 1]);
+		for (int child = node * nodeCapacity; child < end; child++)
+		{
+			query(level - 1, childOffset + child, minX, minY, maxX, maxY, consumer);
+		}
+	}
+
+	/**
+	 * Gets the number of indexed items.
+	 * @return number of items
+	 */
+	public int size()
+	{
+		return items.length;
+	}
+
+	/**
+	 * Sorts the nodes of the given level into tiles, so they can be grouped into the level above. The children of a
+	 * node are found by its position, so the entries of all levels below are moved along with their nodes. Only the
+	 * last node of a level can have less children than the node capacity, so it stays at the end and all other nodes
+	 * span blocks of the same size on every level below.
+	 * @param level level (at least 1)
+	 */
+	private void sortLevel(int level)
+	{
+		int count = levelSizes[level];
+		long span = 1;
+		for (int i = 0; i < level; i++)
+		{
+			span *= nodeCapacity;
+		}
+		int full = (levelSizes[0] % span == 0) ? count : count - 1;
+		if (full < 2)
+		{
+			return;
+		}
+		int[] order = sortTiles(bounds, levelOffsets[level], full, nodeCapacity);
+		// move the blocks of all levels down to the items
+		int block = 1;
+		for (int l = level; l >= 0; l--)
+		{
+			int start = levelOffsets[l] * 4;
+			double[] b = Arrays.copyOfRange(bounds, start, start + full * block * 4);
+			for (int i = 0; i < full; i++)
+			{
+				System.arraycopy(b, order[i] * block * 4, bounds, start + i * block * 4, block * 4);
+			}
+			if (l == 0)
+			{
+				Object[] o = Arrays.copyOf(items, full * block);
+				for (int i = 0; i < full; i++)
+				{
+					System.arraycopy(o, order[i] * block, items, i * block, block);
+				}
+			}
+			block *= nodeCapacity;
+		}
+	}
+
+}
@@ -0,0 +1,397 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.Point;
+
+/**
+ * Joins large numbers of points with a set of polygons. The polygons are prepared (see {@link PreparedPolygon}) and
+ * indexed once. Each join reads the points in chunks of a fixed size, so the memory needed does not depend on the
+ * number of points (except for the result). The points of a chunk are partitioned by a grid in Z-order, so that points
+ * close to each other are tested together, and the partitions are processed in parallel. Points on the boundary of a polygon are assigned to
+ * it, so a point on a shared boundary is assigned to all adjacent polygons.
+ * <p>
+ * Instances can be used by multiple threads concurrently.
+ * @author Sebastian Baumhekel
+ */
+public final class PointInPolygonJoin
+{
+	/**
+	 * Default number of points that are partitioned and joined at once.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	/**
+	 * Number of grid cells in each direction for partitioning the points (has to be a power of 2).
+	 */
+	private static final int GRID_SIZE = 128;
+	/**
+	 * Minimum number of points of a partition.
+	 */
+	private static final int MIN_PARTITION_SIZE = 4096;
+
+	private final int chunkSize;
+	private final PreparedPolygon[] polygons;
+	private final PackedRTree<Integer> tree;
+
+	/**
+	 * Constructs an instance, which joins the points in chunks of {@link #DEFAULT_CHUNK_SIZE}.
+	 * @param polygons polygons, their ids are their indices
+	 * @throws IllegalArgumentException if a geometry does not consist of polygons
+	 */
+	public PointInPolygonJoin(Collection<? extends Geometry> polygons)
+	{
+		this(polygons, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param polygons polygons, their ids are their indices
+	 * @param chunkSize number of points that are partitioned and joined at once, which limits the memory needed for
+	 *            a join
+	 * @throws IllegalArgumentException if a geometry does not consist of polygons or the chunk size is not positive
+	 */
+	public PointInPolygonJoin(Collection<? extends Geometry> polygons, int chunkSize)
+	{
+		if (chunkSize <= 0)
+		{
+			throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		Geometry[] geoms = polygons.toArray(new Geometry[polygons.size()]);
+		this.polygons = new PreparedPolygon[geoms.length];
+		// preparing the polygons is independent of each other
+		IntStream.range(0, geoms.length).parallel().forEach(i -> this.polygons[i] = new PreparedPolygon(geoms[i]));
+		List<Integer> ids = new ArrayList<Integer>(geoms.length);
+		for (int i = 0; i < geoms.length; i++)
+		{
+			ids.add(i);
+		}
+		this.tree = new PackedRTree<Integer>(ids, i -> this.polygons[i].getEnvelope());
+	}
+
+	/**
+	 * Interleaves the bits of the given cell indices to get the position of the cell in Z-order.
+	 * @param cx cell index in x direction
+	 * @param cy cell index in y direction
+	 * @return position in Z-order
+	 */
+	private static int interleave(int cx, int cy)
+	{
+		int z = 0;
+		for (int bit = 0; bit < 16; bit++)
+		{
+			z |= ((cx >>> bit) & 1) << (2 * bit);
+			z |= ((cy >>> bit) & 1) << (2 * bit + 1);
+		}
+		return z;
+	}
+
+	/**
+	 * Gets the number of points that are partitioned and joined at once.
+	 * @return chunk size
+	 */
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * Gets the number of polygons.
+	 * @return number of polygons
+	 */
+	public int getNumberOfPolygons()
+	{
+		return polygons.length;
+	}
+
+	/**
+	 * Joins the given points with the polygons.
+	 * @param xs X-coordinates of the points
+	 * @param ys Y-coordinates of the points
+	 * @return pairs of point ids (indices in the arrays) and polygon ids, grouped by chunk and partition
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 */
+	public JoinResult join(double[] xs, double[] ys)
+	{
+		if (xs.length != ys.length)
+		{
+			throw new IllegalArgumentException("arrays differ in length: " + xs.length + ", " + ys.length);
+		}
+		long start = System.nanoTime();
+		int n = xs.length;
+		Pairs pairs = new Pairs();
+		// the coordinates are already in memory, so only the buffers for partitioning are needed
+		int[] cells = new int[Math.min(n, chunkSize)];
+		int[] order = new int[cells.length];
+		long peakChunkMemory = 0;
+		for (int from = 0; from < n; from += chunkSize)
+		{
+			int to = (int) Math.min(n, (long) from + chunkSize);
+			peakChunkMemory = Math.max(peakChunkMemory,
+					cells.length * 8L + joinChunk(xs, ys, from, to, 0, cells, order, pairs));
+		}
+		return pairs.toResult(n, System.nanoTime() - start, peakChunkMemory);
+	}
+
+	/**
+	 * Joins the given points with the polygons. The points are read in chunks, so the points do not have to fit into
+	 * memory at once.
+	 * @param points points
+	 * @return pairs of point ids (indices in the iteration order) and polygon ids, grouped by chunk and partition
+	 * @throws IllegalArgumentException if there are too many points to be identified by an int
+	 */
+	public JoinResult join(Iterable<Point> points)
+	{
+		long start = System.nanoTime();
+		Pairs pairs = new Pairs();
+		// the buffers grow up to the chunk size, so small inputs stay cheap
+		double[] xs = new double[Math.min(chunkSize, 1024)];
+		double[] ys = new double[xs.length];
+		int[] cells = new int[0];
+		int[] order = new int[0];
+		long peakChunkMemory = 0;
+		int chunkStart = 0;
+		Iterator<Point> it = points.iterator();
+		while (it.hasNext())
+		{
+			// read the next chunk
+			int n = 0;
+			while ((n < chunkSize) && it.hasNext())
+			{
+				if (n == xs.length)
+				{
+					int capacity = (int) Math.min(chunkSize, n * 2L);
+					xs = Arrays.copyOf(xs, capacity);
+					ys = Arrays.copyOf(ys, capacity);
+				}
+				Point p = it.next();
+				xs[n] = p.getX();
+				ys[n] = p.getY();
+				n++;
+			}
+			if (cells.length < n)
+			{
+				cells = new int[xs.length];
+				order = new int[xs.length];
+			}
+			if ((long) chunkStart + n > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("too many points");
+			}
+			long chunkMemory = xs.length * 16L + cells.length * 8L
+					+ joinChunk(xs, ys, 0, n, chunkStart, cells, order, pairs);
+			peakChunkMemory = Math.max(peakChunkMemory, chunkMemory);
+			chunkStart += n;
+		}
+		return pairs.toResult(chunkStart, System.nanoTime() - start, peakChunkMemory);
+	}
+
+	/**
+	 * Partitions and joins a chunk of points.
+	 * @param xs X-coordinates of the points
+	 * @param ys Y-coordinates of the points
+	 * @param from index of the first point of the chunk (inclusive)
+	 * @param to index of the last point of the chunk (exclusive)
+	 * @param offset offset added to the indices of the points to get their ids
+	 * @param cells buffer for the cells of the points, at least the size of the chunk
+	 * @param order buffer for the order of the points, at least the size of the chunk
+	 * @param pairs pairs to append the found pairs to
+	 * @return memory used for the pairs of the chunk in bytes
+	 */
+	private long joinChunk(double[] xs, double[] ys, int from, int to, int offset, int[] cells, int[] order,
+			Pairs pairs)
+	{
+		int n = to - from;
+		partition(xs, ys, from, to, cells, order);
+		int numPartitions = Math.max(1,
+				Math.min(n / MIN_PARTITION_SIZE, ForkJoinPool.getCommonPoolParallelism() * 8));
+		Partition[] partitions = new Partition[numPartitions];
+		IntStream.range(0, numPartitions).parallel().forEach(p -> {
+			Partition partition = new Partition(offset);
+			int end = (int) ((long) n * (p + 1) / numPartitions);
+			for (int i = (int) ((long) n * p / numPartitions); i < end; i++)
+			{
+				partition.test(order[i], xs, ys);
+			}
+			partitions[p] = partition;
+		});
+		long memoryUsage = 0;
+		for (Partition partition : partitions)
+		{
+			memoryUsage += partition.pointIds.length * 8L;
+			pairs.add(partition);
+		}
+		return memoryUsage;
+	}
+
+	/**
+	 * Sorts the points of a chunk by the grid cells they are in, where the cells are ordered in Z-order.
+	 * @param xs X-coordinates of the points
+	 * @param ys Y-coordinates of the points
+	 * @param from index of the first point of the chunk (inclusive)
+	 * @param to index of the last point of the chunk (exclusive)
+	 * @param cells buffer for the cells of the points, at least the size of the chunk
+	 * @param order receives the indices of the points in the arrays
+	 */
+	private void partition(double[] xs, double[] ys, int from, int to, int[] cells, int[] order)
+	{
+		int n = to - from;
+		// only points within the polygons are of interest, so use their envelope for the grid
+		Envelope env = tree.getEnvelope();
+		double minX = env.getMinX();
+		double minY = env.getMinY();
+		double scaleX = GRID_SIZE / Math.max(env.getWidth(), Double.MIN_NORMAL);
+		double scaleY = GRID_SIZE / Math.max(env.getHeight(), Double.MIN_NORMAL);
+		// counting sort by cell
+		int[] counts = new int[GRID_SIZE * GRID_SIZE + 1];
+		for (int i = 0; i < n; i++)
+		{
+			int cx = (int) Math.max(0, Math.min(GRID_SIZE - 1, (xs[from + i] - minX) * scaleX));
+			int cy = (int) Math.max(0, Math.min(GRID_SIZE - 1, (ys[from + i] - minY) * scaleY));
+			cells[i] = interleave(cx, cy);
+			counts[cells[i] + 1]++;
+		}
+		for (int i = 1; i < counts.length; i++)
+		{
+			counts[i] += counts[i - 1];
+		}
+		for (int i = 0; i < n; i++)
+		{
+			order[counts[cells[i]]++] = from + i;
+		}
+	}
+
+	/**
+	 * Pairs collected from the partitions of all chunks.
+	 */
+	private static final class Pairs
+	{
+		private int[] pointIds = new int[256];
+		private int[] polygonIds = new int[256];
+		private int size;
+
+		/**
+		 * Appends the pairs of the given partition.
+		 * @param partition partition
+		 */
+		void add(Partition partition)
+		{
+			if (size + partition.size > pointIds.length)
+			{
+				int capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+						Math.max((long) size + partition.size, pointIds.length * 2L));
+				pointIds = Arrays.copyOf(pointIds, capacity);
+				polygonIds = Arrays.copyOf(polygonIds, capacity);
+			}
+			System.arraycopy(partition.pointIds, 0, pointIds, size, partition.size);
+			System.arraycopy(partition.polygonIds, 0, polygonIds, size, partition.size);
+			size += partition.size;
+		}
+
+		/**
+		 * Creates the result of the join.
+		 * @param numberOfPoints number of points
+		 * @param elapsedNanos elapsed time in nanoseconds
+		 * @param peakChunkMemory estimated peak memory used by a chunk in bytes
+		 * @return result
+		 */
+		JoinResult toResult(int numberOfPoints, long elapsedNanos, long peakChunkMemory)
+		{
+			if (size < pointIds.length)
+			{
+				pointIds = Arrays.copyOf(pointIds, size);
+				polygonIds = Arrays.copyOf(polygonIds, size);
+			}
+			return new JoinResult(pointIds, polygonIds, numberOfPoints, elapsedNanos, peakChunkMemory);
+		}
+	}
+
+	/**
+	 * A partition of points, which collects the pairs found for them.
+	 */
+	private final class Partition implements Consumer<Integer>
+	{
+		int[] pointIds = new int[256];
+		int[] polygonIds = new int[256];
+		int size;
+		private final int offset;
+		private int currentPoint;
+		private double currentX;
+		private double currentY;
+
+		/**
+		 * Constructs an instance.
+		 * @param offset offset added to the indices of the points to get their ids
+		 */
+		Partition(int offset)
+		{
+			this.offset = offset;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.function.Consumer#accept(java.lang.Object)
+		 */
+		@Override
+		public void accept(Integer polygon)
+		{
+			if (polygons[polygon].intersects(currentX, currentY))
+			{
+				if (size == pointIds.length)
+				{
+					pointIds = Arrays.copyOf(pointIds, size * 2);
+					polygonIds = Arrays.copyOf(polygonIds, size * 2);
+				}
+				pointIds[size] = currentPoint + offset;
+				polygonIds[size] = polygon;
+				size++;
+			}
+		}
+
+		/**
+		 * Tests a point against all candidate polygons.
+		 * @param point index of the point
+		 * @param xs X-coordinates of the points
+		 * @param ys Y-coordinates of the points
+		 */
+		void test(int point, double[] xs, double[] ys)
+		{
+			currentPoint = point;
+			currentX = xs[point];
+			currentY = ys[point];
+			tree.query(currentX, currentY, this);
+		}
+	}
+
+}
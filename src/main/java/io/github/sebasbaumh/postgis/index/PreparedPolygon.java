@@ -0,0 +1,468 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.index;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A polygon prepared for fast repeated point in polygon tests. All edges of all rings are stored in a primitive array
+ * and indexed by a static interval tree over their y ranges, so a test only has to look at the edges crossing the
+ * horizontal line through the point. Arcs of curved rings are linearized (see {@link Curve#linearize()}).
+ * <p>
+ * The structure cannot be modified after it has been built, so it can be used by multiple threads concurrently. Tests
+ * do not allocate any objects.
+ * @author Sebastian Baumhekel
+ */
+public final class PreparedPolygon
+{
+	/**
+	 * Marker for a point on the boundary.
+	 */
+	private static final int BOUNDARY = -1;
+	/**
+	 * Maximum number of children of a node.
+	 */
+	private static final int NODE_CAPACITY = 8;
+
+	/**
+	 * Edges as x1, y1, x2, y2 in the order of the leaves.
+	 */
+	private final double[] edges;
+	private final Envelope envelope;
+	/**
+	 * Bounds of all edges and nodes (minY, maxY, maxX for each). Edges come first, followed by the nodes of each level
+	 * up to the root.
+	 */
+	private final double[] intervals;
+	/**
+	 * Start index of each level in the intervals (0 for the edges).
+	 */
+	private final int[] levelOffsets;
+	/**
+	 * Number of entries of each level.
+	 */
+	private final int[] levelSizes;
+
+	/**
+	 * Constructs an instance.
+	 * @param geom a polygon ({@link PolygonBase}) or a multi geometry containing polygons (like a
+	 *            {@link io.github.sebasbaumh.postgis.MultiPolygon})
+	 * @throws IllegalArgumentException if the geometry does not consist of polygons
+	 */
+	public PreparedPolygon(Geometry geom)
+	{
+		this.envelope = geom.getEnvelope();
+		EdgeList list = new EdgeList();
+		addPolygons(geom, list);
+		int n = list.size;
+		// sort the edges by the center of their y range
+		int[] order = new int[n];
+		double[] centerY = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			order[i] = i;
+			centerY[i] = (list.edges[i * 4 + 1] + list.edges[i * 4 + 3]) / 2;
+		}
+		IndexUtil.sort(order, centerY, 0, n);
+		// calculate the size of all levels
+		int levels = 1;
+		for (int size = n; size > 1; size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY)
+		{
+			levels++;
+		}
+		this.levelSizes = new int[levels];
+		this.levelOffsets = new int[levels];
+		int total = 0;
+		int size = n;
+		for (int i = 0; i < levels; i++)
+		{
+			levelSizes[i] = size;
+			levelOffsets[i] = total;
+			total += size;
+			size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		}
+		// copy the sorted edges
+		this.edges = new double[n * 4];
+		this.intervals = new double[total * 3];
+		for (int i = 0; i < n; i++)
+		{
+			System.arraycopy(list.edges, order[i] * 4, edges, i * 4, 4);
+			intervals[i * 3] = Math.min(edges[i * 4 + 1], edges[i * 4 + 3]);
+			intervals[i * 3 + 1] = Math.max(edges[i * 4 + 1], edges[i * 4 + 3]);
+			intervals[i * 3 + 2] = Math.max(edges[i * 4], edges[i * 4 + 2]);
+		}
+		// then build all levels above
+		for (int level = 1; level < levels; level++)
+		{
+			int childOffset = levelOffsets[level - 1];
+			int childCount = levelSizes[level - 1];
+			for (int node = 0; node < levelSizes[level]; node++)
+			{
+				double minY = Double.POSITIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				int end = Math.min((node + 1) * NODE_CAPACITY, childCount);
+				for (int child = node * NODE_CAPACITY; child < end; child++)
+				{
+					int i = (childOffset + child) * 3;
+					minY = Math.min(minY, intervals[i]);
+					maxY = Math.max(maxY, intervals[i + 1]);
+					maxX = Math.max(maxX, intervals[i + 2]);
+				}
+				int i = (levelOffsets[level] + node) * 3;
+				intervals[i] = minY;
+				intervals[i + 1] = maxY;
+				intervals[i + 2] = maxX;
+			}
+		}
+	}
+
+	/**
+	 * Adds the edges of a curve.
+	 * @param list {@link EdgeList}
+	 * @param curve {@link Curve}
+	 */
+	private static void addCurve(EdgeList list, Curve curve)
+	{
+		Iterator<Point> it = curve.linearize().getCoordinates().iterator();
+		if (!it.hasNext())
+		{
+			return;
+		}
+		Point p0 = it.next();
+		while (it.hasNext())
+		{
+			Point p1 = it.next();
+			list.add(p0.getX(), p0.getY(), p1.getX(), p1.getY());
+			p0 = p1;
+		}
+	}
+
+	/**
+	 * Adds the edges of all polygons of the given geometry.
+	 * @param geom {@link Geometry}
+	 * @param list {@link EdgeList}
+	 * @throws IllegalArgumentException if the geometry does not consist of polygons
+	 */
+	private static void addPolygons(Geometry geom, EdgeList list)
+	{
+		if (geom instanceof PolygonBase)
+		{
+			PolygonBase<?> poly = (PolygonBase<?>) geom;
+			addRing(list, poly.getOuterRing());
+			for (Curve ring : poly.getRings())
+			{
+				addRing(list, ring);
+			}
+		}
+		else if (geom instanceof MultiGeometry)
+		{
+			for (Geometry g : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				addPolygons(g, list);
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("geometry is not a polygon: " + geom.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Adds the edges of a ring and closes it if needed.
+	 * @param list {@link EdgeList}
+	 * @param ring ring
+	 */
+	private static void addRing(EdgeList list, Curve ring)
+	{
+		int start = list.size;
+		addCurve(list, ring);
+		if (list.size > start)
+		{
+			double[] e = list.edges;
+			int last = (list.size - 1) * 4;
+			int first = start * 4;
+			if ((e[last + 2] != e[first]) || (e[last + 3] != e[first + 1]))
+			{
+				list.add(e[last + 2], e[last + 3], e[first], e[first + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the given arrays have the same lengths.
+	 * @param xs X-coordinates
+	 * @param ys Y-coordinates
+	 * @param result receives the result for each point
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 */
+	private static void checkLengths(double[] xs, double[] ys, boolean[] result)
+	{
+		if ((xs.length != ys.length) || (xs.length != result.length))
+		{
+			throw new IllegalArgumentException("arrays differ in length: " + xs.length + ", " + ys.length + ", "
+					+ result.length);
+		}
+	}
+
+	/**
+	 * Checks if the given point is in the interior of the polygon.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return true on success, else false
+	 */
+	public boolean contains(double x, double y)
+	{
+		int crossings = locate(x, y);
+		return (crossings != BOUNDARY) && ((crossings & 1) != 0);
+	}
+
+	/**
+	 * Checks for all given points if they are in the interior of the polygon.
+	 * @param xs X-coordinates
+	 * @param ys Y-coordinates
+	 * @param result receives the result for each point
+	 * @return number of points inside the polygon
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 */
+	public int contains(double[] xs, double[] ys, boolean[] result)
+	{
+		checkLengths(xs, ys, result);
+		int n = 0;
+		for (int i = 0; i < xs.length; i++)
+		{
+			result[i] = contains(xs[i], ys[i]);
+			if (result[i])
+			{
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Checks if the given point is in the interior of the polygon.
+	 * @param p {@link Point}
+	 * @return true on success, else false
+	 */
+	public boolean contains(Point p)
+	{
+		return contains(p.getX(), p.getY());
+	}
+
+	/**
+	 * Counts the crossings of a ray from the given point in positive x direction with the edges below the given
+	 * entry.
+	 * @param level level of the entry
+	 * @param index index of the entry
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return number of crossings or {@link #BOUNDARY} if the point is on an edge
+	 */
+	private int countCrossings(int level, int index, double x, double y)
+	{
+		int i = index * 3;
+		if ((y < intervals[i]) || (y > intervals[i + 1]) || (x > intervals[i + 2]))
+		{
+			return 0;
+		}
+		if (level == 0)
+		{
+			return countCrossings(index, x, y);
+		}
+		int node = index - levelOffsets[level];
+		int childOffset = levelOffsets[level - 1];
+		int end = Math.min((node + 1) * NODE_CAPACITY, levelSizes[level - 1]);
+		int crossings = 0;
+		for (int child = node * NODE_CAPACITY; child < end; child++)
+		{
+			int c = countCrossings(level - 1, childOffset + child, x, y);
+			if (c == BOUNDARY)
+			{
+				return BOUNDARY;
+			}
+			crossings += c;
+		}
+		return crossings;
+	}
+
+	/**
+	 * Counts the crossings of a ray from the given point in positive x direction with a single edge.
+	 * @param index index of the edge
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return number of crossings or {@link #BOUNDARY} if the point is on the edge
+	 */
+	private int countCrossings(int index, double x, double y)
+	{
+		int i = index * 4;
+		double x1 = edges[i];
+		double y1 = edges[i + 1];
+		double x2 = edges[i + 2];
+		double y2 = edges[i + 3];
+		if ((y1 > y) != (y2 > y))
+		{
+			// side of the point relative to the edge (directed upwards)
+			double side = (x2 - x1) * (y - y1) - (x - x1) * (y2 - y1);
+			if (side == 0)
+			{
+				return BOUNDARY;
+			}
+			return ((side > 0) == (y2 > y1)) ? 1 : 0;
+		}
+		// point on a horizontal edge or on an end point
+		if ((y1 == y) && (y2 == y) && (x >= Math.min(x1, x2)) && (x <= Math.max(x1, x2)))
+		{
+			return BOUNDARY;
+		}
+		if (((x == x1) && (y == y1)) || ((x == x2) && (y == y2)))
+		{
+			return BOUNDARY;
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the envelope of the polygon.
+	 * @return {@link Envelope}
+	 */
+	public Envelope getEnvelope()
+	{
+		return envelope;
+	}
+
+	/**
+	 * Gets the number of edges (including the ones of linearized arcs).
+	 * @return number of edges
+	 */
+	public int getNumberOfEdges()
+	{
+		return levelSizes[0];
+	}
+
+	/**
+	 * Checks if the given point is in the interior or on the boundary of the polygon.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return true on success, else false
+	 */
+	public boolean intersects(double x, double y)
+	{
+		int crossings = locate(x, y);
+		return (crossings == BOUNDARY) || ((crossings & 1) != 0);
+	}
+
+	/**
+	 * Checks for all given points if they are in the interior or on the boundary of the polygon.
+	 * @param xs X-coordinates
+	 * @param ys Y-coordinates
+	 * @param result receives the result for each point
+	 * @return number of points intersecting the polygon
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 */
+	public int intersects(double[] xs, double[] ys, boolean[] result)
+	{
+		checkLengths(xs, ys, result);
+		int n = 0;
+		for (int i = 0; i < xs.length; i++)
+		{
+			result[i] = intersects(xs[i], ys[i]);
+			if (result[i])
+			{
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Checks if the given point is in the interior or on the boundary of the polygon.
+	 * @param p {@link Point}
+	 * @return true on success, else false
+	 */
+	public boolean intersects(Point p)
+	{
+		return intersects(p.getX(), p.getY());
+	}
+
+	/**
+	 * Locates the given point.
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * @return number of crossings of a ray in positive x direction or {@link #BOUNDARY} if the point is on an edge
+	 */
+	private int locate(double x, double y)
+	{
+		// check the envelope first (also handles empty polygons)
+		if (!envelope.contains(x, y) || (levelSizes[0] == 0))
+		{
+			return 0;
+		}
+		int root = levelSizes.length - 1;
+		return countCrossings(root, levelOffsets[root], x, y);
+	}
+
+	/**
+	 * A growable list of edges.
+	 */
+	private static final class EdgeList
+	{
+		double[] edges = new double[64];
+		int size;
+
+		/**
+		 * Adds an edge.
+		 * @param x1 X-coordinate of the start point
+		 * @param y1 Y-coordinate of the start point
+		 * @param x2 X-coordinate of the end point
+		 * @param y2 Y-coordinate of the end point
+		 */
+		void add(double x1, double y1, double x2, double y2)
+		{
+			// skip degenerated edges
+			if ((x1 == x2) && (y1 == y2))
+			{
+				return;
+			}
+			if ((size + 1) * 4 > edges.length)
+			{
+				edges = Arrays.copyOf(edges, edges.length * 2);
+			}
+			int i = size * 4;
+			edges[i] = x1;
+			edges[i + 1] = y1;
+			edges[i + 2] = x2;
+			edges[i + 3] = y2;
+			size++;
+		}
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * Spatial index package.
+ * @author Sebastian Baumhekel
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package io.github.sebasbaumh.postgis.index;
@@ -0,0 +1,826 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.mvt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.Envelope;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.PolygonBase;
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+
+/**
+ * Encoder for a single Mapbox Vector Tile (version 2). Geometries are transformed from the given tile bounds to tile
+ * space, clipped to the tile including its buffer and encoded together with their attributes. Parts which become
+ * degenerated in tile space (e.g. rings without area) are dropped. Arcs are linearized.
+ * <p>
+ * The geometries have to be in the same coordinate system as the tile bounds, e.g. Web Mercator for the bounds
+ * returned by {@link #getTileEnvelope(int, int, int)}.
+ * @author Sebastian Baumhekel
+ */
+public final class MvtEncoder
+{
+	/**
+	 * Default buffer around the tile in tile units.
+	 */
+	public static final int DEFAULT_BUFFER = 64;
+	/**
+	 * Default extent of the tile in tile units.
+	 */
+	public static final int DEFAULT_EXTENT = 4096;
+
+	private static final int CMD_CLOSE_PATH = 7;
+	private static final int CMD_LINE_TO = 2;
+	private static final int CMD_MOVE_TO = 1;
+	private static final int GEOM_LINESTRING = 2;
+	private static final int GEOM_POINT = 1;
+	private static final int GEOM_POLYGON = 3;
+	/**
+	 * Maximum coordinate of the Web Mercator projection (EPSG:3857).
+	 */
+	private static final double WEB_MERCATOR_MAX = 20037508.342789244;
+
+	private final int buffer;
+	private final int extent;
+	private final LinkedHashMap<String, Layer> layers = new LinkedHashMap<String, Layer>();
+	private final double maxY;
+	private final double minX;
+	private final double scaleX;
+	private final double scaleY;
+
+	/**
+	 * Constructs an instance using the default extent and buffer.
+	 * @param tileBounds bounds of the tile
+	 * @throws IllegalArgumentException if the bounds are empty or have no area
+	 */
+	public MvtEncoder(Envelope tileBounds)
+	{
+		this(tileBounds, DEFAULT_EXTENT, DEFAULT_BUFFER);
+	}
+
+	/**
+	 * Constructs an instance.
+	 * @param tileBounds bounds of the tile
+	 * @param extent extent of the tile in tile units
+	 * @param buffer buffer around the tile in tile units
+	 * @throws IllegalArgumentException if the bounds are empty or have no area, or the extent or buffer are invalid
+	 */
+	public MvtEncoder(Envelope tileBounds, int extent, int buffer)
+	{
+		if (!(tileBounds.getWidth() > 0) || !(tileBounds.getHeight() > 0))
+		{
+			throw new IllegalArgumentException("tile bounds have no area: " + tileBounds);
+		}
+		if ((extent <= 0) || (buffer < 0))
+		{
+			throw new IllegalArgumentException("invalid extent or buffer: " + extent + ", " + buffer);
+		}
+		this.extent = extent;
+		this.buffer = buffer;
+		this.minX = tileBounds.getMinX();
+		this.maxY = tileBounds.getMaxY();
+		this.scaleX = extent / tileBounds.getWidth();
+		this.scaleY = extent / tileBounds.getHeight();
+	}
+
+	/**
+	 * Clips a single edge of a ring against one side of the clipping box (Sutherland-Hodgman).
+	 * @param ring ring
+	 * @param useX true to clip against a vertical line, false for a horizontal one
+	 * @param bound position of the line
+	 * @param keepGreater true to keep the part with greater coordinates, else the one with smaller coordinates
+	 * @return clipped ring
+	 */
+	private static CoordinateList clipEdge(CoordinateList ring, boolean useX, double bound, boolean keepGreater)
+	{
+		CoordinateList result = new CoordinateList();
+		int n = ring.size;
+		if (n == 0)
+		{
+			return result;
+		}
+		double[] values = useX ? ring.xs : ring.ys;
+		double prevValue = values[n - 1];
+		boolean prevInside = keepGreater ? (prevValue >= bound) : (prevValue <= bound);
+		for (int i = 0; i < n; i++)
+		{
+			double value = values[i];
+			boolean inside = keepGreater ? (value >= bound) : (value <= bound);
+			if (inside != prevInside)
+			{
+				// add the intersection with the line
+				int prev = (i == 0) ? n - 1 : i - 1;
+				double t = (bound - prevValue) / (value - prevValue);
+				double x = ring.xs[prev] + t * (ring.xs[i] - ring.xs[prev]);
+				double y = ring.ys[prev] + t * (ring.ys[i] - ring.ys[prev]);
+				result.add(useX ? bound : x, useX ? y : bound);
+			}
+			if (inside)
+			{
+				result.add(ring.xs[i], ring.ys[i]);
+			}
+			prevValue = value;
+			prevInside = inside;
+		}
+		return result;
+	}
+
+	/**
+	 * Clips a line to the given box (Liang-Barsky), which can split it into multiple parts.
+	 * @param line line
+	 * @param min minimum coordinate of the box
+	 * @param max maximum coordinate of the box
+	 * @return parts of the line within the box
+	 */
+	private static List<CoordinateList> clipLine(CoordinateList line, double min, double max)
+	{
+		List<CoordinateList> parts = new ArrayList<CoordinateList>();
+		CoordinateList part = null;
+		for (int i = 1; i < line.size; i++)
+		{
+			double x0 = line.xs[i - 1];
+			double y0 = line.ys[i - 1];
+			double dx = line.xs[i] - x0;
+			double dy = line.ys[i] - y0;
+			double[] p = { -dx, dx, -dy, dy };
+			double[] q = { x0 - min, max - x0, y0 - min, max - y0 };
+			double t0 = 0;
+			double t1 = 1;
+			boolean visible = true;
+			for (int k = 0; visible && (k < 4); k++)
+			{
+				if (p[k] == 0)
+				{
+					visible = q[k] >= 0;
+				}
+				else
+				{
+					double r = q[k] / p[k];
+					if (p[k] < 0)
+					{
+						t0 = Math.max(t0, r);
+					}
+					else
+					{
+						t1 = Math.min(t1, r);
+					}
+					visible = t0 <= t1;
+				}
+			}
+			if (!visible)
+			{
+				continue;
+			}
+			double ax = x0 + t0 * dx;
+			double ay = y0 + t0 * dy;
+			// start a new part if the line left the box in between
+			if ((part == null) || (part.xs[part.size - 1] != ax) || (part.ys[part.size - 1] != ay))
+			{
+				part = new CoordinateList();
+				parts.add(part);
+				part.add(ax, ay);
+			}
+			part.add(x0 + t1 * dx, y0 + t1 * dy);
+		}
+		return parts;
+	}
+
+	/**
+	 * Clips a ring to the given box (Sutherland-Hodgman).
+	 * @param ring ring (without the closing point)
+	 * @param min minimum coordinate of the box
+	 * @param max maximum coordinate of the box
+	 * @return clipped ring
+	 */
+	private static CoordinateList clipRing(CoordinateList ring, double min, double max)
+	{
+		CoordinateList result = clipEdge(ring, true, min, true);
+		result = clipEdge(result, true, max, false);
+		result = clipEdge(result, false, min, true);
+		return clipEdge(result, false, max, false);
+	}
+
+	/**
+	 * Encodes an attribute value.
+	 * @param value value (see {@link #normalizeValue(Object)})
+	 * @return encoded value
+	 */
+	private static ProtobufWriter encodeValue(Object value)
+	{
+		ProtobufWriter w = new ProtobufWriter();
+		if (value instanceof Boolean)
+		{
+			w.writeVarintField(7, ((Boolean) value).booleanValue() ? 1 : 0);
+		}
+		else if (value instanceof Long)
+		{
+			long l = ((Long) value).longValue();
+			if (l < 0)
+			{
+				w.writeVarintField(6, ProtobufWriter.zigzag(l));
+			}
+			else
+			{
+				w.writeVarintField(5, l);
+			}
+		}
+		else if (value instanceof Float)
+		{
+			w.writeFloat(2, ((Float) value).floatValue());
+		}
+		else if (value instanceof Double)
+		{
+			w.writeDouble(3, ((Double) value).doubleValue());
+		}
+		else
+		{
+			w.writeString(1, value.toString());
+		}
+		return w;
+	}
+
+	/**
+	 * Gets the bounds of a tile in the Web Mercator projection (EPSG:3857) using the XYZ tiling scheme.
+	 * @param zoom zoom level
+	 * @param x column of the tile
+	 * @param y row of the tile (starting at the top)
+	 * @return {@link Envelope}
+	 * @throws IllegalArgumentException if the tile coordinates are invalid
+	 */
+	public static Envelope getTileEnvelope(int zoom, int x, int y)
+	{
+		if ((zoom < 0) || (zoom > 30) || (x < 0) || (y < 0) || (x >= (1 << zoom)) || (y >= (1 << zoom)))
+		{
+			throw new IllegalArgumentException("invalid tile: " + zoom + "/" + x + "/" + y);
+		}
+		double size = 2 * WEB_MERCATOR_MAX / (1 << zoom);
+		double tileMinX = -WEB_MERCATOR_MAX + x * size;
+		double tileMaxY = WEB_MERCATOR_MAX - y * size;
+		return new Envelope(tileMinX, tileMaxY - size, tileMinX + size, tileMaxY);
+	}
+
+	/**
+	 * Normalizes an attribute value to one of the types supported by vector tiles. All integral numbers are converted
+	 * to {@link Long} and unknown types to {@link String}.
+	 * @param value value
+	 * @return normalized value
+	 */
+	private static Object normalizeValue(Object value)
+	{
+		if ((value instanceof Byte) || (value instanceof Short) || (value instanceof Integer) || (value instanceof Long))
+		{
+			return Long.valueOf(((Number) value).longValue());
+		}
+		if ((value instanceof Float) || (value instanceof Double) || (value instanceof Boolean)
+				|| (value instanceof String))
+		{
+			return value;
+		}
+		if (value instanceof Number)
+		{
+			return Double.valueOf(((Number) value).doubleValue());
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Adds a feature to the given layer.
+	 * @param layerName name of the layer
+	 * @param geom {@link Geometry}
+	 * @param attributes attributes (null values are skipped)
+	 * @return true if the feature was added, false if its geometry is outside of the tile or degenerated
+	 */
+	public boolean addFeature(String layerName, Geometry geom, Map<String, ?> attributes)
+	{
+		return addFeature(layerName, null, geom, attributes);
+	}
+
+	/**
+	 * Adds a feature to the given layer. The geometry is given by its binary representation (WKB).
+	 * @param layerName name of the layer
+	 * @param id id of the feature (optional)
+	 * @param wkb binary representation of the geometry
+	 * @param attributes attributes (null values are skipped)
+	 * @return true if the feature was added, false if its geometry is outside of the tile or degenerated
+	 * @throws IllegalArgumentException if the binary data is invalid
+	 */
+	public boolean addFeature(String layerName, @Nullable Long id, byte[] wkb, Map<String, ?> attributes)
+	{
+		return addFeature(layerName, id, BinaryParser.parse(wkb, 0), attributes);
+	}
+
+	/**
+	 * Adds a feature to the given layer. The members of a {@link GeometryCollection} are added as separate features.
+	 * @param layerName name of the layer
+	 * @param id id of the feature (optional)
+	 * @param geom {@link Geometry}
+	 * @param attributes attributes (null values are skipped)
+	 * @return true if the feature was added, false if its geometry is outside of the tile or degenerated
+	 */
+	public boolean addFeature(String layerName, @Nullable Long id, Geometry geom, Map<String, ?> attributes)
+	{
+		if (geom instanceof GeometryCollection)
+		{
+			boolean added = false;
+			for (Geometry g : ((GeometryCollection) geom).getGeometries())
+			{
+				added |= addFeature(layerName, id, g, attributes);
+			}
+			return added;
+		}
+		CommandList cmds = new CommandList();
+		int type;
+		if ((geom instanceof Point) || (geom instanceof MultiPoint))
+		{
+			type = GEOM_POINT;
+			addPoints(geom, cmds);
+		}
+		else if (geom instanceof Curve)
+		{
+			type = GEOM_LINESTRING;
+			addLine((Curve) geom, cmds);
+		}
+		else if ((geom instanceof MultiLineString) || (geom instanceof MultiCurve))
+		{
+			type = GEOM_LINESTRING;
+			for (Geometry g : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				addLine((Curve) g, cmds);
+			}
+		}
+		else if (geom instanceof PolygonBase)
+		{
+			type = GEOM_POLYGON;
+			addPolygon((PolygonBase<?>) geom, cmds);
+		}
+		else if ((geom instanceof MultiPolygon) || (geom instanceof MultiSurface))
+		{
+			type = GEOM_POLYGON;
+			for (Geometry g : ((MultiGeometry<?>) geom).getGeometries())
+			{
+				addPolygon((PolygonBase<?>) g, cmds);
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("unsupported geometry type: " + geom.getClass().getSimpleName());
+		}
+		// nothing left after clipping
+		if (cmds.size == 0)
+		{
+			return false;
+		}
+		Layer layer = layers.computeIfAbsent(layerName, Layer::new);
+		ProtobufWriter feature = new ProtobufWriter();
+		if (id != null)
+		{
+			feature.writeVarintField(1, id.longValue());
+		}
+		int[] tags = new int[attributes.size() * 2];
+		int numTags = 0;
+		for (Map.Entry<String, ?> attribute : attributes.entrySet())
+		{
+			Object value = attribute.getValue();
+			if (value != null)
+			{
+				tags[numTags++] = layer.getKeyIndex(attribute.getKey());
+				tags[numTags++] = layer.getValueIndex(normalizeValue(value));
+			}
+		}
+		if (numTags > 0)
+		{
+			feature.writePackedVarints(2, tags, numTags);
+		}
+		feature.writeVarintField(3, type);
+		feature.writePackedVarints(4, cmds.data, cmds.size);
+		layer.features.writeMessage(2, feature);
+		layer.numFeatures++;
+		return true;
+	}
+
+	/**
+	 * Adds a line after clipping it.
+	 * @param curve {@link Curve}
+	 * @param cmds {@link CommandList}
+	 */
+	private void addLine(Curve curve, CommandList cmds)
+	{
+		CoordinateList line = toTile(curve.linearize().getCoordinates());
+		for (CoordinateList part : clipLine(line, -buffer, extent + buffer))
+		{
+			TilePart tp = new TilePart(part, false);
+			if (tp.size >= 2)
+			{
+				cmds.addPart(tp, false);
+			}
+		}
+	}
+
+	/**
+	 * Adds all points within the tile.
+	 * @param geom {@link Point} or {@link MultiPoint}
+	 * @param cmds {@link CommandList}
+	 */
+	private void addPoints(Geometry geom, CommandList cmds)
+	{
+		CoordinateList points = toTile(geom.getCoordinates());
+		// only keep points within the tile
+		CoordinateList clipped = new CoordinateList();
+		for (int i = 0; i < points.size; i++)
+		{
+			double x = points.xs[i];
+			double y = points.ys[i];
+			if ((x >= -buffer) && (x <= extent + buffer) && (y >= -buffer) && (y <= extent + buffer))
+			{
+				clipped.add(x, y);
+			}
+		}
+		if (clipped.size > 0)
+		{
+			TilePart tp = new TilePart(clipped, false);
+			cmds.command(CMD_MOVE_TO, tp.size);
+			for (int i = 0; i < tp.size; i++)
+			{
+				cmds.point(tp.xs[i], tp.ys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Adds a polygon after clipping it. Holes are only added if the outer ring is kept.
+	 * @param poly {@link PolygonBase}
+	 * @param cmds {@link CommandList}
+	 */
+	private void addPolygon(PolygonBase<?> poly, CommandList cmds)
+	{
+		TilePart outer = toRing(poly.getOuterRing(), true);
+		if (outer == null)
+		{
+			return;
+		}
+		cmds.addPart(outer, true);
+		for (Curve ring : poly.getRings())
+		{
+			TilePart inner = toRing(ring, false);
+			if (inner != null)
+			{
+				cmds.addPart(inner, true);
+			}
+		}
+	}
+
+	/**
+	 * Encodes all layers into a vector tile.
+	 * @return encoded tile
+	 */
+	public byte[] encode()
+	{
+		ProtobufWriter tile = new ProtobufWriter();
+		for (Layer layer : layers.values())
+		{
+			ProtobufWriter w = new ProtobufWriter();
+			w.writeVarintField(15, 2);
+			w.writeString(1, layer.name);
+			w.writeRaw(layer.features);
+			for (String key : layer.keys.keySet())
+			{
+				w.writeString(3, key);
+			}
+			for (Object value : layer.values.keySet())
+			{
+				w.writeMessage(4, encodeValue(value));
+			}
+			w.writeVarintField(5, extent);
+			tile.writeMessage(3, w);
+		}
+		return tile.toByteArray();
+	}
+
+	/**
+	 * Gets the buffer around the tile.
+	 * @return buffer in tile units
+	 */
+	public int getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Gets the extent of the tile.
+	 * @return extent in tile units
+	 */
+	public int getExtent()
+	{
+		return extent;
+	}
+
+	/**
+	 * Gets the number of features of the given layer.
+	 * @param layerName name of the layer
+	 * @return number of features
+	 */
+	public int getNumberOfFeatures(String layerName)
+	{
+		Layer layer = layers.get(layerName);
+		return (layer != null) ? layer.numFeatures : 0;
+	}
+
+	/**
+	 * Converts a ring to tile space, clips it and makes sure it is oriented correctly.
+	 * @param ring ring
+	 * @param exterior true for the outer ring, false for a hole
+	 * @return {@link TilePart} on success, null if the ring is degenerated
+	 */
+	@Nullable
+	private TilePart toRing(Curve ring, boolean exterior)
+	{
+		CoordinateList coords = toTile(ring.linearize().getCoordinates());
+		// remove the closing point
+		if ((coords.size > 1) && (coords.xs[0] == coords.xs[coords.size - 1])
+				&& (coords.ys[0] == coords.ys[coords.size - 1]))
+		{
+			coords.size--;
+		}
+		TilePart tp = new TilePart(clipRing(coords, -buffer, extent + buffer), true);
+		if (tp.size < 3)
+		{
+			return null;
+		}
+		long area = tp.calcArea();
+		if (area == 0)
+		{
+			return null;
+		}
+		// outer rings have a positive area in tile space (y pointing down), holes a negative one
+		if ((area > 0) != exterior)
+		{
+			tp.reverse();
+		}
+		return tp;
+	}
+
+	/**
+	 * Transforms coordinates to tile space.
+	 * @param coords coordinates
+	 * @return coordinates in tile space
+	 */
+	private CoordinateList toTile(Iterable<Point> coords)
+	{
+		CoordinateList list = new CoordinateList();
+		for (Point p : coords)
+		{
+			list.add((p.getX() - minX) * scaleX, (maxY - p.getY()) * scaleY);
+		}
+		return list;
+	}
+
+	/**
+	 * Geometry commands of a feature.
+	 */
+	private static final class CommandList
+	{
+		private int cursorX;
+		private int cursorY;
+		int[] data = new int[32];
+		int size;
+
+		/**
+		 * Adds a value.
+		 * @param value value
+		 */
+		private void add(int value)
+		{
+			if (size == data.length)
+			{
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = value;
+		}
+
+		/**
+		 * Adds a line or ring.
+		 * @param part {@link TilePart}
+		 * @param ring true for a ring, else false
+		 */
+		void addPart(TilePart part, boolean ring)
+		{
+			command(CMD_MOVE_TO, 1);
+			point(part.xs[0], part.ys[0]);
+			command(CMD_LINE_TO, part.size - 1);
+			for (int i = 1; i < part.size; i++)
+			{
+				point(part.xs[i], part.ys[i]);
+			}
+			if (ring)
+			{
+				command(CMD_CLOSE_PATH, 1);
+			}
+		}
+
+		/**
+		 * Adds a command.
+		 * @param id command id
+		 * @param count number of repetitions
+		 */
+		void command(int id, int count)
+		{
+			add((id & 0x7) | (count << 3));
+		}
+
+		/**
+		 * Adds a point relative to the current cursor.
+		 * @param x X-coordinate
+		 * @param y Y-coordinate
+		 */
+		void point(int x, int y)
+		{
+			add(ProtobufWriter.zigzag(x - cursorX));
+			add(ProtobufWriter.zigzag(y - cursorY));
+			cursorX = x;
+			cursorY = y;
+		}
+	}
+
+	/**
+	 * A list of coordinates in tile space.
+	 */
+	private static final class CoordinateList
+	{
+		int size;
+		double[] xs = new double[16];
+		double[] ys = new double[16];
+
+		/**
+		 * Adds a coordinate.
+		 * @param x X-coordinate
+		 * @param y Y-coordinate
+		 */
+		void add(double x, double y)
+		{
+			if (size == xs.length)
+			{
+				xs = Arrays.copyOf(xs, size * 2);
+				ys = Arrays.copyOf(ys, size * 2);
+			}
+			xs[size] = x;
+			ys[size] = y;
+			size++;
+		}
+	}
+
+	/**
+	 * A layer of the tile.
+	 */
+	private static final class Layer
+	{
+		/**
+		 * Encoded features.
+		 */
+		final ProtobufWriter features = new ProtobufWriter();
+		/**
+		 * Keys with their indices.
+		 */
+		final LinkedHashMap<String, Integer> keys = new LinkedHashMap<String, Integer>();
+		final String name;
+		int numFeatures;
+		/**
+		 * Values with their indices.
+		 */
+		final LinkedHashMap<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+		/**
+		 * Constructs an instance.
+		 * @param name name
+		 */
+		Layer(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Gets the index of the given key and adds it if needed.
+		 * @param key key
+		 * @return index
+		 */
+		int getKeyIndex(String key)
+		{
+			return keys.computeIfAbsent(key, k -> Integer.valueOf(keys.size())).intValue();
+		}
+
+		/**
+		 * Gets the index of the given value and adds it if needed.
+		 * @param value value
+		 * @return index
+		 */
+		int getValueIndex(Object value)
+		{
+			return values.computeIfAbsent(value, k -> Integer.valueOf(values.size())).intValue();
+		}
+	}
+
+	/**
+	 * A line or ring rounded to integer tile coordinates.
+	 */
+	private static final class TilePart
+	{
+		int size;
+		final int[] xs;
+		final int[] ys;
+
+		/**
+		 * Constructs an instance by rounding the given coordinates and removing repeated ones.
+		 * @param coords coordinates
+		 * @param ring true for a ring (the closing point is removed), else false
+		 */
+		TilePart(CoordinateList coords, boolean ring)
+		{
+			this.xs = new int[coords.size];
+			this.ys = new int[coords.size];
+			for (int i = 0; i < coords.size; i++)
+			{
+				int x = (int) Math.round(coords.xs[i]);
+				int y = (int) Math.round(coords.ys[i]);
+				if ((size == 0) || (x != xs[size - 1]) || (y != ys[size - 1]))
+				{
+					xs[size] = x;
+					ys[size] = y;
+					size++;
+				}
+			}
+			if (ring)
+			{
+				while ((size > 1) && (xs[0] == xs[size - 1]) && (ys[0] == ys[size - 1]))
+				{
+					size--;
+				}
+			}
+		}
+
+		/**
+		 * Calculates the doubled signed area of the ring.
+		 * @return doubled signed area
+		 */
+		long calcArea()
+		{
+			long area = 0;
+			for (int i = 0; i < size; i++)
+			{
+				int j = (i + 1) % size;
+				area += (long) xs[i] * ys[j] - (long) xs[j] * ys[i];
+			}
+			return area;
+		}
+
+		/**
+		 * Reverses the order of the coordinates.
+		 */
+		void reverse()
+		{
+			for (int i = 0, j = size - 1; i < j; i++, j--)
+			{
+				int t = xs[i];
+				xs[i] = xs[j];
+				xs[j] = t;
+				t = ys[i];
+				ys[i] = ys[j];
+				ys[j] = t;
+			}
+		}
+	}
+
+}
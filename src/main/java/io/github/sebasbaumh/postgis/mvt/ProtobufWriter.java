@@ -0,0 +1,249 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.mvt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal writer for the Protocol Buffers wire format.
+ * @author Sebastian Baumhekel
+ */
+final class ProtobufWriter
+{
+	/**
+	 * Wire type for 32 bit values.
+	 */
+	static final int WIRE_FIXED32 = 5;
+	/**
+	 * Wire type for 64 bit values.
+	 */
+	static final int WIRE_FIXED64 = 1;
+	/**
+	 * Wire type for length delimited values.
+	 */
+	static final int WIRE_LENGTH_DELIMITED = 2;
+	/**
+	 * Wire type for variable length integers.
+	 */
+	static final int WIRE_VARINT = 0;
+
+	private byte[] buffer = new byte[64];
+	private int size;
+
+	/**
+	 * Gets the number of bytes of an unsigned variable length integer.
+	 * @param value value
+	 * @return number of bytes
+	 */
+	private static int getVarintSize(long value)
+	{
+		int n = 1;
+		long v = value;
+		while ((v & ~0x7FL) != 0)
+		{
+			v >>>= 7;
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Encodes a signed value using zigzag encoding, so small negative values get small positive values.
+	 * @param value value
+	 * @return encoded value
+	 */
+	static int zigzag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Encodes a signed value using zigzag encoding, so small negative values get small positive values.
+	 * @param value value
+	 * @return encoded value
+	 */
+	static long zigzag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Ensures there is room for the given number of additional bytes.
+	 * @param n number of bytes
+	 */
+	private void ensureCapacity(int n)
+	{
+		if (size + n > buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + n));
+		}
+	}
+
+	/**
+	 * Gets the number of written bytes.
+	 * @return number of bytes
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the written bytes.
+	 * @return bytes
+	 */
+	byte[] toByteArray()
+	{
+		return Arrays.copyOf(buffer, size);
+	}
+
+	/**
+	 * Writes a double field.
+	 * @param field field number
+	 * @param value value
+	 */
+	void writeDouble(int field, double value)
+	{
+		writeTag(field, WIRE_FIXED64);
+		long bits = Double.doubleToLongBits(value);
+		ensureCapacity(8);
+		for (int i = 0; i < 8; i++)
+		{
+			buffer[size++] = (byte) (bits >>> (i * 8));
+		}
+	}
+
+	/**
+	 * Writes a float field.
+	 * @param field field number
+	 * @param value value
+	 */
+	void writeFloat(int field, float value)
+	{
+		writeTag(field, WIRE_FIXED32);
+		int bits = Float.floatToIntBits(value);
+		ensureCapacity(4);
+		for (int i = 0; i < 4; i++)
+		{
+			buffer[size++] = (byte) (bits >>> (i * 8));
+		}
+	}
+
+	/**
+	 * Writes an embedded message.
+	 * @param field field number
+	 * @param message message
+	 */
+	void writeMessage(int field, ProtobufWriter message)
+	{
+		writeTag(field, WIRE_LENGTH_DELIMITED);
+		writeVarint(message.size);
+		writeRaw(message);
+	}
+
+	/**
+	 * Writes a packed field of unsigned integers.
+	 * @param field field number
+	 * @param values values
+	 * @param count number of values
+	 */
+	void writePackedVarints(int field, int[] values, int count)
+	{
+		int length = 0;
+		for (int i = 0; i < count; i++)
+		{
+			length += getVarintSize(values[i] & 0xFFFFFFFFL);
+		}
+		writeTag(field, WIRE_LENGTH_DELIMITED);
+		writeVarint(length);
+		for (int i = 0; i < count; i++)
+		{
+			writeVarint(values[i] & 0xFFFFFFFFL);
+		}
+	}
+
+	/**
+	 * Appends all bytes of the given writer.
+	 * @param other {@link ProtobufWriter}
+	 */
+	void writeRaw(ProtobufWriter other)
+	{
+		ensureCapacity(other.size);
+		System.arraycopy(other.buffer, 0, buffer, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Writes a string field.
+	 * @param field field number
+	 * @param value value
+	 */
+	void writeString(int field, String value)
+	{
+		byte[] data = value.getBytes(StandardCharsets.UTF_8);
+		writeTag(field, WIRE_LENGTH_DELIMITED);
+		writeVarint(data.length);
+		ensureCapacity(data.length);
+		System.arraycopy(data, 0, buffer, size, data.length);
+		size += data.length;
+	}
+
+	/**
+	 * Writes the tag of a field.
+	 * @param field field number
+	 * @param wireType wire type
+	 */
+	void writeTag(int field, int wireType)
+	{
+		writeVarint((field << 3) | wireType);
+	}
+
+	/**
+	 * Writes an unsigned variable length integer.
+	 * @param value value
+	 */
+	void writeVarint(long value)
+	{
+		ensureCapacity(10);
+		long v = value;
+		while ((v & ~0x7FL) != 0)
+		{
+			buffer[size++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[size++] = (byte) v;
+	}
+
+	/**
+	 * Writes a field containing an unsigned variable length integer.
+	 * @param field field number
+	 * @param value value
+	 */
+	void writeVarintField(int field, long value)
+	{
+		writeTag(field, WIRE_VARINT);
+		writeVarint(value);
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * Mapbox Vector Tile package.
+ * @author Sebastian Baumhekel
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package io.github.sebasbaumh.postgis.mvt;
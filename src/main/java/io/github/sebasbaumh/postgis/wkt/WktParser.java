@@ -0,0 +1,672 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.wkt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.sebasbaumh.postgis.CircularString;
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.CurvePolygon;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A parser for reading geometries from their well-known text representation. Both extended WKT as used by PostGIS
+ * (e.g. {@code SRID=4326;POINTM(1 2 3)}) and ISO WKT (e.g. {@code POINT ZM (1 2 3 4)}) are supported. The text is read
+ * in a single pass without creating intermediate strings.
+ * @author Sebastian Baumhekel
+ */
+public final class WktParser
+{
+	/**
+	 * Dimension flag for measures.
+	 */
+	private static final int DIM_M = 2;
+	/**
+	 * Dimension flag for z values.
+	 */
+	private static final int DIM_Z = 1;
+	/**
+	 * Powers of 10, which can be represented exactly as double.
+	 */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+			1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/**
+	 * Type names with their types.
+	 */
+	private static final String[] TYPE_NAMES = { "POINT", "LINESTRING", "POLYGON", "MULTIPOINT", "MULTILINESTRING",
+			"MULTIPOLYGON", "GEOMETRYCOLLECTION", "CIRCULARSTRING", "COMPOUNDCURVE", "CURVEPOLYGON", "MULTICURVE",
+			"MULTISURFACE" };
+	private static final int[] TYPES = { Point.TYPE, LineString.TYPE, Polygon.TYPE, MultiPoint.TYPE,
+			MultiLineString.TYPE, MultiPolygon.TYPE, GeometryCollection.TYPE, CircularString.TYPE, CompoundCurve.TYPE,
+			CurvePolygon.TYPE, MultiCurve.TYPE, MultiSurface.TYPE };
+
+	/**
+	 * Dimension flags of the coordinates (negative if they are not known yet).
+	 */
+	private int dimensions = -1;
+	private final int length;
+	private int pos;
+	private final String wkt;
+
+	/**
+	 * Constructs an instance.
+	 * @param wkt well-known text
+	 */
+	private WktParser(String wkt)
+	{
+		this.wkt = wkt;
+		this.length = wkt.length();
+	}
+
+	/**
+	 * Parses a geometry from its (extended) well-known text representation.
+	 * @param wkt well-known text
+	 * @return the parsed geometry
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	public static Geometry parse(String wkt)
+	{
+		WktParser parser = new WktParser(wkt);
+		int srid = parser.parseSrid();
+		Geometry geom = parser.parseGeometry();
+		parser.skipWhitespace();
+		if (parser.pos < parser.length)
+		{
+			throw parser.error("unexpected characters");
+		}
+		if (srid != Geometry.UNKNOWN_SRID)
+		{
+			geom.setSrid(srid);
+		}
+		return geom;
+	}
+
+	/**
+	 * Consumes the given character if it is next.
+	 * @param c character
+	 * @return true if the character was consumed, else false
+	 */
+	private boolean consume(char c)
+	{
+		skipWhitespace();
+		if ((pos < length) && (wkt.charAt(pos) == c))
+		{
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consumes the given keyword if it is next.
+	 * @param keyword keyword (upper case)
+	 * @return true if the keyword was consumed, else false
+	 */
+	private boolean consumeKeyword(String keyword)
+	{
+		skipWhitespace();
+		int end = pos + keyword.length();
+		if (wkt.regionMatches(true, pos, keyword, 0, keyword.length())
+				&& ((end >= length) || !Character.isLetter(wkt.charAt(end))))
+		{
+			pos = end;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an exception for an error at the current position.
+	 * @param message message
+	 * @return {@link IllegalArgumentException}
+	 */
+	private IllegalArgumentException error(String message)
+	{
+		return new IllegalArgumentException(message + " at position " + pos + ": " + wkt);
+	}
+
+	/**
+	 * Expects the given character to be next and consumes it.
+	 * @param c character
+	 * @throws IllegalArgumentException if the character is not next
+	 */
+	private void expect(char c)
+	{
+		if (!consume(c))
+		{
+			throw error("expected '" + c + "'");
+		}
+	}
+
+	/**
+	 * Checks if a number is next.
+	 * @return true on success, else false
+	 */
+	private boolean hasNumber()
+	{
+		skipWhitespace();
+		if (pos >= length)
+		{
+			return false;
+		}
+		char c = wkt.charAt(pos);
+		return ((c >= '0') && (c <= '9')) || (c == '-') || (c == '+') || (c == '.');
+	}
+
+	/**
+	 * Parses a curve, which can be a plain list of points (a {@link LineString}) or a typed curve.
+	 * @param allowCompound allow a {@link CompoundCurve}?
+	 * @return {@link Curve}
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private Curve parseCurve(boolean allowCompound)
+	{
+		skipWhitespace();
+		if ((pos < length) && (wkt.charAt(pos) == '('))
+		{
+			return new LineString(parsePoints());
+		}
+		int start = pos;
+		Geometry geom = parseGeometry();
+		if ((geom instanceof LineString) || (allowCompound && (geom instanceof CompoundCurve)))
+		{
+			return (Curve) geom;
+		}
+		pos = start;
+		throw error("unexpected geometry type");
+	}
+
+	/**
+	 * Parses dimension flags.
+	 * @param start start index
+	 * @param end end index
+	 * @return dimension flags (0 for an empty range) or -1 if the range contains no dimensions
+	 */
+	private int parseDimensions(int start, int end)
+	{
+		int dims = 0;
+		for (int i = start; i < end; i++)
+		{
+			char c = Character.toUpperCase(wkt.charAt(i));
+			if ((c == 'Z') && (dims == 0))
+			{
+				dims = DIM_Z;
+			}
+			else if ((c == 'M') && ((dims & DIM_M) == 0))
+			{
+				dims |= DIM_M;
+			}
+			else
+			{
+				return -1;
+			}
+		}
+		return dims;
+	}
+
+	/**
+	 * Parses a geometry including its type.
+	 * @return the parsed geometry
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private Geometry parseGeometry()
+	{
+		int type = parseType();
+		boolean empty = consumeKeyword("EMPTY");
+		switch (type)
+		{
+			case Point.TYPE:
+			{
+				if (empty)
+				{
+					return new Point();
+				}
+				expect('(');
+				Point p = parsePoint();
+				expect(')');
+				return p;
+			}
+			case LineString.TYPE:
+				return empty ? new LineString() : new LineString(parsePoints());
+			case CircularString.TYPE:
+				return empty ? new CircularString() : new CircularString(parsePoints());
+			case Polygon.TYPE:
+				return empty ? new Polygon() : parsePolygon();
+			case MultiPoint.TYPE:
+			{
+				MultiPoint mp = new MultiPoint();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						// points can be enclosed in parentheses or not
+						if (consume('('))
+						{
+							mp.add(parsePoint());
+							expect(')');
+						}
+						else
+						{
+							mp.add(parsePoint());
+						}
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return mp;
+			}
+			case MultiLineString.TYPE:
+			{
+				MultiLineString mls = new MultiLineString();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						mls.add(new LineString(parsePoints()));
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return mls;
+			}
+			case MultiPolygon.TYPE:
+			{
+				MultiPolygon mp = new MultiPolygon();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						mp.add(parsePolygon());
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return mp;
+			}
+			case CompoundCurve.TYPE:
+			{
+				CompoundCurve cc = new CompoundCurve();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						cc.add((LineString) parseCurve(false));
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return cc;
+			}
+			case CurvePolygon.TYPE:
+			{
+				List<Curve> rings = new ArrayList<Curve>();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						rings.add(parseCurve(true));
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return new CurvePolygon(rings);
+			}
+			case MultiCurve.TYPE:
+			{
+				MultiCurve mc = new MultiCurve();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						mc.add(parseCurve(true));
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return mc;
+			}
+			case MultiSurface.TYPE:
+			{
+				MultiSurface ms = new MultiSurface();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						skipWhitespace();
+						if ((pos < length) && (wkt.charAt(pos) == '('))
+						{
+							ms.add(parsePolygon());
+						}
+						else
+						{
+							int start = pos;
+							Geometry geom = parseGeometry();
+							if (!(geom instanceof PolygonBase))
+							{
+								pos = start;
+								throw error("unexpected geometry type");
+							}
+							ms.add((PolygonBase<?>) geom);
+						}
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return ms;
+			}
+			default:
+			{
+				GeometryCollection gc = new GeometryCollection();
+				if (!empty)
+				{
+					expect('(');
+					do
+					{
+						gc.add(parseGeometry());
+					}
+					while (consume(','));
+					expect(')');
+				}
+				return gc;
+			}
+		}
+	}
+
+	/**
+	 * Parses a number.
+	 * @return number
+	 * @throws IllegalArgumentException if there is no valid number
+	 */
+	private double parseNumber()
+	{
+		skipWhitespace();
+		int start = pos;
+		boolean negative = false;
+		if ((pos < length) && ((wkt.charAt(pos) == '-') || (wkt.charAt(pos) == '+')))
+		{
+			negative = wkt.charAt(pos) == '-';
+			pos++;
+		}
+		// collect up to 18 significant digits in a long
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		boolean fraction = false;
+		while (pos < length)
+		{
+			char c = wkt.charAt(pos);
+			if ((c >= '0') && (c <= '9'))
+			{
+				anyDigits = true;
+				if (significantDigits < 18)
+				{
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0)
+					{
+						significantDigits++;
+					}
+					if (fraction)
+					{
+						exponent--;
+					}
+				}
+				else if (!fraction)
+				{
+					exponent++;
+				}
+			}
+			else if ((c == '.') && !fraction)
+			{
+				fraction = true;
+			}
+			else
+			{
+				break;
+			}
+			pos++;
+		}
+		if (!anyDigits)
+		{
+			pos = start;
+			throw error("expected a number");
+		}
+		if ((pos < length) && ((wkt.charAt(pos) == 'e') || (wkt.charAt(pos) == 'E')))
+		{
+			pos++;
+			boolean negativeExponent = false;
+			if ((pos < length) && ((wkt.charAt(pos) == '-') || (wkt.charAt(pos) == '+')))
+			{
+				negativeExponent = wkt.charAt(pos) == '-';
+				pos++;
+			}
+			int e = 0;
+			int digitsStart = pos;
+			while ((pos < length) && (wkt.charAt(pos) >= '0') && (wkt.charAt(pos) <= '9'))
+			{
+				e = Math.min(e * 10 + (wkt.charAt(pos) - '0'), 100000);
+				pos++;
+			}
+			if (pos == digitsStart)
+			{
+				throw error("expected an exponent");
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		// the result is exact if both the mantissa and the power of 10 can be represented exactly
+		if ((significantDigits <= 15) && (exponent >= -22) && (exponent <= 22))
+		{
+			double value = (exponent >= 0) ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+			return negative ? -value : value;
+		}
+		// fall back to the slower exact parsing for long numbers
+		return Double.parseDouble(wkt.substring(start, pos));
+	}
+
+	/**
+	 * Parses the coordinates of a point.
+	 * @return {@link Point}
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private Point parsePoint()
+	{
+		double x = parseNumber();
+		double y = parseNumber();
+		double v3 = Double.NaN;
+		double v4 = Double.NaN;
+		int count = 2;
+		if (hasNumber())
+		{
+			v3 = parseNumber();
+			count++;
+			if (hasNumber())
+			{
+				v4 = parseNumber();
+				count++;
+			}
+		}
+		// the number of coordinates determines the dimensions if they are not given explicitly
+		if (dimensions < 0)
+		{
+			dimensions = (count == 2) ? 0 : (count == 3) ? DIM_Z : (DIM_Z | DIM_M);
+		}
+		if (count != 2 + Integer.bitCount(dimensions))
+		{
+			throw error("unexpected number of coordinates");
+		}
+		if (dimensions == DIM_M)
+		{
+			return new Point(x, y, Double.NaN, v3);
+		}
+		return new Point(x, y, v3, v4);
+	}
+
+	/**
+	 * Parses a list of points enclosed in parentheses.
+	 * @return points
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private List<Point> parsePoints()
+	{
+		expect('(');
+		List<Point> points = new ArrayList<Point>();
+		do
+		{
+			points.add(parsePoint());
+		}
+		while (consume(','));
+		expect(')');
+		return points;
+	}
+
+	/**
+	 * Parses the rings of a {@link Polygon} enclosed in parentheses.
+	 * @return {@link Polygon}
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private Polygon parsePolygon()
+	{
+		expect('(');
+		List<LinearRing> rings = new ArrayList<LinearRing>();
+		do
+		{
+			rings.add(new LinearRing(parsePoints()));
+		}
+		while (consume(','));
+		expect(')');
+		return new Polygon(rings);
+	}
+
+	/**
+	 * Parses the optional SRID prefix of extended WKT.
+	 * @return SRID or {@link Geometry#UNKNOWN_SRID}
+	 * @throws IllegalArgumentException if the text is invalid
+	 */
+	private int parseSrid()
+	{
+		if (!consumeKeyword("SRID"))
+		{
+			return Geometry.UNKNOWN_SRID;
+		}
+		expect('=');
+		skipWhitespace();
+		boolean negative = consume('-');
+		int start = pos;
+		long srid = 0;
+		while ((pos < length) && (wkt.charAt(pos) >= '0') && (wkt.charAt(pos) <= '9'))
+		{
+			srid = Math.min(srid * 10 + (wkt.charAt(pos) - '0'), Integer.MAX_VALUE);
+			pos++;
+		}
+		if (pos == start)
+		{
+			throw error("expected a SRID");
+		}
+		expect(';');
+		return negative ? Geometry.UNKNOWN_SRID : (int) srid;
+	}
+
+	/**
+	 * Parses the type of a geometry including its optional dimensions.
+	 * @return type
+	 * @throws IllegalArgumentException if the type is unknown
+	 */
+	private int parseType()
+	{
+		skipWhitespace();
+		int start = pos;
+		while ((pos < length) && Character.isLetter(wkt.charAt(pos)))
+		{
+			pos++;
+		}
+		int end = pos;
+		for (int i = 0; i < TYPE_NAMES.length; i++)
+		{
+			String name = TYPE_NAMES[i];
+			if (wkt.regionMatches(true, start, name, 0, name.length()))
+			{
+				// dimensions can be appended to the name (extended WKT) or follow separately (ISO WKT)
+				int dims = parseDimensions(start + name.length(), end);
+				if (dims >= 0)
+				{
+					if (dims == 0)
+					{
+						int dimsStart = pos;
+						skipWhitespace();
+						int wordStart = pos;
+						while ((pos < length) && Character.isLetter(wkt.charAt(pos)))
+						{
+							pos++;
+						}
+						dims = parseDimensions(wordStart, pos);
+						if ((dims <= 0) || (pos == wordStart))
+						{
+							// no dimensions (e.g. EMPTY)
+							pos = dimsStart;
+							dims = 0;
+						}
+					}
+					if (dims > 0)
+					{
+						dimensions = dims;
+					}
+					return TYPES[i];
+				}
+			}
+		}
+		pos = start;
+		throw error("unknown geometry type");
+	}
+
+	/**
+	 * Skips all whitespace.
+	 */
+	private void skipWhitespace()
+	{
+		while ((pos < length) && Character.isWhitespace(wkt.charAt(pos)))
+		{
+			pos++;
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis.wkt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import io.github.sebasbaumh.postgis.CircularString;
+import io.github.sebasbaumh.postgis.CompoundCurve;
+import io.github.sebasbaumh.postgis.Curve;
+import io.github.sebasbaumh.postgis.CurvePolygon;
+import io.github.sebasbaumh.postgis.DoubleFormat;
+import io.github.sebasbaumh.postgis.Geometry;
+import io.github.sebasbaumh.postgis.GeometryCollection;
+import io.github.sebasbaumh.postgis.LineString;
+import io.github.sebasbaumh.postgis.LinearRing;
+import io.github.sebasbaumh.postgis.MultiCurve;
+import io.github.sebasbaumh.postgis.MultiGeometry;
+import io.github.sebasbaumh.postgis.MultiLineString;
+import io.github.sebasbaumh.postgis.MultiPoint;
+import io.github.sebasbaumh.postgis.MultiPolygon;
+import io.github.sebasbaumh.postgis.MultiSurface;
+import io.github.sebasbaumh.postgis.Point;
+import io.github.sebasbaumh.postgis.Polygon;
+import io.github.sebasbaumh.postgis.PolygonBase;
+
+/**
+ * A writer for the extended well-known text representation of geometries as used by PostGIS (e.g.
+ * {@code SRID=4326;POINTM(1 2 3)}). The text is written directly to an {@link Appendable} without intermediate strings.
+ * @author Sebastian Baumhekel
+ */
+public final class WktWriter
+{
+	/**
+	 * Integral values below this limit are written without a fraction.
+	 */
+	private static final double MAX_INTEGRAL = 1e15;
+
+	// prevent instantiating this class
+	@Deprecated
+	private WktWriter()
+	{
+	}
+
+	/**
+	 * Gets the name of the given geometry type.
+	 * @param type geometry type
+	 * @return type name
+	 * @throws IllegalArgumentException if the type is unknown
+	 */
+	private static String getTypeName(int type)
+	{
+		switch (type)
+		{
+			case Point.TYPE:
+				return "POINT";
+			case LineString.TYPE:
+				return "LINESTRING";
+			case Polygon.TYPE:
+				return "POLYGON";
+			case MultiPoint.TYPE:
+				return "MULTIPOINT";
+			case MultiLineString.TYPE:
+				return "MULTILINESTRING";
+			case MultiPolygon.TYPE:
+				return "MULTIPOLYGON";
+			case GeometryCollection.TYPE:
+				return "GEOMETRYCOLLECTION";
+			case CircularString.TYPE:
+				return "CIRCULARSTRING";
+			case CompoundCurve.TYPE:
+				return "COMPOUNDCURVE";
+			case CurvePolygon.TYPE:
+				return "CURVEPOLYGON";
+			case MultiCurve.TYPE:
+				return "MULTICURVE";
+			case MultiSurface.TYPE:
+				return "MULTISURFACE";
+			default:
+				throw new IllegalArgumentException("unknown geometry type: " + type);
+		}
+	}
+
+	/**
+	 * Gets the extended well-known text representation of the given geometry.
+	 * @param geom {@link Geometry}
+	 * @return well-known text
+	 * @throws IllegalArgumentException if the geometry type is unknown
+	 */
+	public static String write(Geometry geom)
+	{
+		StringBuilder sb = new StringBuilder(16 + geom.getNumberOfCoordinates() * 24);
+		try
+		{
+			write(geom, sb);
+		}
+		catch (IOException ex)
+		{
+			// cannot happen with a StringBuilder
+			throw new UncheckedIOException(ex);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the extended well-known text representation of the given geometry.
+	 * @param geom {@link Geometry}
+	 * @param out output
+	 * @throws IOException if writing to the output fails
+	 * @throws IllegalArgumentException if the geometry type is unknown
+	 */
+	public static void write(Geometry geom, Appendable out) throws IOException
+	{
+		if (geom.getSrid() != Geometry.UNKNOWN_SRID)
+		{
+			out.append("SRID=").append(Integer.toString(geom.getSrid())).append(';');
+		}
+		writeGeometry(geom, out, geom.is3d(), geom.hasMeasure());
+	}
+
+	/**
+	 * Writes a curve, which is just a list of points for a plain {@link LineString}.
+	 * @param curve {@link Curve}
+	 * @param out output
+	 * @param z write z values?
+	 * @param m write measures?
+	 * @throws IOException if writing to the output fails
+	 */
+	private static void writeCurve(Curve curve, Appendable out, boolean z, boolean m) throws IOException
+	{
+		if ((curve instanceof LineString) && !(curve instanceof CircularString))
+		{
+			writePoints(curve.getCoordinates(), out, z, m);
+		}
+		else
+		{
+			writeGeometry(curve, out, z, m);
+		}
+	}
+
+	/**
+	 * Writes a geometry including its type.
+	 * @param geom {@link Geometry}
+	 * @param out output
+	 * @param z write z values?
+	 * @param m write measures?
+	 * @throws IOException if writing to the output fails
+	 * @throws IllegalArgumentException if the geometry type is unknown
+	 */
+	private static void writeGeometry(Geometry geom, Appendable out, boolean z, boolean m) throws IOException
+	{
+		// rings are written as plain line strings
+		int type = (geom instanceof LinearRing) ? LineString.TYPE : geom.getType();
+		out.append(getTypeName(type));
+		// extended WKT only marks geometries with measures but without z values
+		if (m && !z)
+		{
+			out.append('M');
+		}
+		if (geom.isEmpty())
+		{
+			out.append(" EMPTY");
+			return;
+		}
+		switch (type)
+		{
+			case Point.TYPE:
+				out.append('(');
+				writePoint((Point) geom, out, z, m);
+				out.append(')');
+				break;
+			case LineString.TYPE:
+			case CircularString.TYPE:
+				writePoints(geom.getCoordinates(), out, z, m);
+				break;
+			case Polygon.TYPE:
+			case CurvePolygon.TYPE:
+				writePolygon((PolygonBase<?>) geom, out, z, m);
+				break;
+			case MultiPoint.TYPE:
+				writePoints(geom.getCoordinates(), out, z, m);
+				break;
+			case CompoundCurve.TYPE:
+			{
+				out.append('(');
+				boolean first = true;
+				for (LineString ls : ((CompoundCurve) geom).getGeometries())
+				{
+					if (!first)
+					{
+						out.append(',');
+					}
+					first = false;
+					writeCurve(ls, out, z, m);
+				}
+				out.append(')');
+				break;
+			}
+			default:
+			{
+				out.append('(');
+				boolean first = true;
+				for (Geometry g : ((MultiGeometry<?>) geom).getGeometries())
+				{
+					if (!first)
+					{
+						out.append(',');
+					}
+					first = false;
+					if ((g instanceof Curve) && (type != GeometryCollection.TYPE))
+					{
+						writeCurve((Curve) g, out, z, m);
+					}
+					else if ((g.getType() == Polygon.TYPE) && (type != GeometryCollection.TYPE))
+					{
+						writePolygon((Polygon) g, out, z, m);
+					}
+					else
+					{
+						writeGeometry(g, out, z, m);
+					}
+				}
+				out.append(')');
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes a number using the shortest representation that can be parsed back to the same value (see
+	 * {@link DoubleFormat}, as {@link Double#toString(double)} only gives it from Java 19 on).
+	 * @param value value
+	 * @param out output
+	 * @throws IOException if writing to the output fails
+	 */
+	private static void writeNumber(double value, Appendable out) throws IOException
+	{
+		if ((value == Math.rint(value)) && (Math.abs(value) < MAX_INTEGRAL))
+		{
+			// avoid a trailing ".0" for integral values
+			out.append(Long.toString((long) value));
+		}
+		else
+		{
+			out.append(DoubleFormat.toString(value));
+		}
+	}
+
+	/**
+	 * Writes the coordinates of a point.
+	 * @param p {@link Point}
+	 * @param out output
+	 * @param z write z values?
+	 * @param m write measures?
+	 * @throws IOException if writing to the output fails
+	 */
+	private static void writePoint(Point p, Appendable out, boolean z, boolean m) throws IOException
+	{
+		writeNumber(p.getX(), out);
+		out.append(' ');
+		writeNumber(p.getY(), out);
+		// missing values are written as 0 like PostGIS does
+		if (z)
+		{
+			out.append(' ');
+			writeNumber(p.is3d() ? p.getZ() : 0, out);
+		}
+		if (m)
+		{
+			out.append(' ');
+			writeNumber(p.hasMeasure() ? p.getM() : 0, out);
+		}
+	}
+
+	/**
+	 * Writes a list of points enclosed in parentheses.
+	 * @param points points
+	 * @param out output
+	 * @param z write z values?
+	 * @param m write measures?
+	 * @throws IOException if writing to the output fails
+	 */
+	private static void writePoints(Iterable<Point> points, Appendable out, boolean z, boolean m) throws IOException
+	{
+		out.append('(');
+		boolean first = true;
+		for (Point p : points)
+		{
+			if (!first)
+			{
+				out.append(',');
+			}
+			first = false;
+			writePoint(p, out, z, m);
+		}
+		out.append(')');
+	}
+
+	/**
+	 * Writes the rings of a polygon enclosed in parentheses.
+	 * @param poly polygon
+	 * @param out output
+	 * @param z write z values?
+	 * @param m write measures?
+	 * @throws IOException if writing to the output fails
+	 */
+	private static void writePolygon(PolygonBase<?> poly, Appendable out, boolean z, boolean m) throws IOException
+	{
+		out.append('(');
+		writeCurve(poly.getOuterRing(), out, z, m);
+		for (Curve ring : poly.getRings())
+		{
+			out.append(',');
+			writeCurve(ring, out, z, m);
+		}
+		out.append(')');
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * Well-known text (WKT) package.
+ * @author Sebastian Baumhekel
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package io.github.sebasbaumh.postgis.wkt;
@@ -0,0 +1,151 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class CoordinatesTest
+{
+
+	private static MultiLineString createMultiLineString()
+	{
+		return new MultiLineString(Arrays.asList(new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4))),
+				new LineString(), new LineString(Arrays.asList(new Point(5, 6, 7)))));
+	}
+
+	private static List<Point> toList(Iterable<Point> points)
+	{
+		List<Point> l = new ArrayList<Point>();
+		for (Point p : points)
+		{
+			l.add(p);
+		}
+		return l;
+	}
+
+	@Test
+	public void testCompoundCurve()
+	{
+		CompoundCurve cc = new CompoundCurve(
+				Arrays.asList(new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1))),
+						new CircularString(Arrays.asList(new Point(1, 1), new Point(2, 2), new Point(3, 1)))));
+		Assert.assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(1, 1), new Point(2, 2),
+				new Point(3, 1)), toList(cc.getCoordinates()));
+		Assert.assertEquals(5, cc.getCoordinates().spliterator().getExactSizeIfKnown());
+	}
+
+	@Test
+	public void testCoordinatesStream()
+	{
+		MultiLineString mls = createMultiLineString();
+		Assert.assertEquals(toList(mls.getCoordinates()), mls.coordinates().collect(Collectors.toList()));
+		Assert.assertEquals(9, mls.coordinates().mapToDouble(Point::getX).sum(), 0);
+		// many parts of different sizes
+		List<LineString> lines = new ArrayList<LineString>();
+		int n = 0;
+		for (int i = 0; i < 100; i++)
+		{
+			List<Point> points = new ArrayList<Point>();
+			for (int j = 0; j < i * 10; j++)
+			{
+				points.add(new Point(n++, 1));
+			}
+			lines.add(new LineString(points));
+		}
+		MultiLineString large = new MultiLineString(lines);
+		Assert.assertEquals(n, large.coordinates().parallel().count());
+		Assert.assertEquals(n, large.coordinates().parallel().mapToDouble(Point::getY).sum(), 0);
+		Assert.assertEquals(n - 1, large.coordinates().parallel().mapToDouble(Point::getX).max().getAsDouble(), 0);
+		// order is kept
+		Assert.assertEquals(toList(large.getCoordinates()), large.coordinates().parallel().collect(Collectors.toList()));
+		// splitting is exact
+		Spliterator<Point> s1 = large.getCoordinates().spliterator();
+		Assert.assertEquals(n, s1.getExactSizeIfKnown());
+		Spliterator<Point> s2 = s1.trySplit();
+		Assert.assertNotNull(s2);
+		Assert.assertEquals(n, s1.getExactSizeIfKnown() + s2.getExactSizeIfKnown());
+		// a single large part is split as well
+		MultiLineString single = new MultiLineString(Arrays.asList(lines.get(99)));
+		Spliterator<Point> s3 = single.getCoordinates().spliterator();
+		Assert.assertNotNull(s3.trySplit());
+		Assert.assertTrue(s3.estimateSize() < 990);
+	}
+
+	@Test
+	public void testForEachCoordinate()
+	{
+		MultiLineString mls = createMultiLineString();
+		double[] sum = new double[4];
+		int[] count = new int[1];
+		mls.forEachCoordinate((x, y, z, m) -> {
+			sum[0] += x;
+			sum[1] += y;
+			if (!Double.isNaN(z))
+			{
+				sum[2] += z;
+			}
+			Assert.assertTrue(Double.isNaN(m));
+			count[0]++;
+		});
+		Assert.assertEquals(3, count[0]);
+		Assert.assertArrayEquals(new double[] { 9, 12, 7, 0 }, sum, 0);
+		// polygons only visit their outer ring just like getCoordinates()
+		Polygon poly = new Polygon(new LinearRing(Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(10, 10),
+				new Point(0, 0))));
+		poly.addRing(new LinearRing(Arrays.asList(new Point(1, 1), new Point(2, 1), new Point(2, 2), new Point(1, 1))));
+		count[0] = 0;
+		poly.forEachCoordinate((x, y, z, m) -> count[0]++);
+		Assert.assertEquals(poly.getNumberOfCoordinates(), count[0]);
+	}
+
+	@Test
+	public void testMultiGeometry()
+	{
+		MultiLineString mls = createMultiLineString();
+		Iterable<Point> coords = mls.getCoordinates();
+		Assert.assertEquals(Arrays.asList(new Point(1, 2), new Point(3, 4), new Point(5, 6, 7)), toList(coords));
+		// coordinates are not copied
+		Assert.assertSame(mls.getGeometries().iterator().next().getStartPoint(), coords.iterator().next());
+		// it is a live view
+		mls.add(new LineString(Arrays.asList(new Point(8, 9))));
+		Assert.assertEquals(4, toList(coords).size());
+		List<Point> l = new ArrayList<Point>();
+		coords.forEach(l::add);
+		Assert.assertEquals(toList(coords), l);
+		// an empty geometry has no coordinates
+		Iterator<Point> it = new MultiPoint().getCoordinates().iterator();
+		Assert.assertFalse(it.hasNext());
+		Assert.assertThrows(NoSuchElementException.class, it::next);
+	}
+
+}
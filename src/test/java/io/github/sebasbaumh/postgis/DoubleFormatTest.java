@@ -0,0 +1,109 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.sebasbaumh.postgis;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class DoubleFormatTest
+{
+	private static int getDigits(String s)
+	{
+		int e = s.indexOf('E');
+		String digits = ((e >= 0) ? s.substring(0, e) : s).replace("-", "").replace(".", "");
+		digits = digits.replaceAll("^0+", "").replaceAll("0+$", "");
+		return Math.max(1, digits.length());
+	}
+
+	@Test
+	public void testFormat()
+	{
+		// written with too many digits by Double.toString() before Java 19
+		Assert.assertEquals("2.82879384806159E17", DoubleFormat.toString(2.82879384806159E17));
+		Assert.assertEquals("1.0E23", DoubleFormat.toString(1e23));
+		Assert.assertEquals("0.002", DoubleFormat.toString(0.002));
+		Assert.assertEquals("0.001", DoubleFormat.toString(0.001));
+		Assert.assertEquals("1.0E-4", DoubleFormat.toString(0.0001));
+		Assert.assertEquals("1234567.0", DoubleFormat.toString(1234567));
+		Assert.assertEquals("1.0E7", DoubleFormat.toString(1e7));
+		Assert.assertEquals("123456.789", DoubleFormat.toString(123456.789));
+		Assert.assertEquals("-4.35", DoubleFormat.toString(-4.35));
+		Assert.assertEquals("0.0", DoubleFormat.toString(0.0));
+		Assert.assertEquals("-0.0", DoubleFormat.toString(-0.0));
+		Assert.assertEquals("4.9E-324", DoubleFormat.toString(Double.MIN_VALUE));
+		Assert.assertEquals("1.7976931348623157E308", DoubleFormat.toString(Double.MAX_VALUE));
+		Assert.assertEquals("-2.2250738585072014E-308", DoubleFormat.toString(-Double.MIN_NORMAL));
+		Assert.assertEquals("NaN", DoubleFormat.toString(Double.NaN));
+		Assert.assertEquals("-Infinity", DoubleFormat.toString(Double.NEGATIVE_INFINITY));
+		// at a position in a buffer
+		char[] buf = new char[DoubleFormat.MAX_LENGTH + 2];
+		buf[0] = '[';
+		int end = DoubleFormat.format(-2.2250738585072014E-308, buf, 1);
+		Assert.assertEquals(buf.length - 1, end);
+		Assert.assertEquals("[-2.2250738585072014E-308", new String(buf, 0, end));
+	}
+
+	@Test
+	public void testShortest()
+	{
+		Random rnd = new Random(1);
+		for (int i = 0; i < 100000; i++)
+		{
+			// random bits and values of typical magnitudes
+			double v = ((i % 2) == 0) ? Double.longBitsToDouble(rnd.nextLong())
+					: rnd.nextDouble() * Math.pow(10, rnd.nextInt(40) - 20);
+			if (Double.isNaN(v) || Double.isInfinite(v) || (Math.abs(v) < 3 * Double.MIN_VALUE))
+			{
+				continue;
+			}
+			String s = DoubleFormat.toString(v);
+			Assert.assertEquals(s, v, Double.parseDouble(s), 0);
+			Assert.assertTrue(s, getDigits(s) <= getDigits(Double.toString(v)));
+			// no representation with less digits can be parsed back
+			BigDecimal exact = new BigDecimal(v);
+			int digits = getDigits(s);
+			BigDecimal distance = new BigDecimal(s).subtract(exact).abs();
+			for (RoundingMode mode : new RoundingMode[] { RoundingMode.FLOOR, RoundingMode.CEILING })
+			{
+				if (digits > 1)
+				{
+					Assert.assertNotEquals(s, v, exact.round(new MathContext(digits - 1, mode)).doubleValue(), 0);
+				}
+				// and it is the closest one with the same number of digits
+				BigDecimal other = exact.round(new MathContext(digits, mode));
+				if (other.doubleValue() == v)
+				{
+					Assert.assertTrue(s, distance.compareTo(other.subtract(exact).abs()) <= 0);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class EnvelopeTest
+{
+	private static final double DELTA = 1e-9;
+
+	private static void assertEnvelope(Envelope env, double minX, double minY, double maxX, double maxY)
+	{
+		Assert.assertEquals(minX, env.getMinX(), DELTA);
+		Assert.assertEquals(minY, env.getMinY(), DELTA);
+		Assert.assertEquals(maxX, env.getMaxX(), DELTA);
+		Assert.assertEquals(maxY, env.getMaxY(), DELTA);
+	}
+
+	@Test
+	public void testArcs()
+	{
+		double d = Math.sqrt(0.5);
+		// upper half of the unit circle
+		CircularString cs = new CircularString(Arrays.asList(new Point(-1, 0), new Point(d, d), new Point(1, 0)));
+		assertEnvelope(cs.getEnvelope(), -1, 0, 1, 1);
+		// lower half (clockwise)
+		cs = new CircularString(Arrays.asList(new Point(1, 0), new Point(-d, -d), new Point(-1, 0)));
+		assertEnvelope(cs.getEnvelope(), -1, -1, 1, 0);
+		// small arc not crossing any extreme point
+		cs = new CircularString(Arrays.asList(new Point(1, 0), new Point(d, d), new Point(0, 1)));
+		assertEnvelope(cs.getEnvelope(), 0, 0, 1, 1);
+		// full circle
+		cs = new CircularString(Arrays.asList(new Point(0, 0), new Point(4, 0), new Point(0, 0)));
+		assertEnvelope(cs.getEnvelope(), 0, -2, 4, 2);
+		// straight "arc"
+		cs = new CircularString(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(2, 2)));
+		assertEnvelope(cs.getEnvelope(), 0, 0, 2, 2);
+		// linearized arcs follow the same circles
+		cs = new CircularString(Arrays.asList(new Point(1, 0), new Point(-d, -d), new Point(-1, 0), new Point(0, 1),
+				new Point(1, 0)));
+		Envelope env = cs.linearize(Math.PI / 1800).getEnvelope();
+		assertEnvelope(cs.getEnvelope(), env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY());
+	}
+
+	@Test
+	public void testCaching()
+	{
+		LineString ls = new LineString(Arrays.asList(new Point(0, 0), new Point(10, 5)));
+		MultiLineString mls = new MultiLineString(Arrays.asList(ls));
+		Envelope env = mls.getEnvelope();
+		Assert.assertSame(env, mls.getEnvelope());
+		assertEnvelope(env, 0, 0, 10, 5);
+		// modifications of subgeometries are detected
+		ls.getStartPoint().setY(-5);
+		assertEnvelope(mls.getEnvelope(), 0, -5, 10, 5);
+		ls.add(new Point(20, 20));
+		assertEnvelope(mls.getEnvelope(), 0, -5, 20, 20);
+		// envelope of frozen geometries is calculated in advance
+		mls.freeze();
+		Assert.assertSame(mls.getEnvelope(), mls.getEnvelope());
+	}
+
+	@Test
+	public void testEnvelope()
+	{
+		Envelope env = new Envelope(0, 0, 10, 10);
+		Assert.assertFalse(env.isEmpty());
+		Assert.assertFalse(env.is3d());
+		Assert.assertTrue(env.contains(5, 10));
+		Assert.assertFalse(env.contains(5, 11));
+		Assert.assertTrue(env.contains(new Envelope(1, 1, 2, 2)));
+		Assert.assertTrue(env.intersects(new Envelope(10, 10, 20, 20)));
+		Assert.assertFalse(env.intersects(new Envelope(11, 10, 20, 20)));
+		Assert.assertFalse(env.intersects(Envelope.EMPTY));
+		Assert.assertSame(env, env.merge(Envelope.EMPTY));
+		Envelope merged = env.merge(new Envelope(-1, 2, 5, 3, 4, 6));
+		Assert.assertEquals(new Envelope(-1, 0, 5, 10, 10, 6), merged);
+		Assert.assertEquals(new PGbox2d(new Point(0, 0), new Point(10, 10)), env.toBox2d());
+		Assert.assertEquals(new PGbox3d(new Point(-1, 0, 5), new Point(10, 10, 6)), merged.toBox3d());
+	}
+
+	@Test
+	public void testGeometries()
+	{
+		Assert.assertEquals(new Envelope(1, 2, 3, 1, 2, 3), new Point(1, 2, 3).getEnvelope());
+		Assert.assertTrue(new Point().getEnvelope().isEmpty());
+		Assert.assertTrue(new MultiPolygon().getEnvelope().isEmpty());
+		Polygon poly = new Polygon(new LinearRing(Arrays.asList(new Point(0, 0, 1), new Point(10, 0, 2),
+				new Point(10, 10, 3), new Point(0, 10, 1), new Point(0, 0, 1))));
+		Assert.assertEquals(new Envelope(0, 0, 1, 10, 10, 3), poly.getEnvelope());
+		MultiPoint mp = new MultiPoint(Arrays.asList(new Point(-5, 3), new Point(), new Point(2, 20)));
+		Assert.assertEquals(new Envelope(-5, 3, 2, 20), mp.getEnvelope());
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(poly, mp));
+		Assert.assertEquals(new Envelope(-5, 0, 1, 10, 20, 3), gc.getEnvelope());
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class EqualityTest
+{
+	private static final String WKB_MULTIPOLYGON = "0106000020E610000002000000010300000001000000040000000000000000000000000000000000000000000000000024400000000000000000000000000000244000000000000024400000000000000000000000000000000001030000000100000004000000000000000000344000000000000034400000000000003E4000000000000034400000000000003E400000000000003E4000000000000034400000000000003440";
+
+	private static Polygon createPolygon(double x)
+	{
+		return new Polygon(new LinearRing(Arrays.asList(new Point(x, 0), new Point(10, 0), new Point(10, 10),
+				new Point(x, 0))));
+	}
+
+	@Test
+	public void testEquals()
+	{
+		// polygons without inner rings have to compare their outer rings
+		Assert.assertNotEquals(createPolygon(0), createPolygon(1));
+		Assert.assertEquals(createPolygon(1), createPolygon(1));
+		// same coordinates, but different structure
+		MultiLineString mls1 = new MultiLineString(Arrays.asList(
+				new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1))),
+				new LineString(Arrays.asList(new Point(2, 2)))));
+		MultiLineString mls2 = new MultiLineString(Arrays.asList(new LineString(Arrays.asList(new Point(0, 0))),
+				new LineString(Arrays.asList(new Point(1, 1), new Point(2, 2)))));
+		Assert.assertNotEquals(mls1, mls2);
+		Assert.assertNotEquals(mls1.getStructuralHash(), mls2.getStructuralHash());
+		// tolerance is still respected
+		Assert.assertEquals(new LineString(Arrays.asList(new Point(0.1 + 0.2, 0), new Point(1, 1))),
+				new LineString(Arrays.asList(new Point(0.3, 0), new Point(1, 1))));
+	}
+
+	@Test
+	public void testHash()
+	{
+		Geometry geom1 = BinaryParser.parse(WKB_MULTIPOLYGON);
+		Geometry geom2 = BinaryParser.parse(WKB_MULTIPOLYGON);
+		Assert.assertEquals(geom1, geom2);
+		Assert.assertEquals(geom1.getStructuralHash(), geom2.getStructuralHash());
+		Assert.assertEquals(geom1.hashCode(), geom2.hashCode());
+		// -0.0 and 0.0 are the same
+		Assert.assertEquals(new Point(0, 1).getStructuralHash(), new Point(-0.0, 1).getStructuralHash());
+		Assert.assertEquals(new Point(0, 1), new Point(-0.0, 1));
+		// srid is part of the hash
+		Point p = new Point(1, 2);
+		long h = p.getStructuralHash();
+		p.setSrid(4326);
+		Assert.assertNotEquals(h, p.getStructuralHash());
+		// hash is updated on modifications
+		MultiPolygon mp = (MultiPolygon) geom1;
+		h = mp.getStructuralHash();
+		mp.iterator().next().getOuterRing().getStartPoint().setX(-1);
+		Assert.assertNotEquals(h, mp.getStructuralHash());
+		Assert.assertNotEquals(geom2, mp);
+	}
+
+	@Test
+	public void testHashSet()
+	{
+		Set<Geometry> set = new HashSet<Geometry>();
+		for (int i = 0; i < 10; i++)
+		{
+			set.add(BinaryParser.parse(WKB_MULTIPOLYGON));
+			set.add(createPolygon(i % 3));
+		}
+		Assert.assertEquals(4, set.size());
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.Fingerprint;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class FingerprintTest
+{
+
+	@Test
+	public void testBinaryAndGeometry()
+	{
+		//@formatter:off
+		String[] wkbs = new String[] {
+			"010100000000000000000024400000000000002440",
+			"01040000C00200000001010000C0000000000000264000000000000028400000000000002A400000000000002C4001010000C00000000000003440000000000000344000000000000034400000000000003440",
+			"0103000080020000000500000000000000000024400000000000002440000000000000000000000000000034400000000000002440000000000000000000000000000034400000000000003440000000000000000000000000000034400000000000002440000000000000000000000000000024400000000000002440000000000000000005000000000000000000144000000000000014400000000000000000000000000000144000000000000018400000000000000000000000000000184000000000000018400000000000000000000000000000184000000000000014400000000000000000000000000000144000000000000014400000000000000000",
+			"01060000C00200000001030000C002000000050000000000000000002440000000000000244000000000000000000000000000001C400000000000003440000000000000244000000000000000000000000000001C400000000000003440000000000000344000000000000000000000000000001C400000000000003440000000000000244000000000000000000000000000001C400000000000002440000000000000244000000000000000000000000000001C40050000000000000000001440000000000000144000000000000000000000000000001C400000000000001440000000000000184000000000000000000000000000001C400000000000001840000000000000184000000000000000000000000000001C400000000000001840000000000000144000000000000000000000000000001C400000000000001440000000000000144000000000000000000000000000001C4001030000C002000000050000000000000000002440000000000000244000000000000000000000000000001C400000000000003440000000000000244000000000000000000000000000001C400000000000003440000000000000344000000000000000000000000000001C400000000000003440000000000000244000000000000000000000000000001C400000000000002440000000000000244000000000000000000000000000001C40050000000000000000001440000000000000144000000000000000000000000000001C400000000000001440000000000000184000000000000000000000000000001C400000000000001840000000000000184000000000000000000000000000001C400000000000001840000000000000144000000000000000000000000000001C400000000000001440000000000000144000000000000000000000000000001C40",
+			"010700008006000000010100008000000000000024400000000000002440000000000000344001040000800200000001010000800000000000002440000000000000244000000000000024400101000080000000000000344000000000000034400000000000003440010200008004000000000000000000244000000000000024400000000000003440000000000000344000000000000034400000000000003440000000000000494000000000000049400000000000004940000000000000414000000000000041400000000000004140010300008002000000050000000000000000002440000000000000244000000000000000000000000000003440000000000000244000000000000000000000000000003440000000000000344000000000000000000000000000003440000000000000244000000000000000000000000000002440000000000000244000000000000000000500000000000000000014400000000000001440000000000000000000000000000014400000000000001840000000000000000000000000000018400000000000001840000000000000000000000000000018400000000000001440000000000000000000000000000014400000000000001440000000000000000001060000800200000001030000800200000005000000000000000000244000000000000024400000000000000000000000000000344000000000000024400000000000000000000000000000344000000000000034400000000000000000000000000000344000000000000024400000000000000000000000000000244000000000000024400000000000000000050000000000000000001440000000000000144000000000000000000000000000001440000000000000184000000000000000000000000000001840000000000000184000000000000000000000000000001840000000000000144000000000000000000000000000001440000000000000144000000000000000000103000080020000000500000000000000000024400000000000002440000000000000000000000000000034400000000000002440000000000000000000000000000034400000000000003440000000000000000000000000000034400000000000002440000000000000000000000000000024400000000000002440000000000000000005000000000000000000144000000000000014400000000000000000000000000000144000000000000018400000000000000000000000000000184000000000000018400000000000000000000000000000184000000000000014400000000000000000000000000000144000000000000014400000000000000000010500008002000000010200008005000000000000000000244000000000000024400000000000000000000000000000344000000000000024400000000000000000000000000000344000000000000034400000000000000000000000000000344000000000000024400000000000000000000000000000244000000000000024400000000000000000010200008005000000000000000000144000000000000014400000000000000000000000000000144000000000000018400000000000000000000000000000184000000000000018400000000000000000000000000000184000000000000014400000000000000000000000000000144000000000000014400000000000000000",
+			"010A000000020000000102000000050000000000000000000000000000000000000000000000000010400000000000000000000000000000104000000000000010400000000000000000000000000000104000000000000000000000000000000000010200000004000000000000000000F03F000000000000F03F000000000000084000000000000008400000000000000840000000000000F03F000000000000F03F000000000000F03F",
+			"010A000000020000000108000000050000000000000000000000000000000000000000000000000010400000000000000000000000000000104000000000000010400000000000000000000000000000104000000000000000000000000000000000010200000004000000000000000000F03F000000000000F03F000000000000084000000000000008400000000000000840000000000000F03F000000000000F03F000000000000F03F",
+			"01090000000200000001080000000300000000000000000000000000000000000000000000000000F03F000000000000F03F000000000000F03F0000000000000000010200000002000000000000000000F03F00000000000000000000000000000000000000000000F03F",
+			"010B000000020000000102000000020000000000000000000000000000000000000000000000000014400000000000001440010800000003000000000000000000104000000000000000000000000000001040000000000000104000000000000020400000000000001040",
+			"010C00000002000000010A000000020000000108000000050000000000000000000000000000000000000000000000000010400000000000000000000000000000104000000000000010400000000000000000000000000000104000000000000000000000000000000000010200000004000000000000000000F03F000000000000F03F000000000000084000000000000008400000000000000840000000000000F03F000000000000F03F000000000000F03F01030000000200000004000000000000000000244000000000000024400000000000002C40000000000000284000000000000026400000000000002440000000000000244000000000000024400400000000000000000026400000000000002640000000000000274000000000000026400000000000002640000000000000274000000000000026400000000000002640",
+		};
+		//@formatter:on
+		for (String wkb : wkbs)
+		{
+			Fingerprint fp = Fingerprint.of(wkb);
+			Assert.assertEquals(wkb, fp, Fingerprint.of(PostGisUtil.toHexBytes(wkb), 0));
+			Assert.assertEquals(32, fp.toString().length());
+			// parsing can change the geometry (e.g. orientation of holes), so compare it with its own binary form
+			Geometry geom = BinaryParser.parse(wkb);
+			Assert.assertEquals(wkb, Fingerprint.of(BinaryWriter.writeBinary(geom), 0), Fingerprint.of(geom));
+			if (wkb.equals(BinaryWriter.writeHexed(geom)))
+			{
+				Assert.assertEquals(wkb, fp, Fingerprint.of(geom));
+			}
+		}
+	}
+
+	@Test
+	public void testNormalization()
+	{
+		// big endian encoding of POINT(10 15)
+		Assert.assertEquals(Fingerprint.of(new Point(10, 15)), Fingerprint.of("00000000014024000000000000402E000000000000"));
+		Assert.assertEquals(Fingerprint.of(new Point(0, 1)), Fingerprint.of(new Point(-0.0, 1)));
+		// srid of the outermost geometry is respected, the ones of nested geometries are written, but ignored
+		MultiPoint mp = new MultiPoint(Arrays.asList(new Point(1, 2), new Point(3, 4)));
+		Fingerprint fp = Fingerprint.of(mp);
+		mp.setSrid(4326);
+		Fingerprint fpSrid = Fingerprint.of(mp);
+		Assert.assertNotEquals(fp, fpSrid);
+		Assert.assertEquals(fpSrid, Fingerprint.of(BinaryWriter.writeBinary(mp), 0));
+		// modifications are detected
+		mp.iterator().next().setY(2.5);
+		Assert.assertNotEquals(fpSrid, Fingerprint.of(mp));
+		// same coordinates, but different structure
+		Assert.assertNotEquals(
+				Fingerprint.of(new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4)))),
+				Fingerprint.of(new MultiPoint(Arrays.asList(new Point(1, 2), new Point(3, 4)))));
+		Fingerprint fp2 = Fingerprint.of(new Point(1, 2));
+		Assert.assertEquals(fp2, new Fingerprint(fp2.getHigh(), fp2.getLow()));
+	}
+
+}
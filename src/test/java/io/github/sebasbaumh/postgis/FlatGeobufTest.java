@@ -0,0 +1,193 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.flatgeobuf.FlatGeobufReader;
+import io.github.sebasbaumh.postgis.flatgeobuf.FlatGeobufWriter;
+import io.github.sebasbaumh.postgis.wkt.WktParser;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class FlatGeobufTest
+{
+	private static final String[] WKTS = { "POINT(1 2)", "POINT(1 2 3)", "POINTM(1 2 3)", "POINT(1 2 3 4)",
+			"LINESTRING(0 0,1 1,2 0.5)", "POLYGON((0 0,10 0,10 10,0 10,0 0),(2 2,2 4,4 4,4 2,2 2))",
+			"MULTIPOINT(1 2,3 4)", "MULTILINESTRING((0 0,1 1),(2 2,3 3))",
+			"MULTIPOLYGON(((0 0,1 0,1 1,0 0)),((5 5,6 5,6 6,5 5)))", "CIRCULARSTRING(0 0,1 1,2 0)",
+			"COMPOUNDCURVE(CIRCULARSTRING(0 0,1 1,2 0),(2 0,3 0))",
+			"CURVEPOLYGON(COMPOUNDCURVE(CIRCULARSTRING(0 0,2 0,2 2),(2 2,0 0)),(0.5 0.5,1 0.6,1.2 0.5,0.5 0.5))",
+			"MULTICURVE((0 0,1 1),CIRCULARSTRING(0 0,1 1,2 0))",
+			"MULTISURFACE(((0 0,1 0,1 1,0 0)),CURVEPOLYGON(CIRCULARSTRING(0 0,2 0,0 0)))",
+			"GEOMETRYCOLLECTION(POINT(1 2),LINESTRING(0 0,1 1))", "POINT EMPTY" };
+
+	private Path dir;
+
+	@Before
+	public void before() throws IOException
+	{
+		dir = Files.createTempDirectory("fgb");
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		try (Stream<Path> files = Files.list(dir))
+		{
+			for (Path p : (Iterable<Path>) files::iterator)
+			{
+				Files.delete(p);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testNoIndex() throws IOException
+	{
+		Path file = dir.resolve("test.fgb");
+		try (FlatGeobufWriter writer = new FlatGeobufWriter(file, "test", 0))
+		{
+			writer.write(new Point(1, 1));
+			writer.write(new Point(5, 5));
+		}
+		FlatGeobufReader reader = new FlatGeobufReader(file);
+		Assert.assertFalse(reader.hasIndex());
+		List<Geometry> result = new ArrayList<Geometry>();
+		reader.query(4, 4, 6, 6, (geom, properties) -> result.add(geom));
+		Assert.assertEquals(Arrays.asList(new Point(5, 5)), result);
+	}
+
+	@Test
+	public void testQuery() throws IOException
+	{
+		Random rnd = new Random(42);
+		List<Envelope> boxes = new ArrayList<Envelope>();
+		Path file = dir.resolve("test.fgb");
+		try (FlatGeobufWriter writer = new FlatGeobufWriter(file, "boxes"))
+		{
+			for (int i = 0; i < 5000; i++)
+			{
+				double x = rnd.nextDouble() * 1000;
+				double y = rnd.nextDouble() * 1000;
+				double w = rnd.nextDouble() * 10;
+				Geometry geom = (i % 2 == 0) ? new Point(x, y)
+						: new LineString(Arrays.asList(new Point(x, y), new Point(x + w, y + w)));
+				geom.setSrid(4326);
+				Map<String, Object> properties = new HashMap<String, Object>();
+				properties.put("id", i);
+				writer.write(geom, properties);
+				boxes.add(geom.getEnvelope());
+			}
+			Assert.assertEquals(5000, writer.getNumberOfFeatures());
+		}
+		FlatGeobufReader reader = new FlatGeobufReader(file);
+		Assert.assertTrue(reader.hasIndex());
+		Assert.assertEquals(5000, reader.getNumberOfFeatures());
+		Assert.assertEquals(4326, reader.getSrid());
+		Assert.assertEquals(0, reader.getGeometryType());
+		for (int q = 0; q < 50; q++)
+		{
+			double x = rnd.nextDouble() * 1000;
+			double y = rnd.nextDouble() * 1000;
+			Envelope window = new Envelope(x, y, x + 50, y + 30);
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < boxes.size(); i++)
+			{
+				if (boxes.get(i).intersects(window))
+				{
+					expected.add(i);
+				}
+			}
+			List<Integer> actual = new ArrayList<Integer>();
+			reader.query(window, (geom, properties) -> {
+				Assert.assertEquals(4326, geom.getSrid());
+				actual.add((Integer) properties.get("id"));
+			});
+			actual.sort(null);
+			Assert.assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		Path file = dir.resolve("test.fgb");
+		List<Geometry> geoms = new ArrayList<Geometry>();
+		try (FlatGeobufWriter writer = new FlatGeobufWriter(file, "layer"))
+		{
+			for (int i = 0; i < WKTS.length; i++)
+			{
+				Geometry geom = WktParser.parse(WKTS[i]);
+				geoms.add(geom);
+				Map<String, Object> properties = new LinkedHashMap<String, Object>();
+				properties.put("index", i);
+				properties.put("name", WKTS[i]);
+				properties.put("flag", i % 2 == 0);
+				properties.put("value", i * 0.5);
+				properties.put("big", (long) i << 40);
+				properties.put("nothing", null);
+				writer.write(geom, properties);
+			}
+			Assert.assertThrows(IllegalArgumentException.class,
+					() -> writer.write(new Point(1, 2), Collections.singletonMap("index", "text")));
+		}
+		FlatGeobufWriter closedWriter = new FlatGeobufWriter(dir.resolve("closed.fgb"), "closed");
+		closedWriter.close();
+		Assert.assertThrows(IllegalStateException.class, () -> closedWriter.write(new Point(1, 2)));
+		FlatGeobufReader reader = new FlatGeobufReader(file);
+		Assert.assertEquals("layer", reader.getName());
+		Assert.assertEquals(Arrays.asList("index", "name", "flag", "value", "big"), reader.getColumnNames());
+		// the full circle of the curve polygon reaches below 0
+		Assert.assertEquals(new Envelope(0, -1, 10, 10), reader.getEnvelope());
+		List<Geometry> read = new ArrayList<Geometry>();
+		reader.readAll((geom, properties) -> {
+			int i = (Integer) properties.get("index");
+			Assert.assertEquals(WKTS[i], geoms.get(i), geom);
+			Assert.assertEquals(WKTS[i], properties.get("name"));
+			Assert.assertEquals(i % 2 == 0, properties.get("flag"));
+			Assert.assertEquals(i * 0.5, properties.get("value"));
+			Assert.assertEquals((long) i << 40, properties.get("big"));
+			Assert.assertFalse(properties.containsKey("nothing"));
+			read.add(geom);
+		});
+		Assert.assertEquals(WKTS.length, read.size());
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.GeoJsonWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GeoJsonWriterTest
+{
+	private static String toGeoJson(Geometry geom)
+	{
+		return GeoJsonWriter.toGeoJson(BinaryWriter.writeBinary(geom));
+	}
+
+	@Test
+	public void testCurves()
+	{
+		// curves are linearized
+		CircularString cs = new CircularString(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(2, 0)));
+		String json = toGeoJson(cs);
+		Assert.assertTrue(json, json.startsWith("{\"type\":\"LineString\",\"coordinates\":[[0,0],"));
+		Assert.assertTrue(json, json.endsWith(",[2,0]]}"));
+		Assert.assertEquals(cs.linearize().getNumberOfCoordinates(), json.split("\\],\\[").length);
+		MultiSurface ms = new MultiSurface(Arrays.asList(new CurvePolygon(new LineString(Arrays.asList(new Point(0, 0),
+				new Point(1, 0), new Point(1, 1), new Point(0, 0))))));
+		Assert.assertEquals("{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]]]}",
+				toGeoJson(ms));
+	}
+
+	@Test
+	public void testFeatureCollection() throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		GeoJsonWriter writer = new GeoJsonWriter(bos);
+		writer.beginFeatureCollection();
+		Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		properties.put("name", "a \"b\"\n\u00e4");
+		properties.put("count", 3);
+		properties.put("ratio", 0.25);
+		properties.put("flag", Boolean.FALSE);
+		properties.put("missing", null);
+		writer.writeFeature(BinaryWriter.writeBinary(new Point(1, 2)), properties);
+		writer.writeFeature(null, new LinkedHashMap<String, Object>());
+		writer.endFeatureCollection();
+		writer.flush();
+		Assert.assertEquals("{\"type\":\"FeatureCollection\",\"features\":["
+				+ "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},\"properties\":"
+				+ "{\"name\":\"a \\\"b\\\"\\n\u00e4\",\"count\":3,\"ratio\":0.25,\"flag\":false,\"missing\":null}},"
+				+ "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{}}]}",
+				new String(bos.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testGeometries() throws IOException
+	{
+		Assert.assertEquals("{\"type\":\"Point\",\"coordinates\":[1.5,-2,3]}", toGeoJson(new Point(1.5, -2, 3)));
+		Assert.assertEquals("{\"type\":\"Point\",\"coordinates\":[]}", toGeoJson(new Point()));
+		// measures are dropped
+		Point pm = new Point(1, 2);
+		pm.setM(5);
+		Assert.assertEquals("{\"type\":\"Point\",\"coordinates\":[1,2]}", toGeoJson(pm));
+		Assert.assertEquals("{\"type\":\"LineString\",\"coordinates\":[[0.1,0.2],[1E20,3]]}",
+				toGeoJson(new LineString(Arrays.asList(new Point(0.1, 0.2), new Point(1e20, 3)))).replace(".0E", "E"));
+		// shortest representation on all Java versions
+		Assert.assertEquals("{\"type\":\"Point\",\"coordinates\":[2.82879384806159E17,1.0E-4]}",
+				toGeoJson(new Point(2.82879384806159E17, 0.0001)));
+		LinearRing outer = new LinearRing(
+				Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(10, 10), new Point(0, 0)));
+		Polygon poly = new Polygon(outer);
+		Assert.assertEquals("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,0]]]}",
+				toGeoJson(poly));
+		MultiPoint mp = new MultiPoint(Arrays.asList(new Point(1, 2), new Point(3, 4)));
+		mp.setSrid(4326);
+		Assert.assertEquals("{\"type\":\"MultiPoint\",\"coordinates\":[[1,2],[3,4]]}", toGeoJson(mp));
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(new Point(1, 2),
+				new MultiLineString(Arrays.asList(new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1)))))));
+		String expected = "{\"type\":\"GeometryCollection\",\"geometries\":[{\"type\":\"Point\",\"coordinates\":[1,2]},"
+				+ "{\"type\":\"MultiLineString\",\"coordinates\":[[[0,0],[1,1]]]}]}";
+		Assert.assertEquals(expected, toGeoJson(gc));
+		// other sources
+		byte[] wkb = BinaryWriter.writeBinary(gc);
+		StringWriter sw = new StringWriter();
+		GeoJsonWriter writer = new GeoJsonWriter(sw);
+		writer.writeGeometry(ByteBuffer.wrap(wkb));
+		writer.writeGeometry(new ByteArrayInputStream(wkb));
+		writer.writeGeometry(BinaryWriter.writeHexed(gc));
+		Assert.assertEquals(expected + expected + expected, sw.toString());
+	}
+
+	@Test
+	public void testPrecision()
+	{
+		StringWriter sw = new StringWriter();
+		GeoJsonWriter writer = new GeoJsonWriter(sw, 3);
+		try
+		{
+			writer.writeGeometry(BinaryWriter.writeBinary(new LineString(
+					Arrays.asList(new Point(1.23456, -0.0004), new Point(-7.1006, 2.5), new Point(1e17, 0.1)))), 0);
+		}
+		catch (IOException ex)
+		{
+			throw new AssertionError(ex);
+		}
+		Assert.assertEquals("{\"type\":\"LineString\",\"coordinates\":[[1.235,0],[-7.101,2.5],[1.0E17,0.1]]}",
+				sw.toString());
+		Assert.assertThrows(IllegalArgumentException.class, () -> new GeoJsonWriter(sw, 16));
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.geoarrow.GeometryBatch;
+import io.github.sebasbaumh.postgis.geoarrow.GeometryBatchBuilder;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GeometryBatchTest
+{
+	/**
+	 * Creates a polygon with a hole.
+	 * @param x offset
+	 * @return {@link Polygon}
+	 */
+	private static Polygon createPolygon(double x)
+	{
+		Polygon poly = new Polygon(new LinearRing(Arrays.asList(new Point(x, 0), new Point(x + 10, 0),
+				new Point(x + 10, 10), new Point(x, 10), new Point(x, 0))));
+		poly.addRing(new LinearRing(
+				Arrays.asList(new Point(x + 2, 2), new Point(x + 2, 4), new Point(x + 4, 4), new Point(x + 2, 2))));
+		return poly;
+	}
+
+	@Test
+	public void testExport()
+	{
+		GeometryBatchBuilder builder = new GeometryBatchBuilder(Point.TYPE, true, false);
+		builder.add(new Point(1, 2, 3));
+		builder.add(null);
+		builder.add(new Point(4, 5));
+		GeometryBatch batch = builder.build();
+		Assert.assertEquals(3, batch.getCoordinateSize());
+		Assert.assertEquals(0, batch.getNumberOfOffsetLevels());
+		Assert.assertEquals("geoarrow.point", batch.getExtensionName());
+		ByteBuffer y = batch.exportCoordinates(1);
+		Assert.assertTrue(y.isDirect());
+		Assert.assertEquals(3 * Double.BYTES, y.capacity());
+		Assert.assertEquals(2, y.getDouble(0), 0);
+		Assert.assertTrue(Double.isNaN(y.getDouble(8)));
+		Assert.assertEquals(5, y.getDouble(16), 0);
+		ByteBuffer all = batch.exportInterleavedCoordinates();
+		Assert.assertEquals(3, all.getDouble(16), 0);
+		Assert.assertTrue(Double.isNaN(all.getDouble(64)));
+		ByteBuffer validity = batch.exportValidity();
+		Assert.assertNotNull(validity);
+		Assert.assertEquals(0b101, validity.get(0));
+		Assert.assertThrows(IndexOutOfBoundsException.class, () -> batch.exportCoordinates(3));
+		Assert.assertThrows(IndexOutOfBoundsException.class, () -> batch.getOffsets(0));
+	}
+
+	@Test
+	public void testMultiPolygon()
+	{
+		MultiPolygon mp = new MultiPolygon(Arrays.asList(createPolygon(0), createPolygon(20)));
+		mp.setSrid(4326);
+		Polygon single = createPolygon(40);
+		single.setSrid(4326);
+		GeometryBatchBuilder builder = new GeometryBatchBuilder(MultiPolygon.TYPE, false, false);
+		builder.addWkb(BinaryWriter.writeHexed(mp));
+		builder.add(single);
+		builder.add(new MultiPolygon());
+		builder.addWkb(null);
+		// wrong type or SRID leaves the builder unchanged
+		Assert.assertThrows(IllegalArgumentException.class, () -> builder.add(new Point(1, 2)));
+		Polygon otherSrid = createPolygon(0);
+		otherSrid.setSrid(31467);
+		Assert.assertThrows(IllegalArgumentException.class, () -> builder.add(otherSrid));
+		GeometryBatch batch = builder.build();
+		Assert.assertEquals(4, batch.size());
+		Assert.assertEquals(1, batch.getNullCount());
+		Assert.assertEquals(4326, batch.getSrid());
+		Assert.assertArrayEquals(new int[] { 0, 2, 3, 3, 3 }, batch.getOffsets(0));
+		Assert.assertArrayEquals(new int[] { 0, 2, 4, 6 }, batch.getOffsets(1));
+		Assert.assertArrayEquals(new int[] { 0, 5, 9, 14, 18, 23, 27 }, batch.getOffsets(2));
+		Assert.assertEquals(27, batch.getNumberOfCoordinates());
+		List<Geometry> geoms = batch.getGeometries();
+		Assert.assertEquals(mp, geoms.get(0));
+		MultiPolygon promoted = new MultiPolygon(Arrays.asList(single));
+		promoted.setSrid(4326);
+		Assert.assertEquals(promoted, geoms.get(1));
+		Assert.assertTrue(geoms.get(2).isEmpty());
+		Assert.assertNull(geoms.get(3));
+		Assert.assertArrayEquals(BinaryWriter.writeBinary(mp), batch.getWkb(0));
+		Assert.assertNull(batch.getWkb(3));
+	}
+
+	@Test
+	public void testRoundTrip()
+	{
+		LineString ls1 = new LineString(Arrays.asList(new Point(1, 2, 3, 4), new Point(5, 6, 7, 8)));
+		LineString ls2 = new LineString(Arrays.asList(new Point(1, 1, 1, 1), new Point(2, 2, 2, 2),
+				new Point(3, 3, 3, 3)));
+		MultiLineString mls = new MultiLineString(Arrays.asList(ls1, ls2));
+		GeometryBatchBuilder fromGeometry = new GeometryBatchBuilder(MultiLineString.TYPE, true, true);
+		GeometryBatchBuilder fromWkb = new GeometryBatchBuilder(MultiLineString.TYPE, true, true);
+		for (Geometry geom : Arrays.asList(mls, ls2, new MultiLineString()))
+		{
+			fromGeometry.add(geom);
+			fromWkb.addWkb(BinaryWriter.writeBinary(geom), 0);
+		}
+		GeometryBatch batch = fromGeometry.build();
+		GeometryBatch batchWkb = fromWkb.build();
+		Assert.assertArrayEquals(batch.getCoordinates(), batchWkb.getCoordinates(), 0);
+		Assert.assertArrayEquals(batch.getOffsets(0), batchWkb.getOffsets(0));
+		Assert.assertArrayEquals(batch.getOffsets(1), batchWkb.getOffsets(1));
+		Assert.assertArrayEquals(new int[] { 0, 2, 3, 3 }, batch.getOffsets(0));
+		Assert.assertArrayEquals(new int[] { 0, 2, 5, 8 }, batch.getOffsets(1));
+		Assert.assertNull(batch.exportValidity());
+		Assert.assertEquals(mls, batchWkb.getGeometry(0));
+		Assert.assertEquals(new MultiLineString(Arrays.asList(ls2)), batchWkb.getGeometry(1));
+		ByteBuffer offsets = batch.exportOffsets(1);
+		Assert.assertEquals(4 * Integer.BYTES, offsets.capacity());
+		Assert.assertEquals(5, offsets.getInt(8));
+		// dimensions are dropped
+		GeometryBatchBuilder builder2d = new GeometryBatchBuilder(LineString.TYPE, false, false);
+		builder2d.addWkb(BinaryWriter.writeBinary(ls1), 0);
+		Assert.assertArrayEquals(new double[] { 1, 2, 5, 6 }, builder2d.build().getCoordinates(), 0);
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.GeometryCache;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GeometryCacheTest
+{
+	private static final String WKB_LINESTRING = "01020000000400000000000000000024400000000000002440000000000000344000000000000034400000000000004940000000000000494000000000000041400000000000004140";
+	private static final String WKB_POINT = "010100000000000000000024400000000000002440";
+
+	@Test
+	public void testEviction()
+	{
+		// room for the line (4 coordinates) and one point
+		GeometryCache cache = new GeometryCache(5);
+		Geometry line = cache.parse(WKB_LINESTRING);
+		cache.parse(WKB_POINT);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(5, cache.getWeight());
+		// another point will evict the least recently used line
+		cache.parse(BinaryWriter.writeBinary(new Point(1, 2)), 0);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getWeight());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		// so the line is parsed again
+		Assert.assertNotSame(line, cache.parse(WKB_LINESTRING));
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(4, cache.getMissCount());
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testHits()
+	{
+		GeometryCache cache = new GeometryCache(1000);
+		byte[] data = PostGisUtil.toHexBytes(WKB_LINESTRING);
+		Geometry geom = cache.parse(data, 0);
+		Assert.assertEquals(BinaryParser.parse(WKB_LINESTRING), geom);
+		Assert.assertTrue(geom.isFrozen());
+		// same data at a different offset
+		byte[] data2 = new byte[data.length + 3];
+		System.arraycopy(data, 0, data2, 3, data.length);
+		Assert.assertSame(geom, cache.parse(data2, 3));
+		// modifying the original data must not affect the cache
+		data[data.length - 1] = 0;
+		Assert.assertNotSame(geom, cache.parse(data, 0));
+		Assert.assertSame(geom, cache.parse(WKB_LINESTRING));
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testPGgeometry() throws SQLException
+	{
+		GeometryCache cache = new GeometryCache(1000);
+		PGgeometrybase.setGeometryCache(cache);
+		try
+		{
+			byte[] data = PostGisUtil.toHexBytes(WKB_LINESTRING);
+			PGgeometry pg1 = new PGgeometry();
+			pg1.setByteValue(data, 0);
+			PGgeography pg2 = new PGgeography();
+			pg2.setByteValue(data, 0);
+			PGgeometry pg3 = new PGgeometry(WKB_LINESTRING);
+			Assert.assertSame(pg1.getGeometry(), pg2.getGeometry());
+			Assert.assertSame(pg1.getGeometry(), pg3.getGeometry());
+			Assert.assertEquals(2, cache.getHitCount());
+			Assert.assertEquals(1, cache.getMissCount());
+		}
+		finally
+		{
+			PGgeometrybase.setGeometryCache(null);
+		}
+	}
+
+}
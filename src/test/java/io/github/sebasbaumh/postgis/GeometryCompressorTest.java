@@ -0,0 +1,94 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.CompressedGeometry;
+import io.github.sebasbaumh.postgis.binary.GeometryCompressor;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GeometryCompressorTest
+{
+	@Test
+	public void testCoordinates()
+	{
+		Polygon poly = new Polygon(new LinearRing(
+				Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(10, 10), new Point(0, 10), new Point(0, 0))));
+		poly.addRing(new LinearRing(Arrays.asList(new Point(2, 2), new Point(2, 4), new Point(4, 4), new Point(2, 2))));
+		CompressedGeometry cg = new GeometryCompressor(0).compress(poly);
+		List<Point> points = new ArrayList<Point>();
+		cg.forEachCoordinate((x, y, z, m) -> points.add(new Point(x, y, z, m)));
+		// inner rings are visited too
+		Assert.assertEquals(9, points.size());
+		Assert.assertEquals(new Point(10, 10), points.get(2));
+		Assert.assertEquals(new Point(4, 4), points.get(7));
+		Assert.assertEquals(poly, cg.decode());
+		Assert.assertArrayEquals(BinaryWriter.writeBinary(poly), cg.toBinary());
+	}
+
+	@Test
+	public void testTrack()
+	{
+		GeometryCompressor compressor = new GeometryCompressor(2);
+		compressor.setPrecision(4326, 6, 1, 0);
+		Assert.assertEquals(6, compressor.getPrecision(4326));
+		Assert.assertEquals(2, compressor.getPrecision(31467));
+		// a GPS track with a point every few meters
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 1000; i++)
+		{
+			points.add(new Point(7.1 + i * 0.00003, 50.7 + Math.sin(i / 50.0) * 0.0001, 100 + i * 0.1, i));
+		}
+		LineString track = new LineString(points);
+		track.setSrid(4326);
+		CompressedGeometry cg = compressor.compress(track);
+		Assert.assertEquals(4326, cg.getSrid());
+		Assert.assertTrue(cg.getCompressedSize() * 5 < BinaryWriter.writeBinary(track).length);
+		Geometry decoded = cg.decode();
+		Assert.assertEquals(4326, decoded.getSrid());
+		Assert.assertTrue(decoded.is3d());
+		Assert.assertTrue(decoded.hasMeasure());
+		int i = 0;
+		for (Point p : decoded.getCoordinates())
+		{
+			Point expected = points.get(i++);
+			Assert.assertEquals(expected.getX(), p.getX(), 1e-6);
+			Assert.assertEquals(expected.getY(), p.getY(), 1e-6);
+			Assert.assertEquals(expected.getZ(), p.getZ(), 0.1);
+			Assert.assertEquals(expected.getM(), p.getM(), 0);
+		}
+		Assert.assertEquals(points.size(), i);
+		Assert.assertEquals(cg, compressor.compress(track));
+		Assert.assertEquals(cg.hashCode(), compressor.compress(track).hashCode());
+		// curves are not supported
+		Assert.assertThrows(IllegalArgumentException.class, () -> compressor.compress(new CircularString()));
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GeometrySizeTest
+{
+	private static void checkBinarySize(Geometry geom)
+	{
+		Assert.assertEquals(BinaryWriter.writeBinary(geom).length, geom.getBinarySize());
+		Assert.assertTrue(geom.getHeapSize() > 0);
+	}
+
+	private static LinearRing createRing(double offset, double size)
+	{
+		return new LinearRing(Arrays.asList(new Point(offset, offset), new Point(offset + size, offset),
+				new Point(offset + size, offset + size), new Point(offset, offset)));
+	}
+
+	@Test
+	public void testBinarySize()
+	{
+		checkBinarySize(new Point(1, 2));
+		checkBinarySize(new Point(1, 2, 3));
+		checkBinarySize(new Point(1, 2, Double.NaN, 4));
+		Point p = new Point(1, 2, 3, 4);
+		p.setSrid(4326);
+		checkBinarySize(p);
+		LineString ls = new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4), new Point(5, 6)));
+		checkBinarySize(ls);
+		ls.setSinglePrecision(true);
+		checkBinarySize(ls);
+		Polygon poly = new Polygon(Arrays.asList(createRing(0, 10), createRing(1, 2), createRing(5, 2)));
+		poly.setSrid(4326);
+		checkBinarySize(poly);
+		checkBinarySize(new MultiPolygon(Arrays.asList(poly, new Polygon(createRing(20, 5)))));
+		MultiPoint mp = new MultiPoint(Arrays.asList(new Point(1, 2, 3), new Point(4, 5, 6)));
+		mp.setSrid(4326);
+		checkBinarySize(mp);
+		mp.setSinglePrecision(true);
+		checkBinarySize(mp);
+		CompoundCurve cc = new CompoundCurve(Arrays.asList(
+				new CircularString(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(2, 0))),
+				new LineString(Arrays.asList(new Point(2, 0), new Point(0, 0)))));
+		checkBinarySize(cc);
+		checkBinarySize(new CurvePolygon((Curve) cc));
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(p, ls, poly, mp, cc));
+		gc.setSrid(4326);
+		checkBinarySize(gc);
+		checkBinarySize(new GeometryCollection());
+	}
+
+	@Test
+	public void testCompactMultiPoint()
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 1000; i++)
+		{
+			points.add(new Point(i, i + 0.5));
+		}
+		MultiPoint mp = new MultiPoint(points);
+		mp.setSrid(4326);
+		MultiPoint expected = new MultiPoint(points);
+		expected.setSrid(4326);
+		long size = mp.getHeapSize();
+		mp.setCompact(true);
+		Assert.assertTrue(mp.isCompact());
+		Assert.assertFalse(mp.isSinglePrecision());
+		Assert.assertEquals(expected, mp);
+		Assert.assertEquals(expected.getStructuralHash(), mp.getStructuralHash());
+		checkBinarySize(mp);
+		// only x and y are stored
+		Assert.assertTrue(mp.getHeapSize() < size / 3);
+		Assert.assertTrue(mp.getHeapSize() > 1000 * 16);
+		// adding a measure keeps all values
+		mp.add(1, 2, Double.NaN, 3);
+		Assert.assertTrue(mp.hasMeasure());
+		Assert.assertFalse(mp.is3d());
+		List<Point> view = (List<Point>) mp.getGeometries();
+		Assert.assertTrue(view.get(1000).coordsAreEqual(new Point(1, 2, Double.NaN, 3)));
+		Assert.assertTrue(view.get(999).coordsAreEqual(new Point(999, 999.5)));
+		Assert.assertEquals(4326, view.get(999).getSrid());
+		checkBinarySize(mp);
+		// single precision keeps the compact storage
+		mp.setSinglePrecision(true);
+		Assert.assertTrue(mp.isCompact());
+		Assert.assertTrue(mp.isSinglePrecision());
+		mp.setCompact(false);
+		Assert.assertFalse(mp.isCompact());
+		Assert.assertEquals(1001, mp.size());
+	}
+
+	@Test
+	public void testHeapSize()
+	{
+		LineString ls = new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4), new Point(5, 6)));
+		long size = ls.getHeapSize();
+		// every point is a separate object
+		Assert.assertTrue(size > 3 * new Point(1, 2).getHeapSize());
+		ls.setSinglePrecision(true);
+		Assert.assertTrue(ls.getHeapSize() < size);
+		ls.setSinglePrecision(false);
+		Assert.assertEquals(size, ls.getHeapSize());
+		// sizes follow modifications
+		int binarySize = ls.getBinarySize();
+		ls.add(new Point(7, 8));
+		Assert.assertTrue(ls.getHeapSize() > size);
+		Assert.assertEquals(binarySize + 16, ls.getBinarySize());
+		// and are available for frozen geometries
+		ls.freeze();
+		Assert.assertEquals(BinaryWriter.writeBinary(ls).length, ls.getBinarySize());
+	}
+
+	@Test
+	public void testPGgeometry() throws SQLException
+	{
+		LineString ls = new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4), new Point(5, 6)));
+		PGgeometry pg = new PGgeometry();
+		long emptySize = pg.getHeapSize();
+		pg.setGeometry(ls);
+		long size = pg.getHeapSize();
+		Assert.assertEquals(emptySize + ls.getHeapSize(), size);
+		// cached binary data is included
+		Assert.assertEquals(ls.getBinarySize(), pg.lengthInBytes());
+		long sizeBinary = pg.getHeapSize();
+		Assert.assertTrue(sizeBinary > size + ls.getBinarySize());
+		// and so is the hex encoded value
+		Assert.assertNotNull(pg.getValue());
+		Assert.assertTrue(pg.getHeapSize() > sizeBinary + 2 * ls.getBinarySize());
+	}
+
+}
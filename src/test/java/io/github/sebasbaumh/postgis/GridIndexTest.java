@@ -0,0 +1,215 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.index.GridIndex;
+import io.github.sebasbaumh.postgis.index.PackedRTree;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class GridIndexTest
+{
+	private static Set<Integer> query(GridIndex<Integer> index, Envelope window)
+	{
+		Set<Integer> found = new HashSet<Integer>();
+		index.query(window, i -> Assert.assertTrue("duplicate " + i, found.add(i)));
+		return found;
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception
+	{
+		final int numItems = 1000;
+		GridIndex<Integer> index = new GridIndex<Integer>(10);
+		for (int i = 0; i < numItems; i++)
+		{
+			index.put(i, i % 100, i / 10.0);
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(9);
+		try
+		{
+			List<Future<?>> writers = new ArrayList<Future<?>>();
+			// writers move disjoint sets of items around
+			for (int t = 0; t < 4; t++)
+			{
+				final int thread = t;
+				writers.add(executor.submit(() -> {
+					Random rnd = new Random(thread);
+					for (int n = 0; n < 20000; n++)
+					{
+						int item = rnd.nextInt(numItems / 4) * 4 + thread;
+						index.put(item, rnd.nextDouble() * 100, rnd.nextDouble() * 100);
+					}
+				}));
+			}
+			List<Future<?>> readers = new ArrayList<Future<?>>();
+			for (int t = 0; t < 3; t++)
+			{
+				final int thread = t;
+				readers.add(executor.submit(() -> {
+					Random rnd = new Random(100 + thread);
+					while (running.get())
+					{
+						double x = rnd.nextDouble() * 100;
+						double y = rnd.nextDouble() * 100;
+						// queries are consistent, so moved items are never seen twice
+						for (int i : query(index, new Envelope(x, y, x + 20, y + 20)))
+						{
+							Assert.assertTrue(i >= 0 && i < numItems);
+						}
+					}
+				}));
+			}
+			readers.add(executor.submit(() -> {
+				while (running.get())
+				{
+					// and never missed
+					Assert.assertEquals(numItems, query(index, new Envelope(0, 0, 100, 100)).size());
+				}
+			}));
+			readers.add(executor.submit(() -> {
+				while (running.get())
+				{
+					// all items are only moved, so every snapshot has to contain all of them
+					Assert.assertEquals(numItems, index.snapshot().size());
+				}
+			}));
+			for (Future<?> f : writers)
+			{
+				f.get(1, TimeUnit.MINUTES);
+			}
+			running.set(false);
+			for (Future<?> f : readers)
+			{
+				f.get(1, TimeUnit.MINUTES);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		// index has to be consistent again after all updates
+		Assert.assertEquals(numItems, index.size());
+		Assert.assertEquals(numItems, query(index, new Envelope(0, 0, 100, 100)).size());
+		for (int i = 0; i < numItems; i++)
+		{
+			Envelope env = index.getEnvelope(i);
+			Assert.assertNotNull(env);
+			Assert.assertTrue(query(index, env).contains(i));
+		}
+	}
+
+	@Test
+	public void testQuery()
+	{
+		Random rnd = new Random(3);
+		GridIndex<Integer> index = new GridIndex<Integer>(5);
+		Map<Integer, Envelope> expected = new HashMap<Integer, Envelope>();
+		for (int n = 0; n < 5000; n++)
+		{
+			int item = rnd.nextInt(500);
+			int action = rnd.nextInt(10);
+			if (action == 0)
+			{
+				Assert.assertEquals(expected.remove(item) != null, index.remove(item));
+			}
+			else
+			{
+				double x = rnd.nextDouble() * 200 - 100;
+				double y = rnd.nextDouble() * 200 - 100;
+				// some items span many cells
+				double size = (action == 1) ? rnd.nextDouble() * 100 : rnd.nextDouble() * 8;
+				Envelope env = new Envelope(x, y, x + size, y + size);
+				index.put(item, env);
+				expected.put(item, env);
+			}
+		}
+		Assert.assertEquals(expected.size(), index.size());
+		for (int i = 0; i < 100; i++)
+		{
+			double x = rnd.nextDouble() * 300 - 150;
+			double y = rnd.nextDouble() * 300 - 150;
+			double size = (i % 10 == 0) ? 1000 : rnd.nextDouble() * 30;
+			Envelope window = new Envelope(x, y, x + size, y + size);
+			Set<Integer> result = new HashSet<Integer>();
+			for (Map.Entry<Integer, Envelope> e : expected.entrySet())
+			{
+				if (window.intersects(e.getValue()))
+				{
+					result.add(e.getKey());
+				}
+			}
+			Assert.assertEquals(result, query(index, window));
+		}
+		// snapshot contains the same items
+		PackedRTree<Integer> snapshot = index.snapshot();
+		Assert.assertEquals(expected.size(), snapshot.size());
+		Set<Integer> all = new HashSet<Integer>();
+		snapshot.query(-1000, -1000, 1000, 1000, all::add);
+		Assert.assertEquals(expected.keySet(), all);
+	}
+
+	@Test
+	public void testUpdates()
+	{
+		GridIndex<String> index = new GridIndex<String>(10);
+		index.put("a", 5, 5);
+		index.put("b", new Envelope(-15, -15, 25, 25));
+		Assert.assertTrue(index.contains("a"));
+		Assert.assertEquals(new Envelope(5, 5, 5, 5), index.getEnvelope("a"));
+		List<String> found = new ArrayList<String>();
+		index.query(0, 0, 6, 6, found::add);
+		Assert.assertEquals(2, found.size());
+		// move a away
+		index.put("a", 105, 105);
+		found.clear();
+		index.query(0, 0, 6, 6, found::add);
+		Assert.assertEquals(List.of("b"), found);
+		found.clear();
+		index.query(100, 100, 110, 110, found::add);
+		Assert.assertEquals(List.of("a"), found);
+		Assert.assertTrue(index.remove("a"));
+		Assert.assertFalse(index.remove("a"));
+		Assert.assertNull(index.getEnvelope("a"));
+		Assert.assertEquals(1, index.size());
+		Assert.assertThrows(IllegalArgumentException.class, () -> index.put("c", Envelope.EMPTY));
+		Assert.assertThrows(IllegalArgumentException.class, () -> new GridIndex<String>(0));
+	}
+
+}
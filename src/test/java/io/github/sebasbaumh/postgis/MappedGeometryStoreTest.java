@@ -0,0 +1,182 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.MappedGeometryStore;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class MappedGeometryStoreTest
+{
+	private Path dir;
+
+	/**
+	 * Creates a line with the given number of points.
+	 * @param rnd {@link Random}
+	 * @param n number of points
+	 * @return {@link LineString}
+	 */
+	private static LineString createLine(Random rnd, int n)
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < n; i++)
+		{
+			points.add(new Point(rnd.nextDouble() * 100, rnd.nextDouble() * 100));
+		}
+		return new LineString(points);
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		try (Stream<Path> files = Files.list(dir))
+		{
+			for (Path p : (Iterable<Path>) files::iterator)
+			{
+				Files.delete(p);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Before
+	public void before() throws IOException
+	{
+		dir = Files.createTempDirectory("store");
+	}
+
+	@Test
+	public void testAppendAndReopen() throws IOException
+	{
+		Random rnd = new Random(1);
+		List<Geometry> geoms = new ArrayList<Geometry>();
+		// small segments to test switching between them
+		try (MappedGeometryStore store = new MappedGeometryStore(dir, 4096))
+		{
+			Assert.assertEquals(0, store.size());
+			for (int i = 0; i < 500; i++)
+			{
+				LineString ls = createLine(rnd, 1 + rnd.nextInt(20));
+				Assert.assertEquals(i, store.append(ls, i % 2 == 0));
+				geoms.add(ls);
+			}
+			// too large for a segment
+			Assert.assertThrows(IllegalArgumentException.class, () -> store.append(createLine(rnd, 1000), false));
+		}
+		try (MappedGeometryStore store = new MappedGeometryStore(dir, 1 << 20))
+		{
+			// existing segment size is kept
+			Assert.assertEquals(4096, store.getSegmentSize());
+			Assert.assertEquals(500, store.size());
+			for (int i = 0; i < 500; i++)
+			{
+				Assert.assertEquals(geoms.get(i), store.get(i));
+				Envelope env = store.getEnvelope(i);
+				if (i % 2 == 0)
+				{
+					Assert.assertEquals(geoms.get(i).getEnvelope(), env);
+				}
+				else
+				{
+					Assert.assertNull(env);
+				}
+				ByteBuffer wkb = store.getWkb(i);
+				Assert.assertTrue(wkb.isReadOnly());
+				byte[] data = new byte[wkb.remaining()];
+				wkb.get(data);
+				Assert.assertArrayEquals(BinaryWriter.writeBinary(geoms.get(i)), data);
+			}
+			// continue appending
+			Point p = new Point(1, 2);
+			Assert.assertEquals(500, store.append(p, true));
+			Assert.assertEquals(p, store.get(500));
+			Assert.assertEquals(geoms.get(499), store.get(499));
+			Assert.assertThrows(IndexOutOfBoundsException.class, () -> store.get(501));
+			Assert.assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+			store.close();
+			Assert.assertThrows(IllegalStateException.class, () -> store.append(p, false));
+			Assert.assertEquals(p, store.get(500));
+		}
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception
+	{
+		try (MappedGeometryStore store = new MappedGeometryStore(dir, 1 << 16))
+		{
+			AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+			Thread[] readers = new Thread[4];
+			for (int t = 0; t < readers.length; t++)
+			{
+				long seed = t;
+				readers[t] = new Thread(() -> {
+					Random rnd = new Random(seed);
+					try
+					{
+						while (store.size() < 5000)
+						{
+							long n = store.size();
+							if (n > 0)
+							{
+								// the geometries are points with the id as coordinates
+								long id = (long) (rnd.nextDouble() * n);
+								Assert.assertEquals(new Point(id, -id), store.get(id));
+							}
+						}
+					}
+					catch (Throwable ex)
+					{
+						error.compareAndSet(null, ex);
+					}
+				});
+				readers[t].start();
+			}
+			for (int i = 0; i < 5000; i++)
+			{
+				store.append(new Point(i, -i), false);
+			}
+			for (Thread t : readers)
+			{
+				t.join();
+			}
+			Assert.assertNull(error.get());
+			Assert.assertEquals(new Point(4999, -4999), store.get(4999));
+		}
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class ModificationTest
+{
+
+	private static Polygon createPolygon()
+	{
+		return new Polygon(new LinearRing(Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(10, 10),
+				new Point(0, 10), new Point(0, 0))));
+	}
+
+	@Test
+	public void testDimensions()
+	{
+		Polygon poly = createPolygon();
+		MultiPolygon mp = new MultiPolygon(Arrays.asList(poly));
+		Assert.assertFalse(mp.is3d());
+		Assert.assertFalse(mp.hasMeasure());
+		// changes of nested coordinates are detected
+		poly.getOuterRing().getStartPoint().setZ(1);
+		Assert.assertTrue(mp.is3d());
+		Assert.assertTrue(poly.is3d());
+		poly.getOuterRing().getStartPoint().setM(2);
+		Assert.assertTrue(mp.hasMeasure());
+		// the outer ring counts as well (even without inner rings)
+		Polygon poly3d = new Polygon(new LinearRing(Arrays.asList(new Point(0, 0, 1), new Point(10, 0, 1),
+				new Point(10, 10, 1), new Point(0, 0, 1))));
+		Assert.assertTrue(poly3d.is3d());
+		Assert.assertEquals(poly3d, BinaryParser.parse(BinaryWriter.writeHexed(poly3d)));
+	}
+
+	@Test
+	public void testFreeze()
+	{
+		Polygon poly = createPolygon();
+		poly.freeze();
+		Assert.assertTrue(poly.isFrozen());
+		Assert.assertTrue(poly.getOuterRing().isFrozen());
+		Assert.assertTrue(poly.getOuterRing().getStartPoint().isFrozen());
+		int modCount = poly.getModificationCount();
+		Assert.assertThrows(UnsupportedOperationException.class, () -> poly.setSrid(4326));
+		Assert.assertThrows(UnsupportedOperationException.class,
+				() -> poly.getOuterRing().getStartPoint().setX(1));
+		Assert.assertThrows(UnsupportedOperationException.class, () -> poly.getOuterRing().add(new Point(1, 2)));
+		Assert.assertThrows(UnsupportedOperationException.class, () -> poly.getOuterRing().iterator().remove());
+		Assert.assertEquals(modCount, poly.getModificationCount());
+		// frozen geometries can be shared without copying them
+		MultiPolygon mp1 = new MultiPolygon(Arrays.asList(poly));
+		MultiPolygon mp2 = new MultiPolygon(Arrays.asList(poly));
+		Assert.assertEquals(mp1, mp2);
+		Assert.assertSame(poly, mp2.iterator().next());
+		mp1.freeze();
+		Assert.assertThrows(UnsupportedOperationException.class, () -> mp1.getGeometries().clear());
+		Assert.assertThrows(UnsupportedOperationException.class, () -> mp1.add(createPolygon()));
+		// the mutable multi polygon can still be modified
+		mp2.add(createPolygon());
+		Assert.assertEquals(2, mp2.size());
+	}
+
+	@Test
+	public void testIteratorRemove()
+	{
+		LineString ls = new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(5, 5)));
+		PGgeometry pg = new PGgeometry(ls);
+		String value = pg.getValue();
+		long hash = ls.getStructuralHash();
+		Assert.assertEquals(5, ls.getEnvelope().getMaxX(), 0);
+		// remove the last point through the coordinates
+		Iterator<Point> it = ls.getCoordinates().iterator();
+		it.next();
+		it.next();
+		it.next();
+		it.remove();
+		Assert.assertEquals(1, ls.getEnvelope().getMaxX(), 0);
+		Assert.assertNotEquals(hash, ls.getStructuralHash());
+		Assert.assertNotEquals(value, pg.getValue());
+		Assert.assertEquals(BinaryWriter.writeHexed(ls), pg.getValue());
+		// removed geometries can be added to other geometries
+		Polygon poly = createPolygon();
+		MultiPolygon mp = new MultiPolygon(Arrays.asList(poly, createPolygon()));
+		int modCount = mp.getModificationCount();
+		Iterator<Polygon> itPoly = mp.iterator();
+		itPoly.next();
+		itPoly.remove();
+		Assert.assertNotEquals(modCount, mp.getModificationCount());
+		Assert.assertEquals(1, mp.size());
+		MultiPolygon mp2 = new MultiPolygon(Arrays.asList(poly));
+		modCount = mp2.getModificationCount();
+		poly.getOuterRing().getStartPoint().setX(-1);
+		Assert.assertNotEquals(modCount, mp2.getModificationCount());
+		// inner rings
+		LinearRing ring = new LinearRing(Arrays.asList(new Point(1, 1), new Point(2, 1), new Point(2, 2)));
+		poly.addRing(ring);
+		modCount = poly.getModificationCount();
+		Iterator<LinearRing> itRing = poly.iterator();
+		itRing.next();
+		itRing.remove();
+		Assert.assertEquals(0, poly.getNumberOfRings());
+		Assert.assertNotEquals(modCount, poly.getModificationCount());
+		// lines of compound curves
+		CompoundCurve cc = new CompoundCurve(
+				Arrays.asList(new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1))),
+						new LineString(Arrays.asList(new Point(1, 1), new Point(3, 3)))));
+		Assert.assertEquals(3, cc.getEnvelope().getMaxX(), 0);
+		cc.getGeometries().removeIf(l -> l.getEndPoint().getX() > 2);
+		Assert.assertEquals(1, cc.getEnvelope().getMaxX(), 0);
+	}
+
+	@Test
+	public void testPGgeometry()
+	{
+		MultiPolygon mp = new MultiPolygon(Arrays.asList(createPolygon()));
+		PGgeometry pg = new PGgeometry(mp);
+		String value = pg.getValue();
+		Assert.assertSame(value, pg.getValue());
+		// modify a nested coordinate
+		mp.getGeometries().iterator().next().getOuterRing().getStartPoint().setX(-1);
+		String value2 = pg.getValue();
+		Assert.assertNotEquals(value, value2);
+		Assert.assertEquals(BinaryWriter.writeHexed(mp), value2);
+		// binary value has to be updated too
+		Assert.assertEquals(mp, BinaryParser.parse(toBytes(pg), 0));
+		mp.setSrid(4326);
+		Assert.assertEquals(4326, BinaryParser.parse(toBytes(pg), 0).getSrid());
+		mp.add(createPolygon());
+		Assert.assertArrayEquals(BinaryWriter.writeBinary(mp), toBytes(pg));
+	}
+
+	@Test
+	public void testPropagation()
+	{
+		Polygon poly = createPolygon();
+		CompoundCurve cc = new CompoundCurve(Arrays.asList(new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1)))));
+		GeometryCollection gc = new GeometryCollection(Arrays.<Geometry> asList(poly, cc));
+		int modCount = gc.getModificationCount();
+		// change a point of the outer ring
+		poly.getOuterRing().getEndPoint().setY(1);
+		Assert.assertNotEquals(modCount, gc.getModificationCount());
+		modCount = gc.getModificationCount();
+		int modCountPoly = poly.getModificationCount();
+		// add a hole
+		poly.addRing(new LinearRing(Arrays.asList(new Point(1, 1), new Point(2, 1), new Point(2, 2))));
+		Assert.assertNotEquals(modCount, gc.getModificationCount());
+		Assert.assertNotEquals(modCountPoly, poly.getModificationCount());
+		modCount = gc.getModificationCount();
+		// change a line inside the compound curve
+		cc.getGeometries().iterator().next().add(new Point(2, 2));
+		Assert.assertNotEquals(modCount, gc.getModificationCount());
+		modCount = gc.getModificationCount();
+		cc.reverse();
+		Assert.assertNotEquals(modCount, gc.getModificationCount());
+	}
+
+	@Test
+	public void testSharedParts()
+	{
+		Point p = new Point(0, 0);
+		LineString ls1 = new LineString(Arrays.asList(p, new Point(1, 1)));
+		PGgeometry pg = new PGgeometry(ls1);
+		String value = pg.getValue();
+		// points can be shared by multiple geometries, which all get notified about modifications
+		LineString ls2 = new LineString(ls1.getCoordinates());
+		Assert.assertEquals(ls1, ls2);
+		Assert.assertSame(p, ls2.getStartPoint());
+		Assert.assertEquals(0, ls2.getEnvelope().getMinX(), 0);
+		p.setX(-1);
+		Assert.assertNotEquals(value, pg.getValue());
+		Assert.assertEquals(BinaryWriter.writeHexed(ls1), pg.getValue());
+		Assert.assertEquals(-1, ls1.getEnvelope().getMinX(), 0);
+		Assert.assertEquals(-1, ls2.getEnvelope().getMinX(), 0);
+		// the same point can be used multiple times within the same geometry
+		Point p0 = new Point(0, 0);
+		LinearRing ring = new LinearRing(Arrays.asList(p0, new Point(1, 0), new Point(1, 1), p0));
+		Assert.assertSame(ring.getStartPoint(), ring.getEndPoint());
+		// the same ring in two polygons
+		Polygon poly = new Polygon(ring);
+		Polygon poly2 = new Polygon(ring);
+		Assert.assertSame(poly.getOuterRing(), poly2.getOuterRing());
+		Envelope env = poly.getEnvelope();
+		int modCount = poly.getModificationCount();
+		int modCount2 = poly2.getModificationCount();
+		p0.setY(-1);
+		Assert.assertNotEquals(modCount, poly.getModificationCount());
+		Assert.assertNotEquals(modCount2, poly2.getModificationCount());
+		Assert.assertNotEquals(env, poly.getEnvelope());
+		Assert.assertEquals(poly.getEnvelope(), poly2.getEnvelope());
+		// a removed ring no longer notifies the polygon
+		poly.setOuterRing(new LinearRing());
+		modCount = poly.getModificationCount();
+		modCount2 = poly2.getModificationCount();
+		p0.setY(-2);
+		Assert.assertEquals(modCount, poly.getModificationCount());
+		Assert.assertNotEquals(modCount2, poly2.getModificationCount());
+		// the same line string in two multi line strings and a collection
+		MultiLineString mls1 = new MultiLineString(Arrays.asList(ls1));
+		MultiLineString mls2 = new MultiLineString(Arrays.asList(ls1));
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(ls1, mls1));
+		Assert.assertSame(ls1, mls2.iterator().next());
+		int modCountMls1 = mls1.getModificationCount();
+		int modCountMls2 = mls2.getModificationCount();
+		int modCountGc = gc.getModificationCount();
+		p.setY(5);
+		Assert.assertNotEquals(modCountMls1, mls1.getModificationCount());
+		Assert.assertNotEquals(modCountMls2, mls2.getModificationCount());
+		Assert.assertNotEquals(modCountGc, gc.getModificationCount());
+		Assert.assertEquals(5, mls2.getEnvelope().getMaxY(), 0);
+		Assert.assertEquals(5, gc.getEnvelope().getMaxY(), 0);
+		// removing one occurrence keeps the other one notified
+		mls1.getGeometries().clear();
+		modCountMls1 = mls1.getModificationCount();
+		modCountMls2 = mls2.getModificationCount();
+		p.setY(6);
+		Assert.assertEquals(modCountMls1, mls1.getModificationCount());
+		Assert.assertNotEquals(modCountMls2, mls2.getModificationCount());
+		Assert.assertEquals(6, gc.getEnvelope().getMaxY(), 0);
+	}
+
+	private static byte[] toBytes(PGgeometry pg)
+	{
+		byte[] data = new byte[pg.lengthInBytes()];
+		pg.toBytes(data, 0);
+		return data;
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.mvt.MvtEncoder;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class MvtEncoderTest
+{
+	/**
+	 * Tile bounds, so tile coordinates are the same as geometry coordinates with y flipped.
+	 */
+	private static final Envelope TILE = new Envelope(0, 0, 4096, 4096);
+
+	/**
+	 * Decodes all fields of a protobuf message to pairs of field number and value (Long or byte[]).
+	 */
+	private static List<Object[]> decode(byte[] data)
+	{
+		List<Object[]> fields = new ArrayList<Object[]>();
+		int[] pos = { 0 };
+		while (pos[0] < data.length)
+		{
+			long tag = readVarint(data, pos);
+			int field = (int) (tag >>> 3);
+			switch ((int) (tag & 7))
+			{
+				case 0:
+					fields.add(new Object[] { field, readVarint(data, pos) });
+					break;
+				case 1:
+					fields.add(new Object[] { field, Arrays.copyOfRange(data, pos[0], pos[0] + 8) });
+					pos[0] += 8;
+					break;
+				case 2:
+					int length = (int) readVarint(data, pos);
+					fields.add(new Object[] { field, Arrays.copyOfRange(data, pos[0], pos[0] + length) });
+					pos[0] += length;
+					break;
+				case 5:
+					fields.add(new Object[] { field, Arrays.copyOfRange(data, pos[0], pos[0] + 4) });
+					pos[0] += 4;
+					break;
+				default:
+					Assert.fail("unknown wire type: " + tag);
+			}
+		}
+		return fields;
+	}
+
+	private static List<byte[]> getAll(List<Object[]> fields, int field)
+	{
+		List<byte[]> values = new ArrayList<byte[]>();
+		for (Object[] f : fields)
+		{
+			if ((int) f[0] == field)
+			{
+				values.add((byte[]) f[1]);
+			}
+		}
+		return values;
+	}
+
+	private static long getVarint(List<Object[]> fields, int field)
+	{
+		for (Object[] f : fields)
+		{
+			if ((int) f[0] == field)
+			{
+				return (long) f[1];
+			}
+		}
+		Assert.fail("field not found: " + field);
+		return 0;
+	}
+
+	private static int[] packed(byte[] data)
+	{
+		List<Integer> values = new ArrayList<Integer>();
+		int[] pos = { 0 };
+		while (pos[0] < data.length)
+		{
+			values.add((int) readVarint(data, pos));
+		}
+		return values.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static long readVarint(byte[] data, int[] pos)
+	{
+		long value = 0;
+		for (int shift = 0;; shift += 7)
+		{
+			byte b = data[pos[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+	}
+
+	private static Polygon square(double minX, double minY, double maxX, double maxY)
+	{
+		return new Polygon(new LinearRing(Arrays.asList(new Point(minX, minY), new Point(maxX, minY),
+				new Point(maxX, maxY), new Point(minX, maxY), new Point(minX, minY))));
+	}
+
+	private static int zigzag(int v)
+	{
+		return (v << 1) ^ (v >> 31);
+	}
+
+	@Test
+	public void testAttributes()
+	{
+		MvtEncoder encoder = new MvtEncoder(TILE);
+		Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+		attributes.put("name", "a");
+		attributes.put("count", 3);
+		attributes.put("delta", -2L);
+		attributes.put("ratio", 0.5);
+		attributes.put("flag", Boolean.TRUE);
+		attributes.put("missing", null);
+		Assert.assertTrue(encoder.addFeature("layer", 7L, new Point(1, 1), attributes));
+		// same values are reused, 3 and 3L are the same value
+		attributes.put("name", "b");
+		attributes.put("count", 3L);
+		Assert.assertTrue(encoder.addFeature("layer", new Point(2, 2), attributes));
+		Assert.assertEquals(2, encoder.getNumberOfFeatures("layer"));
+		List<Object[]> layer = decode(getAll(decode(encoder.encode()), 3).get(0));
+		List<String> keys = new ArrayList<String>();
+		for (byte[] key : getAll(layer, 3))
+		{
+			keys.add(new String(key, StandardCharsets.UTF_8));
+		}
+		Assert.assertEquals(Arrays.asList("name", "count", "delta", "ratio", "flag"), keys);
+		List<byte[]> values = getAll(layer, 4);
+		Assert.assertEquals(6, values.size());
+		Assert.assertEquals(3L, getVarint(decode(values.get(1)), 5));
+		Assert.assertEquals(3L, getVarint(decode(values.get(2)), 6));
+		Assert.assertEquals(1L, getVarint(decode(values.get(4)), 7));
+		List<byte[]> features = getAll(layer, 2);
+		List<Object[]> feature1 = decode(features.get(0));
+		Assert.assertEquals(7L, getVarint(feature1, 1));
+		Assert.assertArrayEquals(new int[] { 0, 0, 1, 1, 2, 2, 3, 3, 4, 4 }, packed(getAll(feature1, 2).get(0)));
+		Assert.assertArrayEquals(new int[] { 0, 5, 1, 1, 2, 2, 3, 3, 4, 4 },
+				packed(getAll(decode(features.get(1)), 2).get(0)));
+	}
+
+	@Test
+	public void testClipping()
+	{
+		MvtEncoder encoder = new MvtEncoder(TILE);
+		// line crossing the whole tile is clipped to the buffer
+		encoder.addFeature("lines", new LineString(Arrays.asList(new Point(-1000, 2048), new Point(5000, 2048))),
+				Collections.emptyMap());
+		// polygon covering the tile is clipped to the buffer and oriented clockwise
+		encoder.addFeature("polygons", square(-1000, -1000, 5000, 5000), Collections.emptyMap());
+		// outside of the tile
+		Assert.assertFalse(encoder.addFeature("polygons", square(5000, 5000, 6000, 6000), Collections.emptyMap()));
+		Assert.assertFalse(encoder.addFeature("points", new Point(-100, 100), Collections.emptyMap()));
+		// degenerated after rounding
+		Assert.assertFalse(encoder.addFeature("polygons", square(10, 10, 10.2, 10.2), Collections.emptyMap()));
+		Assert.assertEquals(1, encoder.getNumberOfFeatures("polygons"));
+		Assert.assertEquals(0, encoder.getNumberOfFeatures("points"));
+		List<byte[]> layers = getAll(decode(encoder.encode()), 3);
+		Assert.assertEquals(2, layers.size());
+		int[] line = packed(getAll(decode(getAll(decode(layers.get(0)), 2).get(0)), 4).get(0));
+		Assert.assertArrayEquals(new int[] { 9, zigzag(-64), zigzag(2048), 10, zigzag(4224), 0 }, line);
+		int[] poly = packed(getAll(decode(getAll(decode(layers.get(1)), 2).get(0)), 4).get(0));
+		Assert.assertEquals(9, poly[0]);
+		Assert.assertEquals(26, poly[3]);
+		Assert.assertEquals(15, poly[poly.length - 1]);
+		// calculate the area in tile space, which has to be positive
+		int x = 0;
+		int y = 0;
+		List<int[]> points = new ArrayList<int[]>();
+		for (int i = 1; i < poly.length - 1; i++)
+		{
+			if (i == 3)
+			{
+				continue;
+			}
+			x += (poly[i] >>> 1) ^ -(poly[i] & 1);
+			y += (poly[i + 1] >>> 1) ^ -(poly[i + 1] & 1);
+			points.add(new int[] { x, y });
+			i++;
+		}
+		long area = 0;
+		for (int i = 0; i < points.size(); i++)
+		{
+			int[] p0 = points.get(i);
+			int[] p1 = points.get((i + 1) % points.size());
+			area += (long) p0[0] * p1[1] - (long) p1[0] * p0[1];
+			Assert.assertTrue((Math.abs(p0[0] - 2048) == 2112) || (Math.abs(p0[1] - 2048) == 2112));
+		}
+		Assert.assertEquals(2L * 4224 * 4224, area);
+	}
+
+	@Test
+	public void testGeometries()
+	{
+		// examples from the vector tile specification
+		MvtEncoder encoder = new MvtEncoder(TILE);
+		encoder.addFeature("layer", new Point(25, 4096 - 17), Collections.emptyMap());
+		encoder.addFeature("layer", 2L,
+				new LineString(Arrays.asList(new Point(2, 4094), new Point(2, 4086), new Point(10, 4086))),
+				Collections.emptyMap());
+		Polygon poly = new Polygon(new LinearRing(Arrays.asList(new Point(3, 4090), new Point(8, 4084),
+				new Point(20, 4062), new Point(3, 4090))));
+		encoder.addFeature("layer", 3L, BinaryWriter.writeBinary(poly), Collections.emptyMap());
+		List<Object[]> tile = decode(encoder.encode());
+		List<byte[]> layers = getAll(tile, 3);
+		Assert.assertEquals(1, layers.size());
+		List<Object[]> layer = decode(layers.get(0));
+		Assert.assertEquals(2, getVarint(layer, 15));
+		Assert.assertEquals(4096, getVarint(layer, 5));
+		Assert.assertEquals("layer", new String(getAll(layer, 1).get(0), StandardCharsets.UTF_8));
+		List<byte[]> features = getAll(layer, 2);
+		Assert.assertEquals(3, features.size());
+		List<Object[]> point = decode(features.get(0));
+		Assert.assertEquals(1, getVarint(point, 3));
+		Assert.assertArrayEquals(new int[] { 9, 50, 34 }, packed(getAll(point, 4).get(0)));
+		List<Object[]> line = decode(features.get(1));
+		Assert.assertEquals(2, getVarint(line, 1));
+		Assert.assertEquals(2, getVarint(line, 3));
+		Assert.assertArrayEquals(new int[] { 9, 4, 4, 18, 0, 16, 16, 0 }, packed(getAll(line, 4).get(0)));
+		List<Object[]> polygon = decode(features.get(2));
+		Assert.assertEquals(3, getVarint(polygon, 3));
+		Assert.assertArrayEquals(new int[] { 9, 6, 12, 18, 10, 12, 24, 44, 15 }, packed(getAll(polygon, 4).get(0)));
+	}
+
+	@Test
+	public void testTileEnvelope()
+	{
+		double max = 20037508.342789244;
+		Assert.assertEquals(new Envelope(-max, -max, max, max), MvtEncoder.getTileEnvelope(0, 0, 0));
+		Assert.assertEquals(new Envelope(0, 0, max, max), MvtEncoder.getTileEnvelope(1, 1, 0));
+		Assert.assertThrows(IllegalArgumentException.class, () -> MvtEncoder.getTileEnvelope(1, 2, 0));
+		Assert.assertThrows(IllegalArgumentException.class, () -> new MvtEncoder(Envelope.EMPTY));
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.index.PackedRTree;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class PackedRTreeTest
+{
+	private static double distance(Envelope env, double x, double y)
+	{
+		double dx = Math.max(Math.max(env.getMinX() - x, x - env.getMaxX()), 0);
+		double dy = Math.max(Math.max(env.getMinY() - y, y - env.getMaxY()), 0);
+		return dx * dx + dy * dy;
+	}
+
+	private static List<Geometry> randomGeometries(Random rnd, int n)
+	{
+		List<Geometry> geoms = new ArrayList<Geometry>();
+		for (int i = 0; i < n; i++)
+		{
+			double x = rnd.nextDouble() * 1000;
+			double y = rnd.nextDouble() * 1000;
+			if (i % 2 == 0)
+			{
+				geoms.add(new Point(x, y));
+			}
+			else
+			{
+				geoms.add(new LineString(Arrays.asList(new Point(x, y),
+						new Point(x + rnd.nextDouble() * 20, y + rnd.nextDouble() * 20))));
+			}
+		}
+		return geoms;
+	}
+
+	@Test
+	public void testBoxes()
+	{
+		List<PGbox2d> boxes = new ArrayList<PGbox2d>();
+		boxes.add(new PGbox2d(new Point(0, 0), new Point(10, 10)));
+		boxes.add(new PGbox2d(new Point(20, 20), new Point(30, 30)));
+		boxes.add(new PGbox2d(new Point(5, 5), new Point(25, 25)));
+		PackedRTree<PGbox2d> tree = PackedRTree.ofBoxes(boxes);
+		Assert.assertEquals(3, tree.size());
+		Assert.assertEquals(new Envelope(0, 0, 30, 30), tree.getEnvelope());
+		List<PGbox2d> found = new ArrayList<PGbox2d>();
+		tree.query(7, 7, found::add);
+		Assert.assertEquals(2, found.size());
+		Assert.assertTrue(found.contains(boxes.get(0)));
+		Assert.assertTrue(found.contains(boxes.get(2)));
+		Assert.assertEquals(boxes.get(1), tree.nearest(40, 40, 1).get(0));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		PackedRTree<Geometry> tree = PackedRTree.ofGeometries(List.of(new LineString()));
+		Assert.assertTrue(tree.isEmpty());
+		Assert.assertTrue(tree.getEnvelope().isEmpty());
+		tree.query(0, 0, 100, 100, g -> Assert.fail());
+		Assert.assertTrue(tree.nearest(0, 0, 5).isEmpty());
+		Assert.assertThrows(IllegalArgumentException.class,
+				() -> new PackedRTree<Geometry>(List.of(), Geometry::getEnvelope, 1));
+	}
+
+	@Test
+	public void testNearest()
+	{
+		Random rnd = new Random(42);
+		List<Geometry> geoms = randomGeometries(rnd, 2000);
+		PackedRTree<Geometry> tree = new PackedRTree<Geometry>(geoms, Geometry::getEnvelope, 4);
+		for (int i = 0; i < 50; i++)
+		{
+			double x = rnd.nextDouble() * 1200 - 100;
+			double y = rnd.nextDouble() * 1200 - 100;
+			List<Geometry> nearest = tree.nearest(x, y, 10);
+			Assert.assertEquals(10, nearest.size());
+			// compare the distances with the brute force result
+			List<Geometry> expected = new ArrayList<Geometry>(geoms);
+			expected.sort(Comparator.comparingDouble(g -> distance(g.getEnvelope(), x, y)));
+			for (int j = 0; j < nearest.size(); j++)
+			{
+				Assert.assertEquals(distance(expected.get(j).getEnvelope(), x, y),
+						distance(nearest.get(j).getEnvelope(), x, y), 0);
+			}
+		}
+		Assert.assertEquals(geoms.size(), tree.nearest(0, 0, geoms.size() + 10).size());
+	}
+
+	@Test
+	public void testQuery()
+	{
+		Random rnd = new Random(1);
+		// sizes with full and partial nodes on all levels, as the nodes of upper levels are sorted as well
+		for (int capacity : new int[] { 2, 4, PackedRTree.DEFAULT_NODE_CAPACITY })
+		{
+			for (int n : new int[] { 1, 15, 16, 17, 64, 256, 300, 5000 })
+			{
+				List<Geometry> geoms = randomGeometries(rnd, n);
+				PackedRTree<Geometry> tree = new PackedRTree<Geometry>(geoms, Geometry::getEnvelope, capacity);
+				Assert.assertEquals(n, tree.size());
+				for (int i = 0; i < 20; i++)
+				{
+					double x = rnd.nextDouble() * 1000;
+					double y = rnd.nextDouble() * 1000;
+					Envelope window = new Envelope(x, y, x + rnd.nextDouble() * 200, y + rnd.nextDouble() * 200);
+					Set<Geometry> expected = new HashSet<Geometry>();
+					for (Geometry g : geoms)
+					{
+						if (window.intersects(g.getEnvelope()))
+						{
+							expected.add(g);
+						}
+					}
+					Set<Geometry> found = new HashSet<Geometry>();
+					tree.query(window, found::add);
+					Assert.assertEquals(expected, found);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.index.JoinResult;
+import io.github.sebasbaumh.postgis.index.PointInPolygonJoin;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class PointInPolygonJoinTest
+{
+	private static Polygon square(double x, double y, double size)
+	{
+		return new Polygon(new LinearRing(Arrays.asList(new Point(x, y), new Point(x + size, y),
+				new Point(x + size, y + size), new Point(x, y + size), new Point(x, y))));
+	}
+
+	@Test
+	public void testJoin()
+	{
+		// 20x20 districts with a size of 10
+		List<Geometry> districts = new ArrayList<Geometry>();
+		for (int y = 0; y < 20; y++)
+		{
+			for (int x = 0; x < 20; x++)
+			{
+				districts.add(square(x * 10, y * 10, 10));
+			}
+		}
+		// and a multi polygon overlapping some of them
+		districts.add(new MultiPolygon(Arrays.asList(square(1, 1, 3), square(101, 101, 3))));
+		PointInPolygonJoin join = new PointInPolygonJoin(districts);
+		Assert.assertEquals(401, join.getNumberOfPolygons());
+		Random rnd = new Random(7);
+		int n = 100000;
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			xs[i] = rnd.nextDouble() * 220 - 10;
+			ys[i] = rnd.nextDouble() * 220 - 10;
+		}
+		JoinResult result = join.join(xs, ys);
+		Assert.assertEquals(n, result.getNumberOfPoints());
+		Assert.assertTrue(result.getPeakChunkMemory() > 0);
+		Assert.assertTrue(result.getPointsPerSecond() > 0);
+		// check the assigned districts
+		int[] expected = new int[n];
+		int[] found = new int[n];
+		boolean[] inMulti = new boolean[n];
+		for (int i = 0; i < n; i++)
+		{
+			boolean inside = (xs[i] >= 0) && (xs[i] < 200) && (ys[i] >= 0) && (ys[i] < 200);
+			expected[i] = inside ? 1 : 0;
+			double mx = xs[i] % 100;
+			double my = ys[i] % 100;
+			if ((xs[i] < 200) && (ys[i] < 200) && (mx > 1) && (mx < 4) && (my > 1) && (my < 4)
+					&& (Math.floor(xs[i] / 100) == Math.floor(ys[i] / 100)))
+			{
+				expected[i]++;
+			}
+		}
+		for (int i = 0; i < result.size(); i++)
+		{
+			int point = result.getPointId(i);
+			int polygon = result.getPolygonId(i);
+			found[point]++;
+			if (polygon == 400)
+			{
+				inMulti[point] = true;
+			}
+			else
+			{
+				Assert.assertEquals((int) (ys[point] / 10) * 20 + (int) (xs[point] / 10), polygon);
+			}
+		}
+		Assert.assertArrayEquals(expected, found);
+		for (int i = 0; i < n; i++)
+		{
+			Assert.assertEquals(expected[i] == 2, inMulti[i]);
+		}
+	}
+
+	@Test
+	public void testChunks()
+	{
+		List<Geometry> districts = Arrays.asList(square(0, 0, 10), square(10, 0, 10));
+		PointInPolygonJoin join = new PointInPolygonJoin(districts);
+		PointInPolygonJoin chunked = new PointInPolygonJoin(districts, 1000);
+		Assert.assertEquals(PointInPolygonJoin.DEFAULT_CHUNK_SIZE, join.getChunkSize());
+		Assert.assertEquals(1000, chunked.getChunkSize());
+		Random rnd = new Random(11);
+		int n = 10500;
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		List<Point> points = new ArrayList<Point>(n);
+		for (int i = 0; i < n; i++)
+		{
+			xs[i] = rnd.nextDouble() * 30 - 5;
+			ys[i] = rnd.nextDouble() * 15 - 2.5;
+			points.add(new Point(xs[i], ys[i]));
+		}
+		// point ids have to refer to the whole input regardless of the chunks
+		JoinResult expected = join.join(xs, ys);
+		for (JoinResult result : Arrays.asList(chunked.join(xs, ys), chunked.join(points), join.join(points)))
+		{
+			Assert.assertEquals(n, result.getNumberOfPoints());
+			Assert.assertEquals(expected.size(), result.size());
+			int[] polygonOfPoint = new int[n];
+			Arrays.fill(polygonOfPoint, -1);
+			for (int i = 0; i < result.size(); i++)
+			{
+				polygonOfPoint[result.getPointId(i)] = result.getPolygonId(i);
+			}
+			for (int i = 0; i < n; i++)
+			{
+				boolean inside = (xs[i] > 0) && (xs[i] < 20) && (ys[i] > 0) && (ys[i] < 10);
+				Assert.assertEquals(inside ? (int) (xs[i] / 10) : -1, polygonOfPoint[i]);
+			}
+		}
+		// the memory of a chunk does not depend on the number of points
+		Assert.assertTrue(chunked.join(points).getPeakChunkMemory() < expected.getPeakChunkMemory());
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PointInPolygonJoin(districts, 0));
+	}
+
+	@Test
+	public void testPoints()
+	{
+		PointInPolygonJoin join = new PointInPolygonJoin(Arrays.asList(square(0, 0, 10), square(5, 5, 10)));
+		JoinResult result = join.join(Arrays.asList(new Point(1, 1), new Point(7, 7), new Point(20, 20)));
+		Assert.assertEquals(3, result.getNumberOfPoints());
+		Assert.assertEquals(3, result.size());
+		int[] pointIds = result.getPointIds().clone();
+		Arrays.sort(pointIds);
+		Assert.assertArrayEquals(new int[] { 0, 1, 1 }, pointIds);
+		Assert.assertEquals(0, new PointInPolygonJoin(new ArrayList<Geometry>()).join(new double[] { 1 },
+				new double[] { 1 }).size());
+		Assert.assertThrows(IllegalArgumentException.class, () -> join.join(new double[1], new double[2]));
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class PointTest
+{
+
+	private static void assertPoint(Point p, double x, double y, double z, double m)
+	{
+		Assert.assertEquals(x, p.getX(), 0);
+		Assert.assertEquals(y, p.getY(), 0);
+		Assert.assertEquals(z, p.getZ(), 0);
+		Assert.assertEquals(m, p.getM(), 0);
+		Assert.assertEquals(!Double.isNaN(z), p.is3d());
+		Assert.assertEquals(!Double.isNaN(m), p.hasMeasure());
+		// check binary representation
+		Point p2 = (Point) BinaryParser.parse(BinaryWriter.writeBinary(p), 0);
+		Assert.assertEquals(p, p2);
+		Assert.assertEquals(p.is3d(), p2.is3d());
+		Assert.assertEquals(p.hasMeasure(), p2.hasMeasure());
+	}
+
+	@Test
+	public void testDimensions()
+	{
+		assertPoint(new Point(1, 2), 1, 2, Double.NaN, Double.NaN);
+		assertPoint(new Point(1, 2, 3), 1, 2, 3, Double.NaN);
+		assertPoint(new Point(1, 2, Double.NaN, 4), 1, 2, Double.NaN, 4);
+		assertPoint(new Point(1, 2, 3, 4), 1, 2, 3, 4);
+		assertPoint(new Point(), Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+	}
+
+	@Test
+	public void testSetters()
+	{
+		Point p = new Point(1, 2);
+		p.setM(4);
+		assertPoint(p, 1, 2, Double.NaN, 4);
+		p.setZ(3);
+		assertPoint(p, 1, 2, 3, 4);
+		p.setM(Double.NaN);
+		assertPoint(p, 1, 2, 3, Double.NaN);
+		p.setZ(Double.NaN);
+		assertPoint(p, 1, 2, Double.NaN, Double.NaN);
+		Assert.assertEquals(new Point(1, 2, Double.NaN, 4), new Point(1, 2, 3, 4).to2d());
+		Point p2 = new Point(5, 6, 7, 8);
+		p2.setSrid(4326);
+		Point p3 = p2.copy();
+		Assert.assertEquals(p2, p3);
+		assertPoint(p3, 5, 6, 7, 8);
+	}
+
+}
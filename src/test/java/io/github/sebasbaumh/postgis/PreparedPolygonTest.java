@@ -0,0 +1,160 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.index.PreparedPolygon;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class PreparedPolygonTest
+{
+	private static LinearRing ring(double... coords)
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < coords.length; i += 2)
+		{
+			points.add(new Point(coords[i], coords[i + 1]));
+		}
+		return new LinearRing(points);
+	}
+
+	/**
+	 * Simple ray casting over all rings for comparison.
+	 */
+	private static boolean rayCast(PolygonBase<?> poly, double x, double y)
+	{
+		boolean inside = false;
+		List<Curve> rings = new ArrayList<Curve>();
+		rings.add(poly.getOuterRing());
+		poly.getRings().forEach(rings::add);
+		for (Curve ring : rings)
+		{
+			Point prev = null;
+			for (Point p : ring.getCoordinates())
+			{
+				if ((prev != null) && ((prev.getY() > y) != (p.getY() > y)) && (x < prev.getX()
+						+ (y - prev.getY()) * (p.getX() - prev.getX()) / (p.getY() - prev.getY())))
+				{
+					inside = !inside;
+				}
+				prev = p;
+			}
+		}
+		return inside;
+	}
+
+	@Test
+	public void testArcs()
+	{
+		// circle around (5 5) with a radius of 5
+		CircularString circle = new CircularString(
+				Arrays.asList(new Point(0, 5), new Point(10, 5), new Point(0, 5)));
+		PreparedPolygon prepared = new PreparedPolygon(new CurvePolygon(circle));
+		Assert.assertTrue(prepared.getNumberOfEdges() > 32);
+		Assert.assertTrue(prepared.contains(5, 5));
+		Assert.assertTrue(prepared.contains(5, 9.9));
+		Assert.assertTrue(prepared.contains(1.5, 2));
+		Assert.assertFalse(prepared.contains(0.5, 0.5));
+		Assert.assertFalse(prepared.contains(9.5, 9.5));
+		Assert.assertTrue(prepared.intersects(0, 5));
+		// half circle closed by a line
+		CompoundCurve cc = new CompoundCurve(Arrays.asList(
+				new CircularString(Arrays.asList(new Point(0, 0), new Point(5, 5), new Point(10, 0))),
+				new LineString(Arrays.asList(new Point(10, 0), new Point(0, 0)))));
+		prepared = new PreparedPolygon(new CurvePolygon((Curve) cc));
+		Assert.assertTrue(prepared.contains(5, 4.9));
+		Assert.assertTrue(prepared.contains(1, 0.5));
+		Assert.assertFalse(prepared.contains(5, -0.1));
+		Assert.assertFalse(prepared.contains(1, 4));
+	}
+
+	@Test
+	public void testBoundary()
+	{
+		PreparedPolygon prepared = new PreparedPolygon(new Polygon(ring(0, 0, 10, 0, 10, 10, 0, 10, 0, 0)));
+		Assert.assertEquals(4, prepared.getNumberOfEdges());
+		Assert.assertTrue(prepared.contains(5, 5));
+		for (Point p : Arrays.asList(new Point(0, 0), new Point(5, 0), new Point(10, 5), new Point(10, 10),
+				new Point(0, 7)))
+		{
+			Assert.assertFalse(prepared.contains(p));
+			Assert.assertTrue(prepared.intersects(p));
+		}
+		Assert.assertFalse(prepared.intersects(10.1, 5));
+		Assert.assertFalse(prepared.intersects(-1, 0));
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PreparedPolygon(new Point(1, 2)));
+		Assert.assertFalse(new PreparedPolygon(new Polygon()).intersects(0, 0));
+	}
+
+	@Test
+	public void testRandom()
+	{
+		Random rnd = new Random(5);
+		// star shaped polygon with many vertices and a hole
+		List<Point> outer = new ArrayList<Point>();
+		for (int i = 0; i < 1000; i++)
+		{
+			double a = 2 * Math.PI * i / 1000;
+			double r = 50 + rnd.nextDouble() * 50;
+			outer.add(new Point(r * Math.cos(a), r * Math.sin(a)));
+		}
+		outer.add(outer.get(0));
+		Polygon poly = new Polygon(new LinearRing(outer));
+		poly.addRing(ring(-20, -20, 20, -20, 20, 20, -20, 20, -20, -20));
+		Polygon other = new Polygon(ring(200, 200, 300, 200, 250, 300, 200, 200));
+		MultiPolygon mp = new MultiPolygon(Arrays.asList(poly, other));
+		PreparedPolygon prepared = new PreparedPolygon(mp);
+		double[] xs = new double[10000];
+		double[] ys = new double[xs.length];
+		boolean[] result = new boolean[xs.length];
+		for (int i = 0; i < xs.length; i++)
+		{
+			xs[i] = rnd.nextDouble() * 450 - 120;
+			ys[i] = rnd.nextDouble() * 450 - 120;
+		}
+		int n = prepared.contains(xs, ys, result);
+		int expectedCount = 0;
+		for (int i = 0; i < xs.length; i++)
+		{
+			boolean expected = rayCast(poly, xs[i], ys[i]) || rayCast(other, xs[i], ys[i]);
+			Assert.assertEquals(expected, result[i]);
+			if (expected)
+			{
+				expectedCount++;
+			}
+		}
+		Assert.assertEquals(expectedCount, n);
+		Assert.assertTrue(n > 0);
+		Assert.assertEquals(n, prepared.intersects(xs, ys, result));
+		Assert.assertThrows(IllegalArgumentException.class,
+				() -> prepared.contains(new double[1], new double[2], new boolean[1]));
+	}
+
+}
@@ -22,17 +22,181 @@
 
 package io.github.sebasbaumh.postgis;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
 @SuppressWarnings("javadoc")
 public class SerializationTest extends DatabaseTestBase
 {
 
+	private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException
+	{
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data)))
+		{
+			return in.readObject();
+		}
+	}
+
+	private static byte[] serialize(Object o) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bos))
+		{
+			out.writeObject(o);
+		}
+		return bos.toByteArray();
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void serializationCompact() throws Exception
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 10000; i++)
+		{
+			points.add(new Point(i, i * 0.5, i * 2));
+		}
+		LineString ls = new LineString(points);
+		ls.setSrid(4326);
+		int wkbLength = BinaryWriter.writeBinary(ls).length;
+		byte[] data = serialize(ls);
+		// only a small overhead compared to the plain WKB (stream header, block headers)
+		int maxLength = wkbLength + (wkbLength / 100) + 128;
+		Assert.assertTrue("serialized size: " + data.length, data.length < maxLength);
+		Assert.assertEquals(ls, deserialize(data));
+		// shared instances are only written once
+		Assert.assertTrue(serialize(new ArrayList<Geometry>(Arrays.asList(ls, ls))).length < maxLength + 128);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void serializationGeometries() throws Exception
+	{
+		//@formatter:off
+		String[] wkbs = new String[] {
+			"010100000000000000000024400000000000002440",
+			"01010000C00000000000002440000000000000244000000000000034400000000000003E40",
+			"0104000080020000000101000080000000000000264000000000000028400000000000002A400101000080000000000000344000000000000034400000000000003440",
+			"01020000000400000000000000000024400000000000002440000000000000344000000000000034400000000000004940000000000000494000000000000041400000000000004140",
+			"010700000000000000",
+			"01080000000300000000000000000022C0000000000000004000000000000020C000000000000008400000000000001CC00000000000000040",
+		};
+		//@formatter:on
+		for (String wkb : wkbs)
+		{
+			Geometry geom = BinaryParser.parse(wkb);
+			Assert.assertEquals(geom, deserialize(serialize(geom)));
+		}
+		// linear rings, frozen and srid
+		LinearRing ring = new LinearRing(Arrays.asList(new Point(0, 0), new Point(1, 0), new Point(0, 1)));
+		ring.setSrid(31467);
+		ring.freeze();
+		Object o = deserialize(serialize(ring));
+		Assert.assertTrue(o instanceof LinearRing);
+		Assert.assertEquals(ring, o);
+		Assert.assertTrue(((Geometry) o).isFrozen());
+		// rings of polygons have no srid of their own
+		Polygon poly = new Polygon(new LinearRing(ring.getCoordinates()));
+		poly.setSrid(31467);
+		Assert.assertEquals(poly, deserialize(serialize(poly)));
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void serializationEarlierVersion() throws Exception
+	{
+		byte[] data = serialize(new PGgeometry(new Point(1, 2)));
+		// replace the serialVersionUID of the base class by the one of earlier versions
+		byte[] name = PGgeometrybase.class.getName().getBytes(StandardCharsets.UTF_8);
+		int index = -1;
+		for (int i = 0; (i + name.length <= data.length) && (index < 0); i++)
+		{
+			if (Arrays.equals(data, i, i + name.length, name, 0, name.length))
+			{
+				index = i + name.length;
+			}
+		}
+		Assert.assertTrue(index > 0);
+		Assert.assertEquals(0x200, ByteBuffer.wrap(data, index, 8).getLong());
+		ByteBuffer.wrap(data, index, 8).putLong(0x100);
+		Assert.assertThrows(InvalidClassException.class, () -> deserialize(data));
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void serializationPGgeometryLocal() throws Exception
+	{
+		Geometry geom = BinaryParser.parse(
+				"01020000000400000000000000000024400000000000002440000000000000344000000000000034400000000000004940000000000000494000000000000041400000000000004140");
+		PGgeometry pg = new PGgeometry(geom);
+		Object o = deserialize(serialize(pg));
+		Assert.assertTrue(o instanceof PGgeometry);
+		Assert.assertEquals(pg, o);
+		Assert.assertEquals(pg.getType(), ((PGgeometry) o).getType());
+		Assert.assertEquals(pg.getValue(), ((PGgeometry) o).getValue());
+		PGgeography pgg = new PGgeography(geom);
+		Assert.assertEquals(pgg, deserialize(serialize(pgg)));
+		PGgeometry pgEmpty = new PGgeometry();
+		Assert.assertNull(((PGgeometry) deserialize(serialize(pgEmpty))).getGeometry());
+		// binary value is only a small overhead to the plain WKB
+		Assert.assertTrue(serialize(pg).length < BinaryWriter.writeBinary(geom).length + 256);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void serializationSinglePrecision() throws Exception
+	{
+		LineString ls1 = new LineString(Arrays.asList(new Point(0.1, 0.2), new Point(1.5, 2.5)));
+		ls1.setSinglePrecision(true);
+		LineString ls2 = new LineString(Arrays.asList(new Point(3.1, 4.2), new Point(5, 6)));
+		ls2.setSinglePrecision(true);
+		MultiLineString mls = new MultiLineString(Arrays.asList(ls1, ls2));
+		mls.freeze();
+		MultiLineString mls2 = (MultiLineString) deserialize(serialize(mls));
+		Assert.assertEquals(mls, mls2);
+		Assert.assertTrue(mls2.isFrozen());
+		for (LineString ls : mls2)
+		{
+			Assert.assertTrue(ls.isSinglePrecision());
+		}
+		PGgeometry pg = (PGgeometry) deserialize(serialize(new PGgeometry(mls)));
+		Assert.assertEquals(mls, pg.getGeometry());
+		Assert.assertTrue(pg.getGeometry().isFrozen());
+		Assert.assertTrue(((LineString) ((MultiLineString) pg.getGeometry()).iterator().next()).isSinglePrecision());
+		// mixed storage is restored with double precision, so no precision gets lost
+		LineString ls3 = new LineString(Arrays.asList(new Point(0.1, 0.2), new Point(1.5, 2.5)));
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(new LineString(ls1.getCoordinates()), ls3));
+		((LineString) gc.iterator().next()).setSinglePrecision(true);
+		GeometryCollection gc2 = (GeometryCollection) deserialize(serialize(gc));
+		Assert.assertEquals(gc, gc2);
+		for (Geometry geom : gc2)
+		{
+			Assert.assertFalse(((LineString) geom).isSinglePrecision());
+		}
+		// linear rings
+		LinearRing ring = new LinearRing(Arrays.asList(new Point(0, 0), new Point(1, 0), new Point(0, 1)));
+		ring.setSinglePrecision(true);
+		LinearRing ring2 = (LinearRing) deserialize(serialize(ring));
+		Assert.assertEquals(ring, ring2);
+		Assert.assertTrue(ring2.isSinglePrecision());
+	}
+
 	@Test
 	public void serializationCheckPGgeometry() throws Exception
 	{
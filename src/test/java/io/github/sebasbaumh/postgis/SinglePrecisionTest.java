@@ -0,0 +1,128 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class SinglePrecisionTest
+{
+	@Test
+	public void testLineString()
+	{
+		LineString ls = new LineString(Arrays.asList(new Point(1.5, 2.25), new Point(3, 4), new Point(6, 8)));
+		LineString expected = new LineString(ls.getCoordinates());
+		ls.setSinglePrecision(true);
+		Assert.assertTrue(ls.isSinglePrecision());
+		Assert.assertEquals(expected, ls);
+		Assert.assertEquals(expected.hashCode(), ls.hashCode());
+		Assert.assertEquals(expected.getEnvelope(), ls.getEnvelope());
+		Assert.assertEquals(expected.length(), ls.length(), 0);
+		Assert.assertEquals(new Point(1.5, 2.25), ls.getStartPoint());
+		Assert.assertEquals(new Point(6, 8), ls.getEndPoint());
+		// adding a z value changes the dimensions
+		ls.add(7, 8, 1, Double.NaN);
+		Assert.assertTrue(ls.is3d());
+		Assert.assertFalse(ls.hasMeasure());
+		Assert.assertEquals(new Point(7, 8, 1), ls.getEndPoint());
+		Assert.assertTrue(Double.isNaN(ls.getStartPoint().getZ()));
+		ls.reverse();
+		Assert.assertEquals(new Point(7, 8, 1), ls.getStartPoint());
+		// coordinates are narrowed to float
+		ls.add(new Point(0.1, 0.2));
+		Assert.assertEquals((float) 0.1, ls.getEndPoint().getX(), 0);
+		// the points cannot be modified
+		Assert.assertThrows(UnsupportedOperationException.class, () -> {
+			Iterator<Point> it = ls.iterator();
+			it.next();
+			it.remove();
+		});
+		ls.setSinglePrecision(false);
+		Assert.assertFalse(ls.isSinglePrecision());
+		Assert.assertEquals(5, ls.getNumberOfCoordinates());
+		Assert.assertEquals(new Point(7, 8, 1), ls.getStartPoint());
+		ls.freeze();
+		Assert.assertThrows(UnsupportedOperationException.class, () -> ls.setSinglePrecision(true));
+	}
+
+	@Test
+	public void testMultiPoint()
+	{
+		MultiPoint mp = new MultiPoint(Arrays.asList(new Point(1, 2, 3, 4), new Point(5, 6, 7, 8)));
+		mp.setSrid(4326);
+		MultiPoint expected = new MultiPoint(Arrays.asList(new Point(1, 2, 3, 4), new Point(5, 6, 7, 8)));
+		expected.setSrid(4326);
+		mp.setSinglePrecision(true);
+		Assert.assertEquals(expected, mp);
+		Assert.assertEquals(mp, expected);
+		Assert.assertEquals(expected.hashCode(), mp.hashCode());
+		Assert.assertEquals(2, mp.size());
+		Assert.assertEquals(4326, mp.getGeometries().iterator().next().getSrid());
+		mp.add(9, 10, 11, 12);
+		Assert.assertEquals(3, mp.getNumberOfCoordinates());
+		List<Point> points = new ArrayList<Point>();
+		mp.forEachCoordinate((x, y, z, m) -> points.add(new Point(x, y, z, m)));
+		Assert.assertEquals(new Point(9, 10, 11, 12), points.get(2));
+		Assert.assertTrue(mp.checkConsistency());
+		Assert.assertArrayEquals(BinaryWriter.writeBinary(mp), BinaryWriter.writeBinary(BinaryParser.parse(
+				BinaryWriter.writeBinary(mp), 0, true)));
+	}
+
+	@Test
+	public void testParse()
+	{
+		Polygon poly = new Polygon(new LinearRing(Arrays.asList(new Point(0, 0, 1), new Point(10, 0, 2),
+				new Point(10, 10, 3), new Point(0, 10, 4), new Point(0, 0, 1))));
+		poly.addRing(new LinearRing(Arrays.asList(new Point(2, 2, 0), new Point(2, 4, 0), new Point(4, 4, 0),
+				new Point(2, 2, 0))));
+		MultiLineString mls = new MultiLineString(Arrays.asList(
+				new LineString(Arrays.asList(new Point(500000.25, 5600000.5), new Point(500001.75, 5600002))),
+				new LineString(Arrays.asList(new Point(1, 2), new Point(3, 4)))));
+		GeometryCollection gc = new GeometryCollection(Arrays.asList(poly, mls, new Point(1, 2)));
+		gc.setSrid(31467);
+		byte[] wkb = BinaryWriter.writeBinary(gc);
+		GeometryCollection parsed = (GeometryCollection) BinaryParser.parse(wkb, 0, true);
+		Assert.assertEquals(gc, parsed);
+		// all values are exactly representable as float, so the data does not change
+		Assert.assertArrayEquals(wkb, BinaryWriter.writeBinary(parsed));
+		Polygon parsedPoly = (Polygon) parsed.getGeometries().iterator().next();
+		Assert.assertTrue(parsedPoly.getOuterRing().isSinglePrecision());
+		Assert.assertTrue(parsedPoly.getRings().iterator().next().isClockwise());
+		Assert.assertTrue(parsedPoly.is3d());
+		// values are narrowed
+		LineString ls = new LineString(Arrays.asList(new Point(500000.123456, 5600000.123456), new Point(1, 1)));
+		LineString parsedLs = (LineString) BinaryParser.parse(BinaryWriter.writeBinary(ls), 0, true);
+		Assert.assertEquals((float) 500000.123456, parsedLs.getStartPoint().getX(), 0);
+		Assert.assertEquals(500000.123456, parsedLs.getStartPoint().getX(), 0.05);
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.binary.TwkbParser;
+import io.github.sebasbaumh.postgis.binary.TwkbWriter;
+import io.github.sebasbaumh.postgis.wkt.WktParser;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class TwkbTest
+{
+	private static final String[] WKTS = { "POINT(1 2)", "POINT(1.5 -2.25 3)", "POINTM(1 2 3)", "POINT(1 2 3 4)",
+			"LINESTRING(0 0,1 1,2 0.5)", "POLYGON((0 0,10 0,10 10,0 10,0 0),(2 2,2 4,4 4,4 2,2 2))",
+			"MULTIPOINT(1 2,3 4)", "MULTILINESTRING((0 0,1 1),(2 2,3 3))",
+			"MULTIPOLYGON(((0 0,1 0,1 1,0 0)),((5 5,6 5,6 6,5 5)))",
+			"GEOMETRYCOLLECTION(POINT(1 2),LINESTRING(0 0,1 1))", "GEOMETRYCOLLECTION(LINESTRING EMPTY,POINT(1 2))",
+			"GEOMETRYCOLLECTION(POINT(1 2),POLYGON EMPTY,POINT(3 4))", "POINT EMPTY", "LINESTRING EMPTY",
+			"MULTIPOLYGON EMPTY" };
+
+	@Test
+	public void testBoundingBoxAndSize()
+	{
+		TwkbWriter writer = new TwkbWriter(0);
+		writer.setBoundingBoxIncluded(true);
+		writer.setSizeIncluded(true);
+		Geometry geom = WktParser.parse("LINESTRING(1 1,5 5)");
+		// size 9, bounding box (1,4,1,4), then the points
+		Assert.assertArrayEquals(PostGisUtil.toHexBytes("020309020802080202020808"), writer.writeBinary(geom));
+		// all combinations of the flags, including empty members of collections
+		for (int flags = 0; flags < 4; flags++)
+		{
+			TwkbWriter writer2 = new TwkbWriter(2);
+			writer2.setBoundingBoxIncluded((flags & 1) != 0);
+			writer2.setSizeIncluded((flags & 2) != 0);
+			for (String wkt : WKTS)
+			{
+				geom = WktParser.parse(wkt);
+				Assert.assertEquals(wkt, geom, TwkbParser.parse(writer2.writeBinary(geom)));
+			}
+		}
+		// an empty geometry with a size
+		Assert.assertArrayEquals(PostGisUtil.toHexBytes("021200"),
+				writer.writeBinary(WktParser.parse("LINESTRING EMPTY")));
+	}
+
+	@Test
+	public void testIds()
+	{
+		Geometry geom = WktParser.parse("MULTIPOINT(1 1,2 2)");
+		TwkbWriter writer = new TwkbWriter(0);
+		byte[] data = writer.writeBinary(geom, new long[] { 1, 2 });
+		// example of ST_AsTWKB with ids
+		Assert.assertArrayEquals(PostGisUtil.toHexBytes("040402020402020202"), data);
+		List<Long> ids = new ArrayList<Long>();
+		Assert.assertEquals(geom, TwkbParser.parse(data, 0, ids));
+		Assert.assertEquals(Arrays.asList(1L, 2L), ids);
+		Assert.assertThrows(IllegalArgumentException.class, () -> writer.writeBinary(geom, new long[] { 1 }));
+		Assert.assertThrows(IllegalArgumentException.class,
+				() -> writer.writeBinary(new Point(1, 2), new long[] { 1 }));
+	}
+
+	@Test
+	public void testPrecision()
+	{
+		// example of ST_AsTWKB
+		Assert.assertEquals("02000202020808", new TwkbWriter(0).writeHexed(WktParser.parse("LINESTRING(1 1,5 5)")));
+		Geometry geom = WktParser.parse("POINT(1.23456 -7.891 1234.5678 0.5)");
+		Point p = (Point) TwkbParser.parse(new TwkbWriter(2, 1, 3).writeBinary(geom));
+		Assert.assertEquals(1.23, p.getX(), 0);
+		Assert.assertEquals(-7.89, p.getY(), 0);
+		Assert.assertEquals(1234.6, p.getZ(), 0);
+		Assert.assertEquals(0.5, p.getM(), 0);
+		// negative precision rounds to tens
+		p = (Point) TwkbParser.parse(new TwkbWriter(-1).writeBinary(geom));
+		Assert.assertEquals(0, p.getX(), 0);
+		Assert.assertEquals(-10, p.getY(), 0);
+		Assert.assertThrows(IllegalArgumentException.class, () -> new TwkbWriter(8));
+		Assert.assertThrows(IllegalArgumentException.class, () -> new TwkbWriter(0, -1, 0));
+	}
+
+	@Test
+	public void testRoundTrip()
+	{
+		TwkbWriter writer = new TwkbWriter(7, 7, 7);
+		for (String wkt : WKTS)
+		{
+			Geometry geom = WktParser.parse(wkt);
+			Geometry geom2 = TwkbParser.parse(writer.writeBinary(geom));
+			Assert.assertEquals(wkt, geom, geom2);
+			Assert.assertEquals(wkt, geom, TwkbParser.parse(writer.writeHexed(geom)));
+		}
+		// much smaller than WKB using a reduced precision
+		Geometry geom = WktParser.parse("LINESTRING(0 0,1 1,2 0.5,3 1.5,4 1)");
+		Assert.assertTrue(new TwkbWriter(1).writeBinary(geom).length * 3 < BinaryWriter.writeBinary(geom).length);
+		Assert.assertThrows(IllegalArgumentException.class,
+				() -> writer.writeBinary(WktParser.parse("CIRCULARSTRING(0 0,1 1,2 0)")));
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * PostGIS extension for PostgreSQL JDBC driver
+ *
+ * (C) 2004 Paul Ramsey, pramsey@refractions.net
+ * (C) 2005 Markus Schaber, markus.schaber@logix-tt.com
+ * (C) 2015 Phillip Ross, phillip.w.g.ross@gmail.com
+ * (C) 2018-2023 Sebastian Baumhekel, sebastian.baumhekel@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.github.sebasbaumh.postgis;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.sebasbaumh.postgis.binary.BinaryParser;
+import io.github.sebasbaumh.postgis.binary.BinaryWriter;
+import io.github.sebasbaumh.postgis.wkt.WktParser;
+import io.github.sebasbaumh.postgis.wkt.WktWriter;
+
+@SuppressWarnings({ "javadoc", "static-method" })
+public class WktTest
+{
+	private static final String[] WKTS = { "POINT(1 2)", "SRID=4326;POINT(1.5 -2.25)", "POINT(1 2 3)",
+			"POINTM(1 2 3)", "POINT(1 2 3 4)", "POINT EMPTY", "LINESTRING(0 0,1 1,2 0.5)",
+			"POLYGON((0 0,10 0,10 10,0 10,0 0),(2 2,2 4,4 4,4 2,2 2))", "MULTIPOINT(1 2,3 4)",
+			"MULTILINESTRING((0 0,1 1),(2 2,3 3))", "MULTIPOLYGON(((0 0,1 0,1 1,0 0)),((5 5,6 5,6 6,5 5)))",
+			"CIRCULARSTRING(0 0,1 1,2 0)", "COMPOUNDCURVE(CIRCULARSTRING(0 0,1 1,2 0),(2 0,3 0))",
+			"CURVEPOLYGON(COMPOUNDCURVE(CIRCULARSTRING(0 0,2 0,2 2),(2 2,0 0)),(0.5 0.5,1 0.6,1.2 0.5,0.5 0.5))",
+			"MULTICURVE((0 0,1 1),CIRCULARSTRING(0 0,1 1,2 0))",
+			"MULTISURFACE(((0 0,1 0,1 1,0 0)),CURVEPOLYGON(CIRCULARSTRING(0 0,2 0,0 0)))",
+			"SRID=31467;GEOMETRYCOLLECTIONM(POINTM(1 2 3),LINESTRINGM(0 0 1,1 1 2))", "GEOMETRYCOLLECTION EMPTY" };
+
+	@Test
+	public void testAppendable() throws IOException
+	{
+		StringWriter sw = new StringWriter();
+		WktWriter.write(WktParser.parse("SRID=4326;LINESTRING(1 2,3 4)"), sw);
+		Assert.assertEquals("SRID=4326;LINESTRING(1 2,3 4)", sw.toString());
+	}
+
+	@Test
+	public void testBinary()
+	{
+		// parsing the text has to give the same geometry as parsing its binary representation
+		for (String wkt : WKTS)
+		{
+			Geometry geom = WktParser.parse(wkt);
+			if (!geom.isEmpty())
+			{
+				Assert.assertEquals(wkt, geom, BinaryParser.parse(BinaryWriter.writeHexed(geom)));
+			}
+		}
+	}
+
+	@Test
+	public void testDimensions()
+	{
+		Point p = (Point) WktParser.parse("POINT M (1 2 3)");
+		Assert.assertFalse(p.is3d());
+		Assert.assertEquals(3, p.getM(), 0);
+		p = (Point) WktParser.parse("POINTZM(1 2 3 4)");
+		Assert.assertEquals(3, p.getZ(), 0);
+		Assert.assertEquals(4, p.getM(), 0);
+		Assert.assertEquals("POINT(1 2 3 4)", WktWriter.write(WktParser.parse("point zm (1 2 3 4)")));
+		Assert.assertEquals("LINESTRING(0 0 0,1 1 5)",
+				WktWriter.write(new LineString(Arrays.asList(new Point(0, 0), new Point(1, 1, 5)))));
+	}
+
+	@Test
+	public void testInvalid()
+	{
+		for (String wkt : new String[] { "", "POINT", "POINT(1)", "POINT(1 2", "POINT(1 2) x", "POINTX(1 2)",
+				"LINESTRING(0 0,1 1 1)", "POINT Z (1 2)", "SRID=;POINT(1 2)", "POINT(1 2e)",
+				"COMPOUNDCURVE(POINT(1 2))", "MULTISURFACE(LINESTRING(0 0,1 1))" })
+		{
+			Assert.assertThrows(wkt, IllegalArgumentException.class, () -> WktParser.parse(wkt));
+		}
+	}
+
+	@Test
+	public void testNumbers()
+	{
+		double[] values = { 0.1, -0.3, 1e-7, 123456.789, 1.7976931348623157E308, 4.9E-324, 0.30000000000000004,
+				Math.PI, -1234567890.123456789, 1e22, 1e23, 9007199254740993.0 };
+		for (double v : values)
+		{
+			Point p = (Point) WktParser.parse(WktWriter.write(new Point(v, -v)));
+			Assert.assertEquals(Double.doubleToLongBits(v), Double.doubleToLongBits(p.getX()));
+			Assert.assertEquals(Double.doubleToLongBits(-v), Double.doubleToLongBits(p.getY()));
+		}
+		// shortest representation on all Java versions
+		Assert.assertEquals("POINT(2.82879384806159E17 1.0E-4)",
+				WktWriter.write(new Point(2.82879384806159E17, 0.0001)));
+		Point p = (Point) WktParser.parse("POINT(+1.25E2 .5)");
+		Assert.assertEquals(125, p.getX(), 0);
+		Assert.assertEquals(0.5, p.getY(), 0);
+		p = (Point) WktParser.parse("POINT(0.000000000000000000000000123 12345678901234567890)");
+		Assert.assertEquals(1.23e-25, p.getX(), 0);
+		Assert.assertEquals(12345678901234567890.0, p.getY(), 0);
+	}
+
+	@Test
+	public void testRoundTrip()
+	{
+		for (String wkt : WKTS)
+		{
+			Assert.assertEquals(wkt, WktWriter.write(WktParser.parse(wkt)));
+		}
+	}
+
+	@Test
+	public void testVariants()
+	{
+		Assert.assertEquals("SRID=4326;MULTIPOINT(1 2,3 4)",
+				WktWriter.write(WktParser.parse(" srid=4326 ; MultiPoint ( (1 2) , (3 4) ) ")));
+		Assert.assertEquals("POLYGON((0 0,1 0,1 1,0 0))",
+				WktWriter.write(WktParser.parse("POLYGON\n((0 0,1 0,1 1,0 0))")));
+		Assert.assertEquals(4326, ((MultiPoint) WktParser.parse("SRID=4326;MULTIPOINT(1 2)")).iterator().next().getSrid());
+	}
+
+}